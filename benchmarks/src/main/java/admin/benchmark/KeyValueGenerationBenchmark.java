@@ -0,0 +1,70 @@
+package admin.benchmark;
+
+import admin.RandomString;
+import admin.load.KeyValueGenerator;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building one row of the insert tools: the former String based code against KeyValueGenerator.
+ *
+ * Run with "-prof gc" to get the bytes allocated per row (gc.alloc.rate.norm).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KeyValueGenerationBenchmark {
+
+    private static final String EASY = RandomString.digits + "ACEFGHJKLMNPQRUVWXYabcdefhijkprstuvwx";
+    private static final String VALUE = "val1asdfasddasasdfñasldfbbqbkjasbdfkljasbfkljabsdkljfbaskldfjbaskljdfbalksjbflaksjdbf";
+
+    private RandomString tickets;
+    private KeyValueGenerator generator;
+
+    private byte[] prefix;
+    private byte[] family;
+    private byte[] value;
+    private int counter;
+
+    @Setup
+    public void setup() {
+        tickets = new RandomString(23, new SecureRandom(), EASY);
+        generator = new KeyValueGenerator(ThreadLocalRandom.current(), 6, KeyValueGenerator.CHAR_WIDTH, 23, EASY, 0);
+        prefix = Bytes.toBytes("201709");
+        family = Bytes.toBytes("colfam1");
+        value = Bytes.toBytes(VALUE);
+    }
+
+    @Benchmark
+    public Put stringRow() {
+        String row = "201709" + Character.toString((char) (counter++ & 0x7f));
+        Put put = new Put(Bytes.toBytes(row));
+        put.addColumn(Bytes.toBytes("colfam1"), Bytes.toBytes(tickets.nextString()), Bytes.toBytes(VALUE));
+        return put;
+    }
+
+    @Benchmark
+    public Put generatorRow() throws IOException {
+        // Same rows as the insert tools and stringRow: prefix + the counter as a char
+        generator.nextCharRow(prefix, counter++ & 0x7f);
+        return generator.newPut(family, generator.nextQualifier(), value, value.length);
+    }
+}
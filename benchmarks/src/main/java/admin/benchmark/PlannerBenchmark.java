@@ -0,0 +1,97 @@
+package admin.benchmark;
+
+import admin.cluster.ClusterView;
+import admin.planner.AbstractRegionPlanner;
+import admin.planner.SimpleAverageSizeRegionPlanner;
+import admin.planner.SimpleMaxNumberRegionPlanner;
+import admin.planner.SimpleMaxSizeRegionPlanner;
+import admin.planner.SimpleMinNumberRegionPlanner;
+import admin.planner.StagedAverageSizeRegionPlanner;
+import admin.planner.StagedMaxNumberRegionPlanner;
+import admin.planner.StagedMaxSizeRegionPlanner;
+import admin.planner.StagedMinNumberRegionPlanner;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.master.normalizer.NormalizationPlan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of one planning pass of every planner over synthetic staged tables of 1k to 1M regions, with the plan memo
+ * disabled.
+ *
+ * Run with "-prof gc" to get the bytes allocated per pass (gc.alloc.rate.norm), e.g.:
+ *
+ *   java -jar target/region-tool-benchmarks.jar PlannerBenchmark -prof gc -p regions=1000,10000
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class PlannerBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int regions;
+
+    @Param({"SimpleMaxSize", "SimpleAverageSize", "SimpleMinNumber", "SimpleMaxNumber",
+            "StagedMaxSize", "StagedAverageSize", "StagedMinNumber", "StagedMaxNumber"})
+    public String planner;
+
+    private SyntheticTable table;
+    private Configuration conf;
+    private AbstractRegionPlanner regionPlanner;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        table = new SyntheticTable(regions);
+        conf = HBaseConfiguration.create();
+        // Every call would be a hit of the plan memo after the first one, the benchmark measures the planning
+        conf.setBoolean(AbstractRegionPlanner.MEMO_ENABLED_KEY_PROPERTY, false);
+        regionPlanner = newPlanner(planner, table.newCluster(conf), conf);
+    }
+
+    static AbstractRegionPlanner newPlanner(String name, ClusterView cluster, Configuration conf) {
+        // The regions and loads are given to computePlans, the staged planners read the clock of the cluster
+        switch (name) {
+            case "SimpleMaxSize":
+                return new SimpleMaxSizeRegionPlanner(cluster, SyntheticTable.TABLE_NAME, conf);
+            case "SimpleAverageSize":
+                return new SimpleAverageSizeRegionPlanner(cluster, SyntheticTable.TABLE_NAME, conf);
+            case "SimpleMinNumber":
+                return new SimpleMinNumberRegionPlanner(cluster, SyntheticTable.TABLE_NAME, conf);
+            case "SimpleMaxNumber":
+                return new SimpleMaxNumberRegionPlanner(cluster, SyntheticTable.TABLE_NAME, conf);
+            case "StagedMaxSize":
+                return new StagedMaxSizeRegionPlanner(cluster, SyntheticTable.TABLE_NAME, conf);
+            case "StagedAverageSize":
+                return new StagedAverageSizeRegionPlanner(cluster, SyntheticTable.TABLE_NAME, conf);
+            case "StagedMinNumber":
+                return new StagedMinNumberRegionPlanner(cluster, SyntheticTable.TABLE_NAME, conf);
+            case "StagedMaxNumber":
+                return new StagedMaxNumberRegionPlanner(cluster, SyntheticTable.TABLE_NAME, conf);
+            default:
+                throw new IllegalArgumentException("Unknown planner: " + name);
+        }
+    }
+
+    @Benchmark
+    public List<NormalizationPlan> computePlans() throws IOException {
+        return regionPlanner.computePlans(SyntheticTable.TABLE_NAME, table.getRegions(), table.getRegionLoads());
+    }
+}
@@ -0,0 +1,51 @@
+package admin.benchmark;
+
+import admin.StageByDateBuilder;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of the stage classification of StageByDateBuilder alone, the first step of every staged planner.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class StageBoundariesBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int regions;
+
+    private SyntheticTable table;
+    private Configuration conf;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        table = new SyntheticTable(regions);
+        conf = HBaseConfiguration.create();
+    }
+
+    @Benchmark
+    public StageByDateBuilder setStageBoundaries() throws IOException {
+        StageByDateBuilder builder = new StageByDateBuilder(SyntheticTable.TABLE_NAME, table.getRegions(), conf);
+        builder.setStageBoundaries();
+        return builder;
+    }
+}
@@ -0,0 +1,113 @@
+package admin.benchmark;
+
+import admin.cluster.InMemoryCluster;
+import com.google.protobuf.ByteString;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.RegionLoad;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.protobuf.generated.ClusterStatusProtos;
+import org.apache.hadoop.hbase.protobuf.generated.HBaseProtos;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Staged table with a given number of regions and their loads, built without a cluster.
+ *
+ * Regions are spread over the last MONTHS months, start keys are yyyyMM + zero padded number, as in the tables of
+ * StageByDateBuilder. Region sizes follow a log-normal distribution, most regions around the median and a long tail
+ * of big ones, and the hot regions are bigger than the cold ones. The layout only depends on the seed.
+ */
+public class SyntheticTable {
+
+    public static final TableName TABLE_NAME = TableName.valueOf("benchmark");
+
+    static final int MONTHS = 72;
+
+    private static final long SEED = 42L;
+    private static final double MEDIAN_SIZE_MB = 2048;
+    private static final double SIGMA = 1.0;
+
+    private final List<HRegionInfo> regions;
+    private final Map<byte[], RegionLoad> regionLoads;
+
+    public SyntheticTable(int numRegions) {
+
+        Random random = new Random(SEED);
+        DateFormat dateFormat = new SimpleDateFormat("yyyyMM");
+
+        regions = new ArrayList<>(numRegions);
+        regionLoads = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+
+        int regionsPerMonth = Math.max(1, numRegions / MONTHS);
+        int digits = String.valueOf(numRegions).length();
+
+        Calendar cal = Calendar.getInstance();
+        cal.add(Calendar.MONTH, -(MONTHS - 1));
+
+        List<byte[]> startKeys = new ArrayList<>(numRegions);
+        startKeys.add(new byte[0]);
+        for (int i = 1; i < numRegions; i++) {
+            int month = Math.min(MONTHS - 1, i / regionsPerMonth);
+            Calendar monthCal = (Calendar) cal.clone();
+            monthCal.add(Calendar.MONTH, month);
+            String prefix = dateFormat.format(monthCal.getTime());
+            int number = i - month * regionsPerMonth;
+            startKeys.add(Bytes.toBytes(number == 0 ? prefix : prefix + String.format("%0" + digits + "d", number)));
+        }
+
+        long regionId = System.currentTimeMillis();
+        for (int i = 0; i < numRegions; i++) {
+            byte[] endKey = i + 1 < numRegions ? startKeys.get(i + 1) : new byte[0];
+            HRegionInfo info = new HRegionInfo(TABLE_NAME, startKeys.get(i), endKey, false, regionId);
+            regions.add(info);
+
+            // Recent regions are bigger: from 0.5x the median for the oldest month to 2x for the newest one
+            double ageFactor = 0.5 + 1.5 * i / (double) numRegions;
+            int sizeMB = (int) Math.min(Integer.MAX_VALUE, MEDIAN_SIZE_MB * ageFactor * Math.exp(SIGMA * random.nextGaussian()));
+            regionLoads.put(info.getRegionName(), newRegionLoad(info.getRegionName(), sizeMB));
+        }
+    }
+
+    static RegionLoad newRegionLoad(byte[] regionName, int storefileSizeMB) {
+        return new RegionLoad(ClusterStatusProtos.RegionLoad.newBuilder()
+                .setRegionSpecifier(HBaseProtos.RegionSpecifier.newBuilder()
+                        .setType(HBaseProtos.RegionSpecifier.RegionSpecifierType.REGION_NAME)
+                        .setValue(ByteString.copyFrom(regionName)))
+                .setStores(1)
+                .setStorefiles(1)
+                .setStorefileSizeMB(storefileSizeMB)
+                .build());
+    }
+
+    /**
+     * In-memory cluster with the regions of the table and their sizes, for the planners to read the table from.
+     */
+    public InMemoryCluster newCluster(Configuration conf) {
+        InMemoryCluster cluster = new InMemoryCluster(conf, System.currentTimeMillis());
+        List<ServerName> servers = cluster.getServers();
+        for (int i = 0; i < regions.size(); i++) {
+            HRegionInfo info = regions.get(i);
+            cluster.addRegion(info, servers.get(i % servers.size()),
+                    regionLoads.get(info.getRegionName()).getStorefileSizeMB(), 0);
+        }
+        return cluster;
+    }
+
+    public List<HRegionInfo> getRegions() {
+        return regions;
+    }
+
+    public Map<byte[], RegionLoad> getRegionLoads() {
+        return regionLoads;
+    }
+}
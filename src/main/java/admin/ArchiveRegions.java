@@ -0,0 +1,331 @@
+package admin;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles;
+import org.apache.hadoop.hbase.protobuf.generated.AdminProtos.GetRegionInfoResponse.CompactionState;
+import org.apache.hadoop.hbase.regionserver.StoreFileInfo;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.FSUtils;
+
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Scanner;
+
+/**
+ * Archives the regions older than a split key instead of deleting them.
+ *
+ * The HFiles of every region to archive are moved (HDFS rename, no data copy) to a dated archive directory
+ * with the layout expected by LoadIncrementalHFiles:
+ *
+ * <pre>
+ *   [archive dir]/[namespace]/[table]/[yyyyMMddHHmmss]/[encoded region name]/[family]/[hfile]
+ * </pre>
+ *
+ * so any archived region can later be bulk loaded into an archive table. When an archive table is configured the
+ * files are bulk loaded into it right away (again a rename when both tables live in the same file system).
+ * The emptied regions are then merged as DeleteRegions does.
+ *
+ * If no split key is provided, the cold expiration split of StageByDateBuilder is used.
+ */
+public class ArchiveRegions {
+
+    private static final Log LOG = LogFactory.getLog(ArchiveRegions.class);
+
+    /**
+     * Root directory of the archive. It must be in the same file system as hbase.rootdir.
+     */
+    public static final String ARCHIVE_DIR_KEY_PROPERTY = "hbase.regiontool.archive.dir";
+
+    /**
+     * Optional table where the archived HFiles are bulk loaded.
+     */
+    public static final String ARCHIVE_TABLE_KEY_PROPERTY = "hbase.regiontool.archive.table";
+
+    public static final String DEFAULT_ARCHIVE_DIR_NAME = "hbase-region-archive";
+
+    private static final DateFormat dateFormat = new SimpleDateFormat("yyyyMMddHHmmss");
+
+    private static int waitTime = 10 * 1000;
+
+    public static void main(String[] args) throws Exception {
+
+        if (args.length < 1) {
+            System.out.println("Usage: ArchiveRegions <table> [splitKey]");
+            return;
+        }
+
+        String sTable = args[0];
+
+        Configuration conf = HBaseConfiguration.create();
+
+        Connection connection = ConnectionFactory.createConnection(conf);
+        Admin admin = connection.getAdmin();
+
+        TableName tableName = TableName.valueOf(sTable);
+
+        List<HRegionInfo> tableRegions = admin.getTableRegions(tableName);
+        StageByDateBuilder rsp = new StageByDateBuilder(tableName, tableRegions, conf);
+
+        String splitKey = args.length > 1 ? args[1] : rsp.getColdExpirationSplit();
+
+        Path rootDir = FSUtils.getRootDir(conf);
+        FileSystem fs = rootDir.getFileSystem(conf);
+        Path archiveRoot = getArchiveRoot(conf, rootDir);
+
+        if (!fs.getUri().equals(archiveRoot.getFileSystem(conf).getUri())) {
+            System.out.println("Archive dir " + archiveRoot + " is not in the same file system as " + rootDir
+                    + ". HFiles cannot be moved without copying them.");
+            return;
+        }
+
+        Path archiveDir = new Path(archiveRoot, tableName.getNamespaceAsString() + Path.SEPARATOR
+                + tableName.getQualifierAsString() + Path.SEPARATOR + dateFormat.format(new Date()));
+
+        RegionLocator locator = connection.getRegionLocator(tableName);
+
+        HRegionInfo borderlineRegion = StageByDateBuilder.getRegion(locator, splitKey);
+        if (borderlineRegion == null) {
+            System.out.println("No region holds the split key " + splitKey + ". No region archived.");
+            return;
+        }
+
+        System.out.println("Border Line Region: " + borderlineRegion.getRegionNameAsString()
+                + " Start Key:" + Bytes.toString(borderlineRegion.getStartKey())
+                + " End Key: " + Bytes.toString(borderlineRegion.getEndKey()));
+
+        System.out.println("Split Key: " + splitKey);
+
+        boolean borderSplitted = false;
+        if (!(Bytes.toString(borderlineRegion.getStartKey()).equals(splitKey)) &&
+                !(Bytes.toString(borderlineRegion.getEndKey()).equals(splitKey))) {
+
+            System.out.println("Spitting region " + borderlineRegion + " with split Key: " + splitKey);
+
+            admin.splitRegion(borderlineRegion.getRegionName(), Bytes.toBytes(splitKey));
+            borderSplitted = true;
+
+            DeleteRegions.checkInTransition(admin);
+
+            // Refresh the region list with the daughters of the border region
+            rsp = new StageByDateBuilder(tableName, admin.getTableRegions(tableName), conf);
+        }
+
+        List<HRegionInfo> regions = rsp.getRegionsToArchive(connection, splitKey);
+
+        if (regions.size() == 0) {
+            System.out.println("WARNING: No regions to archive...");
+            return;
+        }
+
+        System.out.println("The HFiles of the following Regions will be moved to " + archiveDir);
+
+        printRegionInfo(regions);
+
+        Scanner input = new Scanner(System.in);
+        System.out.println("Are you sure you want to archive all the data in that regions(Y/N)?: ");
+        String s = input.next();
+
+        if (!s.equalsIgnoreCase("Y")) {
+            System.out.println("ABORTING operation. No region archived.");
+            return;
+        }
+
+        Path tableDir = FSUtils.getTableDir(rootDir, tableName);
+        List<Path> archivedRegionDirs = new ArrayList<>();
+        long archivedBytes = 0L;
+
+        for (HRegionInfo info : regions) {
+
+            Path regionDir = new Path(tableDir, info.getEncodedName());
+
+            // Daughters of a recent split only hold references to the parent files.
+            compactReferences(admin, fs, regionDir, info);
+
+            // Closing the region on its RegionServer flushes the memstore, so all the data is in HFiles, and stops
+            // the writes. Unlike unassign, the master does not reopen it until it is assigned below
+            ServerName server = locator.getRegionLocation(info.getStartKey(), true).getServerName();
+            admin.closeRegion(server, info);
+            waitUntilClosed(admin, server, info);
+
+            Path regionArchiveDir = new Path(archiveDir, info.getEncodedName());
+            archivedBytes += moveStoreFiles(fs, regionDir, regionArchiveDir);
+            archivedRegionDirs.add(regionArchiveDir);
+        }
+
+        // Reopen the emptied regions only once all the files are moved
+        for (HRegionInfo info : regions) {
+            admin.assign(info.getRegionName());
+        }
+        DeleteRegions.checkInTransition(admin);
+
+        System.out.println("ARCHIVED " + archivedBytes + " bytes from " + regions.size() + " regions to " + archiveDir);
+
+        String archiveTable = conf.get(ARCHIVE_TABLE_KEY_PROPERTY);
+        if (archiveTable != null && !archiveTable.isEmpty()) {
+            bulkLoad(conf, connection, admin, TableName.valueOf(archiveTable), archivedRegionDirs);
+        }
+
+        // Merge the empty regions
+        HRegionInfo previous = null;
+        HRegionInfo current;
+
+        for (HRegionInfo info : regions) {
+
+            current = info;
+
+            if (previous != null) {
+                System.out.println("MERGING REGIONS:" + previous + " with " + current);
+                admin.mergeRegions(previous.getEncodedNameAsBytes(), current.getEncodedNameAsBytes(), false);
+
+                DeleteRegions.checkInTransition(admin);
+
+                RegionLocator tLocator = connection.getRegionLocator(tableName);
+                previous = StageByDateBuilder.getRegion(tLocator, Bytes.toString(current.getStartKey()), true);
+                System.out.println("New Region:" + previous);
+
+                DeleteRegions.checkInTransition(admin);
+
+            } else {
+                previous = current;
+            }
+        }
+
+        if (borderSplitted) {
+            // It needs to refresh the borderLineRegion
+            borderlineRegion = DeleteRegions.getRegionWithKey(connection, tableName, splitKey);
+        }
+
+        System.out.println("MERGING REGIONS:" + previous.getRegionNameAsString() + " with " + borderlineRegion.getRegionNameAsString());
+        admin.mergeRegions(previous.getEncodedNameAsBytes(), borderlineRegion.getEncodedNameAsBytes(), true);
+
+        locator.close();
+        admin.close();
+        connection.close();
+    }
+
+    /**
+     * Waits until the region is no longer online in the server, as the server closes it asynchronously.
+     */
+    private static void waitUntilClosed(Admin admin, ServerName server, HRegionInfo info)
+            throws IOException, InterruptedException {
+        while (admin.getOnlineRegions(server).contains(info)) {
+            System.out.println("Sleeping " + waitTime + " ms. until region " + info.getEncodedName() + " is closed....");
+            Thread.sleep(waitTime);
+        }
+    }
+
+    static Path getArchiveRoot(Configuration conf, Path rootDir) {
+        String dir = conf.get(ARCHIVE_DIR_KEY_PROPERTY);
+        if (dir == null || dir.isEmpty()) {
+            return new Path(rootDir.getParent(), DEFAULT_ARCHIVE_DIR_NAME);
+        }
+        return new Path(dir);
+    }
+
+    /**
+     * Moves the store files of every family of the region to the archive folder, keeping the family layout.
+     *
+     * @return the number of bytes moved
+     */
+    static long moveStoreFiles(FileSystem fs, Path regionDir, Path regionArchiveDir) throws IOException {
+
+        long bytes = 0L;
+
+        for (Path familyDir : FSUtils.getFamilyDirs(fs, regionDir)) {
+
+            Path familyArchiveDir = new Path(regionArchiveDir, familyDir.getName());
+            FileStatus[] files = fs.listStatus(familyDir);
+            if (files == null || files.length == 0) continue;
+
+            fs.mkdirs(familyArchiveDir);
+
+            for (FileStatus file : files) {
+                if (!StoreFileInfo.isHFile(file.getPath())) {
+                    LOG.debug("Skipping non HFile " + file.getPath());
+                    continue;
+                }
+                Path target = new Path(familyArchiveDir, file.getPath().getName());
+                LOG.debug("Moving " + file.getPath() + " to " + target);
+                if (!fs.rename(file.getPath(), target)) {
+                    throw new IOException("Cannot move " + file.getPath() + " to " + target);
+                }
+                bytes += file.getLen();
+            }
+        }
+
+        System.out.println("ARCHIVED REGION HDFS PATH: " + regionDir + " to " + regionArchiveDir);
+        return bytes;
+    }
+
+    /**
+     * Major compacts the region if it still holds reference files to a split parent. Only the borderline
+     * daughter should need it.
+     */
+    private static void compactReferences(Admin admin, FileSystem fs, Path regionDir, HRegionInfo info)
+            throws IOException, InterruptedException {
+
+        if (!hasReferences(fs, regionDir)) return;
+
+        System.out.println("Region " + info.getRegionNameAsString() + " has reference files. Major compacting it...");
+        admin.majorCompactRegion(info.getRegionName());
+
+        while (hasReferences(fs, regionDir)
+                || admin.getCompactionStateForRegion(info.getRegionName()) != CompactionState.NONE) {
+            System.out.println("Sleeping " + waitTime + " ms. until region " + info.getEncodedName() + " is compacted....");
+            Thread.sleep(waitTime);
+        }
+    }
+
+    private static boolean hasReferences(FileSystem fs, Path regionDir) throws IOException {
+        for (Path familyDir : FSUtils.getFamilyDirs(fs, regionDir)) {
+            FileStatus[] files = fs.listStatus(familyDir);
+            if (files == null) continue;
+            for (FileStatus file : files) {
+                if (StoreFileInfo.isReference(file.getPath())) return true;
+            }
+        }
+        return false;
+    }
+
+    private static void bulkLoad(Configuration conf, Connection connection, Admin admin, TableName archiveTable,
+                                 List<Path> regionArchiveDirs) throws Exception {
+
+        LoadIncrementalHFiles loader = new LoadIncrementalHFiles(conf);
+        Table table = connection.getTable(archiveTable);
+        RegionLocator locator = connection.getRegionLocator(archiveTable);
+
+        for (Path dir : regionArchiveDirs) {
+            System.out.println("BULK LOADING " + dir + " into " + archiveTable);
+            loader.doBulkLoad(dir, admin, table, locator);
+        }
+
+        locator.close();
+        table.close();
+    }
+
+    private static void printRegionInfo(List<HRegionInfo> infos) {
+        for (HRegionInfo info : infos) {
+            System.out.println(" Region: " + info.getRegionNameAsString()
+                    + " Start Key:" + Bytes.toString(info.getStartKey())
+                    + " End Key: " + Bytes.toString(info.getEndKey()));
+        }
+    }
+}
@@ -1,20 +1,20 @@
 package admin;
 
+import admin.delete.DeleteCheckpoint;
+import admin.delete.RegionDeleteEngine;
+import admin.delete.RegionDeleteRunner;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.HRegionInfo;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.*;
-import org.apache.hadoop.hbase.client.coprocessor.Batch;
-import org.apache.hadoop.hbase.coprocessor.example.generated.BulkDeleteProtos;
-import org.apache.hadoop.hbase.ipc.BlockingRpcCallback;
-import org.apache.hadoop.hbase.ipc.ServerRpcController;
 import org.apache.hadoop.hbase.master.RegionState;
-import org.apache.hadoop.hbase.protobuf.ProtobufUtil;
 import org.apache.hadoop.hbase.util.Bytes;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -111,7 +111,7 @@ public class BulkDelete {
 
         try {
 
-            regions = rsp.getRegionsToArchive(splitKey);
+            regions = rsp.getRegionsToArchive(connection, splitKey);
 
         } catch (IOException e) {
             System.out.println("Cannot parse splits for table " + tableName + " Cause:" + e.getCause());
@@ -124,12 +124,24 @@ public class BulkDelete {
 
         printRegionInfo(regions);
 
-        Scan scan;
-        //scan = new Scan().setFilter(new PrefixFilter(Bytes.toBytes(splitKey)));
-        scan = new Scan(Bytes.toBytes(""), Bytes.toBytes(splitKey));
-        long noOfRowsDeleted = invokeBulkDeleteProtocol(conf, tableName, scan, 10, BulkDeleteProtos.BulkDeleteRequest.DeleteType.ROW, null);
+        // One delete task per region, checkpointed so an interrupted run resumes where it stopped
+        File checkpointFile = new File(args.length > 2 ? args[2] : "bulkdelete-" + tableName.getNameAsString().replace(':', '_')
+                + "-" + splitKey + ".checkpoint");
+        DeleteCheckpoint checkpoint = new DeleteCheckpoint(checkpointFile);
+        RegionDeleteEngine engine = RegionDeleteRunner.createEngine(conf, connection, tableName);
+        RegionDeleteRunner runner = new RegionDeleteRunner(conf, engine, checkpoint);
 
-        System.out.println("ROWS DELETED:" + noOfRowsDeleted);
+        long noOfRowsDeleted;
+        try {
+            noOfRowsDeleted = runner.run(connection.getRegionLocator(tableName), HConstants.EMPTY_START_ROW,
+                    Bytes.toBytes(splitKey), null);
+        } finally {
+            checkpoint.close();
+            engine.close();
+        }
+
+        System.out.println("ROWS DELETED:" + noOfRowsDeleted + " (" + checkpoint.getCompletedRows()
+                + " including previous runs)");
 
         if (regions.size() <= 1 ) {
             System.out.println("WARNING: No regions to merge...");
@@ -201,37 +213,6 @@ public class BulkDelete {
     }
 
 
-    private static long invokeBulkDeleteProtocol(Configuration conf, TableName tableName, final Scan scan, final int rowBatchSize,
-                                          final BulkDeleteProtos.BulkDeleteRequest.DeleteType deleteType, final Long timeStamp) throws Throwable {
-        Table ht = new HTable(conf, tableName);
-        long noOfDeletedRows = 0L;
-        Batch.Call<BulkDeleteProtos.BulkDeleteService, BulkDeleteProtos.BulkDeleteResponse> callable =
-                new Batch.Call<BulkDeleteProtos.BulkDeleteService, BulkDeleteProtos.BulkDeleteResponse>() {
-                    ServerRpcController controller = new ServerRpcController();
-                    BlockingRpcCallback<BulkDeleteProtos.BulkDeleteResponse> rpcCallback =
-                            new BlockingRpcCallback<BulkDeleteProtos.BulkDeleteResponse>();
-
-                    public BulkDeleteProtos.BulkDeleteResponse call(BulkDeleteProtos.BulkDeleteService service) throws IOException {
-                        BulkDeleteProtos.BulkDeleteRequest.Builder builder = BulkDeleteProtos.BulkDeleteRequest.newBuilder();
-                        builder.setScan(ProtobufUtil.toScan(scan));
-                        builder.setDeleteType(deleteType);
-                        builder.setRowBatchSize(rowBatchSize);
-                        if (timeStamp != null) {
-                            builder.setTimestamp(timeStamp);
-                        }
-                        service.delete(controller, builder.build(), rpcCallback);
-                        return rpcCallback.get();
-                    }
-                };
-        Map<byte[], BulkDeleteProtos.BulkDeleteResponse> result = ht.coprocessorService(BulkDeleteProtos.BulkDeleteService.class, scan
-                .getStartRow(), scan.getStopRow(), callable);
-        for (BulkDeleteProtos.BulkDeleteResponse response : result.values()) {
-            noOfDeletedRows += response.getRowsDeleted();
-        }
-        ht.close();
-        return noOfDeletedRows;
-    }
-
     private static void  checkInTransition(Admin admin) throws IOException {
 
         boolean inTransitions = true;
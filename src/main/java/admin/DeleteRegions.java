@@ -1,5 +1,6 @@
 package admin;
 
+import admin.delete.DeleteCheckpoint;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
@@ -15,6 +16,7 @@ import org.apache.hadoop.hbase.client.RegionLocator;
 import org.apache.hadoop.hbase.master.RegionState;
 import org.apache.hadoop.hbase.util.Bytes;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -82,7 +84,7 @@ public class DeleteRegions {
 
         try {
 
-            regions = rsp.getRegionsToArchive(splitKey);
+            regions = rsp.getRegionsToArchive(connection, splitKey);
 
         } catch (IOException e) {
             System.out.println("Cannot parse splits for table " + tableName + " Cause:" + e.getCause());
@@ -111,17 +113,31 @@ public class DeleteRegions {
         }
 
 
-        // Clean HDFS
-        for (HRegionInfo info : regions) {
+        // Clean HDFS, checkpointed so an interrupted run does not offline and delete the same regions again. The
+        // merges below are resumed from the regions left to archive, as the ones already merged are gone
+        File checkpointFile = new File(args.length > 2 ? args[2] : "deleteregions-" + tableName.getNameAsString().replace(':', '_')
+                + "-" + splitKey + ".checkpoint");
+        DeleteCheckpoint checkpoint = new DeleteCheckpoint(checkpointFile);
+        try {
+            for (HRegionInfo info : regions) {
 
-            admin.offline(info.getRegionName());
-            deleteRegionFromHDFS(conf, info);
-            admin.assign(info.getRegionName());
+                if (checkpoint.isCompleted(info.getEncodedName())) {
+                    System.out.println("Region " + info.getRegionNameAsString() + " already deleted from HDFS");
+                    continue;
+                }
 
+                admin.offline(info.getRegionName());
+                deleteRegionFromHDFS(conf, info);
+                admin.assign(info.getRegionName());
 
-            checkInTransition(admin);
 
+                checkInTransition(admin);
+
+                checkpoint.markCompleted(info.getEncodedName(), 0L);
 
+            }
+        } finally {
+            checkpoint.close();
         }
 
         // Merge Regions
@@ -172,7 +188,7 @@ public class DeleteRegions {
 
     }
 
-    private static void  checkInTransition(Admin admin) throws IOException {
+    static void  checkInTransition(Admin admin) throws IOException {
 
         boolean inTransitions = true;
         Map<String,RegionState> regMap = admin.getClusterStatus().getRegionsInTransition();
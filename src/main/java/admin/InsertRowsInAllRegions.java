@@ -1,5 +1,6 @@
 package admin;
 
+import admin.load.KeyValueGenerator;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.TableName;
@@ -12,6 +13,7 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 // cc ClusterOperationExample Shows the use of the cluster operations
 public class InsertRowsInAllRegions {
@@ -72,17 +74,29 @@ public class InsertRowsInAllRegions {
         TableName tableName = TableName.valueOf(sTable);
 
 
+        int rows = Integer.parseInt(sRows);
+        byte[] family = Bytes.toBytes("colfam1");
+        byte[] qualifier = Bytes.toBytes("col1");
+        byte[] value = Bytes.toBytes("val1asdfasddasasdfñasldfbbqbkjasbdfkljasbfkljabsdkljfbaskldfjbaskljdfbalksjbflaksjdbf");
+
+        int maxSplitLength = 0;
+        byte[][] splitKeys = new byte[splits.size()][];
+        for (int i = 0; i < splits.size(); i++) {
+            splitKeys[i] = Bytes.toBytes(splits.get(i));
+            maxSplitLength = Math.max(maxSplitLength, splitKeys[i].length);
+        }
+
+        // Rows are written in a reusable buffer: split key + row number as a char
+        KeyValueGenerator generator = new KeyValueGenerator(ThreadLocalRandom.current(), maxSplitLength,
+                KeyValueGenerator.CHAR_WIDTH, 0, RandomString.digits, 0);
+
         BufferedMutator mutator = connection.getBufferedMutator(tableName);
 
-        for (String split : splits) {
-            System.out.println("INSERTING IN " + split);
-            for (int a = 0; a <= Integer.parseInt(sRows); a++) {
-                String row = split + Character.toString((char) a);
-                Put put = new Put(Bytes.toBytes(row));
-                put.addColumn(Bytes.toBytes("colfam1"), Bytes.toBytes("col1"),
-                        Bytes.toBytes("val1asdfasddasasdfñasldfbbqbkjasbdfkljasbfkljabsdkljfbaskldfjbaskljdfbalksjbflaksjdbf"));
-                System.out.println("Adding row: " + row);
-                mutator.mutate(put);
+        for (byte[] split : splitKeys) {
+            System.out.println("INSERTING IN " + Bytes.toString(split));
+            for (int a = 0; a <= rows; a++) {
+                generator.nextCharRow(split, a);
+                mutator.mutate(generator.newPut(family, qualifier, value, value.length));
             }
         }
 
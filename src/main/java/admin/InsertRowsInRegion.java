@@ -1,5 +1,6 @@
 package admin;
 
+import admin.load.KeyValueGenerator;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.TableName;
@@ -7,7 +8,7 @@ import org.apache.hadoop.hbase.client.*;
 import org.apache.hadoop.hbase.util.Bytes;
 
 import java.io.IOException;
-import java.security.SecureRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
 // cc ClusterOperationExample Shows the use of the cluster operations
 public class InsertRowsInRegion {
@@ -30,19 +31,23 @@ public class InsertRowsInRegion {
     System.out.println("Inserting " + sRows + " in table " + sTable + " and key base " + sKey );
     TableName tableName = TableName.valueOf(sTable);
       String easy = RandomString.digits + "ACEFGHJKLMNPQRUVWXYabcdefhijkprstuvwx";
-      RandomString tickets = new RandomString(23, new SecureRandom(), easy);
 
+    int rows = Integer.parseInt(sRows);
+    byte[] key = Bytes.toBytes(sKey);
+    byte[] family = Bytes.toBytes("colfam1");
+    byte[] value = Bytes.toBytes("val1asdfasddasasdfñasldfbbqbkjasbdfkljasbfkljabsdkljfbaskldfjbaskljdfbalksjbflaksjdbf");
+
+    // Rows and qualifiers are written in reusable buffers
+    KeyValueGenerator generator = new KeyValueGenerator(ThreadLocalRandom.current(), key.length,
+            KeyValueGenerator.CHAR_WIDTH, 23, easy, 0);
 
     BufferedMutator mutator = connection.getBufferedMutator(tableName);
-    for (int a = 1; a <= Integer.parseInt(sRows); a++) {
-          String row = sKey + Character.toString((char) a);
-
-          Put put = new Put(Bytes.toBytes(row));
-          put.addColumn(Bytes.toBytes("colfam1"), Bytes.toBytes(tickets.nextString()),
-            Bytes.toBytes("val1asdfasddasasdfñasldfbbqbkjasbdfkljasbfkljabsdkljfbaskldfjbaskljdfbalksjbflaksjdbf"));
-          System.out.println("Adding row: " + row.toString() );
-          mutator.mutate(put);
+    for (int a = 1; a <= rows; a++) {
+          generator.nextCharRow(key, a);
+          mutator.mutate(generator.newPut(family, generator.nextQualifier(), value, value.length));
+          if (a % 100000 == 0) System.out.println("Rows added: " + a);
         }
+    System.out.println("Rows added: " + rows);
 
     mutator.close();
 
@@ -0,0 +1,238 @@
+package admin;
+
+import admin.planner.PlanRegions;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.RegionLoad;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.master.normalizer.MergeNormalizationPlan;
+import org.apache.hadoop.hbase.master.normalizer.NormalizationPlan;
+import org.apache.hadoop.hbase.master.normalizer.SplitNormalizationPlan;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps planners from undoing each other: remembers the splits and merges executed by key range, and suppresses the
+ * plans that would undo one of them, e.g. merging back the daughters of a region split by the average size planner
+ * because the max number planner finds too many regions.
+ *
+ * A merge undoes a split when it takes a region of the split range, and a split undoes a merge when it takes a
+ * region of the merged range. During the cool-down the undo is always suppressed. After it, until the action is
+ * forgotten, it is only allowed out of the hysteresis band: a merge when the merged size is under the size of the
+ * split region minus the band, a split when the region is over the merged size plus the band. So the data has
+ * really changed since.
+ *
+ * Actions are appended to a local file, one line per action, and reloaded on restart: time, SPLIT or MERGE, table,
+ * start and end keys (Bytes.toStringBinary) and size in MB. Forgotten actions are dropped from the file on close.
+ */
+public class PlanDamper {
+
+    private static final Log LOG = LogFactory.getLog(PlanDamper.class);
+
+    public static final String DAMPING_FILE_KEY_PROPERTY = "hbase.regiontool.damping.file";
+    public static final String DAMPING_COOLDOWN_KEY_PROPERTY = "hbase.regiontool.damping.cooldown.hours";
+    public static final String DAMPING_MEMORY_KEY_PROPERTY = "hbase.regiontool.damping.memory.hours";
+    public static final String DAMPING_BAND_KEY_PROPERTY = "hbase.regiontool.damping.band";
+
+    public static final long DEFAULT_COOLDOWN_HOURS = 24;
+    public static final long DEFAULT_MEMORY_HOURS = 7 * 24;
+    public static final float DEFAULT_BAND = 0.25f;
+
+    private static final String SPLIT = "SPLIT";
+    private static final String MERGE = "MERGE";
+
+    /**
+     * An executed split or merge, with the key range and size of the region split or of the merged region.
+     */
+    private static class Action {
+        final long time;
+        final String type;
+        final String table;
+        final byte[] startKey;
+        final byte[] endKey;
+        final long sizeMB;
+
+        Action(long time, String type, String table, byte[] startKey, byte[] endKey, long sizeMB) {
+            this.time = time;
+            this.type = type;
+            this.table = table;
+            this.startKey = startKey;
+            this.endKey = endKey;
+            this.sizeMB = sizeMB;
+        }
+
+        boolean overlaps(HRegionInfo info) {
+            // Empty end keys are the end of the table
+            return (endKey.length == 0 || Bytes.compareTo(info.getStartKey(), endKey) < 0)
+                    && (info.getEndKey().length == 0 || Bytes.compareTo(startKey, info.getEndKey()) < 0);
+        }
+
+        String toLine() {
+            return time + "\t" + type + "\t" + table + "\t" + Bytes.toStringBinary(startKey) + "\t"
+                    + Bytes.toStringBinary(endKey) + "\t" + sizeMB + "\n";
+        }
+
+        static Action fromLine(String line) {
+            String[] fields = line.split("\t", -1);
+            if (fields.length != 6) return null;
+            try {
+                return new Action(Long.parseLong(fields[0]), fields[1], fields[2], Bytes.toBytesBinary(fields[3]),
+                        Bytes.toBytesBinary(fields[4]), Long.parseLong(fields[5]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    private final File file;
+    private final long cooldownMs;
+    private final long memoryMs;
+    private final float band;
+
+    private final List<Action> actions = new ArrayList<>();
+    private Writer writer;
+
+    public PlanDamper(File file, Configuration conf) throws IOException {
+        this.file = file;
+        this.cooldownMs = conf.getLong(DAMPING_COOLDOWN_KEY_PROPERTY, DEFAULT_COOLDOWN_HOURS) * 3600 * 1000L;
+        this.memoryMs = conf.getLong(DAMPING_MEMORY_KEY_PROPERTY, DEFAULT_MEMORY_HOURS) * 3600 * 1000L;
+        this.band = conf.getFloat(DAMPING_BAND_KEY_PROPERTY, DEFAULT_BAND);
+
+        if (file.exists()) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                    StandardCharsets.UTF_8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Action action = Action.fromLine(line);
+                    // A partial last line after a crash is skipped
+                    if (action != null) actions.add(action);
+                }
+            } finally {
+                reader.close();
+            }
+            LOG.info("Loaded " + actions.size() + " recent actions from " + file);
+        }
+        this.writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns why the plan is suppressed, or null if it can be executed.
+     */
+    public synchronized String check(TableName table, NormalizationPlan plan, Map<byte[], RegionLoad> regionLoads, long now) {
+
+        forget(now);
+
+        List<HRegionInfo> regions = PlanRegions.regionsOf(plan);
+        String undone = plan instanceof SplitNormalizationPlan ? MERGE
+                : plan instanceof MergeNormalizationPlan ? SPLIT : null;
+        if (undone == null || regions.isEmpty()) return null;
+
+        long sizeMB = getSizeMB(regions, regionLoads);
+        String tableName = table.getNameAsString();
+
+        for (int i = actions.size() - 1; i >= 0; i--) {
+            Action action = actions.get(i);
+            if (!action.type.equals(undone) || !action.table.equals(tableName)) continue;
+            boolean overlaps = false;
+            for (HRegionInfo info : regions) {
+                overlaps |= action.overlaps(info);
+            }
+            if (!overlaps) continue;
+
+            long age = now - action.time;
+            String since = undone + " of " + Bytes.toStringBinary(action.startKey) + " "
+                    + (age / (60 * 1000L)) + " minutes ago";
+            if (age < cooldownMs) {
+                return "undoes " + since + " in cool-down";
+            }
+            if (undone.equals(SPLIT) && sizeMB >= action.sizeMB * (1 - band)) {
+                return "undoes " + since + " with " + sizeMB + " MB for " + action.sizeMB + " MB split";
+            }
+            if (undone.equals(MERGE) && sizeMB <= action.sizeMB * (1 + band)) {
+                return "undoes " + since + " with " + sizeMB + " MB for " + action.sizeMB + " MB merged";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remembers an executed plan.
+     */
+    public synchronized void executed(TableName table, NormalizationPlan plan, Map<byte[], RegionLoad> regionLoads, long now) {
+
+        List<HRegionInfo> regions = PlanRegions.regionsOf(plan);
+        if (regions.isEmpty()) return;
+
+        byte[] startKey = regions.get(0).getStartKey();
+        byte[] endKey = regions.get(0).getEndKey();
+        for (HRegionInfo info : regions) {
+            if (Bytes.compareTo(info.getStartKey(), startKey) < 0) startKey = info.getStartKey();
+            if (endKey.length > 0 && (info.getEndKey().length == 0 || Bytes.compareTo(info.getEndKey(), endKey) > 0)) {
+                endKey = info.getEndKey();
+            }
+        }
+        Action action = new Action(now, plan instanceof SplitNormalizationPlan ? SPLIT : MERGE,
+                table.getNameAsString(), startKey, endKey, getSizeMB(regions, regionLoads));
+        actions.add(action);
+        try {
+            writer.write(action.toLine());
+            writer.flush();
+        } catch (IOException e) {
+            LOG.warn("Cannot write to the damping file " + file, e);
+        }
+    }
+
+    /**
+     * Size in MB of the regions of a plan, i.e. what its execution rewrites.
+     */
+    public static long getSizeMB(List<HRegionInfo> regions, Map<byte[], RegionLoad> regionLoads) {
+        long sizeMB = 0;
+        for (HRegionInfo info : regions) {
+            RegionLoad load = regionLoads.get(info.getRegionName());
+            if (load != null) sizeMB += load.getStorefileSizeMB();
+        }
+        return sizeMB;
+    }
+
+    private void forget(long now) {
+        Iterator<Action> iterator = actions.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().time < now - memoryMs) iterator.remove();
+        }
+    }
+
+    /**
+     * Rewrites the file with the actions not forgotten yet.
+     */
+    public synchronized void close() throws IOException {
+        writer.close();
+        File tmp = new File(file.getPath() + ".tmp");
+        Writer out = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8);
+        try {
+            for (Action action : actions) {
+                out.write(action.toLine());
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            LOG.warn("Cannot rewrite the damping file " + file);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package admin;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.master.normalizer.MergeNormalizationPlan;
+import org.apache.hadoop.hbase.master.normalizer.NormalizationPlan;
+import org.apache.hadoop.hbase.master.normalizer.SplitNormalizationPlan;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Local file with the start and end of every plan executed by RegionsTool, one line per event:
+ * timestamp in ms, START or END, plan type, plan description and, for END, the time in ms since the first START and
+ * the result of the plan.
+ *
+ * START is written when the split or merge is requested (again on every retry), END when the region transition is
+ * over: the plan is verified on the regions of the table (DONE), found stale (STALE), or given up (NOOP or FAILED).
+ * Without verification END is written after the wait for the regions in transition (UNVERIFIED). So the events
+ * span the transition the readers see, not just the request RPC. Times are the ones of the cluster, i.e. the wall
+ * clock, or the simulated clock of a simulation.
+ *
+ * Lines are appended and flushed as soon as they happen, so other processes (e.g. ReadLoadGenerator) can follow
+ * the file with a Tailer and annotate their own timeline.
+ */
+public class PlanEventLog {
+
+    private static final Log LOG = LogFactory.getLog(PlanEventLog.class);
+
+    public static final String PLAN_EVENT_LOG_KEY_PROPERTY = "hbase.regiontool.plan.event.log";
+
+    public static final String START = "START";
+    public static final String END = "END";
+
+    private final File file;
+    private final Writer writer;
+
+    public PlanEventLog(File file) throws IOException {
+        this.file = file;
+        this.writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+    }
+
+    public void planStarted(NormalizationPlan plan, long time) {
+        write(time + "\t" + START + "\t" + typeOf(plan) + "\t" + describe(plan) + "\n");
+    }
+
+    /**
+     * @param startTime time of the first START of the plan
+     * @param result    DONE, STALE, NOOP, FAILED or UNVERIFIED
+     */
+    public void planEnded(NormalizationPlan plan, long startTime, long time, String result) {
+        write(time + "\t" + END + "\t" + typeOf(plan) + "\t" + describe(plan) + "\t" + (time - startTime)
+                + "\t" + result + "\n");
+    }
+
+    static String typeOf(NormalizationPlan plan) {
+        if (plan instanceof SplitNormalizationPlan) return "SPLIT";
+        if (plan instanceof MergeNormalizationPlan) return "MERGE";
+        return plan.getClass().getSimpleName();
+    }
+
+    private static String describe(NormalizationPlan plan) {
+        // Plans have no line breaks nor tabs in their toString, but the format must not depend on it
+        return plan.toString().replace('\t', ' ').replace('\n', ' ');
+    }
+
+    private synchronized void write(String line) {
+        try {
+            writer.write(line);
+            writer.flush();
+        } catch (IOException e) {
+            LOG.warn("Cannot write to the plan event log " + file, e);
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * Reads the events appended to a plan event log since the previous call. Partial lines are left for the next
+     * call.
+     */
+    public static class Tailer {
+
+        private final File file;
+        private long offset;
+
+        /**
+         * @param fromEnd true to skip the events already in the file
+         */
+        public Tailer(File file, boolean fromEnd) {
+            this.file = file;
+            this.offset = fromEnd && file.exists() ? file.length() : 0L;
+        }
+
+        public List<String> poll() throws IOException {
+
+            List<String> lines = new ArrayList<>();
+            if (!file.exists() || file.length() <= offset) return lines;
+
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                byte[] buffer = new byte[(int) Math.min(Integer.MAX_VALUE, raf.length() - offset)];
+                raf.seek(offset);
+                raf.readFully(buffer);
+
+                int lineStart = 0;
+                for (int i = 0; i < buffer.length; i++) {
+                    if (buffer[i] == '\n') {
+                        lines.add(new String(buffer, lineStart, i - lineStart, StandardCharsets.UTF_8));
+                        lineStart = i + 1;
+                    }
+                }
+                offset += lineStart;
+            } finally {
+                raf.close();
+            }
+            return lines;
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package admin;
+
+import admin.cluster.ClusterView;
+import admin.planner.BoundarySplitPlan;
+import admin.planner.PlanRegions;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.master.normalizer.MergeNormalizationPlan;
+import org.apache.hadoop.hbase.master.normalizer.NormalizationPlan;
+import org.apache.hadoop.hbase.master.normalizer.SplitNormalizationPlan;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Write-ahead journal of RegionsTool, to resume a run killed midway without planning again nor repeating the
+ * plans already executed. Every plan computed is appended before any of them is executed, then every transition:
+ * pending, dispatched to the master, confirmed or failed, or deferred when it is not dispatched in its iteration.
+ * One line per record, tab separated:
+ *
+ * <pre>
+ *   ITERATION   iteration time
+ *   PLAN        id table planner SPLIT|MERGE encoded names (comma separated) split point (Bytes.toStringBinary)
+ *   DISPATCHED  id time
+ *   CONFIRMED   id time
+ *   FAILED      id time
+ *   DEFERRED    id time
+ *   END         iteration time
+ *   CLOSED      time
+ * </pre>
+ *
+ * A split or merge requested is confirmed when its regions are gone from the cluster, which the tool checks after
+ * the wait for the regions in transition. A plan is failed when the master rejected it, or when it is given up or
+ * found stale by the verification of RegionsTool, which retries it meanwhile as the same entry, dispatched again; or
+ * on resume when its regions have been changed by something else. A plan is deferred when the iteration ends
+ * without dispatching it, e.g. over the max plans per round: the next iteration plans again, so it is not resumed.
+ *
+ * The plans of a planner are synced to disk before the first one is executed. Transitions are synced in batches,
+ * every given number of records or milliseconds, so a crash may lose the last ones; on resume the plans not
+ * confirmed nor failed are checked against the cluster instead: the ones whose regions are gone were executed, the
+ * others are executed again. A journal ending with CLOSED belongs to a run that completed and is started over.
+ */
+public class PlanJournal {
+
+    private static final Log LOG = LogFactory.getLog(PlanJournal.class);
+
+    public static final String JOURNAL_FILE_KEY_PROPERTY = "hbase.regiontool.journal.file";
+    public static final String JOURNAL_SYNC_RECORDS_KEY_PROPERTY = "hbase.regiontool.journal.sync.records";
+    public static final String JOURNAL_SYNC_MILLIS_KEY_PROPERTY = "hbase.regiontool.journal.sync.millis";
+
+    public static final int DEFAULT_SYNC_RECORDS = 100;
+    public static final long DEFAULT_SYNC_MILLIS = 1000;
+
+    static final String ITERATION = "ITERATION";
+    static final String PLAN = "PLAN";
+    static final String DISPATCHED = "DISPATCHED";
+    static final String CONFIRMED = "CONFIRMED";
+    static final String FAILED = "FAILED";
+    static final String DEFERRED = "DEFERRED";
+    static final String END = "END";
+    static final String CLOSED = "CLOSED";
+
+    private static final String SPLIT = "SPLIT";
+    private static final String MERGE = "MERGE";
+
+    /**
+     * A journaled plan and its last state.
+     */
+    private static class Entry {
+        final long id;
+        final TableName table;
+        final String planner;
+        final String type;
+        final String[] regions;
+        final byte[] splitPoint;
+        String state = PLAN;
+
+        Entry(long id, TableName table, String planner, String type, String[] regions, byte[] splitPoint) {
+            this.id = id;
+            this.table = table;
+            this.planner = planner;
+            this.type = type;
+            this.regions = regions;
+            this.splitPoint = splitPoint;
+        }
+
+        boolean isSettled() {
+            return CONFIRMED.equals(state) || FAILED.equals(state) || DEFERRED.equals(state);
+        }
+
+        String toLine() {
+            StringBuilder names = new StringBuilder();
+            for (String region : regions) {
+                if (names.length() > 0) names.append(',');
+                names.append(region);
+            }
+            return PLAN + "\t" + id + "\t" + table.getNameAsString() + "\t" + planner + "\t" + type + "\t" + names
+                    + "\t" + (splitPoint == null ? "" : Bytes.toStringBinary(splitPoint)) + "\n";
+        }
+
+        static Entry fromFields(String[] fields) {
+            if (fields.length != 7) return null;
+            try {
+                return new Entry(Long.parseLong(fields[1]), TableName.valueOf(fields[2]), fields[3], fields[4],
+                        fields[5].split(","), fields[6].isEmpty() ? null : Bytes.toBytesBinary(fields[6]));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    private final File file;
+    private final int syncRecords;
+    private final long syncMillis;
+
+    // Plans of the interrupted run not confirmed nor failed, by id
+    private final Map<Long, Entry> entries = new LinkedHashMap<>();
+    // Ids of the plans journaled by this run, until they are settled
+    private final Map<NormalizationPlan, Entry> ids = new IdentityHashMap<>();
+
+    private FileOutputStream out;
+    private Writer writer;
+    private long nextId = 1;
+    private int lastStarted = 0;
+    private int lastEnded = 0;
+    private int unsynced = 0;
+    private long lastSync;
+    private long syncs = 0;
+
+    public PlanJournal(File file, Configuration conf) throws IOException {
+        this.file = file;
+        this.syncRecords = conf.getInt(JOURNAL_SYNC_RECORDS_KEY_PROPERTY, DEFAULT_SYNC_RECORDS);
+        this.syncMillis = conf.getLong(JOURNAL_SYNC_MILLIS_KEY_PROPERTY, DEFAULT_SYNC_MILLIS);
+
+        boolean closed = true;
+        if (file.exists()) {
+            closed = load();
+        }
+        if (closed) {
+            // Nothing to resume, the journal starts over
+            entries.clear();
+            lastStarted = 0;
+            lastEnded = 0;
+        }
+        this.out = new FileOutputStream(file, !closed);
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.lastSync = System.currentTimeMillis();
+        if (!closed) {
+            LOG.info("Resuming the run of " + file + " interrupted " + (lastEnded < lastStarted ? "in" : "after")
+                    + " iteration " + lastStarted + ", " + entries.size() + " plans not confirmed");
+        }
+    }
+
+    /**
+     * Reads the journal, returns whether the run completed.
+     */
+    private boolean load() throws IOException {
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                StandardCharsets.UTF_8));
+        boolean closed = true;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                closed = false;
+                try {
+                    if (PLAN.equals(fields[0])) {
+                        Entry entry = Entry.fromFields(fields);
+                        // A partial last line after a crash is skipped
+                        if (entry == null) continue;
+                        entries.put(entry.id, entry);
+                        nextId = Math.max(nextId, entry.id + 1);
+                    } else if (ITERATION.equals(fields[0]) && fields.length == 3) {
+                        lastStarted = Integer.parseInt(fields[1]);
+                    } else if (END.equals(fields[0]) && fields.length == 3) {
+                        lastEnded = Integer.parseInt(fields[1]);
+                    } else if (CLOSED.equals(fields[0])) {
+                        closed = true;
+                    } else if (fields.length == 3) {
+                        Entry entry = entries.get(Long.parseLong(fields[1]));
+                        if (entry == null) continue;
+                        if (CONFIRMED.equals(fields[0]) || FAILED.equals(fields[0]) || DEFERRED.equals(fields[0])) {
+                            entries.remove(entry.id);
+                        } else {
+                            entry.state = fields[0];
+                        }
+                    }
+                } catch (NumberFormatException e) {
+                    LOG.warn("Ignoring journal line: " + line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return closed;
+    }
+
+    /**
+     * Whether the last run was interrupted, so the tool resumes it.
+     */
+    public synchronized boolean isResuming() {
+        return lastStarted > 0;
+    }
+
+    /**
+     * Last iteration started by the interrupted run, 0 when there is none.
+     */
+    public synchronized int getLastIteration() {
+        return lastStarted;
+    }
+
+    /**
+     * Checks the plans of the interrupted run not confirmed nor failed against the cluster. The ones whose regions
+     * are gone were executed and are confirmed. The ones whose regions are all there are returned, rebuilt on the
+     * current regions, to be executed again: they are journaled as pending again. The others are failed.
+     */
+    public synchronized List<NormalizationPlan> getOutstandingPlans(ClusterView cluster) throws IOException {
+
+        List<NormalizationPlan> outstanding = new ArrayList<>();
+        Map<TableName, Map<String, HRegionInfo>> tables = new HashMap<>();
+        long now = cluster.currentTimeMillis();
+
+        for (Entry entry : entries.values()) {
+            Map<String, HRegionInfo> regions = tables.get(entry.table);
+            if (regions == null) {
+                regions = new HashMap<>();
+                for (HRegionInfo info : cluster.getTableRegions(entry.table)) {
+                    regions.put(info.getEncodedName(), info);
+                }
+                tables.put(entry.table, regions);
+            }
+
+            List<HRegionInfo> current = new ArrayList<>();
+            for (String name : entry.regions) {
+                HRegionInfo info = regions.get(name);
+                if (info != null) current.add(info);
+            }
+
+            if (current.isEmpty()) {
+                LOG.info("Journaled " + entry.type + " of " + entry.table + " " + entry.regions[0]
+                        + " was executed before the restart");
+                write(CONFIRMED + "\t" + entry.id + "\t" + now + "\n");
+            } else if (current.size() < entry.regions.length) {
+                LOG.info("Journaled " + entry.type + " of " + entry.table + " " + entry.regions[0]
+                        + " is stale, its regions have changed");
+                write(FAILED + "\t" + entry.id + "\t" + now + "\n");
+            } else {
+                NormalizationPlan plan = SPLIT.equals(entry.type)
+                        ? (entry.splitPoint != null ? new BoundarySplitPlan(current.get(0), entry.splitPoint)
+                        : new SplitNormalizationPlan(current.get(0), null))
+                        : new MergeNormalizationPlan(current.get(0), current.get(1));
+                ids.put(plan, entry);
+                outstanding.add(plan);
+            }
+        }
+        entries.clear();
+        sync();
+        return outstanding;
+    }
+
+    public synchronized void iterationStarted(int iteration, long time) throws IOException {
+        write(ITERATION + "\t" + iteration + "\t" + time + "\n");
+    }
+
+    public synchronized void iterationEnded(int iteration, long time) throws IOException {
+        write(END + "\t" + iteration + "\t" + time + "\n");
+        sync();
+    }
+
+    /**
+     * Appends the plans computed by a planner as pending, and syncs them before any is executed.
+     */
+    public synchronized void planned(TableName table, String planner, List<NormalizationPlan> plans)
+            throws IOException {
+        if (plans == null || plans.isEmpty()) return;
+        for (NormalizationPlan plan : plans) {
+            List<HRegionInfo> regions = PlanRegions.regionsOf(plan);
+            if (regions.isEmpty()) continue;
+            String[] names = new String[regions.size()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = regions.get(i).getEncodedName();
+            }
+            byte[] splitPoint = plan instanceof BoundarySplitPlan ? ((BoundarySplitPlan) plan).getSplitPoint() : null;
+            Entry entry = new Entry(nextId++, table, planner, plan instanceof MergeNormalizationPlan ? MERGE : SPLIT,
+                    names, splitPoint);
+            ids.put(plan, entry);
+            write(entry.toLine());
+        }
+        sync();
+    }
+
+    public synchronized void dispatched(NormalizationPlan plan, long time) throws IOException {
+        transition(plan, DISPATCHED, time);
+    }
+
+    public synchronized void failed(NormalizationPlan plan, long time) throws IOException {
+        transition(plan, FAILED, time);
+    }
+
+    /**
+     * Confirms the plans dispatched whose regions are gone from the cluster, e.g. after the wait for the regions in
+     * transition. The plans still in transition are confirmed by a later call.
+     */
+    public synchronized void confirm(ClusterView cluster) throws IOException {
+
+        Map<TableName, Map<String, HRegionInfo>> tables = new HashMap<>();
+        long now = cluster.currentTimeMillis();
+        List<NormalizationPlan> settled = new ArrayList<>();
+        for (Map.Entry<NormalizationPlan, Entry> e : ids.entrySet()) {
+            Entry entry = e.getValue();
+            if (!DISPATCHED.equals(entry.state)) continue;
+            Map<String, HRegionInfo> regions = tables.get(entry.table);
+            if (regions == null) {
+                regions = new HashMap<>();
+                for (HRegionInfo info : cluster.getTableRegions(entry.table)) {
+                    regions.put(info.getEncodedName(), info);
+                }
+                tables.put(entry.table, regions);
+            }
+            boolean gone = true;
+            for (String name : entry.regions) {
+                gone &= !regions.containsKey(name);
+            }
+            if (gone) {
+                entry.state = CONFIRMED;
+                write(CONFIRMED + "\t" + entry.id + "\t" + now + "\n");
+                settled.add(e.getKey());
+            }
+        }
+        for (NormalizationPlan plan : settled) {
+            ids.remove(plan);
+        }
+        maybeSync();
+    }
+
+    /**
+     * Settles the plans computed but not dispatched as deferred, e.g. over the max plans per round, so a restart does
+     * not execute them: the next iteration computes them again if they are still needed.
+     */
+    public synchronized void forgetPending(long time) throws IOException {
+        List<NormalizationPlan> pending = new ArrayList<>();
+        for (Map.Entry<NormalizationPlan, Entry> e : ids.entrySet()) {
+            if (PLAN.equals(e.getValue().state)) pending.add(e.getKey());
+        }
+        for (NormalizationPlan plan : pending) {
+            transition(plan, DEFERRED, time);
+        }
+    }
+
+    private void transition(NormalizationPlan plan, String state, long time) throws IOException {
+        Entry entry = ids.get(plan);
+        if (entry == null || entry.isSettled()) return;
+        entry.state = state;
+        write(state + "\t" + entry.id + "\t" + time + "\n");
+        if (entry.isSettled()) ids.remove(plan);
+        maybeSync();
+    }
+
+    private void write(String line) throws IOException {
+        writer.write(line);
+        unsynced++;
+    }
+
+    private void maybeSync() throws IOException {
+        if (unsynced >= syncRecords || System.currentTimeMillis() - lastSync >= syncMillis) {
+            sync();
+        }
+    }
+
+    /**
+     * Writes the records buffered and forces them to disk.
+     */
+    public synchronized void sync() throws IOException {
+        if (unsynced == 0) return;
+        writer.flush();
+        out.getFD().sync();
+        unsynced = 0;
+        lastSync = System.currentTimeMillis();
+        syncs++;
+    }
+
+    public synchronized long getSyncCount() {
+        return syncs;
+    }
+
+    /**
+     * Marks the run as completed, so the next one starts over.
+     */
+    public synchronized void close() throws IOException {
+        write(CLOSED + "\t" + System.currentTimeMillis() + "\n");
+        sync();
+        writer.close();
+    }
+
+    /**
+     * Closes the journal without marking the run as completed, e.g. when it failed.
+     */
+    public synchronized void abort() throws IOException {
+        sync();
+        writer.close();
+    }
+}
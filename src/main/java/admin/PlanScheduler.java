@@ -0,0 +1,103 @@
+package admin;
+
+import org.apache.hadoop.hbase.master.normalizer.NormalizationPlan;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hands out the plans of several tables to the execution threads in turns, one plan of every table after the other,
+ * so a table with many plans does not hold back the others. A table has at most one plan executing at a time, as its
+ * plans were all computed on the same regions, and at most maxPlans plans are handed out in total; the rest are
+ * deferred to the next iteration, when the planners compute them again.
+ *
+ * @param <T> the table, or whatever the plans are grouped by
+ */
+class PlanScheduler<T> {
+
+    static class Task<T> {
+        final T table;
+        final NormalizationPlan plan;
+
+        Task(T table, NormalizationPlan plan) {
+            this.table = table;
+            this.plan = plan;
+        }
+    }
+
+    private final List<T> tables = new ArrayList<>();
+    private final Map<T, Deque<NormalizationPlan>> queues = new HashMap<>();
+    private final Set<T> busy = new HashSet<>();
+    private final int maxPlans;
+    private final int first;
+
+    private int handedOut = 0;
+    private int next = -1;
+
+    /**
+     * @param maxPlans plans handed out at most, 0 or less for all of them
+     * @param first    index of the table served first, e.g. the round number, so no table is always the first one
+     */
+    PlanScheduler(int maxPlans, int first) {
+        this.maxPlans = maxPlans;
+        this.first = first;
+    }
+
+    synchronized void add(T table, List<NormalizationPlan> plans) {
+        if (plans == null || plans.isEmpty()) return;
+        tables.add(table);
+        queues.put(table, new ArrayDeque<>(plans));
+    }
+
+    synchronized boolean isEmpty() {
+        return tables.isEmpty();
+    }
+
+    /**
+     * Returns the next plan, waiting while the tables with plans left all have one executing, or null when there is
+     * nothing left to hand out.
+     */
+    synchronized Task<T> next() throws InterruptedException {
+        if (next < 0) next = tables.isEmpty() ? 0 : first % tables.size();
+        while (true) {
+            if (maxPlans > 0 && handedOut >= maxPlans) return null;
+            boolean pending = false;
+            for (int i = 0; i < tables.size(); i++) {
+                int index = (next + i) % tables.size();
+                T table = tables.get(index);
+                Deque<NormalizationPlan> queue = queues.get(table);
+                if (queue.isEmpty()) continue;
+                pending = true;
+                if (busy.contains(table)) continue;
+                busy.add(table);
+                handedOut++;
+                next = index + 1;
+                return new Task<>(table, queue.poll());
+            }
+            if (!pending) return null;
+            wait();
+        }
+    }
+
+    /**
+     * Called when the plan handed out for the table has been executed, or has failed.
+     */
+    synchronized void done(T table) {
+        busy.remove(table);
+        notifyAll();
+    }
+
+    /**
+     * Plans of the table not handed out.
+     */
+    synchronized int getDeferred(T table) {
+        Deque<NormalizationPlan> queue = queues.get(table);
+        return queue == null ? 0 : queue.size();
+    }
+}
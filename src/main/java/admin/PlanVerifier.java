@@ -0,0 +1,165 @@
+package admin;
+
+import admin.metrics.RegionToolMetrics;
+import admin.planner.BoundarySplitPlan;
+import admin.planner.PlanRegions;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.master.normalizer.MergeNormalizationPlan;
+import org.apache.hadoop.hbase.master.normalizer.NormalizationPlan;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Checks executed plans against the regions of the table, as requesting a split or merge does not mean it happens:
+ * the master may reject it, e.g. a region closing, or it may not happen, e.g. the merge of regions no longer
+ * adjacent after a concurrent split. A plan is
+ * <ul>
+ * <li> DONE: its regions are gone and replaced by the expected ones, the daughters of a split (starting at the split
+ * point when it has one), or a region covering both regions of a merge.
+ * <li> UNCHANGED: its regions are all there. It is in progress, rejected or did not happen.
+ * <li> CHANGED: its regions are not all there, or not replaced by the expected ones. Something else changed them,
+ * so the plan is stale and re-planned on the new regions.
+ * </ul>
+ * Also counts, per planner, the plans succeeded (after retries or not), no-op (unchanged after all the retries) and
+ * failed (rejected on the last retry, or changed).
+ */
+public class PlanVerifier {
+
+    public static final String VERIFY_ENABLED_KEY_PROPERTY = "hbase.regiontool.verify.enabled";
+    public static final String VERIFY_RETRIES_KEY_PROPERTY = "hbase.regiontool.verify.retries";
+    public static final String VERIFY_TIMEOUT_KEY_PROPERTY = "hbase.regiontool.verify.timeout.seconds";
+    public static final String VERIFY_MAX_BACKOFF_KEY_PROPERTY = "hbase.regiontool.verify.backoff.max.seconds";
+
+    public static final int DEFAULT_RETRIES = 3;
+    public static final long DEFAULT_TIMEOUT_SECONDS = 300;
+    public static final long DEFAULT_MAX_BACKOFF_SECONDS = 160;
+
+    public enum Result {
+        DONE, UNCHANGED, CHANGED
+    }
+
+    /**
+     * Outcomes of the plans of a planner.
+     */
+    private static class Outcomes {
+        long succeeded;
+        long noop;
+        long failed;
+        long retries;
+
+        long total() {
+            return succeeded + noop + failed;
+        }
+    }
+
+    private final Map<String, Outcomes> outcomes = new TreeMap<>();
+
+    /**
+     * Regions of a table by start key, to verify its plans.
+     */
+    public static NavigableMap<byte[], HRegionInfo> byStartKey(List<HRegionInfo> regions) {
+        NavigableMap<byte[], HRegionInfo> byStartKey = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+        for (HRegionInfo info : regions) {
+            byStartKey.put(info.getStartKey(), info);
+        }
+        return byStartKey;
+    }
+
+    public static Result verify(NormalizationPlan plan, NavigableMap<byte[], HRegionInfo> byStartKey) {
+
+        List<HRegionInfo> regions = PlanRegions.regionsOf(plan);
+        if (regions.isEmpty()) return Result.DONE;
+
+        // Regions of a table do not overlap, so a region is there if it is the one at its start key
+        int present = 0;
+        byte[] startKey = null;
+        byte[] endKey = null;
+        for (HRegionInfo info : regions) {
+            HRegionInfo current = byStartKey.get(info.getStartKey());
+            if (current != null && current.getEncodedName().equals(info.getEncodedName())) present++;
+            if (startKey == null || Bytes.compareTo(info.getStartKey(), startKey) < 0) startKey = info.getStartKey();
+            if (endKey == null || (endKey.length > 0
+                    && (info.getEndKey().length == 0 || Bytes.compareTo(info.getEndKey(), endKey) > 0))) {
+                endKey = info.getEndKey();
+            }
+        }
+        if (present == regions.size()) return Result.UNCHANGED;
+        if (present > 0) return Result.CHANGED;
+
+        // Regions from the start to the end key of the plan, with nothing in between
+        int count = 0;
+        HRegionInfo current = byStartKey.get(startKey);
+        while (current != null) {
+            count++;
+            if (Bytes.equals(current.getEndKey(), endKey)) break;
+            if (current.getEndKey().length == 0) return Result.CHANGED;
+            current = byStartKey.get(current.getEndKey());
+        }
+        if (current == null) return Result.CHANGED;
+
+        if (plan instanceof MergeNormalizationPlan) {
+            return count == 1 ? Result.DONE : Result.CHANGED;
+        }
+        if (count < 2) return Result.CHANGED;
+        if (plan instanceof BoundarySplitPlan && !byStartKey.containsKey(((BoundarySplitPlan) plan).getSplitPoint())) {
+            return Result.CHANGED;
+        }
+        return Result.DONE;
+    }
+
+    public synchronized void succeeded(String planner, int retries) {
+        Outcomes planned = get(planner);
+        planned.succeeded++;
+        planned.retries += retries;
+        RegionToolMetrics.counter(RegionToolMetrics.VERIFIED + planner + ".succeeded").inc();
+    }
+
+    public synchronized void noop(String planner, int retries) {
+        Outcomes planned = get(planner);
+        planned.noop++;
+        planned.retries += retries;
+        RegionToolMetrics.counter(RegionToolMetrics.VERIFIED + planner + ".noop").inc();
+    }
+
+    public synchronized void failed(String planner, int retries) {
+        Outcomes planned = get(planner);
+        planned.failed++;
+        planned.retries += retries;
+        RegionToolMetrics.counter(RegionToolMetrics.VERIFIED + planner + ".failed").inc();
+    }
+
+    private Outcomes get(String planner) {
+        Outcomes planned = outcomes.get(planner);
+        if (planned == null) {
+            planned = new Outcomes();
+            outcomes.put(planner, planned);
+        }
+        return planned;
+    }
+
+    /**
+     * One line per planner with its success, no-op and failure rates.
+     */
+    public synchronized List<String> getRates() {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Outcomes> entry : outcomes.entrySet()) {
+            Outcomes planned = entry.getValue();
+            lines.add(entry.getKey()
+                    + " Verified:" + planned.total()
+                    + " Succeeded:" + planned.succeeded + " (" + percent(planned.succeeded, planned.total()) + ")"
+                    + " No-op:" + planned.noop + " (" + percent(planned.noop, planned.total()) + ")"
+                    + " Failed:" + planned.failed + " (" + percent(planned.failed, planned.total()) + ")"
+                    + " Retries:" + planned.retries);
+        }
+        return lines;
+    }
+
+    private static String percent(long count, long total) {
+        return total == 0 ? "-" : String.format("%.1f%%", 100.0 * count / total);
+    }
+}
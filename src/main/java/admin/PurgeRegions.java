@@ -0,0 +1,186 @@
+package admin;
+
+import admin.delete.CompactionScheduler;
+import admin.delete.DeleteCheckpoint;
+import admin.delete.RegionDeleteEngine;
+import admin.delete.RegionDeleteRunner;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+/**
+ * Purges the data older than a split key with delete markers and targeted major compactions.
+ *
+ * <ol>
+ * <li> The regions with rows before the split key (by default the cold expiration split of StageByDateBuilder)
+ * are selected.
+ * <li> The range before the split key gets delete markers covering all the versions written before the purge
+ * started, region by region through RegionDeleteRunner. HBase has no range tombstones, so these are row markers,
+ * written on the server by the BulkDeleteEndpoint when it is loaded.
+ * <li> Exactly those regions are major compacted by the CompactionScheduler, with a per-RegionServer limit and
+ * inside the off-peak window, which is when the data is actually removed.
+ * <li> The store file size reclaimed by every region is reported, once the sizes reported by the RegionServers
+ * settle.
+ * </ol>
+ *
+ * Regions are never taken offline. Both steps are checkpointed, the compactions in [checkpointFile].compactions, so
+ * an interrupted purge resumes with the regions left.
+ *
+ * Regions are kept as they are. RegionsTool merges the empty regions afterwards.
+ */
+public class PurgeRegions {
+
+    private static final Log LOG = LogFactory.getLog(PurgeRegions.class);
+
+    private static final int MAX_SIZE_POLLS = 30;
+
+    public static void main(String[] args) throws Exception {
+
+        if (args.length < 1) {
+            System.out.println("Usage: PurgeRegions <table> [splitKey] [checkpointFile]");
+            return;
+        }
+
+        String sTable = args[0];
+
+        Configuration conf = HBaseConfiguration.create();
+
+        Connection connection = ConnectionFactory.createConnection(conf);
+        Admin admin = connection.getAdmin();
+
+        TableName tableName = TableName.valueOf(sTable);
+        RegionLocator locator = connection.getRegionLocator(tableName);
+
+        List<HRegionInfo> tableRegions = admin.getTableRegions(tableName);
+        StageByDateBuilder rsp = new StageByDateBuilder(tableName, tableRegions, conf);
+
+        String splitKey = args.length > 1 ? args[1] : rsp.getColdExpirationSplit();
+
+        List<HRegionInfo> regions = new ArrayList<>(rsp.getRegionsToArchive(connection, splitKey));
+
+        // The region holding the split key has also data to purge, unless it starts with it
+        HRegionInfo borderlineRegion = StageByDateBuilder.getRegion(locator, splitKey);
+        if (borderlineRegion == null) {
+            System.out.println("No region holds the split key " + splitKey + ". No data purged.");
+            return;
+        }
+        if (Bytes.compareTo(borderlineRegion.getStartKey(), Bytes.toBytes(splitKey)) < 0) {
+            regions.add(borderlineRegion);
+        }
+
+        if (regions.isEmpty()) {
+            System.out.println("WARNING: No regions to purge...");
+            return;
+        }
+
+        System.out.println("WARNING:All the data from start row \"\" to end row \"" + splitKey
+                + "\" will be purged from the following regions...");
+        printRegionInfo(regions);
+
+        Scanner input = new Scanner(System.in);
+        System.out.println("PLEASE CONFIRM (Y/N)?: ");
+        String s = input.next();
+
+        if (!s.equalsIgnoreCase("Y")) {
+            System.out.println("ABORTING operation. No data purged.");
+            return;
+        }
+
+        Map<byte[], Long> sizesBefore = CompactionScheduler.getStorefileSizes(admin, regions);
+
+        // Only the versions written before the purge started are covered by the delete markers
+        long purgeTimestamp = System.currentTimeMillis();
+
+        File checkpointFile = new File(args.length > 2 ? args[2] : "purge-" + tableName.getNameAsString().replace(':', '_')
+                + "-" + splitKey + ".checkpoint");
+        DeleteCheckpoint checkpoint = new DeleteCheckpoint(checkpointFile);
+        RegionDeleteEngine engine = RegionDeleteRunner.createEngine(conf, connection, tableName);
+        RegionDeleteRunner runner = new RegionDeleteRunner(conf, engine, checkpoint);
+
+        long rowsDeleted;
+        try {
+            rowsDeleted = runner.run(locator, HConstants.EMPTY_START_ROW, Bytes.toBytes(splitKey), purgeTimestamp);
+        } finally {
+            checkpoint.close();
+            engine.close();
+        }
+        System.out.println("ROWS MARKED AS DELETED:" + rowsDeleted);
+
+        DeleteCheckpoint compactions = new DeleteCheckpoint(new File(checkpointFile.getPath() + ".compactions"));
+        List<HRegionInfo> notCompacted;
+        try {
+            CompactionScheduler scheduler = new CompactionScheduler(conf, admin);
+            notCompacted = scheduler.compact(locator, regions, compactions);
+        } finally {
+            compactions.close();
+        }
+
+        // Region loads are refreshed with the RegionServer reports
+        Map<byte[], Long> sizesAfter = waitForSizes(admin, regions,
+                conf.getLong(CompactionScheduler.POLL_INTERVAL_KEY_PROPERTY, CompactionScheduler.DEFAULT_POLL_INTERVAL_MS));
+
+        long totalReclaimed = 0L;
+        for (HRegionInfo info : regions) {
+            long before = sizesBefore.get(info.getRegionName());
+            long after = sizesAfter.get(info.getRegionName());
+            totalReclaimed += before - after;
+            System.out.println(" Region: " + info.getRegionNameAsString()
+                    + " Size before (MB):" + before
+                    + " Size after (MB):" + after
+                    + " Reclaimed (MB):" + (before - after)
+                    + (notCompacted.contains(info) ? " NOT COMPACTED" : ""));
+        }
+
+        System.out.println("TOTAL RECLAIMED (MB):" + totalReclaimed);
+
+        if (!notCompacted.isEmpty()) {
+            LOG.warn(notCompacted.size() + " regions were not compacted before the timeout");
+        }
+
+        locator.close();
+        admin.close();
+        connection.close();
+    }
+
+    /**
+     * Polls the store file sizes of the regions until two consecutive reports are the same, as the RegionServers
+     * report the sizes after the compacted files are removed, or until MAX_SIZE_POLLS polls.
+     */
+    private static Map<byte[], Long> waitForSizes(Admin admin, List<HRegionInfo> regions, long pollIntervalMs)
+            throws IOException, InterruptedException {
+
+        Map<byte[], Long> sizes = CompactionScheduler.getStorefileSizes(admin, regions);
+        for (int poll = 0; poll < MAX_SIZE_POLLS; poll++) {
+            Thread.sleep(pollIntervalMs);
+            Map<byte[], Long> current = CompactionScheduler.getStorefileSizes(admin, regions);
+            if (current.equals(sizes)) break;
+            System.out.println("Waiting " + pollIntervalMs + " ms. until the region sizes settle....");
+            sizes = current;
+        }
+        return sizes;
+    }
+
+    private static void printRegionInfo(List<HRegionInfo> infos) {
+        for (HRegionInfo info : infos) {
+            System.out.println(" Region: " + info.getRegionNameAsString()
+                    + " Start Key:" + Bytes.toString(info.getStartKey())
+                    + " End Key: " + Bytes.toString(info.getEndKey()));
+        }
+    }
+}
@@ -1,20 +1,53 @@
 package admin;
 
+import admin.cluster.CachingClusterView;
+import admin.cluster.ClusterSnapshot;
+import admin.cluster.ClusterView;
+import admin.cluster.HBaseClusterView;
+import admin.cluster.InMemoryCluster;
+import admin.cluster.SimulateRegionsTool;
+import admin.history.RegionHistoryStore;
+import admin.metrics.ExecutionTrace;
+import admin.metrics.MeteredAdmin;
+import admin.metrics.RegionToolMetrics;
 import admin.planner.*;
+import admin.report.PlanReport;
+import admin.report.TableSummary;
+import com.yammer.metrics.core.TimerContext;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.RegionLoad;
+import org.apache.hadoop.hbase.ServerName;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.classification.InterfaceAudience;
-import org.apache.hadoop.hbase.client.Admin;
 import org.apache.hadoop.hbase.client.Connection;
 import org.apache.hadoop.hbase.client.ConnectionFactory;
 import org.apache.hadoop.hbase.master.normalizer.NormalizationPlan;
 import org.apache.hadoop.hbase.util.AbstractHBaseTool;
+import org.apache.hadoop.hbase.util.Bytes;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 
 /**
  * Created by Rafael Arana - Cloudera on 22/03/2017.
@@ -39,6 +72,11 @@ import java.util.List;
  * Region sizes are coarse and approximate on the order of megabytes. Additionally,
  * "empty" regions (less than 1MB, with the previous note) are not merged away. This
  * is by design to prevent normalization from undoing the pre-splitting of a table.
+ * <p/>
+ * Several tables are normalized in one run with a list of names, a namespace or a regex. They share one view of the
+ * cluster per round. Every planner computes the plans of all the tables in parallel, then the plans are executed
+ * in turns, one plan of every table after the other, by a given number of threads and up to a given number of plans
+ * per round.
  */
 @InterfaceAudience.Public
 public class RegionsTool extends AbstractHBaseTool {
@@ -47,6 +85,11 @@ public class RegionsTool extends AbstractHBaseTool {
 
 
     protected static final String OPT_TABLENAME = "tablename";
+    protected static final String OPT_NAMESPACE = "namespace";
+    protected static final String OPT_TABLE_REGEX = "table_regex";
+    protected static final String OPT_PLANNING_THREADS = "planning_threads";
+    protected static final String OPT_EXECUTION_THREADS = "execution_threads";
+    protected static final String OPT_MAX_PLANS_PER_ROUND = "max_plans_per_round";
 
     protected static final String OPT_USE_MAX_SIZE= "use_max_size";
     protected static final String OPT_USE_AVG_SIZE= "use_avg_size";
@@ -58,6 +101,13 @@ public class RegionsTool extends AbstractHBaseTool {
     protected static final String OPT_ITERATIONS = "iterations";
     protected static final String OPT_SLEEP = "sleep";
     protected static final String OPT_SPLIT_FACTOR = "split_factor";
+    protected static final String OPT_SPLIT_PERCENTILE = "split_percentile";
+    protected static final String OPT_USE_FORECAST = "use_forecast";
+    protected static final String OPT_ALIGN_STAGES = "align_stages";
+    protected static final String OPT_FORECAST_MODEL = "forecast_model";
+    protected static final String OPT_FORECAST_HORIZON = "forecast_horizon";
+    protected static final String OPT_FORECAST_LOOKBACK = "forecast_lookback";
+    protected static final String OPT_FORECAST_WINDOW = "forecast_window";
 
     protected static final String OPT_MIN_NUM = "min_num";
     protected static final String OPT_MIN_COLD_NUM = "min_cold_num";
@@ -78,24 +128,150 @@ public class RegionsTool extends AbstractHBaseTool {
     protected static final String OPT_NUM_WARM_MONTHS = "num_warm_months";
     protected static final String OPT_NUM_COLD_MONTHS = "num_cold_months";
 
+    protected static final String OPT_PLAN_LOG = "plan_log";
+    protected static final String OPT_UNTIL_BALANCED = "until_balanced";
+    protected static final String OPT_SNAPSHOT_DIR = "snapshot_dir";
+    protected static final String OPT_REPORT_FILE = "report_file";
+    protected static final String OPT_SIMULATE = "simulate";
+    protected static final String OPT_METRICS_CSV_DIR = "metrics_csv_dir";
+    protected static final String OPT_METRICS_JSON_FILE = "metrics_json_file";
+    protected static final String OPT_METRICS_PERIOD = "metrics_period";
+    protected static final String OPT_TRACE_FILE = "trace_file";
+    protected static final String OPT_HISTORY_DIR = "history_dir";
+    protected static final String OPT_DAMPING_FILE = "damping_file";
+    protected static final String OPT_DAMPING_COOLDOWN = "damping_cooldown";
+    protected static final String OPT_DAMPING_BAND = "damping_band";
+    protected static final String OPT_NO_MEMO = "no_memo";
+    protected static final String OPT_MEMO_PRECISION = "memo_precision";
+    protected static final String OPT_JOURNAL_FILE = "journal_file";
+    protected static final String OPT_NO_VERIFY = "no_verify";
+    protected static final String OPT_VERIFY_RETRIES = "verify_retries";
+    protected static final String OPT_VERIFY_TIMEOUT = "verify_timeout";
+
     protected static final int DEFAULT_ITERATIONS = 1;
     protected static final int DEFAULT_SLEEP = 300;
+    protected static final int DEFAULT_SIMULATION_ITERATIONS = 100;
+
+    protected static final int DEFAULT_EXECUTION_THREADS = 1;
+    protected static final long RIT_WAIT_MS = 10 * 1000L;
 
     int iterations = DEFAULT_ITERATIONS;
     int sleep = DEFAULT_SLEEP;
 
+    /**
+     * A table of the run with its own planners, so their memos are per table, and its results.
+     */
+    private static class TableRun {
+        final TableName table;
+        final List<NormalizationPlanner> planners = new ArrayList<>();
+        final TableSummary total;
+        TableSummary iteration;
+
+        // Plans of the current planner, and what they were computed on
+        List<NormalizationPlan> plans;
+        boolean planningSkipped;
+        Map<byte[], RegionLoad> damperLoads;
+        Map<String, ServerName> servers;
+
+        // What the planners see at the start of the iteration, for the report
+        List<HRegionInfo> reportRegions;
+        List<HRegionLocation> reportLocations;
+        Map<byte[], RegionLoad> reportLoads;
+
+        TableRun(TableName table) {
+            this.table = table;
+            this.total = new TableSummary(table.getNameAsString());
+        }
+    }
+
+    /**
+     * A plan executed in the current round, until it is verified.
+     */
+    private static class ExecutedPlan {
+        final TableRun run;
+        final NormalizationPlan plan;
+        final String planner;
+        final long startTime;
+        boolean rejected;
+        long requestTime;
+        int attempts = 1;
+        // Recorded by the damper, on its first attempt requested
+        boolean damped;
+
+        ExecutedPlan(TableRun run, NormalizationPlan plan, String planner, long startTime, boolean rejected,
+                     long requestTime) {
+            this.run = run;
+            this.plan = plan;
+            this.planner = planner;
+            this.startTime = startTime;
+            this.rejected = rejected;
+            this.requestTime = requestTime;
+            this.damped = !rejected;
+        }
+    }
+
     private Connection connection;
+    private ClusterView cluster;
+    private CachingClusterView cachingCluster;
+    private PlanEventLog planEventLog;
+    private InMemoryCluster simulation;
+    private PlanReport report;
+    private ExecutionTrace trace;
+    private RegionHistoryStore history;
+    private PlanDamper damper;
+    private PlanJournal journal;
+    private final PlanVerifier verifier = new PlanVerifier();
+    private final List<ExecutedPlan> executedPlans = Collections.synchronizedList(new ArrayList<ExecutedPlan>());
+    // Still in progress at the end of their round, verified again by the next one
+    private List<ExecutedPlan> unverified = new ArrayList<>();
+    private String currentPlanner;
+    private ExecutorService planningPool;
+    private ExecutorService executionPool;
 
     CommandLine cmd;
-    List<NormalizationPlanner> plannerList = new ArrayList<>();
+    List<TableRun> runs = new ArrayList<>();
 
     String sTable = null;
+    String namespace = null;
+    String tableRegex = null;
+    int planningThreads = 0;
+    int executionThreads = DEFAULT_EXECUTION_THREADS;
+    int maxPlansPerRound = 0;
     boolean isPlanOnly = false;
     boolean useMaxSize = true;
     boolean useAvgSize = false;
+    boolean useForecast = false;
+    boolean alignStages = false;
     boolean useMinNum = false;
     boolean useMaxNum = false;
     boolean isMultiStage = true;
+    boolean untilBalanced = false;
+    File snapshotDir = null;
+    File reportFile = null;
+    boolean isSimulation = false;
+    boolean verify = true;
+    int verifyRetries = PlanVerifier.DEFAULT_RETRIES;
+    long verifyTimeoutMs = PlanVerifier.DEFAULT_TIMEOUT_SECONDS * 1000L;
+    long maxBackoffMs = PlanVerifier.DEFAULT_MAX_BACKOFF_SECONDS * 1000L;
+
+    int iterationsRun = 0;
+    int currentIteration = 0;
+    int executionRounds = 0;
+    final AtomicLong plansExecuted = new AtomicLong();
+    long plansSuppressed = 0;
+    long suppressedMB = 0;
+    long planningComputed = 0;
+    long planningSkipped = 0;
+
+    public RegionsTool() {
+    }
+
+    /**
+     * Runs the tool against the given cluster instead of the one of the configuration, e.g. an InMemoryCluster.
+     */
+    public RegionsTool(ClusterView cluster) {
+        this.cluster = cluster;
+    }
 
 
     public static void main(String[] args) throws Throwable {
@@ -110,99 +286,394 @@ public class RegionsTool extends AbstractHBaseTool {
      */
     protected int doWork() throws Exception {
 
+        if (cluster == null) connect();
 
-        LOG.debug("Table:" + sTable);
-        TableName tableName = TableName.valueOf(sTable);
+        List<TableName> tables = getTables();
+        if (tables.isEmpty()) {
+            System.err.println("No table to normalize, use -" + OPT_TABLENAME + ", -" + OPT_NAMESPACE
+                    + " or -" + OPT_TABLE_REGEX);
+            printUsage();
+            return EXIT_FAILURE;
+        }
+        LOG.debug("Tables:" + tables);
 
         int counter = 1;
 
         LOG.debug("Iterations:"+iterations);
 
-        while (counter <= iterations ){
+        // The planners must be created on the in-memory copy
+        if (isSimulation) startSimulation(tables);
 
-            if (counter > 1) Thread.sleep(sleep * 1000);
+        // Init the tool
+        for (TableName tableName : tables) {
+            init(tableName);
+        }
 
-            LOG.info("Starting Iteration:" + counter);
+        int threads = planningThreads > 0 ? planningThreads
+                : Math.min(runs.size(), Runtime.getRuntime().availableProcessors());
+        if (threads > 1) planningPool = Executors.newFixedThreadPool(threads);
+        if (executionThreads > 1) executionPool = Executors.newFixedThreadPool(executionThreads);
 
-            // Init the tool
-            init(tableName);
+        verify = conf.getBoolean(PlanVerifier.VERIFY_ENABLED_KEY_PROPERTY, true);
+        verifyRetries = conf.getInt(PlanVerifier.VERIFY_RETRIES_KEY_PROPERTY, PlanVerifier.DEFAULT_RETRIES);
+        verifyTimeoutMs = conf.getLong(PlanVerifier.VERIFY_TIMEOUT_KEY_PROPERTY,
+                PlanVerifier.DEFAULT_TIMEOUT_SECONDS) * 1000L;
+        maxBackoffMs = Math.max(RIT_WAIT_MS, conf.getLong(PlanVerifier.VERIFY_MAX_BACKOFF_KEY_PROPERTY,
+                PlanVerifier.DEFAULT_MAX_BACKOFF_SECONDS) * 1000L);
 
+        RegionToolMetrics.start(conf);
 
-            for (NormalizationPlanner planner: plannerList ) {
+        boolean completed = false;
+        try {
+            if (journal != null && journal.isResuming()) {
+                counter = journal.getLastIteration() + 1;
+                currentIteration = journal.getLastIteration();
+                resume();
+            }
 
+            while (counter <= iterations) {
 
-                LOG.info("Starting Planner: " + planner.toString());
-                // Get  the NormalizationPlans for each planner
-                List<NormalizationPlan> plans = planner.computePlanForTable(tableName);
+                if (counter > 1) {
+                    long sleepStart = cluster.currentTimeMillis();
+                    cluster.pause(sleep * 1000L);
+                    traceSpan("sleep", "wait", sleepStart);
+                }
 
-                // Execute the list of plans
-                if (!isPlanOnly ) {
-                    normalizeRegions(plans);
+                LOG.info("Starting Iteration:" + counter);
+                currentIteration = counter;
+                long iterationStart = cluster.currentTimeMillis();
+                cachingCluster.refresh();
+                for (TableRun run : runs) {
+                    run.iteration = new TableSummary(run.table.getNameAsString());
+                }
+                if (journal != null) journal.iterationStarted(counter, iterationStart);
+
+                if (snapshotDir != null) {
+                    long snapshotStart = cluster.currentTimeMillis();
+                    for (TableRun run : runs) {
+                        writeSnapshot(run.table);
+                    }
+                    traceSpan("snapshot", "io", snapshotStart);
                 }
-                LOG.info("End Planner: " + planner.toString());
 
-                if (plans != null && plans.size()>0)  Thread.sleep(10 * 1000);
+                if (history != null) {
+                    long historyStart = cluster.currentTimeMillis();
+                    Map<byte[], RegionLoad> loads = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+                    for (TableRun run : runs) {
+                        loads.putAll(cluster.getRegionLoads(run.table));
+                    }
+                    history.append(historyStart, loads);
+                    traceSpan("history", "io", historyStart);
+                }
 
+                // The report shows the regions the planners see, before any plan of the iteration is executed
+                for (TableRun run : runs) {
+                    run.reportRegions = cluster.getTableRegions(run.table);
+                    run.reportLoads = cluster.getRegionLoads(run.table);
+                    run.reportLocations = report != null ? cluster.getRegionLocations(run.table) : null;
+                    long sizeMB = 0;
+                    for (RegionLoad load : run.reportLoads.values()) {
+                        sizeMB += load.getStorefileSizeMB();
+                    }
+                    run.iteration.setRegions(run.reportRegions.size(), sizeMB);
+                }
 
-            }
+                int iterationPlans = 0;
+
+                // All the tables have the same planners
+                for (int index = 0; index < runs.get(0).planners.size(); index++) {
+
+                    String plannerName = runs.get(0).planners.get(index).getClass().getSimpleName();
+
+                    // Get the NormalizationPlans of every table for the planner
+                    computePlans(index);
+
+                    for (TableRun run : runs) {
+                        if (run.planningSkipped) {
+                            planningSkipped++;
+                        } else {
+                            planningComputed++;
+                        }
+                        if (damper != null && run.plans != null) {
+                            run.plans = dampPlans(run, run.plans, plannerName);
+                        }
+                        if (!unverified.isEmpty() && run.plans != null) {
+                            run.plans = deferInProgress(run, run.plans);
+                        }
+                        if (report != null) report.addPlans(run.plans, plannerName);
+                        if (run.plans != null) {
+                            iterationPlans += run.plans.size();
+                            RegionToolMetrics.counter(RegionToolMetrics.PLANS_GENERATED).inc(run.plans.size());
+                        }
+                    }
+                    RegionToolMetrics.progress();
+
+                    // Execute the list of plans
+                    int roundPlans = 0;
+                    for (TableRun run : runs) {
+                        if (run.plans != null) roundPlans += run.plans.size();
+                    }
+                    if (!isPlanOnly) {
+                        if (journal != null) {
+                            // Before any of them is executed
+                            for (TableRun run : runs) {
+                                journal.planned(run.table, plannerName, run.plans);
+                            }
+                        }
+                        long executionStart = cluster.currentTimeMillis();
+                        currentPlanner = plannerName;
+                        executePlans();
+                        // The deferred plans are computed again by the next iteration
+                        if (journal != null) journal.forgetPending(cluster.currentTimeMillis());
+                        traceSpan("execution " + plannerName, "execution", executionStart);
+                    }
+                    LOG.info("End Planner: " + plannerName);
+
+                    if (roundPlans > 0 || !unverified.isEmpty()) {
+                        // Wait for the regions in transition
+                        waitAndVerify();
+                    }
+
+
+                }
+
+                long reportStart = cluster.currentTimeMillis();
+                for (TableRun run : runs) {
+                    if (report != null) {
+                        writeReport(run, counter);
+                    }
+                    LOG.info("Iteration:" + counter + " " + run.iteration);
+                    run.total.add(run.iteration);
+                }
+                if (report != null) traceSpan("report", "io", reportStart);
+
+                traceSpan("iteration " + counter, "iteration", iterationStart, "plans", String.valueOf(iterationPlans));
+                if (trace != null) trace.flush();
+                if (journal != null) journal.iterationEnded(counter, cluster.currentTimeMillis());
 
-            // Compute the plans
-            //List<NormalizationPlan> plans = computePlanForTable(tableName);
+                LOG.info("End Iteration:" + counter);
 
-            LOG.info("End Iteration:" + counter);
+                iterationsRun = counter;
+                counter++;
+                RegionToolMetrics.counter(RegionToolMetrics.ITERATIONS).inc();
 
-            counter++;
+                if (untilBalanced && iterationPlans == 0) {
+                    LOG.info((runs.size() > 1 ? "Tables" : "Table") + " balanced after " + iterationsRun + " iterations");
+                    break;
+                }
 
+            }
+            // The plans still in progress are verified before the run ends
+            if (!unverified.isEmpty()) verifyInProgress();
+            completed = true;
+        } finally {
+            if (planningPool != null) planningPool.shutdownNow();
+            if (executionPool != null) executionPool.shutdownNow();
+            // A failed run is resumed by the next one
+            if (journal != null && !completed) journal.abort();
+        }
+
+        for (TableRun run : runs) {
+            LOG.info("Run " + run.total);
+        }
+        LOG.info("Plannings computed:" + planningComputed + " skipped on unchanged table:" + planningSkipped);
+        for (String rates : verifier.getRates()) {
+            LOG.info("Planner " + rates);
         }
 
+        if (isSimulation) printSimulation();
+
+        RegionToolMetrics.stop();
+
+        if (report != null) report.close();
+        if (trace != null) trace.close();
+        if (history != null) history.close();
+        if (damper != null) damper.close();
+        if (journal != null) journal.close();
+        if (planEventLog != null) planEventLog.close();
+        if (connection != null) connection.close();
+
         return 0;
     }
 
+    private void connect() throws IOException {
+        this.connection = ConnectionFactory.createConnection(conf);
+        this.cluster = new HBaseClusterView(connection);
+    }
+
+    /**
+     * Tables given by name, plus the ones of the namespace and matching the regex, sorted.
+     */
+    private List<TableName> getTables() throws IOException {
+
+        Set<TableName> tables = new TreeSet<>();
+        if (sTable != null) {
+            for (String name : sTable.split(",")) {
+                if (!name.trim().isEmpty()) tables.add(TableName.valueOf(name.trim()));
+            }
+        }
+        if (namespace != null || tableRegex != null) {
+            Pattern pattern = tableRegex != null ? Pattern.compile(tableRegex) : null;
+            for (TableName table : cluster.listTables()) {
+                if (table.isSystemTable()) continue;
+                if (namespace != null && !namespace.equals(table.getNamespaceAsString())) continue;
+                if (pattern != null && !pattern.matcher(table.getNameAsString()).matches()) continue;
+                tables.add(table);
+            }
+        }
+        return new ArrayList<>(tables);
+    }
+
+    /**
+     * Replaces the cluster by an in-memory copy of the tables, with the stage boundaries fixed at the current time.
+     */
+    private void startSimulation(List<TableName> tables) throws IOException {
+
+        for (TableName tableName : tables) {
+            ClusterSnapshot snapshot = ClusterSnapshot.capture(cluster, tableName, conf);
+            if (simulation == null) {
+                snapshot.applyStages(conf);
+                simulation = snapshot.toInMemoryCluster(conf);
+            } else {
+                snapshot.addTo(simulation);
+            }
+        }
+        cluster = simulation;
+
+        System.out.println("INITIAL LAYOUT");
+        for (TableName tableName : tables) {
+            SimulateRegionsTool.printLayout(simulation, tableName, conf);
+        }
+    }
+
+    private void printSimulation() throws IOException {
+
+        System.out.println("FINAL LAYOUT");
+        for (TableRun run : runs) {
+            SimulateRegionsTool.printLayout(simulation, run.table, conf);
+        }
+
+        System.out.println("Rounds:" + iterationsRun
+                + " Balanced:" + (iterationsRun < iterations)
+                + " Plans:" + plansExecuted.get()
+                + " Splits:" + simulation.getCompletedSplits()
+                + " Merges:" + simulation.getCompletedMerges()
+                + " Rejected:" + simulation.getRejectedOperations()
+                + " Rewritten (MB):" + Math.round(simulation.getRewrittenMB())
+                + " Suppressed:" + plansSuppressed
+                + " Avoided rewrite (MB):" + suppressedMB
+                + " Plannings computed:" + planningComputed
+                + " skipped:" + planningSkipped);
+        for (String rates : verifier.getRates()) {
+            System.out.println(" " + rates);
+        }
+    }
+
 
     /**
-     * Set the configuration
+     * Set the configuration, on the first call, and creates the planners of the table
      */
     public void init(TableName tableName) throws IOException {
 
+        // Planners are created once and reused by all the iterations
+        for (TableRun run : runs) {
+            if (run.table.equals(tableName)) return;
+        }
+
         // init member variables.
-        this.connection = ConnectionFactory.createConnection(conf);
+        if (cluster == null) connect();
+
+        // The planners of all the tables share what is read from the cluster until it changes
+        if (cachingCluster == null) {
+            cachingCluster = new CachingClusterView(cluster);
+            cluster = cachingCluster;
+        }
+
+        if (reportFile != null && report == null) {
+            report = PlanReport.open(reportFile);
+        }
+
+        String traceFile = conf.get(ExecutionTrace.TRACE_FILE_KEY_PROPERTY);
+        if (traceFile != null && trace == null) {
+            trace = new ExecutionTrace(new File(traceFile), "RegionsTool " + (sTable != null ? sTable
+                    : tableName.getNameAsString()));
+        }
+
+        String historyDir = conf.get(RegionHistoryStore.HISTORY_DIR_KEY_PROPERTY);
+        if (historyDir != null && history == null) {
+            history = RegionHistoryStore.open(new File(historyDir), conf);
+        }
+
+        String dampingFile = conf.get(PlanDamper.DAMPING_FILE_KEY_PROPERTY);
+        if (dampingFile != null && damper == null) {
+            damper = new PlanDamper(new File(dampingFile), conf);
+        }
+
+        String journalFile = conf.get(PlanJournal.JOURNAL_FILE_KEY_PROPERTY);
+        if (journalFile != null && journal == null && !isPlanOnly) {
+            journal = new PlanJournal(new File(journalFile), conf);
+        }
+
+        String planLogFile = conf.get(PlanEventLog.PLAN_EVENT_LOG_KEY_PROPERTY);
+        if (planLogFile != null && planEventLog == null) {
+            planEventLog = new PlanEventLog(new File(planLogFile));
+        }
+
+        TableRun run = new TableRun(tableName);
+        runs.add(run);
+
+        // Before the size policies, so they see the boundary regions split at the stage boundaries
+        if (alignStages && isMultiStage) {
+            addPlanner(run, new StageAlignmentPlanner(cluster, tableName, conf));
+        }
 
         if (useMaxSize) {
             //addPlanner(new MaxSizeRegionPlanner(connection, tableName, conf));
             if (isMultiStage){
-                addPlanner(new StagedMaxSizeRegionPlanner(connection, tableName, conf));
+                addPlanner(run, new StagedMaxSizeRegionPlanner(cluster, tableName, conf));
             } else {
-                addPlanner(new SimpleMaxSizeRegionPlanner(connection, tableName, conf));
+                addPlanner(run, new SimpleMaxSizeRegionPlanner(cluster, tableName, conf));
             }
         }
 
         if (useMinNum) {
             //addPlanner(new MinNumberRegionPlanner(connection, tableName, conf));
             if (isMultiStage){
-                addPlanner(new StagedMinNumberRegionPlanner(connection, tableName, conf));
+                addPlanner(run, new StagedMinNumberRegionPlanner(cluster, tableName, conf));
             } else {
-                addPlanner(new SimpleMinNumberRegionPlanner(connection, tableName, conf));
+                addPlanner(run, new SimpleMinNumberRegionPlanner(cluster, tableName, conf));
             }
         }
 
         if (useMaxNum) {
             //addPlanner(new MaxNumberRegionPlanner(connection, tableName, conf));
             if (isMultiStage){
-                addPlanner(new StagedMaxNumberRegionPlanner(connection, tableName, conf));
+                addPlanner(run, new StagedMaxNumberRegionPlanner(cluster, tableName, conf));
             } else {
-                addPlanner(new SimpleMaxNumberRegionPlanner(connection, tableName, conf));
+                addPlanner(run, new SimpleMaxNumberRegionPlanner(cluster, tableName, conf));
             }
         }
 
         if (useAvgSize) {
             if (isMultiStage){
-                addPlanner(new StagedAverageSizeRegionPlanner(connection, tableName, conf));
+                addPlanner(run, new StagedAverageSizeRegionPlanner(cluster, tableName, conf));
             } else {
-                addPlanner(new SimpleAverageSizeRegionPlanner(connection, tableName, conf));
+                addPlanner(run, new SimpleAverageSizeRegionPlanner(cluster, tableName, conf));
             }
             //addPlanner(new AverageSizeRegionPlanner(connection, tableName, conf));
         }
 
+        if (useForecast) {
+            if (history == null) {
+                throw new IOException("The forecast planner needs the size history of -" + OPT_HISTORY_DIR);
+            }
+            if (isMultiStage){
+                addPlanner(run, new StagedForecastRegionPlanner(cluster, tableName, conf, history));
+            } else {
+                addPlanner(run, new SimpleForecastRegionPlanner(cluster, tableName, conf, history));
+            }
+        }
+
     }
 
 
@@ -211,12 +682,76 @@ public class RegionsTool extends AbstractHBaseTool {
 
         this.cmd = cmd;
         sTable = cmd.getOptionValue(OPT_TABLENAME);
+        namespace = cmd.getOptionValue(OPT_NAMESPACE);
+        tableRegex = cmd.getOptionValue(OPT_TABLE_REGEX);
+        planningThreads = parseInt(cmd.getOptionValue(OPT_PLANNING_THREADS), 0);
+        executionThreads = Math.max(1, parseInt(cmd.getOptionValue(OPT_EXECUTION_THREADS), DEFAULT_EXECUTION_THREADS));
+        maxPlansPerRound = parseInt(cmd.getOptionValue(OPT_MAX_PLANS_PER_ROUND), 0);
         isPlanOnly = cmd.hasOption(OPT_PLAN_ONLY);
+        untilBalanced = cmd.hasOption(OPT_UNTIL_BALANCED);
+        if (cmd.hasOption(OPT_METRICS_CSV_DIR)) {
+            conf.set(RegionToolMetrics.METRICS_CSV_DIR_KEY_PROPERTY, cmd.getOptionValue(OPT_METRICS_CSV_DIR));
+        }
+        if (cmd.hasOption(OPT_METRICS_JSON_FILE)) {
+            conf.set(RegionToolMetrics.METRICS_JSON_FILE_KEY_PROPERTY, cmd.getOptionValue(OPT_METRICS_JSON_FILE));
+        }
+        if (cmd.hasOption(OPT_METRICS_PERIOD)) {
+            conf.set(RegionToolMetrics.METRICS_PERIOD_KEY_PROPERTY, cmd.getOptionValue(OPT_METRICS_PERIOD));
+        }
+        if (cmd.hasOption(OPT_REPORT_FILE)) {
+            reportFile = new File(cmd.getOptionValue(OPT_REPORT_FILE));
+        }
+        if (cmd.hasOption(OPT_SNAPSHOT_DIR)) {
+            snapshotDir = new File(cmd.getOptionValue(OPT_SNAPSHOT_DIR));
+        }
+        if (cmd.hasOption(OPT_TRACE_FILE)) {
+            conf.set(ExecutionTrace.TRACE_FILE_KEY_PROPERTY, cmd.getOptionValue(OPT_TRACE_FILE));
+        }
+        if (cmd.hasOption(OPT_HISTORY_DIR)) {
+            conf.set(RegionHistoryStore.HISTORY_DIR_KEY_PROPERTY, cmd.getOptionValue(OPT_HISTORY_DIR));
+        }
+        if (cmd.hasOption(OPT_DAMPING_FILE)) {
+            conf.set(PlanDamper.DAMPING_FILE_KEY_PROPERTY, cmd.getOptionValue(OPT_DAMPING_FILE));
+        }
+        if (cmd.hasOption(OPT_DAMPING_COOLDOWN)) {
+            conf.set(PlanDamper.DAMPING_COOLDOWN_KEY_PROPERTY, cmd.getOptionValue(OPT_DAMPING_COOLDOWN));
+        }
+        if (cmd.hasOption(OPT_DAMPING_BAND)) {
+            conf.set(PlanDamper.DAMPING_BAND_KEY_PROPERTY, cmd.getOptionValue(OPT_DAMPING_BAND));
+        }
+        if (cmd.hasOption(OPT_NO_MEMO)) {
+            conf.setBoolean(AbstractRegionPlanner.MEMO_ENABLED_KEY_PROPERTY, false);
+        }
+        if (cmd.hasOption(OPT_MEMO_PRECISION)) {
+            conf.set(AbstractRegionPlanner.MEMO_SIZE_PRECISION_KEY_PROPERTY, cmd.getOptionValue(OPT_MEMO_PRECISION));
+        }
+        if (cmd.hasOption(OPT_NO_VERIFY)) {
+            conf.setBoolean(PlanVerifier.VERIFY_ENABLED_KEY_PROPERTY, false);
+        }
+        if (cmd.hasOption(OPT_VERIFY_RETRIES)) {
+            conf.set(PlanVerifier.VERIFY_RETRIES_KEY_PROPERTY, cmd.getOptionValue(OPT_VERIFY_RETRIES));
+        }
+        if (cmd.hasOption(OPT_VERIFY_TIMEOUT)) {
+            conf.set(PlanVerifier.VERIFY_TIMEOUT_KEY_PROPERTY, cmd.getOptionValue(OPT_VERIFY_TIMEOUT));
+        }
+        if (cmd.hasOption(OPT_JOURNAL_FILE)) {
+            conf.set(PlanJournal.JOURNAL_FILE_KEY_PROPERTY, cmd.getOptionValue(OPT_JOURNAL_FILE));
+        }
+        if (cmd.hasOption(OPT_PLAN_LOG)) {
+            conf.set(PlanEventLog.PLAN_EVENT_LOG_KEY_PROPERTY, cmd.getOptionValue(OPT_PLAN_LOG));
+        }
         if (cmd.hasOption(OPT_ITERATIONS)) {
             this.iterations = parseInt(cmd.getOptionValue(OPT_ITERATIONS),DEFAULT_ITERATIONS);
             this.sleep = parseInt(cmd.getOptionValue(OPT_SLEEP),DEFAULT_SLEEP);
 
         }
+        if (cmd.hasOption(OPT_SIMULATE)) {
+            // Plans are executed on the in-memory copy until a round does not compute any
+            isSimulation = true;
+            isPlanOnly = false;
+            untilBalanced = true;
+            if (!cmd.hasOption(OPT_ITERATIONS)) this.iterations = DEFAULT_SIMULATION_ITERATIONS;
+        }
 
         if (cmd.hasOption(OPT_NO_STAGE)) {
             this.isMultiStage = false;
@@ -244,20 +779,39 @@ public class RegionsTool extends AbstractHBaseTool {
 
         if ( cmd.hasOption(OPT_USE_MAX_SIZE) && !Boolean.parseBoolean(cmd.getOptionValue(OPT_USE_MAX_SIZE))){
             useMaxSize = false;
-        } else {
+        }
 
-            if ( cmd.hasOption(OPT_COLD_MAX_SIZE) ) {
-                conf.set(StagedMaxSizeRegionPlanner.COLD_MAX_SIZE_IN_MB_KEY_PROPERTY,cmd.getOptionValue(OPT_COLD_MAX_SIZE));
-            }
+        // The max sizes are also the limits of the forecast planner
+        if ( cmd.hasOption(OPT_COLD_MAX_SIZE) ) {
+            conf.set(StagedMaxSizeRegionPlanner.COLD_MAX_SIZE_IN_MB_KEY_PROPERTY,cmd.getOptionValue(OPT_COLD_MAX_SIZE));
+        }
 
-            if ( cmd.hasOption(OPT_WARM_MAX_SIZE) ) {
-                conf.set(StagedMaxSizeRegionPlanner.WARM_MAX_SIZE_IN_MB_KEY_PROPERTY,cmd.getOptionValue(OPT_WARM_MAX_SIZE));
-            }
+        if ( cmd.hasOption(OPT_WARM_MAX_SIZE) ) {
+            conf.set(StagedMaxSizeRegionPlanner.WARM_MAX_SIZE_IN_MB_KEY_PROPERTY,cmd.getOptionValue(OPT_WARM_MAX_SIZE));
+        }
 
-            if ( cmd.hasOption(OPT_HOT_MAX_SIZE) ) {
-                conf.set(StagedMaxSizeRegionPlanner.HOT_MAX_SIZE_IN_MB_KEY_PROPERTY,cmd.getOptionValue(OPT_HOT_MAX_SIZE));
-            }
+        if ( cmd.hasOption(OPT_HOT_MAX_SIZE) ) {
+            conf.set(StagedMaxSizeRegionPlanner.HOT_MAX_SIZE_IN_MB_KEY_PROPERTY,cmd.getOptionValue(OPT_HOT_MAX_SIZE));
+        }
 
+        if ( cmd.hasOption(OPT_ALIGN_STAGES) && Boolean.parseBoolean(cmd.getOptionValue(OPT_ALIGN_STAGES))) {
+            alignStages = true;
+        }
+
+        if ( cmd.hasOption(OPT_USE_FORECAST) && Boolean.parseBoolean(cmd.getOptionValue(OPT_USE_FORECAST))) {
+            useForecast = true;
+            if ( cmd.hasOption(OPT_FORECAST_MODEL) ) {
+                conf.set(SimpleForecastRegionPlanner.NORMALIZER_FORECAST_MODEL_KEY_PROPERTY, cmd.getOptionValue(OPT_FORECAST_MODEL));
+            }
+            if ( cmd.hasOption(OPT_FORECAST_HORIZON) ) {
+                conf.set(SimpleForecastRegionPlanner.NORMALIZER_FORECAST_HORIZON_KEY_PROPERTY, cmd.getOptionValue(OPT_FORECAST_HORIZON));
+            }
+            if ( cmd.hasOption(OPT_FORECAST_LOOKBACK) ) {
+                conf.set(SimpleForecastRegionPlanner.NORMALIZER_FORECAST_LOOKBACK_KEY_PROPERTY, cmd.getOptionValue(OPT_FORECAST_LOOKBACK));
+            }
+            if ( cmd.hasOption(OPT_FORECAST_WINDOW) ) {
+                conf.set(SimpleForecastRegionPlanner.NORMALIZER_FORECAST_WINDOW_KEY_PROPERTY, cmd.getOptionValue(OPT_FORECAST_WINDOW));
+            }
         }
 
         if ( cmd.hasOption(OPT_USE_AVG_SIZE) &&  Boolean.parseBoolean(cmd.getOptionValue(OPT_USE_AVG_SIZE))) {
@@ -265,6 +819,9 @@ public class RegionsTool extends AbstractHBaseTool {
             if ( cmd.hasOption(OPT_SPLIT_FACTOR) ) {
                 conf.set(SimpleAverageSizeRegionPlanner.NORMALIZER_SPLIT_FACTOR_KEY_PROPERTY,cmd.getOptionValue(OPT_SPLIT_FACTOR));
             }
+            if ( cmd.hasOption(OPT_SPLIT_PERCENTILE) ) {
+                conf.set(SimpleAverageSizeRegionPlanner.NORMALIZER_SPLIT_PERCENTILE_KEY_PROPERTY,cmd.getOptionValue(OPT_SPLIT_PERCENTILE));
+            }
 
         }
 
@@ -322,11 +879,57 @@ public class RegionsTool extends AbstractHBaseTool {
     protected void addOptions() {
 
         // Common options
-        addRequiredOptWithArg("tablename", "Name of the table to normalize");
+        addOptWithArg(OPT_TABLENAME, "Name of the table to normalize, or comma separated names of several tables");
+        addOptWithArg(OPT_NAMESPACE, "Normalizes all the tables of the namespace, with the ones of -" + OPT_TABLENAME);
+        addOptWithArg(OPT_TABLE_REGEX, "Normalizes all the tables whose name matches the regex, with the ones of -"
+                + OPT_TABLENAME + ". Only the ones of -" + OPT_NAMESPACE + " when both are given.");
+        addOptWithArg(OPT_PLANNING_THREADS, "Number of tables planned at the same time (defaults to the number of "
+                + "tables, up to the number of processors).");
+        addOptWithArg(OPT_EXECUTION_THREADS, "Number of plans executed at the same time, one per table at most "
+                + "(defaults to " + DEFAULT_EXECUTION_THREADS + "). Plans are executed in turns, one of every table after the other.");
+        addOptWithArg(OPT_MAX_PLANS_PER_ROUND, "Number of plans executed at most for every planner, across all the "
+                + "tables. The rest are deferred to the next iteration (defaults to no limit).");
         addOptWithArg(OPT_ITERATIONS, "Number of iterations it will run the normalization process (defaults to 1).");
         addOptWithArg(OPT_SLEEP, "Number of seconds to sleep between iterations  (defaults to 300 secs)");
         addOptNoArg(OPT_PLAN_ONLY,"Disables plan execution. Only compute the normalization plans.");
         addOptNoArg(OPT_NO_STAGE,"Use for those tables without sets/stages of regions.");
+        addOptWithArg(OPT_PLAN_LOG, "Local file where the start and end of every executed plan are appended.");
+        addOptNoArg(OPT_UNTIL_BALANCED, "Stops before the last iteration when an iteration does not compute any plan.");
+        addOptNoArg(OPT_SIMULATE, "Executes the plans on an in-memory copy of the table, iteration after iteration until "
+                + "it is balanced (up to " + OPT_ITERATIONS + ", default " + DEFAULT_SIMULATION_ITERATIONS
+                + "), and reports the final layout. The cluster is not changed.");
+        addOptWithArg(OPT_METRICS_CSV_DIR, "Local directory where the metrics are written as CSV files, one per metric.");
+        addOptWithArg(OPT_METRICS_JSON_FILE, "Local file where the metrics are appended as JSON, one line per report.");
+        addOptWithArg(OPT_METRICS_PERIOD, "Seconds between metrics reports (defaults to "
+                + RegionToolMetrics.DEFAULT_PERIOD_SECONDS + "). Metrics are always exported through JMX.");
+        addOptWithArg(OPT_REPORT_FILE, "Local file where every iteration appends one row per region, with its stage, size, "
+                + "requests and planned action, and one summary per stage. CSV if the name ends with .csv, JSON lines otherwise.");
+        addOptWithArg(OPT_TRACE_FILE, "Local file where the timeline of the run is written in the Chrome trace event "
+                + "format, with a span per phase and per executed plan, to open in chrome://tracing or Perfetto.");
+        addOptWithArg(OPT_HISTORY_DIR, "Local directory where the load of every region is appended at every iteration, "
+                + "to query its growth and requests over time with RegionHistoryTool.");
+        addOptWithArg(OPT_DAMPING_FILE, "Local file where the executed splits and merges are remembered, across restarts, "
+                + "to suppress the plans that would undo a recent one.");
+        addOptWithArg(OPT_DAMPING_COOLDOWN, "Hours after a split or merge when undoing it is always suppressed. Default="
+                + PlanDamper.DEFAULT_COOLDOWN_HOURS);
+        addOptWithArg(OPT_DAMPING_BAND, "After the cool-down, a split region is merged back only under its size minus "
+                + "this fraction, and a merged region split only over its size plus it. Default=" + PlanDamper.DEFAULT_BAND);
+        addOptNoArg(OPT_NO_MEMO, "Computes the plans at every iteration, even when the regions of the table and their "
+                + "sizes have not changed since the last one.");
+        addOptWithArg(OPT_MEMO_PRECISION, "Relative size change of a region that makes the planners compute the plans "
+                + "again, e.g. 0.05 for 5%, 0 for any change. Default=" + AbstractRegionPlanner.DEFAULT_MEMO_SIZE_PRECISION);
+        addOptNoArg(OPT_NO_VERIFY, "Does not verify the executed plans on the regions of the table, only waits once "
+                + "for the regions in transition after every planner.");
+        addOptWithArg(OPT_VERIFY_RETRIES, "Times a plan rejected, or not done after -" + OPT_VERIFY_TIMEOUT
+                + ", is executed again before it is left to the next iteration. Default="
+                + PlanVerifier.DEFAULT_RETRIES);
+        addOptWithArg(OPT_VERIFY_TIMEOUT, "Seconds a split or merge requested has to be done before it is executed "
+                + "again. Default=" + PlanVerifier.DEFAULT_TIMEOUT_SECONDS);
+        addOptWithArg(OPT_JOURNAL_FILE, "Local file where the plans and their execution are journaled. When the last "
+                + "run was interrupted, the tool executes its plans not done yet and goes on from the next iteration, "
+                + "up to -" + OPT_ITERATIONS + " in total.");
+        addOptWithArg(OPT_SNAPSHOT_DIR, "Local directory where a snapshot of the table is written before every iteration, "
+                + "to replay it with ReplaySnapshotTool.");
 
 
         // Options for Max Size Region Planner
@@ -341,6 +944,24 @@ public class RegionsTool extends AbstractHBaseTool {
         // Options for Average Size Region Planner
         addOptWithArg(OPT_USE_AVG_SIZE, "Computes the average size per stage. Use "+ OPT_SPLIT_FACTOR + " to customize.");
         addOptWithArg(OPT_SPLIT_FACTOR, "Factor used to split regions with size N times over the average (default=2).");
+        addOptWithArg(OPT_SPLIT_PERCENTILE, "Percentile of the region sizes compared instead of the average, e.g. 99 "
+                + "splits the regions over p99 * " + OPT_SPLIT_FACTOR + ".");
+
+        // Options for Stage Alignment Planner
+        addOptWithArg(OPT_ALIGN_STAGES, "Splits the regions straddling the hot and warm stage boundaries exactly at "
+                + "the boundary keys, before the other planners, so each stage size policy applies to its own data.");
+
+        // Options for Forecast Region Planner
+        addOptWithArg(OPT_USE_FORECAST, "Splits ahead of need the regions whose size history forecasts them over the max "
+                + "size before the next maintenance window. Needs -" + OPT_HISTORY_DIR + ".");
+        addOptWithArg(OPT_FORECAST_MODEL, "Forecast model, linear or seasonal (one growth rate per hour of the day). "
+                + "Default=linear");
+        addOptWithArg(OPT_FORECAST_WINDOW, "Maintenance window in local hours, e.g. 1-5. Forecast splits are only planned "
+                + "in the window, for the sizes at the start of the next one.");
+        addOptWithArg(OPT_FORECAST_HORIZON, "Hours ahead to forecast without a maintenance window. Default="
+                + SimpleForecastRegionPlanner.DEFAULT_FORECAST_HORIZON_HOURS);
+        addOptWithArg(OPT_FORECAST_LOOKBACK, "Hours of history the forecast is fitted on. Default="
+                + SimpleForecastRegionPlanner.DEFAULT_FORECAST_LOOKBACK_HOURS);
 
         // Options for Min Number Region Planner
         addOptWithArg(OPT_USE_MIN_NUM, "Applies a minimum number of regions per stage. Set (" + OPT_MIN_COLD_NUM + ","
@@ -374,42 +995,534 @@ public class RegionsTool extends AbstractHBaseTool {
 
     }
 
-    private void addPlanner(NormalizationPlanner planner) {
+    /**
+     * Writes what the planners are about to see, named after the table and the cluster time.
+     */
+    private void writeSnapshot(TableName tableName) throws IOException {
+        if (!snapshotDir.isDirectory() && !snapshotDir.mkdirs()) {
+            throw new IOException("Cannot create the snapshot directory " + snapshotDir);
+        }
+        File file = new File(snapshotDir, tableName.getNameAsString().replace(':', '_') + "-"
+                + cluster.currentTimeMillis() + ".snapshot");
+        ClusterSnapshot.capture(cluster, tableName, conf).write(file);
+    }
+
+    private void writeReport(TableRun run, int iteration) throws IOException {
+        report.writeServers(iteration, run.table, run.reportLocations, run.reportLoads);
+        if (isMultiStage) {
+            StageByDateBuilder stages = new StageByDateBuilder(run.table, run.reportRegions, conf);
+            stages.setStageBoundaries();
+            report.write(iteration, run.table, stages, run.reportLoads);
+        } else {
+            report.write(iteration, run.table, run.reportRegions, run.reportLoads);
+        }
+        report.writeTable(iteration, run.iteration);
+    }
+
+    private void addPlanner(TableRun run, NormalizationPlanner planner) {
         //this.planner = loadPlanner;
-        plannerList.add(planner);
+        run.planners.add(planner);
     }
 
+    /**
+     * Executes the plans of the interrupted run not done yet, as checked on the cluster, before going on with the
+     * next iteration.
+     */
+    private void resume() throws Exception {
+
+        cachingCluster.refresh();
+        List<NormalizationPlan> outstanding = journal.getOutstandingPlans(cluster);
+        LOG.info("Resuming iteration " + currentIteration + " with " + outstanding.size() + " plans not done");
+
+        long now = cluster.currentTimeMillis();
+        for (TableRun run : runs) {
+            run.iteration = new TableSummary(run.table.getNameAsString());
+            run.plans = new ArrayList<>();
+        }
+        for (NormalizationPlan plan : outstanding) {
+            TableRun run = null;
+            for (TableRun tableRun : runs) {
+                if (tableRun.table.equals(PlanRegions.regionsOf(plan).get(0).getTable())) run = tableRun;
+            }
+            if (run != null) {
+                run.plans.add(plan);
+            } else {
+                LOG.warn("Not resuming " + plan + ", its table is not normalized by this run");
+                journal.failed(plan, now);
+            }
+        }
+        if (outstanding.isEmpty()) return;
+
+        long executionStart = cluster.currentTimeMillis();
+        currentPlanner = "resume";
+        executePlans();
+        journal.forgetPending(cluster.currentTimeMillis());
+        traceSpan("execution resume", "execution", executionStart);
+
+        waitAndVerify();
+
+        for (TableRun run : runs) {
+            run.total.add(run.iteration);
+        }
+    }
+
+    /**
+     * Computes the plans of the planner at the given index for every table, in parallel when there is more than one
+     * planning thread.
+     */
+    private void computePlans(final int index) throws Exception {
+
+        if (planningPool == null) {
+            for (TableRun run : runs) {
+                computePlans(run, index);
+            }
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>(runs.size());
+        for (final TableRun run : runs) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    computePlans(run, index);
+                    return null;
+                }
+            });
+        }
+        waitFor(planningPool.invokeAll(tasks));
+    }
+
+    private void computePlans(TableRun run, int index) throws IOException {
+
+        NormalizationPlanner planner = run.planners.get(index);
+        LOG.info("Starting Planner: " + planner.toString());
+        TimerContext planningTimer = RegionToolMetrics.timer(
+                RegionToolMetrics.PLANNING + planner.getClass().getSimpleName()).time();
+        long planningStart = cluster.currentTimeMillis();
+        long wallStart = System.nanoTime();
+        List<NormalizationPlan> plans;
+        try {
+            plans = planner.computePlanForTable(run.table);
+        } finally {
+            planningTimer.stop();
+        }
+        boolean skipped = planner instanceof AbstractRegionPlanner
+                && ((AbstractRegionPlanner) planner).isPlanningSkipped();
+        run.iteration.addPlanning(plans == null ? 0 : plans.size(), (System.nanoTime() - wallStart) / 1000000, skipped);
+        run.plans = plans;
+        run.planningSkipped = skipped;
+
+        if (trace != null) {
+            // One track per table, as they are planned at the same time
+            String track = runs.size() > 1 ? "planning " + run.table.getNameAsString() : ExecutionTrace.PHASES;
+            trace.span(track, "planning " + planner.getClass().getSimpleName(), "planning", planningStart,
+                    cluster.currentTimeMillis(),
+                    "iteration", String.valueOf(currentIteration),
+                    "table", run.table.getNameAsString(),
+                    "plans", String.valueOf(plans == null ? 0 : plans.size()),
+                    "skipped", String.valueOf(skipped));
+        }
+    }
+
+    /**
+     * Executes the plans of all the tables, in turns, by the execution threads and up to the max plans per round.
+     * The plans not executed are deferred to the next iteration.
+     */
+    private void executePlans() throws Exception {
+
+        final PlanScheduler<TableRun> scheduler = new PlanScheduler<>(maxPlansPerRound, executionRounds++);
+        for (TableRun run : runs) {
+            scheduler.add(run, run.plans);
+        }
+
+        if (scheduler.isEmpty()) {
+            // If Region did not generate any plans, it means the cluster is already balanced.
+            LOG.info("No plans to execute. " + (runs.size() > 1 ? "Tables are" : "Table is") + " balanced");
+            return;
+        }
+
+        LOG.info("Starting region normalization.");
+        for (TableRun run : runs) {
+            run.damperLoads = damper != null ? cluster.getRegionLoads(run.table) : null;
+            run.servers = trace != null && run.plans != null ? getServers(run.table) : null;
+        }
+
+        if (executionPool == null) {
+            executePlans(scheduler);
+        } else {
+            List<Callable<Void>> tasks = new ArrayList<>(executionThreads);
+            for (int i = 0; i < executionThreads; i++) {
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        executePlans(scheduler);
+                        return null;
+                    }
+                });
+            }
+            waitFor(executionPool.invokeAll(tasks));
+        }
+
+        for (TableRun run : runs) {
+            int deferred = scheduler.getDeferred(run);
+            if (deferred > 0) {
+                LOG.info("Table " + run.table + ", " + deferred + " plans deferred to the next iteration");
+                run.iteration.addDeferred(deferred);
+            }
+        }
 
+        LOG.info("End of region normalization.");
+    }
+
+    private void executePlans(PlanScheduler<TableRun> scheduler) throws IOException, InterruptedException {
+        PlanScheduler.Task<TableRun> task;
+        while ((task = scheduler.next()) != null) {
+            try {
+                long startTime = cluster.currentTimeMillis();
+                boolean requested = executePlan(task.table, task.plan);
+                if (requested) damp(task.table, task.plan);
+                executedPlans.add(new ExecutedPlan(task.table, task.plan, currentPlanner, startTime, !requested,
+                        cluster.currentTimeMillis()));
+            } finally {
+                scheduler.done(task.table);
+            }
+        }
+    }
 
     /**
-     * Execute all the NormalizationPlans
+     * Execute all the NormalizationPlans of a table
      *
      * @throws IOException
      */
     public void normalizeRegions(List<NormalizationPlan> plans) throws IOException {
 
-
         if (plans == null || plans.isEmpty()) {
             // If Region did not generate any plans, it means the cluster is already balanced.
             LOG.info("No plans to execute. Table is balanced");
-        } else {
-            LOG.info("Starting region normalization.");
+            return;
+        }
+        TableRun run = null;
+        List<HRegionInfo> regions = PlanRegions.regionsOf(plans.get(0));
+        for (TableRun tableRun : runs) {
+            if (!regions.isEmpty() && tableRun.table.equals(regions.get(0).getTable())) run = tableRun;
+        }
+        if (run == null) {
+            throw new IOException("No planners initialized for the table of " + plans.get(0));
+        }
+        run.damperLoads = damper != null ? cluster.getRegionLoads(run.table) : null;
+        run.servers = trace != null ? getServers(run.table) : null;
+        for (NormalizationPlan plan : plans) {
+            if (executePlan(run, plan)) damp(run, plan);
+        }
+    }
 
-            Admin admin = this.connection.getAdmin();
+    /**
+     * @return whether the split or merge was requested, false if the master rejected it
+     */
+    private boolean executePlan(TableRun run, NormalizationPlan plan) throws IOException {
+
+        LOG.debug(plan);
+        TimerContext executionTimer = RegionToolMetrics.timer(
+                RegionToolMetrics.EXECUTION + PlanEventLog.typeOf(plan)).time();
+        // Failures of this thread only, the other threads are executing plans too
+        long failedBefore = MeteredAdmin.getThreadFailures();
+        long traceStart = cluster.currentTimeMillis();
+        long wallStart = System.nanoTime();
+        String outcome = "error";
+        try {
+            if (journal != null) journal.dispatched(plan, traceStart);
+            // The END is written once the plan is verified on the regions
+            if (planEventLog != null) planEventLog.planStarted(plan, traceStart);
+            cluster.execute(plan);
+            // The plans log the errors of the split and merge requests, only the counter sees them
+            outcome = MeteredAdmin.getThreadFailures() > failedBefore ? "failed" : "requested";
+        } finally {
+            run.iteration.addExecution(!"requested".equals(outcome), (System.nanoTime() - wallStart) / 1000000);
+            // With verification a rejected plan stays dispatched until it is retried, given up or found stale
+            if (journal != null && ("error".equals(outcome) || ("failed".equals(outcome) && !verify))) {
+                journal.failed(plan, cluster.currentTimeMillis());
+            }
+            if (trace != null) tracePlan(plan, run.servers, traceStart, outcome);
+        }
+        executionTimer.stop();
+        plansExecuted.incrementAndGet();
+        RegionToolMetrics.counter(RegionToolMetrics.PLANS_EXECUTED).inc();
+        RegionToolMetrics.progress();
+        return "requested".equals(outcome);
+    }
 
-            LOG.debug("Number of plans to execute:" + plans.size());
+    /**
+     * Records a split or merge requested in the damper. Once per plan: not again when it is retried.
+     */
+    private void damp(TableRun run, NormalizationPlan plan) throws IOException {
+        if (damper != null && run.damperLoads != null) {
+            damper.executed(run.table, plan, run.damperLoads, cluster.currentTimeMillis());
+        }
+    }
 
-            for (NormalizationPlan plan : plans) {
-                LOG.debug(plan);
-                plan.execute(admin);
+    /**
+     * Waits for the regions in transition, then verifies the plans executed in the round, and the ones still in
+     * progress from the previous rounds, on the new regions. The ones rejected or not done in time are retried, up to
+     * the verify retries. The ones still in progress are not waited for: they are verified again by the next round,
+     * which defers the plans on their regions. The stale ones and the ones given up are planned again by the next
+     * iteration.
+     */
+    private void waitAndVerify() throws Exception {
+
+        List<ExecutedPlan> pending;
+        synchronized (executedPlans) {
+            pending = new ArrayList<>(unverified);
+            pending.addAll(executedPlans);
+            executedPlans.clear();
+        }
+        unverified = new ArrayList<>();
+
+        TimerContext ritTimer = RegionToolMetrics.timer(RegionToolMetrics.RIT_WAIT).time();
+        long ritStart = cluster.currentTimeMillis();
+        cluster.pause(RIT_WAIT_MS);
+        ritTimer.stop();
+        traceSpan("ritWait", "wait", ritStart);
+        cachingCluster.refresh();
+        if (journal != null) journal.confirm(cluster);
+
+        if (!verify) {
+            for (ExecutedPlan executedPlan : pending) {
+                planEnded(executedPlan, "UNVERIFIED");
             }
+            return;
+        }
+        if (!pending.isEmpty()) unverified = verifyPlans(pending);
+    }
 
-            admin.close();
+    /**
+     * Waits for the plans still in progress at the end of the run, twice as long every time, until they are all
+     * verified.
+     */
+    private void verifyInProgress() throws Exception {
+
+        long wait = RIT_WAIT_MS;
+        while (!unverified.isEmpty()) {
+            TimerContext ritTimer = RegionToolMetrics.timer(RegionToolMetrics.RIT_WAIT).time();
+            long ritStart = cluster.currentTimeMillis();
+            cluster.pause(wait);
+            ritTimer.stop();
+            traceSpan("ritWait", "wait", ritStart);
+            cachingCluster.refresh();
+            if (journal != null) journal.confirm(cluster);
+
+            unverified = verifyPlans(unverified);
+            wait = Math.min(wait * 2, maxBackoffMs);
+        }
+    }
 
-            LOG.info("End of region normalization.");
+    /**
+     * Defers the plans on the regions of plans still in progress, so they are planned again on their new regions.
+     */
+    private List<NormalizationPlan> deferInProgress(TableRun run, List<NormalizationPlan> plans) {
 
+        Set<String> inProgress = new HashSet<>();
+        for (ExecutedPlan executedPlan : unverified) {
+            if (executedPlan.run != run) continue;
+            for (HRegionInfo info : PlanRegions.regionsOf(executedPlan.plan)) {
+                inProgress.add(info.getEncodedName());
+            }
+        }
+        if (inProgress.isEmpty()) return plans;
+
+        List<NormalizationPlan> allowed = new ArrayList<>(plans.size());
+        for (NormalizationPlan plan : plans) {
+            boolean overlaps = false;
+            for (HRegionInfo info : PlanRegions.regionsOf(plan)) {
+                if (inProgress.contains(info.getEncodedName())) {
+                    overlaps = true;
+                    break;
+                }
+            }
+            if (!overlaps) allowed.add(plan);
         }
+        int deferred = plans.size() - allowed.size();
+        if (deferred > 0) {
+            LOG.info("Table " + run.table + ", " + deferred + " plans on regions in progress deferred to the next "
+                    + "iteration");
+            run.iteration.addDeferred(deferred);
+        }
+        return allowed;
+    }
 
+    /**
+     * Counts the plans done or stale, retries the ones to retry, and returns the ones still to verify.
+     */
+    private List<ExecutedPlan> verifyPlans(List<ExecutedPlan> executed) throws IOException {
+
+        long now = cluster.currentTimeMillis();
+        Map<TableName, NavigableMap<byte[], HRegionInfo>> layouts = new HashMap<>();
+        List<ExecutedPlan> pending = new ArrayList<>();
+
+        for (ExecutedPlan executedPlan : executed) {
+            NavigableMap<byte[], HRegionInfo> layout = layouts.get(executedPlan.run.table);
+            if (layout == null) {
+                layout = PlanVerifier.byStartKey(cluster.getTableRegions(executedPlan.run.table));
+                layouts.put(executedPlan.run.table, layout);
+            }
+
+            PlanVerifier.Result result = PlanVerifier.verify(executedPlan.plan, layout);
+            if (result == PlanVerifier.Result.DONE) {
+                verifier.succeeded(executedPlan.planner, executedPlan.attempts - 1);
+                planEnded(executedPlan, "DONE");
+                continue;
+            }
+            if (result == PlanVerifier.Result.CHANGED) {
+                LOG.info("Plan " + executedPlan.plan + " of " + executedPlan.planner
+                        + " is stale, its regions were changed by something else");
+                verifier.failed(executedPlan.planner, executedPlan.attempts - 1);
+                if (journal != null) journal.failed(executedPlan.plan, now);
+                planEnded(executedPlan, "STALE");
+                continue;
+            }
+
+            // Unchanged: rejected, or in progress until the timeout
+            if (!executedPlan.rejected && now - executedPlan.requestTime < verifyTimeoutMs) {
+                pending.add(executedPlan);
+                continue;
+            }
+            String reason = executedPlan.rejected ? "rejected" : "not done in " + verifyTimeoutMs / 1000 + " secs";
+            if (executedPlan.attempts > verifyRetries) {
+                LOG.info("Giving up " + executedPlan.plan + " of " + executedPlan.planner + " after "
+                        + executedPlan.attempts + " attempts, " + reason);
+                if (executedPlan.rejected) {
+                    verifier.failed(executedPlan.planner, executedPlan.attempts - 1);
+                    planEnded(executedPlan, "FAILED");
+                } else {
+                    verifier.noop(executedPlan.planner, executedPlan.attempts - 1);
+                    planEnded(executedPlan, "NOOP");
+                }
+                if (journal != null) journal.failed(executedPlan.plan, now);
+                continue;
+            }
+
+            LOG.info("Retrying " + executedPlan.plan + " of " + executedPlan.planner + ", " + reason);
+            RegionToolMetrics.counter(RegionToolMetrics.PLANS_RETRIED).inc();
+            // Its journal entry is dispatched again
+            executedPlan.rejected = !executePlan(executedPlan.run, executedPlan.plan);
+            if (!executedPlan.rejected && !executedPlan.damped) {
+                damp(executedPlan.run, executedPlan.plan);
+                executedPlan.damped = true;
+            }
+            executedPlan.requestTime = cluster.currentTimeMillis();
+            executedPlan.attempts++;
+            pending.add(executedPlan);
+        }
+        return pending;
+    }
+
+    private void planEnded(ExecutedPlan executedPlan, String result) {
+        if (planEventLog != null) {
+            planEventLog.planEnded(executedPlan.plan, executedPlan.startTime, cluster.currentTimeMillis(), result);
+        }
+    }
+
+    /**
+     * Waits for the tasks and rethrows the first failure.
+     */
+    private static void waitFor(List<Future<Void>> futures) throws Exception {
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Removes the plans that would undo a recent split or merge, and reports them.
+     */
+    private List<NormalizationPlan> dampPlans(TableRun run, List<NormalizationPlan> plans, String planner)
+            throws IOException {
+
+        Map<byte[], RegionLoad> regionLoads = cluster.getRegionLoads(run.table);
+        long now = cluster.currentTimeMillis();
+
+        List<NormalizationPlan> allowed = new ArrayList<>(plans.size());
+        for (NormalizationPlan plan : plans) {
+            String reason = damper.check(run.table, plan, regionLoads, now);
+            if (reason == null) {
+                allowed.add(plan);
+                continue;
+            }
+            long rewriteMB = PlanDamper.getSizeMB(PlanRegions.regionsOf(plan), regionLoads);
+            LOG.info("Suppressed " + plan + " of " + planner + ": " + reason);
+            plansSuppressed++;
+            suppressedMB += rewriteMB;
+            run.iteration.addSuppressed();
+            RegionToolMetrics.counter(RegionToolMetrics.PLANS_SUPPRESSED).inc();
+            RegionToolMetrics.counter(RegionToolMetrics.SUPPRESSED_MB).inc(rewriteMB);
+            if (report != null) report.addSuppressed(plan, planner + " " + PlanEventLog.typeOf(plan) + " " + reason);
+        }
+        return allowed;
+    }
+
+    /**
+     * Servers of the regions of the table, by encoded name, to put the plans on the track of their RegionServer.
+     */
+    private Map<String, ServerName> getServers(TableName table) throws IOException {
+        Map<String, ServerName> servers = new HashMap<>();
+        for (HRegionLocation location : cluster.getRegionLocations(table)) {
+            if (location.getServerName() != null) {
+                servers.put(location.getRegionInfo().getEncodedName(), location.getServerName());
+            }
+        }
+        return servers;
+    }
+
+    private void tracePlan(NormalizationPlan plan, Map<String, ServerName> servers, long start, String outcome) {
+        List<HRegionInfo> regions = PlanRegions.regionsOf(plan);
+        StringBuilder names = new StringBuilder();
+        ServerName server = null;
+        for (HRegionInfo info : regions) {
+            if (names.length() > 0) names.append(',');
+            names.append(info.getEncodedName());
+            if (server == null) server = servers.get(info.getEncodedName());
+        }
+        String track = server != null ? server.getHostAndPort() : "unassigned";
+        trace.span(track, PlanEventLog.typeOf(plan), "plan", start, cluster.currentTimeMillis(),
+                "iteration", String.valueOf(currentIteration),
+                "regions", names.toString(),
+                "server", server != null ? server.getServerName() : "",
+                "outcome", outcome);
+    }
+
+    private void traceSpan(String name, String category, long start, String... args) {
+        if (trace == null) return;
+        String[] allArgs = new String[args.length + 2];
+        allArgs[0] = "iteration";
+        allArgs[1] = String.valueOf(currentIteration);
+        System.arraycopy(args, 0, allArgs, 2, args.length);
+        trace.span(name, category, start, cluster.currentTimeMillis(), allArgs);
+    }
+
+    public int getIterationsRun() {
+        return iterationsRun;
+    }
+
+    public long getPlansExecuted() {
+        return plansExecuted.get();
+    }
+
+    public long getPlansSuppressed() {
+        return plansSuppressed;
+    }
+
+    public long getPlanningSkipped() {
+        return planningSkipped;
+    }
+
+    /**
+     * Success, no-op and failure rates of the executed plans, one line per planner.
+     */
+    public List<String> getPlanRates() {
+        return verifier.getRates();
     }
 
     @Override
@@ -8,7 +8,6 @@ import org.apache.hadoop.hbase.HRegionInfo;
 import org.apache.hadoop.hbase.HRegionLocation;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.Connection;
-import org.apache.hadoop.hbase.client.ConnectionFactory;
 import org.apache.hadoop.hbase.client.RegionLocator;
 import org.apache.hadoop.hbase.util.Bytes;
 
@@ -38,8 +37,14 @@ public class StageByDateBuilder implements StageBuilder {
     public static final String NORMALIZER_MONTHS_WARM_KEY_PROPERTY = "hbase.normalizer.nonuniform.months.warm";
     public static final String NORMALIZER_MONTHS_COLD_KEY_PROPERTY = "hbase.normalizer.nonuniform.months.cold";
 
+    /**
+     * Time in ms the stage boundaries are computed from. Not set means now; snapshots and simulations set it.
+     */
+    public static final String REFERENCE_TIME_KEY_PROPERTY = "hbase.regiontool.stage.reference.time";
+
 
-    private static final DateFormat dateFormat = new SimpleDateFormat("yyyyMM");
+    // SimpleDateFormat is not thread-safe, and the planners of several tables build their stages at once
+    private final DateFormat dateFormat = new SimpleDateFormat("yyyyMM");
 
     /**
      *
@@ -72,6 +77,11 @@ public class StageByDateBuilder implements StageBuilder {
      */
     private int coldExpM;
 
+    /**
+     * Time the stage boundaries are computed from, or 0 for now.
+     */
+    private long referenceTime;
+
     private TableName tableName;
     List<HRegionInfo> regionList;
 
@@ -92,9 +102,6 @@ public class StageByDateBuilder implements StageBuilder {
     List<HRegionInfo> warmList = new ArrayList<>();
     List<HRegionInfo> hotList = new ArrayList<>();
 
-    //Configuration conf;
-    Connection connection;
-
     /**
      * Default constructor.
      *
@@ -122,16 +129,13 @@ public class StageByDateBuilder implements StageBuilder {
      */
     public StageByDateBuilder(TableName aTableName, List<HRegionInfo> aRegionList, Configuration conf) throws IOException {
 
-
-        connection = ConnectionFactory.createConnection(conf);
-
-
         this.tableName = aTableName;
         this.regionList = aRegionList;
 
         this.hotExpM = conf.getInt(NORMALIZER_MONTHS_HOT_KEY_PROPERTY, DEFAULT_HOT_EXPIRATION_IN_MONTHS);
         this.warmExpM = conf.getInt(NORMALIZER_MONTHS_WARM_KEY_PROPERTY, DEFAULT_WARM_EXPIRATION_IN_MONTHS);
         this.coldExpM = conf.getInt(NORMALIZER_MONTHS_COLD_KEY_PROPERTY, DEFAULT_COLD_EXPIRATION_IN_MONTHS);
+        this.referenceTime = conf.getLong(REFERENCE_TIME_KEY_PROPERTY, 0L);
 
     }
 
@@ -146,9 +150,6 @@ public class StageByDateBuilder implements StageBuilder {
     public StageByDateBuilder(TableName aTableName, List<HRegionInfo> aRegionList,
                               int hotIntervalLength, int warmIntervalLength, int coldIntervalLength) throws IOException {
 
-        connection = ConnectionFactory.createConnection(HBaseConfiguration.create());
-
-
         this.tableName = aTableName;
         this.regionList = aRegionList;
 
@@ -164,30 +165,27 @@ public class StageByDateBuilder implements StageBuilder {
 
         LOG.debug("Table " + tableName + " - Total number of regions: " + numRegions);
 
-        RegionLocator locator = connection.getRegionLocator(this.tableName);
-
+        // The boundary regions are looked up in the region list, so no round trip to meta is needed. The list is
+        // sorted by start key, so each stage is the range between two boundary regions.
         String hotSplitPoint = getHotExpirationSplit();
-        HRegionInfo r1 = getRegion(locator, hotSplitPoint);
-        LOG.debug("HOT split point:" + hotSplitPoint + ",Region:" + r1.getRegionNameAsString());
+        int hotIndex = indexOf(regionList, hotSplitPoint);
+        LOG.debug("HOT split point:" + hotSplitPoint + ",Region:" + regionList.get(hotIndex).getRegionNameAsString());
 
         String warmSplitPoint = getWarmExpirationSplit();
-        HRegionInfo r2 = getRegion(locator, warmSplitPoint);
-        LOG.debug("WARM split point:" + warmSplitPoint + ",Region:" + r2.getRegionNameAsString());
-
-        String coldSplitPoint = getColdExpirationSplit();
-        HRegionInfo r3 = getRegion(locator, coldSplitPoint);
-        LOG.debug("COLD split point:" + coldSplitPoint + ",Region:" + r3.getRegionNameAsString());
-
-
-        for (HRegionInfo info : regionList) {
-            if (info.compareTo(r2) < 0)
-                coldList.add(info);
-            else if (info.compareTo(r2) >= 0 && info.compareTo(r1) < 0)
-                warmList.add(info);
-            else
-                hotList.add(info);
+        int warmIndex = indexOf(regionList, warmSplitPoint);
+        LOG.debug("WARM split point:" + warmSplitPoint + ",Region:"
+                + regionList.get(warmIndex).getRegionNameAsString());
+
+        if (LOG.isDebugEnabled()) {
+            String coldSplitPoint = getColdExpirationSplit();
+            LOG.debug("COLD split point:" + coldSplitPoint + ",Region:"
+                    + getRegion(regionList, coldSplitPoint).getRegionNameAsString());
         }
 
+        coldList.addAll(regionList.subList(0, warmIndex));
+        warmList.addAll(regionList.subList(warmIndex, hotIndex));
+        hotList.addAll(regionList.subList(hotIndex, numRegions));
+
         LOG.debug("Table:" + tableName + "-COLD number of regions=" + coldList.size());
         if (LOG.isTraceEnabled()) printRegionInfo(coldList);
 
@@ -197,8 +195,6 @@ public class StageByDateBuilder implements StageBuilder {
         LOG.debug("Table:" + tableName + "-HOT number of regions=" + hotList.size());
         if (LOG.isTraceEnabled()) printRegionInfo(hotList);
 
-        locator.close();
-
     }
 
 
@@ -212,29 +208,33 @@ public class StageByDateBuilder implements StageBuilder {
 
     /**
      * Returns the list of Regions to archive (older than the cold region split point
+     * @param connection the caller's connection, used to locate the split point region
      * @return a list of regions.
      * @throws IOException
      */
-    public List<HRegionInfo> getRegionsToArchive() throws IOException {
+    public List<HRegionInfo> getRegionsToArchive(Connection connection) throws IOException {
 
         String coldSplitPoint = getColdExpirationSplit();
         LOG.debug("COLD split point:" + coldSplitPoint);
-        return getRegionsToArchive();
+        return getRegionsToArchive(connection, coldSplitPoint);
     }
 
     /**
      * Returns the list of Regions older than the region provided as Split point
+     * @param connection the caller's connection, used to locate the split point region. It is left open.
      * @param sRegionSplitPoint the region name of the las region to keep
      * @return a list of regions older that the region split point
      * @throws IOException
      */
-    public List<HRegionInfo> getRegionsToArchive(String sRegionSplitPoint) throws IOException {
+    public List<HRegionInfo> getRegionsToArchive(Connection connection, String sRegionSplitPoint)
+            throws IOException {
 
         List<HRegionInfo> toDelete = new ArrayList<>();
 
         RegionLocator locator = connection.getRegionLocator(this.tableName);
 
         HRegionInfo lastRegionToKeep = getRegion(locator, sRegionSplitPoint);
+        locator.close();
 
         LOG.debug("Split point:" + sRegionSplitPoint + ",Region:" + lastRegionToKeep.getRegionNameAsString());
 
@@ -260,6 +260,43 @@ public class StageByDateBuilder implements StageBuilder {
 
     }
 
+    /**
+     * Returns the region of the list holding the split point: the one with the greatest start key not after it.
+     *
+     * @param aRegionList the regions of a table, sorted by start key
+     * @param splitPoint  a row key
+     * @throws IOException if no region of the list holds the split point
+     */
+    public static HRegionInfo getRegion(List<HRegionInfo> aRegionList, String splitPoint) throws IOException {
+
+        return aRegionList.get(indexOf(aRegionList, splitPoint));
+    }
+
+    /**
+     * Binary search of the index of the region holding the split point in a list sorted by start key.
+     */
+    private static int indexOf(List<HRegionInfo> aRegionList, String splitPoint) throws IOException {
+
+        byte[] row = Bytes.toBytes(splitPoint);
+        int low = 0;
+        int high = aRegionList.size() - 1;
+        // Last region with a start key not after the row
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (Bytes.compareTo(aRegionList.get(mid).getStartKey(), row) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (found < 0) {
+            throw new IOException("No region holds the split point " + splitPoint);
+        }
+        return found;
+    }
+
     public static  HRegionInfo getRegion(RegionLocator aLocator, String splitPoint, boolean reload) throws IOException {
 
         HRegionLocation location =
@@ -271,25 +308,31 @@ public class StageByDateBuilder implements StageBuilder {
 
 
     public String getHotExpirationSplit() {
-        Calendar cal = Calendar.getInstance();
+        Calendar cal = getReferenceCalendar();
         cal.add(Calendar.MONTH, -this.hotExpM);
         return dateFormat.format(cal.getTime());
 
     }
 
     public String getWarmExpirationSplit() {
-        Calendar cal = Calendar.getInstance();
+        Calendar cal = getReferenceCalendar();
         cal.add(Calendar.MONTH, -this.hotExpM - this.warmExpM);
         return dateFormat.format(cal.getTime());
     }
 
     public String getColdExpirationSplit() {
-        Calendar cal = Calendar.getInstance();
+        Calendar cal = getReferenceCalendar();
         cal.add(Calendar.MONTH, -this.hotExpM - this.warmExpM - this.coldExpM);
         return dateFormat.format(cal.getTime());
 
     }
 
+    private Calendar getReferenceCalendar() {
+        Calendar cal = Calendar.getInstance();
+        if (referenceTime > 0) cal.setTimeInMillis(referenceTime);
+        return cal;
+    }
+
     private static void printRegionInfo(List<HRegionInfo> infos) {
         for (HRegionInfo info : infos) {
             LOG.trace(" Region: " + info.getRegionNameAsString()
@@ -0,0 +1,123 @@
+package admin.cluster;
+
+import org.apache.hadoop.hbase.ClusterStatus;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.RegionLoad;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.master.normalizer.NormalizationPlan;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * ClusterView that reads the regions, locations and loads of every table once until the next refresh(), so the
+ * planners of all the tables, and all the planners of a table, share one view of the cluster. On a live cluster the
+ * status of the RegionServers, the most expensive call, is read once per refresh for all the tables instead of once
+ * per table and planner.
+ *
+ * Safe for concurrent use by the planners of different tables. Refresh it when the cluster has changed, e.g. after
+ * executing plans. The lists and maps returned are shared and must not be modified.
+ */
+public class CachingClusterView implements ClusterView {
+
+    private final ClusterView cluster;
+
+    private final ConcurrentMap<TableName, List<HRegionInfo>> regions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TableName, List<HRegionLocation>> locations = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TableName, Map<byte[], RegionLoad>> regionLoads = new ConcurrentHashMap<>();
+    private ClusterStatus status;
+
+    public CachingClusterView(ClusterView cluster) {
+        this.cluster = cluster;
+    }
+
+    public ClusterView getCluster() {
+        return cluster;
+    }
+
+    /**
+     * Drops everything read, so the next calls read the cluster again.
+     */
+    public void refresh() {
+        regions.clear();
+        locations.clear();
+        regionLoads.clear();
+        synchronized (this) {
+            status = null;
+        }
+    }
+
+    @Override
+    public List<HRegionInfo> getTableRegions(TableName table) throws IOException {
+        List<HRegionInfo> tableRegions = regions.get(table);
+        if (tableRegions == null) {
+            // Two planners may read the same table at once, the last one wins with the same result
+            tableRegions = Collections.unmodifiableList(cluster.getTableRegions(table));
+            regions.put(table, tableRegions);
+        }
+        return tableRegions;
+    }
+
+    @Override
+    public List<HRegionLocation> getRegionLocations(TableName table) throws IOException {
+        List<HRegionLocation> tableLocations = locations.get(table);
+        if (tableLocations == null) {
+            tableLocations = Collections.unmodifiableList(cluster.getRegionLocations(table));
+            locations.put(table, tableLocations);
+        }
+        return tableLocations;
+    }
+
+    @Override
+    public Map<byte[], RegionLoad> getRegionLoads(TableName table) throws IOException {
+        Map<byte[], RegionLoad> loads = regionLoads.get(table);
+        if (loads == null) {
+            if (cluster instanceof HBaseClusterView) {
+                loads = ((HBaseClusterView) cluster).getRegionLoads(table, getTableRegions(table),
+                        getRegionLocations(table), getClusterStatus());
+            } else {
+                loads = cluster.getRegionLoads(table);
+            }
+            loads = Collections.unmodifiableMap(loads);
+            regionLoads.put(table, loads);
+        }
+        return loads;
+    }
+
+    private synchronized ClusterStatus getClusterStatus() throws IOException {
+        if (status == null) {
+            status = ((HBaseClusterView) cluster).getClusterStatus();
+        }
+        return status;
+    }
+
+    @Override
+    public List<TableName> listTables() throws IOException {
+        return cluster.listTables();
+    }
+
+    @Override
+    public void execute(NormalizationPlan plan) throws IOException {
+        cluster.execute(plan);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return cluster.currentTimeMillis();
+    }
+
+    @Override
+    public void pause(long millis) throws InterruptedException {
+        cluster.pause(millis);
+    }
+
+    @Override
+    public void close() throws IOException {
+        cluster.close();
+    }
+}
@@ -0,0 +1,401 @@
+package admin.cluster;
+
+import admin.StageByDateBuilder;
+import com.google.protobuf.ByteString;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.RegionLoad;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.master.normalizer.NormalizationPlan;
+import org.apache.hadoop.hbase.protobuf.generated.ClusterStatusProtos;
+import org.apache.hadoop.hbase.protobuf.generated.HBaseProtos;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * What the planners see of a table at a given time: regions, their loads and locations, and the stage boundaries.
+ *
+ * A snapshot is a ClusterView itself, so planners and RegionsTool run on it with no cluster. Plans are recorded but
+ * do not change the snapshot; use toInMemoryCluster() to see their effect over several iterations.
+ *
+ * Binary format, big endian, keys and strings as an int length and their bytes:
+ * <pre>
+ *   magic, version, capture time, table name, hot/warm/cold months, hot/warm/cold splits,
+ *   number of servers, server names,
+ *   number of regions, and for each region:
+ *     start key, end key, region id, flags, server index (-1 if not assigned),
+ *     and if it has a load: stores, store files, store file size, uncompressed size, memstore size, index size,
+ *     read requests, write requests, total compacting KVs, compacted KVs, data locality, last major compaction
+ * </pre>
+ *
+ * Snapshots are read through a memory mapped buffer, so big ones load without copies nor stream overhead.
+ */
+public class ClusterSnapshot implements ClusterView {
+
+    private static final Log LOG = LogFactory.getLog(ClusterSnapshot.class);
+
+    private static final int MAGIC = 0x52545350; // "RTSP"
+    private static final int VERSION = 1;
+
+    private static final byte FLAG_OFFLINE = 1;
+    private static final byte FLAG_SPLIT = 2;
+    private static final byte FLAG_LOAD = 4;
+
+    private final TableName tableName;
+    private final long captureTime;
+    private final int hotMonths;
+    private final int warmMonths;
+    private final int coldMonths;
+    private final String hotSplit;
+    private final String warmSplit;
+    private final String coldSplit;
+    private final List<ServerName> servers;
+    private final List<HRegionInfo> regions;
+    private final List<HRegionLocation> locations;
+    private final Map<byte[], RegionLoad> regionLoads;
+
+    private final List<NormalizationPlan> plans = new ArrayList<>();
+    private long now;
+
+    ClusterSnapshot(TableName tableName, long captureTime, int hotMonths, int warmMonths, int coldMonths,
+                    String hotSplit, String warmSplit, String coldSplit, List<ServerName> servers,
+                    List<HRegionInfo> regions, List<HRegionLocation> locations, Map<byte[], RegionLoad> regionLoads) {
+        this.tableName = tableName;
+        this.captureTime = captureTime;
+        this.hotMonths = hotMonths;
+        this.warmMonths = warmMonths;
+        this.coldMonths = coldMonths;
+        this.hotSplit = hotSplit;
+        this.warmSplit = warmSplit;
+        this.coldSplit = coldSplit;
+        this.servers = servers;
+        this.regions = regions;
+        this.locations = locations;
+        this.regionLoads = regionLoads;
+        this.now = captureTime;
+    }
+
+    /**
+     * Takes a snapshot of a table. The stage boundaries are the ones of the configuration, from its reference time
+     * if any or from now.
+     */
+    public static ClusterSnapshot capture(ClusterView cluster, TableName tableName, Configuration conf)
+            throws IOException {
+
+        long captureTime = conf.getLong(StageByDateBuilder.REFERENCE_TIME_KEY_PROPERTY, 0L);
+        if (captureTime <= 0) captureTime = System.currentTimeMillis();
+
+        Configuration stageConf = new Configuration(conf);
+        stageConf.setLong(StageByDateBuilder.REFERENCE_TIME_KEY_PROPERTY, captureTime);
+
+        List<HRegionInfo> regions = cluster.getTableRegions(tableName);
+        StageByDateBuilder stages = new StageByDateBuilder(tableName, regions, stageConf);
+
+        List<HRegionLocation> locations = cluster.getRegionLocations(tableName);
+        List<ServerName> servers = new ArrayList<>();
+        Map<ServerName, Integer> serverIndexes = new HashMap<>();
+        for (HRegionLocation location : locations) {
+            ServerName server = location.getServerName();
+            if (server != null && !serverIndexes.containsKey(server)) {
+                serverIndexes.put(server, servers.size());
+                servers.add(server);
+            }
+        }
+
+        return new ClusterSnapshot(tableName, captureTime,
+                stageConf.getInt(StageByDateBuilder.NORMALIZER_MONTHS_HOT_KEY_PROPERTY,
+                        StageByDateBuilder.DEFAULT_HOT_EXPIRATION_IN_MONTHS),
+                stageConf.getInt(StageByDateBuilder.NORMALIZER_MONTHS_WARM_KEY_PROPERTY,
+                        StageByDateBuilder.DEFAULT_WARM_EXPIRATION_IN_MONTHS),
+                stageConf.getInt(StageByDateBuilder.NORMALIZER_MONTHS_COLD_KEY_PROPERTY,
+                        StageByDateBuilder.DEFAULT_COLD_EXPIRATION_IN_MONTHS),
+                stages.getHotExpirationSplit(), stages.getWarmExpirationSplit(), stages.getColdExpirationSplit(),
+                servers, regions, locations, cluster.getRegionLoads(tableName));
+    }
+
+    public void write(File file) throws IOException {
+
+        Map<ServerName, Integer> serverIndexes = new HashMap<>();
+        for (int i = 0; i < servers.size(); i++) {
+            serverIndexes.put(servers.get(i), i);
+        }
+        Map<String, ServerName> regionServers = new HashMap<>();
+        for (HRegionLocation location : locations) {
+            if (location.getServerName() != null) {
+                regionServers.put(location.getRegionInfo().getEncodedName(), location.getServerName());
+            }
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(captureTime);
+            writeBytes(out, tableName.getName());
+            out.writeInt(hotMonths);
+            out.writeInt(warmMonths);
+            out.writeInt(coldMonths);
+            writeBytes(out, Bytes.toBytes(hotSplit));
+            writeBytes(out, Bytes.toBytes(warmSplit));
+            writeBytes(out, Bytes.toBytes(coldSplit));
+
+            out.writeInt(servers.size());
+            for (ServerName server : servers) {
+                writeBytes(out, Bytes.toBytes(server.getServerName()));
+            }
+
+            out.writeInt(regions.size());
+            for (HRegionInfo info : regions) {
+                RegionLoad load = regionLoads.get(info.getRegionName());
+                ServerName server = regionServers.get(info.getEncodedName());
+
+                writeBytes(out, info.getStartKey());
+                writeBytes(out, info.getEndKey());
+                out.writeLong(info.getRegionId());
+                out.writeByte((info.isOffline() ? FLAG_OFFLINE : 0) | (info.isSplit() ? FLAG_SPLIT : 0)
+                        | (load != null ? FLAG_LOAD : 0));
+                out.writeInt(server != null ? serverIndexes.get(server) : -1);
+
+                if (load != null) {
+                    out.writeInt(load.getStores());
+                    out.writeInt(load.getStorefiles());
+                    out.writeInt(load.getStorefileSizeMB());
+                    out.writeInt(load.getStoreUncompressedSizeMB());
+                    out.writeInt(load.getMemStoreSizeMB());
+                    out.writeInt(load.getStorefileIndexSizeMB());
+                    out.writeLong(load.getReadRequestsCount());
+                    out.writeLong(load.getWriteRequestsCount());
+                    out.writeLong(load.getTotalCompactingKVs());
+                    out.writeLong(load.getCurrentCompactedKVs());
+                    out.writeFloat(load.getDataLocality());
+                    out.writeLong(load.getLastMajorCompactionTs());
+                }
+            }
+        } finally {
+            out.close();
+        }
+
+        LOG.info("Snapshot of " + tableName + " with " + regions.size() + " regions written to " + file);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static ClusterSnapshot load(File file) throws IOException {
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + file + " is bigger than 2 GB");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                return read(buffer);
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Snapshot " + file + " is truncated", e);
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static ClusterSnapshot read(MappedByteBuffer buffer) throws IOException {
+
+        if (buffer.getInt() != MAGIC) throw new IOException("Not a snapshot file");
+        int version = buffer.getInt();
+        if (version != VERSION) throw new IOException("Unsupported snapshot version " + version);
+
+        long captureTime = buffer.getLong();
+        TableName tableName = TableName.valueOf(readBytes(buffer));
+        int hotMonths = buffer.getInt();
+        int warmMonths = buffer.getInt();
+        int coldMonths = buffer.getInt();
+        String hotSplit = Bytes.toString(readBytes(buffer));
+        String warmSplit = Bytes.toString(readBytes(buffer));
+        String coldSplit = Bytes.toString(readBytes(buffer));
+
+        int numServers = buffer.getInt();
+        List<ServerName> servers = new ArrayList<>(numServers);
+        for (int i = 0; i < numServers; i++) {
+            servers.add(ServerName.valueOf(new String(readBytes(buffer), StandardCharsets.UTF_8)));
+        }
+
+        int numRegions = buffer.getInt();
+        List<HRegionInfo> regions = new ArrayList<>(numRegions);
+        List<HRegionLocation> locations = new ArrayList<>(numRegions);
+        Map<byte[], RegionLoad> regionLoads = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+
+        for (int i = 0; i < numRegions; i++) {
+            byte[] startKey = readBytes(buffer);
+            byte[] endKey = readBytes(buffer);
+            long regionId = buffer.getLong();
+            byte flags = buffer.get();
+            int serverIndex = buffer.getInt();
+
+            HRegionInfo info = new HRegionInfo(tableName, startKey, endKey, (flags & FLAG_SPLIT) != 0, regionId);
+            info.setOffline((flags & FLAG_OFFLINE) != 0);
+            regions.add(info);
+            locations.add(new HRegionLocation(info, serverIndex >= 0 ? servers.get(serverIndex) : null));
+
+            if ((flags & FLAG_LOAD) != 0) {
+                regionLoads.put(info.getRegionName(), new RegionLoad(ClusterStatusProtos.RegionLoad.newBuilder()
+                        .setRegionSpecifier(HBaseProtos.RegionSpecifier.newBuilder()
+                                .setType(HBaseProtos.RegionSpecifier.RegionSpecifierType.REGION_NAME)
+                                .setValue(ByteString.copyFrom(info.getRegionName())))
+                        .setStores(buffer.getInt())
+                        .setStorefiles(buffer.getInt())
+                        .setStorefileSizeMB(buffer.getInt())
+                        .setStoreUncompressedSizeMB(buffer.getInt())
+                        .setMemstoreSizeMB(buffer.getInt())
+                        .setStorefileIndexSizeMB(buffer.getInt())
+                        .setReadRequestsCount(buffer.getLong())
+                        .setWriteRequestsCount(buffer.getLong())
+                        .setTotalCompactingKVs(buffer.getLong())
+                        .setCurrentCompactedKVs(buffer.getLong())
+                        .setDataLocality(buffer.getFloat())
+                        .setLastMajorCompactionTs(buffer.getLong())
+                        .build()));
+            }
+        }
+
+        return new ClusterSnapshot(tableName, captureTime, hotMonths, warmMonths, coldMonths,
+                hotSplit, warmSplit, coldSplit, servers, regions, locations, regionLoads);
+    }
+
+    private static byte[] readBytes(MappedByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) throw new IOException("Corrupted snapshot");
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Sets the stage months and reference time of the snapshot, so the planners compute the same stage boundaries
+     * it was taken with.
+     */
+    public void applyStages(Configuration conf) {
+        conf.setInt(StageByDateBuilder.NORMALIZER_MONTHS_HOT_KEY_PROPERTY, hotMonths);
+        conf.setInt(StageByDateBuilder.NORMALIZER_MONTHS_WARM_KEY_PROPERTY, warmMonths);
+        conf.setInt(StageByDateBuilder.NORMALIZER_MONTHS_COLD_KEY_PROPERTY, coldMonths);
+        conf.setLong(StageByDateBuilder.REFERENCE_TIME_KEY_PROPERTY, captureTime);
+    }
+
+    /**
+     * Builds an in-memory cluster with the regions and servers of the snapshot, to execute plans on it. Regions
+     * keep their ids and locations, their size is the store file size and they do not grow.
+     */
+    public InMemoryCluster toInMemoryCluster(Configuration conf) {
+        List<ServerName> clusterServers = servers.isEmpty()
+                ? Collections.singletonList(ServerName.valueOf("rs0.sim", 16020, captureTime)) : servers;
+        InMemoryCluster cluster = new InMemoryCluster(conf, captureTime, clusterServers);
+        addTo(cluster);
+        return cluster;
+    }
+
+    /**
+     * Adds the regions of the snapshot to an in-memory cluster, e.g. built from the snapshot of another table.
+     */
+    public void addTo(InMemoryCluster cluster) {
+        for (HRegionLocation location : locations) {
+            HRegionInfo info = location.getRegionInfo();
+            RegionLoad load = regionLoads.get(info.getRegionName());
+            ServerName server = location.getServerName() != null ? location.getServerName()
+                    : cluster.getServers().get(0);
+            cluster.addRegion(info, server, load != null ? load.getStorefileSizeMB() : 0, 0);
+        }
+    }
+
+    @Override
+    public List<HRegionInfo> getTableRegions(TableName table) throws IOException {
+        return tableName.equals(table) ? regions : Collections.<HRegionInfo>emptyList();
+    }
+
+    @Override
+    public List<HRegionLocation> getRegionLocations(TableName table) throws IOException {
+        return tableName.equals(table) ? locations : Collections.<HRegionLocation>emptyList();
+    }
+
+    @Override
+    public Map<byte[], RegionLoad> getRegionLoads(TableName table) throws IOException {
+        return tableName.equals(table) ? regionLoads : new TreeMap<byte[], RegionLoad>(Bytes.BYTES_COMPARATOR);
+    }
+
+    @Override
+    public List<TableName> listTables() throws IOException {
+        return Collections.singletonList(tableName);
+    }
+
+    /**
+     * Records the plan, the snapshot does not change.
+     */
+    @Override
+    public synchronized void execute(NormalizationPlan plan) throws IOException {
+        plans.add(plan);
+    }
+
+    @Override
+    public synchronized long currentTimeMillis() {
+        return now;
+    }
+
+    @Override
+    public synchronized void pause(long millis) {
+        now += millis;
+    }
+
+    public synchronized List<NormalizationPlan> getExecutedPlans() {
+        return new ArrayList<>(plans);
+    }
+
+    public TableName getTableName() {
+        return tableName;
+    }
+
+    public long getCaptureTime() {
+        return captureTime;
+    }
+
+    public String getHotSplit() {
+        return hotSplit;
+    }
+
+    public String getWarmSplit() {
+        return warmSplit;
+    }
+
+    public String getColdSplit() {
+        return coldSplit;
+    }
+
+    public List<ServerName> getServers() {
+        return servers;
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+}
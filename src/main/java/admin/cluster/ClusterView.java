@@ -0,0 +1,57 @@
+package admin.cluster;
+
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.RegionLoad;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.master.normalizer.NormalizationPlan;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The subset of Admin, RegionLocator and ClusterStatus used by the planners and RegionsTool.
+ *
+ * HBaseClusterView goes to a live cluster. InMemoryCluster is a model with simulated time, to run the planners
+ * deterministically without a cluster.
+ */
+public interface ClusterView extends Closeable {
+
+    /**
+     * Returns the regions of the table, sorted by start key.
+     */
+    List<HRegionInfo> getTableRegions(TableName table) throws IOException;
+
+    /**
+     * Returns the location of every region of the table.
+     */
+    List<HRegionLocation> getRegionLocations(TableName table) throws IOException;
+
+    /**
+     * Returns the loads of the online regions of the table by region name, in a map sorted with
+     * Bytes.BYTES_COMPARATOR.
+     */
+    Map<byte[], RegionLoad> getRegionLoads(TableName table) throws IOException;
+
+    /**
+     * Returns the names of the user tables.
+     */
+    List<TableName> listTables() throws IOException;
+
+    /**
+     * Requests the execution of a plan. Like in HBase, the split or merge goes on asynchronously.
+     */
+    void execute(NormalizationPlan plan) throws IOException;
+
+    /**
+     * Current time of the cluster, simulated or not.
+     */
+    long currentTimeMillis();
+
+    /**
+     * Waits for the given time. The in-memory cluster only moves its clock forward.
+     */
+    void pause(long millis) throws InterruptedException;
+}
@@ -0,0 +1,167 @@
+package admin.cluster;
+
+import admin.metrics.MeteredAdmin;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.ClusterStatus;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.RegionLoad;
+import org.apache.hadoop.hbase.ServerLoad;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.master.normalizer.NormalizationPlan;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * ClusterView of a live cluster, through a Connection owned by the caller.
+ */
+public class HBaseClusterView implements ClusterView {
+
+    private static final Log LOG = LogFactory.getLog(HBaseClusterView.class);
+
+    private final Connection connection;
+
+    public HBaseClusterView(Connection connection) {
+        this.connection = connection;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    @Override
+    public List<HRegionInfo> getTableRegions(TableName table) throws IOException {
+        Admin admin = MeteredAdmin.wrap(connection.getAdmin());
+        try {
+            return admin.getTableRegions(table);
+        } finally {
+            admin.close();
+        }
+    }
+
+    @Override
+    public List<HRegionLocation> getRegionLocations(TableName table) throws IOException {
+        RegionLocator locator = connection.getRegionLocator(table);
+        try {
+            return locator.getAllRegionLocations();
+        } finally {
+            locator.close();
+        }
+    }
+
+    @Override
+    public Map<byte[], RegionLoad> getRegionLoads(TableName table) throws IOException {
+        return getRegionLoads(table, getTableRegions(table), getRegionLocations(table), getClusterStatus());
+    }
+
+    /**
+     * Returns the status of all the RegionServers, with the load of every region.
+     */
+    public ClusterStatus getClusterStatus() throws IOException {
+        Admin admin = MeteredAdmin.wrap(connection.getAdmin());
+        try {
+            return admin.getClusterStatus();
+        } finally {
+            admin.close();
+        }
+    }
+
+    /**
+     * Returns the loads of the regions of a table from a status already read, e.g. shared by several tables.
+     */
+    public Map<byte[], RegionLoad> getRegionLoads(TableName table, List<HRegionInfo> tableRegionInfos,
+                                                  List<HRegionLocation> locations, ClusterStatus clusterStatus) {
+
+        Map<byte[], RegionLoad> regionLoadMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+
+        Set<ServerName> tableServers = Sets.newHashSet();
+        for (HRegionLocation regionLocation : locations) {
+            tableServers.add(regionLocation.getServerName());
+        }
+
+        if (tableRegionInfos == null || tableRegionInfos.isEmpty()) {
+            LOG.warn("NO regions found for table " + table.getNameAsString());
+            return regionLoadMap;
+        }
+
+        Set<byte[]> tableRegionNames = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+
+        for (HRegionInfo regionInfo : tableRegionInfos) {
+            if (regionInfo.isOffline()) {
+                LOG.debug("Ignoring region OFFLINE:" + regionInfo.getRegionNameAsString());
+            } else {
+                tableRegionNames.add(regionInfo.getRegionName());
+                LOG.debug("Adding region:" + regionInfo.getRegionNameAsString());
+            }
+        }
+
+        LOG.debug("Found [" + tableRegionNames.size() + "] regions for table ");
+
+        for (ServerName serverName : tableServers) {
+
+            ServerLoad serverLoad = clusterStatus.getLoad(serverName);
+            if (serverLoad == null) continue;
+            Map<byte[], RegionLoad> regionsLoadPerServer = serverLoad.getRegionsLoad();
+
+            for (byte[] name : tableRegionNames) {
+                if (regionsLoadPerServer.containsKey(name)) {
+                    regionLoadMap.put(name, regionsLoadPerServer.get(name));
+                }
+            }
+        }
+
+        LOG.debug("Region LOADS SIZE:" + regionLoadMap.size());
+
+        return regionLoadMap;
+    }
+
+    @Override
+    public List<TableName> listTables() throws IOException {
+        Admin admin = MeteredAdmin.wrap(connection.getAdmin());
+        try {
+            return Arrays.asList(admin.listTableNames());
+        } finally {
+            admin.close();
+        }
+    }
+
+    @Override
+    public void execute(NormalizationPlan plan) throws IOException {
+        Admin admin = MeteredAdmin.wrap(connection.getAdmin());
+        try {
+            plan.execute(admin);
+        } finally {
+            admin.close();
+        }
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public void pause(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    /**
+     * The connection belongs to the caller and is left open.
+     */
+    @Override
+    public void close() throws IOException {
+    }
+}
@@ -0,0 +1,444 @@
+package admin.cluster;
+
+import admin.metrics.MeteredAdmin;
+import com.google.protobuf.ByteString;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.RegionLoad;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.master.normalizer.NormalizationPlan;
+import org.apache.hadoop.hbase.protobuf.generated.ClusterStatusProtos;
+import org.apache.hadoop.hbase.protobuf.generated.HBaseProtos;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * In-memory model of a cluster, to run the planners and RegionsTool deterministically in milliseconds.
+ *
+ * Regions have a size and a growth rate in MB per hour and are assigned round robin to a fixed set of
+ * RegionServers. Time is simulated: it only moves forward with pause(), which grows the regions and completes the
+ * pending operations. Like in HBase:
+ * <ul>
+ * <li> Plans are executed through the same NormalizationPlan.execute(Admin) calls, on an Admin that only supports
+ * splitRegion and mergeRegions.
+ * <li> A split takes splitDurationMs. The parent keeps serving until both daughters, with half of its size and
+ * growth, replace it. The split point is the one requested, or the middle of the key range.
+ * <li> A merge of two adjacent regions takes mergeDurationMs, then one region with the sum of both replaces them.
+ * <li> A region can only be in one operation at a time. Requests for regions in transition or not online fail.
+ * </ul>
+ *
+ * The data rewritten by the operations is the size of the parent of a split, rewritten by the compactions of the
+ * daughters, and the size of both regions of a merge.
+ *
+ * Same inputs give the same layout: region ids come from a counter and there is no randomness.
+ */
+public class InMemoryCluster implements ClusterView {
+
+    private static final Log LOG = LogFactory.getLog(InMemoryCluster.class);
+
+    public static final String SPLIT_DURATION_KEY_PROPERTY = "hbase.regiontool.sim.split.duration.ms";
+    public static final String MERGE_DURATION_KEY_PROPERTY = "hbase.regiontool.sim.merge.duration.ms";
+    public static final String NUM_SERVERS_KEY_PROPERTY = "hbase.regiontool.sim.servers";
+
+    public static final long DEFAULT_SPLIT_DURATION_MS = 30 * 1000L;
+    public static final long DEFAULT_MERGE_DURATION_MS = 60 * 1000L;
+    public static final int DEFAULT_NUM_SERVERS = 10;
+
+    private static final long MS_PER_HOUR = 60 * 60 * 1000L;
+
+    private final long splitDurationMs;
+    private final long mergeDurationMs;
+    private final List<ServerName> servers = new ArrayList<>();
+
+    private final Map<TableName, TreeMap<byte[], Region>> tables = new HashMap<>();
+    private final Map<String, Region> regionsByEncodedName = new HashMap<>();
+    private final PriorityQueue<Operation> pending = new PriorityQueue<>(11, new Comparator<Operation>() {
+        @Override
+        public int compare(Operation o1, Operation o2) {
+            if (o1.completionTime != o2.completionTime) return o1.completionTime < o2.completionTime ? -1 : 1;
+            return o1.sequence < o2.sequence ? -1 : (o1.sequence == o2.sequence ? 0 : 1);
+        }
+    });
+
+    private final Admin admin;
+
+    private long now;
+    private long nextRegionId = 1;
+    private long nextSequence;
+    private int nextServer;
+
+    private long completedSplits;
+    private long completedMerges;
+    private long rejectedOperations;
+    private double rewrittenMB;
+
+    public InMemoryCluster(Configuration conf, long startTime) {
+        this(conf, startTime, newServers(Math.max(1, conf.getInt(NUM_SERVERS_KEY_PROPERTY, DEFAULT_NUM_SERVERS)),
+                startTime));
+    }
+
+    /**
+     * Cluster with the given RegionServers, e.g. the ones of a snapshot.
+     */
+    public InMemoryCluster(Configuration conf, long startTime, List<ServerName> servers) {
+        this.splitDurationMs = conf.getLong(SPLIT_DURATION_KEY_PROPERTY, DEFAULT_SPLIT_DURATION_MS);
+        this.mergeDurationMs = conf.getLong(MERGE_DURATION_KEY_PROPERTY, DEFAULT_MERGE_DURATION_MS);
+        this.servers.addAll(servers);
+        this.now = startTime;
+        this.admin = newAdmin();
+    }
+
+    private static List<ServerName> newServers(int numServers, long startTime) {
+        List<ServerName> servers = new ArrayList<>(numServers);
+        for (int i = 0; i < numServers; i++) {
+            servers.add(ServerName.valueOf("rs" + i + ".sim", 16020, startTime));
+        }
+        return servers;
+    }
+
+    private static class Region {
+        final HRegionInfo info;
+        final ServerName server;
+        double sizeMB;
+        double growthMBPerHour;
+        boolean inTransition;
+
+        Region(HRegionInfo info, ServerName server, double sizeMB, double growthMBPerHour) {
+            this.info = info;
+            this.server = server;
+            this.sizeMB = sizeMB;
+            this.growthMBPerHour = growthMBPerHour;
+        }
+    }
+
+    private static class Operation {
+        final long completionTime;
+        final long sequence;
+        final Region first;
+        final Region second;
+        final byte[] splitPoint;
+
+        Operation(long completionTime, long sequence, Region first, Region second, byte[] splitPoint) {
+            this.completionTime = completionTime;
+            this.sequence = sequence;
+            this.first = first;
+            this.second = second;
+            this.splitPoint = splitPoint;
+        }
+
+        boolean isSplit() {
+            return second == null;
+        }
+    }
+
+    /**
+     * Adds a region to a table, on the next RegionServer.
+     */
+    public synchronized HRegionInfo addRegion(TableName table, byte[] startKey, byte[] endKey, double sizeMB,
+                                              double growthMBPerHour) {
+        ServerName server = servers.get(nextServer++ % servers.size());
+        return addRegion(table, startKey, endKey, sizeMB, growthMBPerHour, server).info;
+    }
+
+    /**
+     * Adds an existing region, e.g. of a snapshot, keeping its id. New regions get bigger ids.
+     */
+    public synchronized void addRegion(HRegionInfo info, ServerName server, double sizeMB, double growthMBPerHour) {
+        nextRegionId = Math.max(nextRegionId, info.getRegionId() + 1);
+        addRegion(new Region(info, server, sizeMB, growthMBPerHour));
+    }
+
+    private Region addRegion(TableName table, byte[] startKey, byte[] endKey, double sizeMB, double growthMBPerHour,
+                             ServerName server) {
+        HRegionInfo info = new HRegionInfo(table, startKey, endKey, false, nextRegionId++);
+        return addRegion(new Region(info, server, sizeMB, growthMBPerHour));
+    }
+
+    private Region addRegion(Region region) {
+        TableName table = region.info.getTable();
+        TreeMap<byte[], Region> regions = tables.get(table);
+        if (regions == null) {
+            regions = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+            tables.put(table, regions);
+        }
+        regions.put(region.info.getStartKey(), region);
+        regionsByEncodedName.put(region.info.getEncodedName(), region);
+        return region;
+    }
+
+    private void removeRegion(Region region) {
+        tables.get(region.info.getTable()).remove(region.info.getStartKey());
+        regionsByEncodedName.remove(region.info.getEncodedName());
+    }
+
+    @Override
+    public synchronized List<TableName> listTables() throws IOException {
+        return new ArrayList<>(new TreeSet<>(tables.keySet()));
+    }
+
+    @Override
+    public synchronized List<HRegionInfo> getTableRegions(TableName table) throws IOException {
+        List<HRegionInfo> infos = new ArrayList<>();
+        TreeMap<byte[], Region> regions = tables.get(table);
+        if (regions != null) {
+            for (Region region : regions.values()) {
+                infos.add(region.info);
+            }
+        }
+        return infos;
+    }
+
+    @Override
+    public synchronized List<HRegionLocation> getRegionLocations(TableName table) throws IOException {
+        List<HRegionLocation> locations = new ArrayList<>();
+        TreeMap<byte[], Region> regions = tables.get(table);
+        if (regions != null) {
+            for (Region region : regions.values()) {
+                locations.add(new HRegionLocation(region.info, region.server));
+            }
+        }
+        return locations;
+    }
+
+    @Override
+    public synchronized Map<byte[], RegionLoad> getRegionLoads(TableName table) throws IOException {
+        Map<byte[], RegionLoad> loads = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+        TreeMap<byte[], Region> regions = tables.get(table);
+        if (regions != null) {
+            for (Region region : regions.values()) {
+                loads.put(region.info.getRegionName(),
+                        newRegionLoad(region.info.getRegionName(), (int) Math.round(region.sizeMB)));
+            }
+        }
+        return loads;
+    }
+
+    /**
+     * Builds a RegionLoad with the given store file size, the only metric the planners use.
+     */
+    public static RegionLoad newRegionLoad(byte[] regionName, int storefileSizeMB) {
+        return new RegionLoad(ClusterStatusProtos.RegionLoad.newBuilder()
+                .setRegionSpecifier(HBaseProtos.RegionSpecifier.newBuilder()
+                        .setType(HBaseProtos.RegionSpecifier.RegionSpecifierType.REGION_NAME)
+                        .setValue(ByteString.copyFrom(regionName)))
+                .setStores(1)
+                .setStorefiles(1)
+                .setStorefileSizeMB(storefileSizeMB)
+                .build());
+    }
+
+    @Override
+    public void execute(NormalizationPlan plan) throws IOException {
+        plan.execute(MeteredAdmin.wrap(admin));
+    }
+
+    @Override
+    public synchronized long currentTimeMillis() {
+        return now;
+    }
+
+    @Override
+    public synchronized void pause(long millis) {
+        advance(now + millis);
+    }
+
+    /**
+     * Moves the clock forward to the given time, growing the regions and completing the operations due.
+     */
+    public synchronized void advance(long time) {
+        while (!pending.isEmpty() && pending.peek().completionTime <= time) {
+            Operation operation = pending.poll();
+            grow(operation.completionTime - now);
+            now = operation.completionTime;
+            complete(operation);
+        }
+        grow(time - now);
+        now = Math.max(now, time);
+    }
+
+    private void grow(long millis) {
+        if (millis <= 0) return;
+        double hours = millis / (double) MS_PER_HOUR;
+        for (Region region : regionsByEncodedName.values()) {
+            region.sizeMB += region.growthMBPerHour * hours;
+        }
+    }
+
+    private void complete(Operation operation) {
+        TableName table = operation.first.info.getTable();
+        if (operation.isSplit()) {
+            Region parent = operation.first;
+            removeRegion(parent);
+            addRegion(table, parent.info.getStartKey(), operation.splitPoint, parent.sizeMB / 2,
+                    parent.growthMBPerHour / 2, parent.server);
+            addRegion(table, operation.splitPoint, parent.info.getEndKey(), parent.sizeMB / 2,
+                    parent.growthMBPerHour / 2, parent.server);
+            completedSplits++;
+            rewrittenMB += parent.sizeMB;
+            LOG.debug("Split completed: " + parent.info.getRegionNameAsString());
+        } else {
+            Region first = operation.first;
+            Region second = operation.second;
+            removeRegion(first);
+            removeRegion(second);
+            addRegion(table, first.info.getStartKey(), second.info.getEndKey(), first.sizeMB + second.sizeMB,
+                    first.growthMBPerHour + second.growthMBPerHour, first.server);
+            completedMerges++;
+            rewrittenMB += first.sizeMB + second.sizeMB;
+            LOG.debug("Merge completed: " + first.info.getRegionNameAsString() + "," + second.info.getRegionNameAsString());
+        }
+    }
+
+    private synchronized void requestSplit(byte[] regionName, byte[] requestedSplitPoint) throws IOException {
+
+        Region region = regionsByEncodedName.get(HRegionInfo.encodeRegionName(regionName));
+        checkAvailable(region, Bytes.toStringBinary(regionName));
+
+        byte[] splitPoint = requestedSplitPoint;
+        if (splitPoint == null) {
+            splitPoint = midKey(region.info.getStartKey(), region.info.getEndKey());
+        } else if (Bytes.compareTo(splitPoint, region.info.getStartKey()) <= 0
+                || (region.info.getEndKey().length > 0 && Bytes.compareTo(splitPoint, region.info.getEndKey()) >= 0)) {
+            splitPoint = null;
+        }
+        if (splitPoint == null) {
+            rejectedOperations++;
+            throw new IOException("Region " + region.info.getRegionNameAsString() + " cannot be split");
+        }
+
+        region.inTransition = true;
+        pending.add(new Operation(now + splitDurationMs, nextSequence++, region, null, splitPoint));
+    }
+
+    private synchronized void requestMerge(byte[] encodedNameA, byte[] encodedNameB) throws IOException {
+
+        Region a = regionsByEncodedName.get(Bytes.toString(encodedNameA));
+        Region b = regionsByEncodedName.get(Bytes.toString(encodedNameB));
+        checkAvailable(a, Bytes.toString(encodedNameA));
+        checkAvailable(b, Bytes.toString(encodedNameB));
+
+        Region first = Bytes.compareTo(a.info.getStartKey(), b.info.getStartKey()) < 0 ? a : b;
+        Region second = first == a ? b : a;
+        if (!first.info.getTable().equals(second.info.getTable())
+                || !Bytes.equals(first.info.getEndKey(), second.info.getStartKey())) {
+            rejectedOperations++;
+            throw new IOException("Unable to merge not adjacent regions " + first.info.getRegionNameAsString()
+                    + ", " + second.info.getRegionNameAsString());
+        }
+
+        first.inTransition = true;
+        second.inTransition = true;
+        pending.add(new Operation(now + mergeDurationMs, nextSequence++, first, second, null));
+    }
+
+    private void checkAvailable(Region region, String name) throws IOException {
+        if (region == null) {
+            rejectedOperations++;
+            throw new IOException("Region " + name + " is not online");
+        }
+        if (region.inTransition) {
+            rejectedOperations++;
+            throw new IOException("Region " + region.info.getRegionNameAsString() + " is in transition");
+        }
+    }
+
+    /**
+     * Returns the middle of the key range, or null if the range is too narrow.
+     */
+    static byte[] midKey(byte[] startKey, byte[] endKey) {
+        byte[] lower = startKey.length == 0 ? new byte[]{0} : startKey;
+        byte[] upper = endKey;
+        if (upper.length == 0) {
+            upper = new byte[lower.length + 1];
+            Arrays.fill(upper, (byte) 0xFF);
+        }
+        if (Bytes.compareTo(lower, upper) >= 0) return null;
+        // One more byte leaves room for a middle key between keys like 201701 and 201702
+        int length = Math.max(lower.length, upper.length) + 1;
+        byte[][] split = Bytes.split(Arrays.copyOf(lower, length), Arrays.copyOf(upper, length), true, 1);
+        if (split == null || split.length < 3) return null;
+        byte[] mid = split[1];
+        if (Bytes.compareTo(mid, startKey) <= 0 || (endKey.length > 0 && Bytes.compareTo(mid, endKey) >= 0)) {
+            return null;
+        }
+        return mid;
+    }
+
+    /**
+     * Admin that only supports the calls made by the normalization plans.
+     */
+    private Admin newAdmin() {
+        return (Admin) Proxy.newProxyInstance(Admin.class.getClassLoader(), new Class<?>[]{Admin.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String name = method.getName();
+                        if ("splitRegion".equals(name)) {
+                            requestSplit((byte[]) args[0], args.length > 1 ? (byte[]) args[1] : null);
+                            return null;
+                        } else if ("mergeRegions".equals(name)) {
+                            requestMerge((byte[]) args[0], (byte[]) args[1]);
+                            return null;
+                        } else if ("close".equals(name) || "abort".equals(name)) {
+                            return null;
+                        } else if ("toString".equals(name)) {
+                            return "InMemoryClusterAdmin";
+                        } else if ("hashCode".equals(name)) {
+                            return System.identityHashCode(proxy);
+                        } else if ("equals".equals(name)) {
+                            return proxy == args[0];
+                        }
+                        throw new UnsupportedOperationException("Admin." + name + " is not supported by the in-memory cluster");
+                    }
+                });
+    }
+
+    public synchronized long getCompletedSplits() {
+        return completedSplits;
+    }
+
+    public synchronized long getCompletedMerges() {
+        return completedMerges;
+    }
+
+    public synchronized long getRejectedOperations() {
+        return rejectedOperations;
+    }
+
+    /**
+     * Estimated MB rewritten by the completed splits and merges.
+     */
+    public synchronized double getRewrittenMB() {
+        return rewrittenMB;
+    }
+
+    public synchronized int getPendingOperations() {
+        return pending.size();
+    }
+
+    public List<ServerName> getServers() {
+        return servers;
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+}
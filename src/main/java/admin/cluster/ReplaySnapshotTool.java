@@ -0,0 +1,129 @@
+package admin.cluster;
+
+import admin.PlanVerifier;
+import admin.RegionsTool;
+import org.apache.commons.cli.CommandLine;
+import org.apache.hadoop.hbase.master.normalizer.NormalizationPlan;
+import org.apache.hadoop.hbase.util.AbstractHBaseTool;
+import org.apache.hadoop.util.ToolRunner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Runs RegionsTool on a snapshot written with its -snapshot_dir option, with no cluster. The planners see the
+ * regions, loads and stage boundaries of the snapshot.
+ *
+ * By default the plans are only recorded and printed, and every iteration sees the same snapshot. With -simulate
+ * the plans are executed on an InMemoryCluster built from the snapshot. The options after "--" are passed to
+ * RegionsTool, e.g.:
+ *
+ * <pre>
+ *   ReplaySnapshotTool -file events-1490000000000.snapshot -- -use_avg_size true
+ *   ReplaySnapshotTool -file events-1490000000000.snapshot -simulate -- -iterations 50 -until_balanced
+ * </pre>
+ */
+public class ReplaySnapshotTool extends AbstractHBaseTool {
+
+    protected static final String OPT_FILE = "file";
+    protected static final String OPT_SIMULATE = "simulate";
+
+    File file;
+    boolean simulate = false;
+    String[] toolArgs = new String[0];
+
+    public static void main(String[] args) throws Throwable {
+
+        // The generic options parser drops "--", so the RegionsTool options are split here
+        ReplaySnapshotTool tool = new ReplaySnapshotTool();
+        int separator = Arrays.asList(args).indexOf("--");
+        if (separator >= 0) {
+            tool.toolArgs = Arrays.copyOfRange(args, separator + 1, args.length);
+            args = Arrays.copyOfRange(args, 0, separator);
+        }
+        tool.doStaticMain(args);
+
+    }
+
+    @Override
+    protected void addOptions() {
+        // Not a required option: AbstractHBaseTool keeps those in a static set, which RegionsTool would check too
+        addOptWithArg(OPT_FILE, "Snapshot file to replay");
+        addOptNoArg(OPT_SIMULATE, "Executes the plans on an in-memory cluster built from the snapshot");
+    }
+
+    @Override
+    protected void processOptions(CommandLine cmd) {
+        if (cmd.hasOption(OPT_FILE)) {
+            file = new File(cmd.getOptionValue(OPT_FILE));
+        }
+        simulate = cmd.hasOption(OPT_SIMULATE);
+    }
+
+    @Override
+    protected int doWork() throws Exception {
+
+        if (file == null) {
+            System.err.println("Missing option -" + OPT_FILE);
+            printUsage();
+            return EXIT_FAILURE;
+        }
+
+        long startTime = System.currentTimeMillis();
+        ClusterSnapshot snapshot = ClusterSnapshot.load(file);
+        long loadTime = System.currentTimeMillis() - startTime;
+
+        System.out.println("Snapshot:" + file
+                + " Table:" + snapshot.getTableName()
+                + " Captured:" + new Date(snapshot.getCaptureTime())
+                + " Regions:" + snapshot.getTableRegions(snapshot.getTableName()).size()
+                + " Servers:" + snapshot.getServers().size()
+                + " Load time (ms):" + loadTime);
+        System.out.println(" Stage splits hot:" + snapshot.getHotSplit()
+                + " warm:" + snapshot.getWarmSplit()
+                + " cold:" + snapshot.getColdSplit());
+
+        // Same stage boundaries as when the snapshot was taken, unless the RegionsTool options change the months
+        snapshot.applyStages(conf);
+
+        ClusterView cluster = simulate ? snapshot.toInMemoryCluster(conf) : snapshot;
+        if (!simulate) {
+            // The snapshot never changes, so every plan would look not done and be retried
+            conf.setBoolean(PlanVerifier.VERIFY_ENABLED_KEY_PROPERTY, false);
+        }
+
+        List<String> args = new ArrayList<>(Arrays.asList("-tablename", snapshot.getTableName().getNameAsString()));
+        args.addAll(Arrays.asList(toolArgs));
+
+        RegionsTool tool = new RegionsTool(cluster);
+        startTime = System.currentTimeMillis();
+        int ret = ToolRunner.run(conf, tool, args.toArray(new String[args.size()]));
+        long wallTime = System.currentTimeMillis() - startTime;
+
+        if (simulate) {
+            InMemoryCluster simulated = (InMemoryCluster) cluster;
+            System.out.println("Iterations:" + tool.getIterationsRun()
+                    + " Plans executed:" + tool.getPlansExecuted()
+                    + " Splits:" + simulated.getCompletedSplits()
+                    + " Merges:" + simulated.getCompletedMerges()
+                    + " Rejected:" + simulated.getRejectedOperations()
+                    + " Regions:" + simulated.getTableRegions(snapshot.getTableName()).size()
+                    + " Wall time (ms):" + wallTime);
+            for (String rates : tool.getPlanRates()) {
+                System.out.println(" " + rates);
+            }
+        } else {
+            for (NormalizationPlan plan : snapshot.getExecutedPlans()) {
+                System.out.println(" " + plan);
+            }
+            System.out.println("Iterations:" + tool.getIterationsRun()
+                    + " Plans:" + tool.getPlansExecuted()
+                    + " Wall time (ms):" + wallTime);
+        }
+
+        return ret;
+    }
+}
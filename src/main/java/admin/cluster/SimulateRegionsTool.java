@@ -0,0 +1,248 @@
+package admin.cluster;
+
+import admin.RegionsTool;
+import admin.StageByDateBuilder;
+import org.apache.commons.cli.CommandLine;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.RegionLoad;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.util.AbstractHBaseTool;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.util.ToolRunner;
+
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Runs RegionsTool against an InMemoryCluster with a synthetic staged table, and reports how long it takes to
+ * reach a balanced layout: iterations, plans, splits and merges, and simulated time.
+ *
+ * The table has regionsPerMonth regions per month, keys yyyyMM + number, with log-normal sizes. The regions of the
+ * hot months grow at a fixed rate. With -tables N, N such tables named tablename_0 to tablename_N-1, each with its
+ * own seed, are normalized in the same run. The options after "--" are passed to RegionsTool, e.g.:
+ *
+ * <pre>
+ *   SimulateRegionsTool -regions_per_month 20 -hot_growth 5 -- -iterations 100 -sleep 3600 -until_balanced
+ *   SimulateRegionsTool -tables 8 -- -iterations 100 -sleep 3600 -until_balanced -execution_threads 4
+ * </pre>
+ */
+public class SimulateRegionsTool extends AbstractHBaseTool {
+
+    protected static final String OPT_TABLENAME = "tablename";
+    protected static final String OPT_MONTHS = "months";
+    protected static final String OPT_REGIONS_PER_MONTH = "regions_per_month";
+    protected static final String OPT_MEDIAN_SIZE = "median_size";
+    protected static final String OPT_SIGMA = "sigma";
+    protected static final String OPT_HOT_GROWTH = "hot_growth";
+    protected static final String OPT_SERVERS = "servers";
+    protected static final String OPT_SPLIT_TIME = "split_time";
+    protected static final String OPT_MERGE_TIME = "merge_time";
+    protected static final String OPT_SEED = "seed";
+    protected static final String OPT_TABLES = "tables";
+
+    protected static final String DEFAULT_TABLENAME = "simulated";
+    protected static final int DEFAULT_REGIONS_PER_MONTH = 10;
+    protected static final double DEFAULT_MEDIAN_SIZE = 2048;
+    protected static final double DEFAULT_SIGMA = 1.0;
+    protected static final long DEFAULT_SEED = 42L;
+
+    String sTable = DEFAULT_TABLENAME;
+    int months;
+    int hotMonths;
+    int regionsPerMonth = DEFAULT_REGIONS_PER_MONTH;
+    double medianSize = DEFAULT_MEDIAN_SIZE;
+    double sigma = DEFAULT_SIGMA;
+    double hotGrowth = 0;
+    long seed = DEFAULT_SEED;
+    int tables = 1;
+    String[] toolArgs = new String[0];
+
+    public static void main(String[] args) throws Throwable {
+
+        // The generic options parser drops "--", so the RegionsTool options are split here
+        SimulateRegionsTool tool = new SimulateRegionsTool();
+        int separator = Arrays.asList(args).indexOf("--");
+        if (separator >= 0) {
+            tool.toolArgs = Arrays.copyOfRange(args, separator + 1, args.length);
+            args = Arrays.copyOfRange(args, 0, separator);
+        }
+        tool.doStaticMain(args);
+
+    }
+
+    @Override
+    protected void addOptions() {
+
+        addOptWithArg(OPT_TABLENAME, "Name of the simulated table (defaults to " + DEFAULT_TABLENAME + ")");
+        addOptWithArg(OPT_MONTHS, "Number of months of the table, from the current one backwards. Default: hot+warm+cold months");
+        addOptWithArg(OPT_REGIONS_PER_MONTH, "Number of regions per month (defaults to " + DEFAULT_REGIONS_PER_MONTH + ")");
+        addOptWithArg(OPT_MEDIAN_SIZE, "Median region size in MB (defaults to " + DEFAULT_MEDIAN_SIZE + ")");
+        addOptWithArg(OPT_SIGMA, "Sigma of the log-normal region sizes (defaults to " + DEFAULT_SIGMA + ")");
+        addOptWithArg(OPT_HOT_GROWTH, "Growth in MB per hour of every hot region (defaults to 0)");
+        addOptWithArg(OPT_SERVERS, "Number of RegionServers (defaults to " + InMemoryCluster.DEFAULT_NUM_SERVERS + ")");
+        addOptWithArg(OPT_SPLIT_TIME, "Seconds per split (defaults to " + InMemoryCluster.DEFAULT_SPLIT_DURATION_MS / 1000 + ")");
+        addOptWithArg(OPT_MERGE_TIME, "Seconds per merge (defaults to " + InMemoryCluster.DEFAULT_MERGE_DURATION_MS / 1000 + ")");
+        addOptWithArg(OPT_SEED, "Seed of the region sizes (defaults to " + DEFAULT_SEED + ")");
+        addOptWithArg(OPT_TABLES, "Number of simulated tables, named after the table with a suffix _0, _1... "
+                + "and normalized in the same run (defaults to 1, named after the table)");
+    }
+
+    @Override
+    protected void processOptions(CommandLine cmd) {
+
+        sTable = cmd.getOptionValue(OPT_TABLENAME, DEFAULT_TABLENAME);
+
+        hotMonths = conf.getInt(StageByDateBuilder.NORMALIZER_MONTHS_HOT_KEY_PROPERTY,
+                StageByDateBuilder.DEFAULT_HOT_EXPIRATION_IN_MONTHS);
+        int warmMonths = conf.getInt(StageByDateBuilder.NORMALIZER_MONTHS_WARM_KEY_PROPERTY,
+                StageByDateBuilder.DEFAULT_WARM_EXPIRATION_IN_MONTHS);
+        int coldMonths = conf.getInt(StageByDateBuilder.NORMALIZER_MONTHS_COLD_KEY_PROPERTY,
+                StageByDateBuilder.DEFAULT_COLD_EXPIRATION_IN_MONTHS);
+        months = Integer.parseInt(cmd.getOptionValue(OPT_MONTHS, String.valueOf(hotMonths + warmMonths + coldMonths)));
+
+        regionsPerMonth = Integer.parseInt(cmd.getOptionValue(OPT_REGIONS_PER_MONTH, String.valueOf(DEFAULT_REGIONS_PER_MONTH)));
+        medianSize = Double.parseDouble(cmd.getOptionValue(OPT_MEDIAN_SIZE, String.valueOf(DEFAULT_MEDIAN_SIZE)));
+        sigma = Double.parseDouble(cmd.getOptionValue(OPT_SIGMA, String.valueOf(DEFAULT_SIGMA)));
+        hotGrowth = Double.parseDouble(cmd.getOptionValue(OPT_HOT_GROWTH, "0"));
+        seed = Long.parseLong(cmd.getOptionValue(OPT_SEED, String.valueOf(DEFAULT_SEED)));
+        tables = Integer.parseInt(cmd.getOptionValue(OPT_TABLES, "1"));
+
+        if (cmd.hasOption(OPT_SERVERS)) {
+            conf.set(InMemoryCluster.NUM_SERVERS_KEY_PROPERTY, cmd.getOptionValue(OPT_SERVERS));
+        }
+        if (cmd.hasOption(OPT_SPLIT_TIME)) {
+            conf.setLong(InMemoryCluster.SPLIT_DURATION_KEY_PROPERTY, Long.parseLong(cmd.getOptionValue(OPT_SPLIT_TIME)) * 1000L);
+        }
+        if (cmd.hasOption(OPT_MERGE_TIME)) {
+            conf.setLong(InMemoryCluster.MERGE_DURATION_KEY_PROPERTY, Long.parseLong(cmd.getOptionValue(OPT_MERGE_TIME)) * 1000L);
+        }
+    }
+
+    @Override
+    protected int doWork() throws Exception {
+
+        List<TableName> tableNames = new ArrayList<>();
+        StringBuilder names = new StringBuilder();
+        for (int i = 0; i < tables; i++) {
+            TableName tableName = TableName.valueOf(tables > 1 ? sTable + "_" + i : sTable);
+            tableNames.add(tableName);
+            if (names.length() > 0) names.append(',');
+            names.append(tableName.getNameAsString());
+        }
+
+        InMemoryCluster cluster = new InMemoryCluster(conf, 0L);
+        for (int i = 0; i < tables; i++) {
+            createStagedTable(cluster, tableNames.get(i), months, hotMonths, regionsPerMonth, medianSize, sigma,
+                    hotGrowth, seed + i);
+        }
+
+        System.out.println("INITIAL LAYOUT");
+        for (TableName tableName : tableNames) {
+            printLayout(cluster, tableName, conf);
+        }
+
+        List<String> args = new ArrayList<>(Arrays.asList("-" + OPT_TABLENAME, names.toString()));
+        args.addAll(Arrays.asList(toolArgs));
+
+        RegionsTool tool = new RegionsTool(cluster);
+        long startTime = System.currentTimeMillis();
+        int ret = ToolRunner.run(conf, tool, args.toArray(new String[args.size()]));
+        long wallTime = System.currentTimeMillis() - startTime;
+
+        System.out.println("FINAL LAYOUT");
+        for (TableName tableName : tableNames) {
+            printLayout(cluster, tableName, conf);
+        }
+
+        System.out.println("Iterations:" + tool.getIterationsRun()
+                + " Plans executed:" + tool.getPlansExecuted()
+                + " Splits:" + cluster.getCompletedSplits()
+                + " Merges:" + cluster.getCompletedMerges()
+                + " Rejected:" + cluster.getRejectedOperations()
+                + " Pending:" + cluster.getPendingOperations()
+                + " Rewritten (MB):" + Math.round(cluster.getRewrittenMB())
+                + " Suppressed:" + tool.getPlansSuppressed()
+                + " Plannings skipped:" + tool.getPlanningSkipped()
+                + " Simulated time (min):" + cluster.currentTimeMillis() / 60000
+                + " Wall time (ms):" + wallTime);
+        for (String rates : tool.getPlanRates()) {
+            System.out.println(" " + rates);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Adds a staged table to the cluster: regionsPerMonth regions for every month, from the current one backwards.
+     */
+    public static void createStagedTable(InMemoryCluster cluster, TableName tableName, int months, int hotMonths,
+                                         int regionsPerMonth, double medianSize, double sigma, double hotGrowth,
+                                         long seed) {
+
+        Random random = new Random(seed);
+        DateFormat dateFormat = new SimpleDateFormat("yyyyMM");
+        int digits = String.valueOf(regionsPerMonth).length();
+
+        List<byte[]> startKeys = new ArrayList<>();
+        List<Boolean> hot = new ArrayList<>();
+
+        Calendar cal = Calendar.getInstance();
+        cal.add(Calendar.MONTH, -(months - 1));
+        for (int m = 0; m < months; m++) {
+            String prefix = dateFormat.format(cal.getTime());
+            for (int r = 0; r < regionsPerMonth; r++) {
+                startKeys.add(Bytes.toBytes(r == 0 ? prefix : prefix + String.format("%0" + digits + "d", r)));
+                hot.add(m >= months - hotMonths);
+            }
+            cal.add(Calendar.MONTH, 1);
+        }
+        // The first region of a table starts with the empty key
+        startKeys.set(0, new byte[0]);
+
+        for (int i = 0; i < startKeys.size(); i++) {
+            byte[] endKey = i + 1 < startKeys.size() ? startKeys.get(i + 1) : new byte[0];
+            double size = medianSize * Math.exp(sigma * random.nextGaussian());
+            cluster.addRegion(tableName, startKeys.get(i), endKey, size, hot.get(i) ? hotGrowth : 0);
+        }
+    }
+
+    /**
+     * Prints the number of regions and their size, min, avg and max, per stage.
+     */
+    public static void printLayout(ClusterView cluster, TableName tableName, Configuration conf) throws IOException {
+
+        List<HRegionInfo> regions = cluster.getTableRegions(tableName);
+        Map<byte[], RegionLoad> loads = cluster.getRegionLoads(tableName);
+
+        StageByDateBuilder stages = new StageByDateBuilder(tableName, regions, conf);
+        stages.setStageBoundaries();
+
+        printStage("HOT", stages.getHotList(), loads);
+        printStage("WARM", stages.getWarmList(), loads);
+        printStage("COLD", stages.getColdList(), loads);
+    }
+
+    private static void printStage(String stage, List<HRegionInfo> regions, Map<byte[], RegionLoad> loads) {
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        long total = 0;
+        for (HRegionInfo info : regions) {
+            long size = loads.get(info.getRegionName()).getStorefileSizeMB();
+            min = Math.min(min, size);
+            max = Math.max(max, size);
+            total += size;
+        }
+        System.out.println(" " + stage + " Regions:" + regions.size()
+                + " Size (MB) min:" + (regions.isEmpty() ? 0 : min)
+                + " avg:" + (regions.isEmpty() ? 0 : total / regions.size())
+                + " max:" + max);
+    }
+}
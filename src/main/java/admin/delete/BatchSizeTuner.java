@@ -0,0 +1,58 @@
+package admin.delete;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Adjusts the delete row batch size from the observed latency of each batch.
+ *
+ * The batch size doubles while batches complete under half the target latency and halves when they take longer
+ * than the target, always between the configured bounds.
+ */
+public class BatchSizeTuner {
+
+    private static final Log LOG = LogFactory.getLog(BatchSizeTuner.class);
+
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long targetLatencyMs;
+
+    private int batchSize;
+
+    public BatchSizeTuner(int initialBatchSize, int minBatchSize, int maxBatchSize, long targetLatencyMs) {
+        this.minBatchSize = Math.max(1, minBatchSize);
+        this.maxBatchSize = Math.max(this.minBatchSize, maxBatchSize);
+        this.targetLatencyMs = targetLatencyMs;
+        this.batchSize = Math.min(this.maxBatchSize, Math.max(this.minBatchSize, initialBatchSize));
+    }
+
+    public synchronized int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Records the result of a delete call.
+     *
+     * @param rows      rows deleted by the call
+     * @param elapsedMs wall clock time of the call
+     * @param usedBatchSize the batch size used by the call
+     */
+    public synchronized void record(long rows, long elapsedMs, int usedBatchSize) {
+
+        if (rows <= 0) return;
+
+        long batches = (rows + usedBatchSize - 1) / usedBatchSize;
+        long batchLatency = elapsedMs / batches;
+
+        int previous = batchSize;
+        if (batchLatency > targetLatencyMs) {
+            batchSize = Math.max(minBatchSize, batchSize / 2);
+        } else if (batchLatency < targetLatencyMs / 2) {
+            batchSize = (int) Math.min(maxBatchSize, batchSize * 2L);
+        }
+
+        if (previous != batchSize) {
+            LOG.debug("Batch latency " + batchLatency + " ms. Row batch size changed from " + previous + " to " + batchSize);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package admin.delete;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.BufferedMutatorParams;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deletes the rows from the client, for clusters without the BulkDeleteEndpoint coprocessor.
+ *
+ * Each call scans its region returning only the first key of every row (FirstKeyOnlyFilter + KeyOnlyFilter, large
+ * caching, no block cache) and turns the keys into row Deletes sent through a BufferedMutator owned by the calling
+ * worker. The mutator is created on the first region of the worker and reused for all the following ones, until
+ * the engine is closed. The write buffer size bounds the bytes in flight per worker and the mutator is flushed every
+ * row batch, and at the end of every region so its rows are deleted when it is checkpointed.
+ * A call gives up at the first batch past the region timeout, so it never outlives it by more than one batch.
+ */
+public class ClientSideDeleteEngine implements RegionDeleteEngine {
+
+    private static final Log LOG = LogFactory.getLog(ClientSideDeleteEngine.class);
+
+    public static final String SCAN_CACHING_KEY_PROPERTY = "hbase.regiontool.bulkdelete.client.scan.caching";
+    public static final String MAX_INFLIGHT_BYTES_KEY_PROPERTY = "hbase.regiontool.bulkdelete.client.inflight.bytes";
+
+    public static final int DEFAULT_SCAN_CACHING = 5000;
+    public static final long DEFAULT_MAX_INFLIGHT_BYTES = 4 * 1024 * 1024L;
+
+    private final Connection connection;
+    private final TableName tableName;
+    private final int scanCaching;
+    private final long maxInflightBytes;
+    private final long timeoutMs;
+
+    private final ThreadLocal<BufferedMutator> mutators = new ThreadLocal<>();
+    private final List<BufferedMutator> allMutators = new ArrayList<>();
+
+    public ClientSideDeleteEngine(Connection connection, TableName tableName, Configuration conf) {
+        this.connection = connection;
+        this.tableName = tableName;
+        this.scanCaching = conf.getInt(SCAN_CACHING_KEY_PROPERTY, DEFAULT_SCAN_CACHING);
+        this.maxInflightBytes = conf.getLong(MAX_INFLIGHT_BYTES_KEY_PROPERTY, DEFAULT_MAX_INFLIGHT_BYTES);
+        this.timeoutMs = conf.getLong(RegionDeleteRunner.REGION_TIMEOUT_KEY_PROPERTY,
+                RegionDeleteRunner.DEFAULT_REGION_TIMEOUT_MS);
+    }
+
+    @Override
+    public long delete(HRegionInfo region, byte[] startRow, byte[] stopRow, int rowBatchSize, Long timestamp)
+            throws IOException {
+
+        Scan scan = new Scan(startRow, stopRow);
+        scan.setFilter(new FilterList(FilterList.Operator.MUST_PASS_ALL, new FirstKeyOnlyFilter(), new KeyOnlyFilter()));
+        scan.setCaching(scanCaching);
+        scan.setCacheBlocks(false);
+
+        long rows = 0L;
+        int batch = 0;
+        long deadline = System.currentTimeMillis() + timeoutMs;
+
+        BufferedMutator mutator = getMutator();
+        Table table = connection.getTable(tableName);
+        ResultScanner scanner = table.getScanner(scan);
+        boolean flushed = false;
+        try {
+            for (Result result : scanner) {
+                Delete delete = timestamp != null ? new Delete(result.getRow(), timestamp) : new Delete(result.getRow());
+                mutator.mutate(delete);
+                rows++;
+                if (++batch >= rowBatchSize) {
+                    mutator.flush();
+                    batch = 0;
+                    if (System.currentTimeMillis() > deadline) {
+                        throw new IOException("Timeout after " + timeoutMs + " ms. deleting region "
+                                + region.getRegionNameAsString() + ", " + rows + " rows deleted");
+                    }
+                }
+            }
+            mutator.flush();
+            flushed = true;
+        } finally {
+            scanner.close();
+            table.close();
+            // Failed mutations are not carried over to the next region
+            if (!flushed) discardMutator(mutator);
+        }
+
+        LOG.debug("Region " + region.getEncodedName() + " rows deleted: " + rows);
+        return rows;
+    }
+
+    /**
+     * Returns the mutator of the calling worker, creating it on its first region.
+     */
+    private BufferedMutator getMutator() throws IOException {
+        BufferedMutator mutator = mutators.get();
+        if (mutator == null) {
+            BufferedMutatorParams params = new BufferedMutatorParams(tableName).writeBufferSize(maxInflightBytes);
+            mutator = connection.getBufferedMutator(params);
+            mutators.set(mutator);
+            synchronized (allMutators) {
+                allMutators.add(mutator);
+            }
+        }
+        return mutator;
+    }
+
+    private void discardMutator(BufferedMutator mutator) {
+        mutators.remove();
+        synchronized (allMutators) {
+            allMutators.remove(mutator);
+        }
+        try {
+            mutator.close();
+        } catch (IOException e) {
+            LOG.warn("Cannot close the mutator of a failed region: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes the mutators of all the workers.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (allMutators) {
+            for (BufferedMutator mutator : allMutators) {
+                mutator.close();
+            }
+            allMutators.clear();
+        }
+    }
+
+    public String toString() {
+        return "ClientSideDeleteEngine:" + tableName + ":scanCaching:" + scanCaching + ":maxInflightBytes:" + maxInflightBytes;
+    }
+}
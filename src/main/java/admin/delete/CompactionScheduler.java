@@ -0,0 +1,223 @@
+package admin.delete;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.ClusterStatus;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.RegionLoad;
+import org.apache.hadoop.hbase.ServerLoad;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.protobuf.generated.AdminProtos.GetRegionInfoResponse.CompactionState;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Major compacts a set of regions, at most N at the same time per RegionServer and only inside the off-peak window.
+ *
+ * The off-peak window is the one of the RegionServers (hbase.offpeak.start.hour / hbase.offpeak.end.hour). When it
+ * is not set, compactions may start at any time. A region compaction is complete when its last major compaction
+ * timestamp moves forward and no compaction is running on it.
+ */
+public class CompactionScheduler {
+
+    private static final Log LOG = LogFactory.getLog(CompactionScheduler.class);
+
+    public static final String PARALLELISM_PER_SERVER_KEY_PROPERTY = "hbase.regiontool.compaction.parallelism.per.server";
+    public static final String REGION_TIMEOUT_KEY_PROPERTY = "hbase.regiontool.compaction.region.timeout.ms";
+    public static final String POLL_INTERVAL_KEY_PROPERTY = "hbase.regiontool.compaction.poll.interval.ms";
+
+    public static final String OFFPEAK_START_HOUR_KEY_PROPERTY = "hbase.offpeak.start.hour";
+    public static final String OFFPEAK_END_HOUR_KEY_PROPERTY = "hbase.offpeak.end.hour";
+
+    public static final int DEFAULT_PARALLELISM_PER_SERVER = 1;
+    public static final long DEFAULT_REGION_TIMEOUT_MS = 6 * 60 * 60 * 1000L;
+    public static final long DEFAULT_POLL_INTERVAL_MS = 10 * 1000L;
+
+    private final Admin admin;
+    private final int parallelismPerServer;
+    private final long regionTimeoutMs;
+    private final long pollIntervalMs;
+    private final int offPeakStartHour;
+    private final int offPeakEndHour;
+
+    public CompactionScheduler(Configuration conf, Admin admin) {
+        this.admin = admin;
+        this.parallelismPerServer = Math.max(1, conf.getInt(PARALLELISM_PER_SERVER_KEY_PROPERTY, DEFAULT_PARALLELISM_PER_SERVER));
+        this.regionTimeoutMs = conf.getLong(REGION_TIMEOUT_KEY_PROPERTY, DEFAULT_REGION_TIMEOUT_MS);
+        this.pollIntervalMs = conf.getLong(POLL_INTERVAL_KEY_PROPERTY, DEFAULT_POLL_INTERVAL_MS);
+        this.offPeakStartHour = conf.getInt(OFFPEAK_START_HOUR_KEY_PROPERTY, -1);
+        this.offPeakEndHour = conf.getInt(OFFPEAK_END_HOUR_KEY_PROPERTY, -1);
+    }
+
+    /**
+     * Major compacts the regions of the locator included in the given set.
+     *
+     * @return the regions that could not be compacted before the timeout
+     */
+    public List<HRegionInfo> compact(RegionLocator locator, List<HRegionInfo> regions)
+            throws IOException, InterruptedException {
+        return compact(locator, regions, null);
+    }
+
+    /**
+     * Major compacts the regions of the locator included in the given set and not completed in the checkpoint, and
+     * marks every region compacted in it.
+     *
+     * @param checkpoint regions already compacted, null for none
+     * @return the regions that could not be compacted before the timeout
+     */
+    public List<HRegionInfo> compact(RegionLocator locator, List<HRegionInfo> regions,
+                                     final DeleteCheckpoint checkpoint) throws IOException, InterruptedException {
+
+        Set<byte[]> names = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+        for (HRegionInfo info : regions) {
+            if (checkpoint != null && checkpoint.isCompleted(info.getEncodedName())) {
+                System.out.println("Region " + info.getRegionNameAsString() + " already compacted");
+                continue;
+            }
+            names.add(info.getRegionName());
+        }
+
+        Map<ServerName, Queue<HRegionInfo>> tasksPerServer = new HashMap<>();
+        for (HRegionLocation location : locator.getAllRegionLocations()) {
+            if (!names.contains(location.getRegionInfo().getRegionName())) continue;
+            Queue<HRegionInfo> queue = tasksPerServer.get(location.getServerName());
+            if (queue == null) {
+                queue = new ConcurrentLinkedQueue<>();
+                tasksPerServer.put(location.getServerName(), queue);
+            }
+            queue.add(location.getRegionInfo());
+        }
+
+        final List<HRegionInfo> failed = new ArrayList<>();
+        if (tasksPerServer.isEmpty()) return failed;
+
+        ExecutorService pool = Executors.newFixedThreadPool(tasksPerServer.size() * parallelismPerServer);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (final Queue<HRegionInfo> queue : tasksPerServer.values()) {
+            for (int i = 0; i < parallelismPerServer; i++) {
+                futures.add(pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        HRegionInfo region;
+                        while ((region = queue.poll()) != null) {
+                            try {
+                                if (!compactRegion(region)) {
+                                    synchronized (failed) {
+                                        failed.add(region);
+                                    }
+                                } else if (checkpoint != null) {
+                                    checkpoint.markCompleted(region.getEncodedName(), 0L);
+                                }
+                            } catch (IOException e) {
+                                LOG.error("Cannot compact region " + region.getRegionNameAsString(), e);
+                                synchronized (failed) {
+                                    failed.add(region);
+                                }
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                return;
+                            }
+                        }
+                    }
+                }));
+            }
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    LOG.error("Compaction worker failed", e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return failed;
+    }
+
+    private boolean compactRegion(HRegionInfo region) throws IOException, InterruptedException {
+
+        waitForOffPeak();
+
+        long lastMajor = admin.getLastMajorCompactionTimestampForRegion(region.getRegionName());
+
+        System.out.println("Major compacting region " + region.getRegionNameAsString());
+        admin.majorCompactRegion(region.getRegionName());
+
+        long deadline = System.currentTimeMillis() + regionTimeoutMs;
+        while (System.currentTimeMillis() < deadline) {
+
+            Thread.sleep(pollIntervalMs);
+
+            if (admin.getLastMajorCompactionTimestampForRegion(region.getRegionName()) > lastMajor
+                    && admin.getCompactionStateForRegion(region.getRegionName()) == CompactionState.NONE) {
+                LOG.debug("Region " + region.getEncodedName() + " compacted");
+                return true;
+            }
+        }
+
+        LOG.warn("Timeout waiting for the major compaction of region " + region.getRegionNameAsString());
+        return false;
+    }
+
+    boolean isOffPeak(int hour) {
+        if (offPeakStartHour < 0 || offPeakEndHour < 0 || offPeakStartHour == offPeakEndHour) return true;
+        if (offPeakStartHour < offPeakEndHour) return hour >= offPeakStartHour && hour < offPeakEndHour;
+        // The window goes over midnight
+        return hour >= offPeakStartHour || hour < offPeakEndHour;
+    }
+
+    private void waitForOffPeak() throws InterruptedException {
+        while (!isOffPeak(Calendar.getInstance().get(Calendar.HOUR_OF_DAY))) {
+            LOG.debug("Waiting for the off-peak window [" + offPeakStartHour + "," + offPeakEndHour + ")");
+            Thread.sleep(60 * 1000L);
+        }
+    }
+
+    /**
+     * Returns the store file size in MB of the given regions, as reported in the RegionLoads of the cluster status.
+     */
+    public static Map<byte[], Long> getStorefileSizes(Admin admin, List<HRegionInfo> regions) throws IOException {
+
+        Map<byte[], Long> sizes = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+        for (HRegionInfo info : regions) {
+            sizes.put(info.getRegionName(), 0L);
+        }
+
+        ClusterStatus clusterStatus = admin.getClusterStatus();
+        for (ServerName serverName : clusterStatus.getServers()) {
+            ServerLoad load = clusterStatus.getLoad(serverName);
+            if (load == null) continue;
+            for (Map.Entry<byte[], RegionLoad> entry : load.getRegionsLoad().entrySet()) {
+                if (sizes.containsKey(entry.getKey())) {
+                    sizes.put(entry.getKey(), (long) entry.getValue().getStorefileSizeMB());
+                }
+            }
+        }
+        return sizes;
+    }
+}
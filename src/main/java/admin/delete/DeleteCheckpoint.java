@@ -0,0 +1,85 @@
+package admin.delete;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Local file with the regions already deleted, one line per region: encoded region name and rows deleted.
+ *
+ * Lines are appended and flushed as soon as each region completes, so an interrupted run can skip them on restart.
+ */
+public class DeleteCheckpoint {
+
+    private static final Log LOG = LogFactory.getLog(DeleteCheckpoint.class);
+
+    private final File file;
+    private final Map<String, Long> completed = new HashMap<>();
+    private Writer writer;
+
+    public DeleteCheckpoint(File file) throws IOException {
+        this.file = file;
+        load();
+        this.writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+    }
+
+    private void load() throws IOException {
+
+        if (!file.exists()) return;
+
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                // A partial last line is the trace of a crash in the middle of a write
+                if (fields.length != 2) continue;
+                try {
+                    completed.put(fields[0], Long.parseLong(fields[1]));
+                } catch (NumberFormatException e) {
+                    LOG.warn("Ignoring checkpoint line: " + line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        LOG.info("Checkpoint " + file + " has " + completed.size() + " regions already deleted");
+    }
+
+    public synchronized boolean isCompleted(String encodedRegionName) {
+        return completed.containsKey(encodedRegionName);
+    }
+
+    public synchronized long getCompletedRows() {
+        long rows = 0L;
+        for (Long r : completed.values()) {
+            rows += r;
+        }
+        return rows;
+    }
+
+    public synchronized void markCompleted(String encodedRegionName, long rows) throws IOException {
+        completed.put(encodedRegionName, rows);
+        writer.write(encodedRegionName + "\t" + rows + "\n");
+        writer.flush();
+    }
+
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    public File getFile() {
+        return file;
+    }
+}
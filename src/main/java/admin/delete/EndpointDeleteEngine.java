@@ -0,0 +1,89 @@
+package admin.delete;
+
+import com.google.protobuf.ServiceException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.coprocessor.example.generated.BulkDeleteProtos;
+import org.apache.hadoop.hbase.ipc.CoprocessorRpcChannel;
+import org.apache.hadoop.hbase.protobuf.ProtobufUtil;
+
+import java.io.IOException;
+
+/**
+ * Deletes the rows with the BulkDeleteEndpoint coprocessor of the HBase examples.
+ *
+ * Each call is bound to a single region: the RPC channel is opened on the region start row, so a slow or failed
+ * region does not affect the rest of the delete.
+ *
+ * The calls go through a connection of their own, with the region timeout as RPC and operation timeout and no client
+ * retries, so a call is bounded by the RPC itself and the RegionDeleteRunner does the retries.
+ */
+public class EndpointDeleteEngine implements RegionDeleteEngine {
+
+    private static final Log LOG = LogFactory.getLog(EndpointDeleteEngine.class);
+
+    private final Connection connection;
+    private final TableName tableName;
+
+    public EndpointDeleteEngine(TableName tableName, Configuration conf) throws IOException {
+        long timeoutMs = conf.getLong(RegionDeleteRunner.REGION_TIMEOUT_KEY_PROPERTY,
+                RegionDeleteRunner.DEFAULT_REGION_TIMEOUT_MS);
+        Configuration rpcConf = new Configuration(conf);
+        rpcConf.setLong(HConstants.HBASE_RPC_TIMEOUT_KEY, timeoutMs);
+        rpcConf.setLong(HConstants.HBASE_CLIENT_OPERATION_TIMEOUT, timeoutMs);
+        rpcConf.setInt(HConstants.HBASE_CLIENT_RETRIES_NUMBER, 1);
+
+        this.connection = ConnectionFactory.createConnection(rpcConf);
+        this.tableName = tableName;
+    }
+
+    @Override
+    public long delete(HRegionInfo region, byte[] startRow, byte[] stopRow, int rowBatchSize, Long timestamp)
+            throws IOException {
+
+        Scan scan = new Scan(startRow, stopRow);
+
+        BulkDeleteProtos.BulkDeleteRequest.Builder builder = BulkDeleteProtos.BulkDeleteRequest.newBuilder();
+        builder.setScan(ProtobufUtil.toScan(scan));
+        builder.setDeleteType(BulkDeleteProtos.BulkDeleteRequest.DeleteType.ROW);
+        builder.setRowBatchSize(rowBatchSize);
+        if (timestamp != null) {
+            builder.setTimestamp(timestamp);
+        }
+
+        // Table instances are not thread safe, but cheap to get from a shared connection
+        Table table = connection.getTable(tableName);
+        try {
+            CoprocessorRpcChannel channel = table.coprocessorService(region.getStartKey());
+            BulkDeleteProtos.BulkDeleteService.BlockingInterface service =
+                    BulkDeleteProtos.BulkDeleteService.newBlockingStub(channel);
+
+            BulkDeleteProtos.BulkDeleteResponse response = service.delete(null, builder.build());
+
+            LOG.debug("Region " + region.getEncodedName() + " rows deleted: " + response.getRowsDeleted());
+            return response.getRowsDeleted();
+
+        } catch (ServiceException e) {
+            throw ProtobufUtil.getRemoteException(e);
+        } finally {
+            table.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        connection.close();
+    }
+
+    public String toString() {
+        return "EndpointDeleteEngine:" + tableName;
+    }
+}
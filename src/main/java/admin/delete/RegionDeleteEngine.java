@@ -0,0 +1,32 @@
+package admin.delete;
+
+import org.apache.hadoop.hbase.HRegionInfo;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Deletes the rows of a key range that belongs to a single region.
+ *
+ * Implementations must be thread safe, the RegionDeleteRunner calls them from several workers at the same time.
+ * A call must not outlive the region timeout of the runner (RegionDeleteRunner.REGION_TIMEOUT_KEY_PROPERTY), so a
+ * region is never deleted twice at the same time: the runner only retries a region once its previous call returned.
+ */
+public interface RegionDeleteEngine extends Closeable {
+
+    /**
+     * Deletes all the rows in [startRow, stopRow) of the given region.
+     *
+     * @param region       the region that holds the whole key range
+     * @param startRow     first row to delete (inclusive)
+     * @param stopRow      last row to delete (exclusive). An empty array means the end of the region.
+     * @param rowBatchSize number of rows deleted per server side batch
+     * @param timestamp    delete only versions older or equal to this timestamp. Null to delete all the versions.
+     * @return the number of rows deleted
+     * @throws IOException
+     */
+    long delete(HRegionInfo region, byte[] startRow, byte[] stopRow, int rowBatchSize, Long timestamp)
+            throws IOException;
+
+    String toString();
+}
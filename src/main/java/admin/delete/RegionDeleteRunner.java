@@ -0,0 +1,310 @@
+package admin.delete;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.coprocessor.CoprocessorHost;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a range delete as one task per region.
+ *
+ * <ul>
+ * <li> Tasks are grouped by RegionServer and each server runs at most a bounded number of them at the same time.
+ * <li> Every task has its own timeout and number of retries. A failed region does not stop the others. The timeout
+ * bounds the engine call itself (RPC timeout or deadline), as cancelling the client thread would leave the delete
+ * running on the server. A region that timed out is not retried in the same run, it may still be deleted by the
+ * server; the next run resumes it.
+ * <li> The row batch size is tuned from the observed latency (see BatchSizeTuner).
+ * <li> Completed regions are written to a DeleteCheckpoint, so a new run only deletes the outstanding regions.
+ * <li> The number of rows deleted and the rows/s rate are reported periodically.
+ * </ul>
+ */
+public class RegionDeleteRunner {
+
+    private static final Log LOG = LogFactory.getLog(RegionDeleteRunner.class);
+
+    public static final String PARALLELISM_PER_SERVER_KEY_PROPERTY = "hbase.regiontool.bulkdelete.parallelism.per.server";
+    public static final String REGION_TIMEOUT_KEY_PROPERTY = "hbase.regiontool.bulkdelete.region.timeout.ms";
+    public static final String RETRIES_KEY_PROPERTY = "hbase.regiontool.bulkdelete.retries";
+    public static final String INITIAL_BATCH_SIZE_KEY_PROPERTY = "hbase.regiontool.bulkdelete.batch.size";
+    public static final String MAX_BATCH_SIZE_KEY_PROPERTY = "hbase.regiontool.bulkdelete.batch.size.max";
+    public static final String TARGET_BATCH_LATENCY_KEY_PROPERTY = "hbase.regiontool.bulkdelete.batch.latency.ms";
+    public static final String PROGRESS_INTERVAL_KEY_PROPERTY = "hbase.regiontool.bulkdelete.progress.interval.sec";
+
+    /**
+     * Delete engine: endpoint, client or auto.
+     */
+    public static final String ENGINE_KEY_PROPERTY = "hbase.regiontool.bulkdelete.engine";
+
+    public static final String ENGINE_ENDPOINT = "endpoint";
+    public static final String ENGINE_CLIENT = "client";
+    public static final String ENGINE_AUTO = "auto";
+
+    static final String BULK_DELETE_ENDPOINT_CLASS = "org.apache.hadoop.hbase.coprocessor.example.BulkDeleteEndpoint";
+
+    public static final int DEFAULT_PARALLELISM_PER_SERVER = 2;
+    public static final long DEFAULT_REGION_TIMEOUT_MS = 30 * 60 * 1000L;
+    public static final int DEFAULT_RETRIES = 3;
+    public static final int DEFAULT_INITIAL_BATCH_SIZE = 10;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 10000;
+    public static final long DEFAULT_TARGET_BATCH_LATENCY_MS = 200L;
+    public static final int DEFAULT_PROGRESS_INTERVAL_SEC = 10;
+
+    private final RegionDeleteEngine engine;
+    private final DeleteCheckpoint checkpoint;
+    private final BatchSizeTuner tuner;
+
+    private final int parallelismPerServer;
+    private final long regionTimeoutMs;
+    private final int retries;
+    private final int progressIntervalSec;
+
+    private final AtomicLong rowsDeleted = new AtomicLong();
+    private final AtomicInteger regionsCompleted = new AtomicInteger();
+    private final AtomicInteger regionsFailed = new AtomicInteger();
+    private final List<String> failedRegions = new ArrayList<>();
+
+    public RegionDeleteRunner(Configuration conf, RegionDeleteEngine engine, DeleteCheckpoint checkpoint) {
+
+        this.engine = engine;
+        this.checkpoint = checkpoint;
+
+        this.parallelismPerServer = Math.max(1, conf.getInt(PARALLELISM_PER_SERVER_KEY_PROPERTY, DEFAULT_PARALLELISM_PER_SERVER));
+        this.regionTimeoutMs = conf.getLong(REGION_TIMEOUT_KEY_PROPERTY, DEFAULT_REGION_TIMEOUT_MS);
+        this.retries = conf.getInt(RETRIES_KEY_PROPERTY, DEFAULT_RETRIES);
+        this.progressIntervalSec = conf.getInt(PROGRESS_INTERVAL_KEY_PROPERTY, DEFAULT_PROGRESS_INTERVAL_SEC);
+
+        this.tuner = new BatchSizeTuner(
+                conf.getInt(INITIAL_BATCH_SIZE_KEY_PROPERTY, DEFAULT_INITIAL_BATCH_SIZE),
+                1,
+                conf.getInt(MAX_BATCH_SIZE_KEY_PROPERTY, DEFAULT_MAX_BATCH_SIZE),
+                conf.getLong(TARGET_BATCH_LATENCY_KEY_PROPERTY, DEFAULT_TARGET_BATCH_LATENCY_MS));
+    }
+
+    /**
+     * Creates the delete engine set in ENGINE_KEY_PROPERTY. With "auto" the BulkDeleteEndpoint is used when it is
+     * loaded for the table (table descriptor or region coprocessors of the configuration) and the client side engine
+     * otherwise.
+     */
+    public static RegionDeleteEngine createEngine(Configuration conf, Connection connection, TableName tableName)
+            throws IOException {
+
+        String type = conf.get(ENGINE_KEY_PROPERTY, ENGINE_AUTO);
+
+        boolean useEndpoint;
+        if (ENGINE_ENDPOINT.equalsIgnoreCase(type)) {
+            useEndpoint = true;
+        } else if (ENGINE_CLIENT.equalsIgnoreCase(type)) {
+            useEndpoint = false;
+        } else {
+            Admin admin = connection.getAdmin();
+            HTableDescriptor descriptor = admin.getTableDescriptor(tableName);
+            admin.close();
+            String regionCoprocessors = conf.get(CoprocessorHost.REGION_COPROCESSOR_CONF_KEY, "");
+            useEndpoint = descriptor.hasCoprocessor(BULK_DELETE_ENDPOINT_CLASS)
+                    || regionCoprocessors.contains(BULK_DELETE_ENDPOINT_CLASS);
+        }
+
+        RegionDeleteEngine engine = useEndpoint
+                ? new EndpointDeleteEngine(tableName, conf)
+                : new ClientSideDeleteEngine(connection, tableName, conf);
+
+        LOG.info("Delete engine: " + engine);
+        return engine;
+    }
+
+    /**
+     * Deletes all the rows in [startRow, stopRow).
+     *
+     * @param locator   locator of the table
+     * @param startRow  first row to delete
+     * @param stopRow   stop row (exclusive)
+     * @param timestamp delete only versions older or equal to this timestamp. Null to delete all the versions.
+     * @return the number of rows deleted in this run
+     * @throws IOException if any region could not be deleted after all the retries
+     */
+    public long run(RegionLocator locator, final byte[] startRow, final byte[] stopRow, final Long timestamp)
+            throws IOException, InterruptedException {
+
+        Map<ServerName, Queue<HRegionInfo>> tasksPerServer = new HashMap<>();
+        int pending = 0;
+
+        for (HRegionLocation location : locator.getAllRegionLocations()) {
+
+            HRegionInfo region = location.getRegionInfo();
+
+            if (!overlaps(region, startRow, stopRow)) continue;
+
+            if (checkpoint != null && checkpoint.isCompleted(region.getEncodedName())) {
+                LOG.debug("Skipping region already deleted: " + region.getRegionNameAsString());
+                continue;
+            }
+
+            Queue<HRegionInfo> queue = tasksPerServer.get(location.getServerName());
+            if (queue == null) {
+                queue = new ConcurrentLinkedQueue<>();
+                tasksPerServer.put(location.getServerName(), queue);
+            }
+            queue.add(region);
+            pending++;
+        }
+
+        System.out.println("Regions to delete: " + pending + " in " + tasksPerServer.size() + " servers"
+                + (checkpoint != null ? " (" + checkpoint.getFile() + ")" : ""));
+
+        if (pending == 0) return 0L;
+
+        final int totalRegions = pending;
+        final long startTime = System.currentTimeMillis();
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                printProgress(startTime, totalRegions);
+            }
+        }, progressIntervalSec, progressIntervalSec, TimeUnit.SECONDS);
+
+        int workers = tasksPerServer.size() * parallelismPerServer;
+        ExecutorService workerPool = Executors.newFixedThreadPool(workers);
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (final Queue<HRegionInfo> queue : tasksPerServer.values()) {
+            for (int i = 0; i < parallelismPerServer; i++) {
+                futures.add(workerPool.submit(new Worker(queue, startRow, stopRow, timestamp)));
+            }
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    LOG.error("Delete worker failed", e.getCause());
+                }
+            }
+        } finally {
+            workerPool.shutdownNow();
+            reporter.shutdownNow();
+        }
+
+        printProgress(startTime, totalRegions);
+
+        if (regionsFailed.get() > 0) {
+            throw new IOException(regionsFailed.get() + " regions failed. Run again to resume: " + failedRegions);
+        }
+
+        return rowsDeleted.get();
+    }
+
+    private void printProgress(long startTime, int totalRegions) {
+        long elapsed = Math.max(1L, System.currentTimeMillis() - startTime);
+        long rows = rowsDeleted.get();
+        System.out.println("Deleted " + rows + " rows. Regions completed: " + regionsCompleted.get() + "/" + totalRegions
+                + ", failed: " + regionsFailed.get()
+                + ". Rate: " + (rows * 1000L / elapsed) + " rows/s. Row batch size: " + tuner.getBatchSize());
+    }
+
+    private long deleteRegion(HRegionInfo region, byte[] startRow, byte[] stopRow, Long timestamp)
+            throws IOException {
+
+        byte[] regionStart = Bytes.compareTo(startRow, region.getStartKey()) > 0 ? startRow : region.getStartKey();
+        byte[] regionStop = clipStop(region.getEndKey(), stopRow);
+        int batchSize = tuner.getBatchSize();
+
+        long begin = System.currentTimeMillis();
+        long rows = engine.delete(region, regionStart, regionStop, batchSize, timestamp);
+        tuner.record(rows, System.currentTimeMillis() - begin, batchSize);
+        return rows;
+    }
+
+    /**
+     * Returns the smallest of two stop rows, being an empty array the end of the table.
+     */
+    static byte[] clipStop(byte[] regionEnd, byte[] stopRow) {
+        if (regionEnd.length == 0) return stopRow;
+        if (stopRow.length == 0) return regionEnd;
+        return Bytes.compareTo(regionEnd, stopRow) < 0 ? regionEnd : stopRow;
+    }
+
+    static boolean overlaps(HRegionInfo region, byte[] startRow, byte[] stopRow) {
+        boolean startsBeforeStop = stopRow.length == 0 || Bytes.compareTo(region.getStartKey(), stopRow) < 0;
+        boolean endsAfterStart = region.getEndKey().length == 0 || Bytes.compareTo(region.getEndKey(), startRow) > 0;
+        return startsBeforeStop && endsAfterStart;
+    }
+
+    private class Worker implements Runnable {
+
+        private final Queue<HRegionInfo> queue;
+        private final byte[] startRow;
+        private final byte[] stopRow;
+        private final Long timestamp;
+
+        Worker(Queue<HRegionInfo> queue, byte[] startRow, byte[] stopRow, Long timestamp) {
+            this.queue = queue;
+            this.startRow = startRow;
+            this.stopRow = stopRow;
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        public void run() {
+
+            HRegionInfo region;
+            while ((region = queue.poll()) != null && !Thread.currentThread().isInterrupted()) {
+
+                boolean done = false;
+                for (int attempt = 0; attempt <= retries && !done; attempt++) {
+                    long begin = System.currentTimeMillis();
+                    try {
+                        long rows = deleteRegion(region, startRow, stopRow, timestamp);
+                        rowsDeleted.addAndGet(rows);
+                        regionsCompleted.incrementAndGet();
+                        if (checkpoint != null) checkpoint.markCompleted(region.getEncodedName(), rows);
+                        done = true;
+                    } catch (IOException e) {
+                        LOG.warn("Attempt " + (attempt + 1) + " failed deleting region "
+                                + region.getRegionNameAsString() + ": " + e.getMessage());
+                        if (System.currentTimeMillis() - begin >= regionTimeoutMs) {
+                            // The server may still be deleting it, leave it to the next run
+                            LOG.warn("Region " + region.getRegionNameAsString() + " timed out, not retried");
+                            break;
+                        }
+                    }
+                }
+
+                if (!done) {
+                    regionsFailed.incrementAndGet();
+                    synchronized (failedRegions) {
+                        failedRegions.add(region.getEncodedName());
+                    }
+                }
+            }
+        }
+    }
+}
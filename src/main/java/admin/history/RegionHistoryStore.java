@@ -0,0 +1,689 @@
+package admin.history;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.RegionLoad;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Append-only history of the loads of the regions in a local directory, to see how they grow and how busy they are
+ * over time.
+ *
+ * Samples are fixed size records, big endian: time, region id, store file size, memstore size, store files, read
+ * and write requests. Region ids are the positions of the encoded names in the dictionary. Files:
+ * <pre>
+ *   regions.dict                    encoded names, appended as new regions are seen
+ *   live-&lt;start&gt;.dat/.idx          samples in time order, one batch per append, sorted by region id. The index
+ *                                   has the time, first record and size of every batch
+ *   compact-&lt;from&gt;-&lt;to&gt;.dat/.idx   samples of a live segment sorted by region and time, the last one of every
+ *                                   resolution period. The index has the first record and size of every region
+ * </pre>
+ * The live segment is rolled when it covers the segment duration (a day by default) and then compacted to one
+ * sample per region and resolution period (an hour). Compacted segments older than the retention are deleted.
+ *
+ * Segments are read through memory mapped buffers. The samples of a region are found with binary searches on the
+ * indexes and the samples of all the regions at a given time are a single batch, so queries over months of samples
+ * of 100k regions only read what they return.
+ *
+ * Data is written before the indexes, and what an index does not cover is dropped when the store is opened, so an
+ * interrupted append or compaction leaves the store consistent.
+ */
+public class RegionHistoryStore implements Closeable {
+
+    private static final Log LOG = LogFactory.getLog(RegionHistoryStore.class);
+
+    public static final String HISTORY_DIR_KEY_PROPERTY = "hbase.regiontool.history.dir";
+    public static final String HISTORY_SEGMENT_DURATION_KEY_PROPERTY = "hbase.regiontool.history.segment.duration.ms";
+    public static final String HISTORY_RESOLUTION_KEY_PROPERTY = "hbase.regiontool.history.resolution.ms";
+    public static final String HISTORY_RETENTION_KEY_PROPERTY = "hbase.regiontool.history.retention.ms";
+
+    public static final long DEFAULT_SEGMENT_DURATION_MS = 24 * 3600 * 1000L;
+    public static final long DEFAULT_RESOLUTION_MS = 3600 * 1000L;
+    public static final long DEFAULT_RETENTION_MS = 400 * 24 * 3600 * 1000L;
+
+    static final int RECORD_SIZE = 40;
+    private static final int LIVE_INDEX_ENTRY_SIZE = 16;
+    private static final int COMPACTED_INDEX_ENTRY_SIZE = 12;
+
+    // The biggest segment that maps in a single buffer
+    private static final int MAX_SEGMENT_RECORDS = Integer.MAX_VALUE / RECORD_SIZE;
+
+    private static final String DICTIONARY = "regions.dict";
+    private static final String LIVE = "live-";
+    private static final String COMPACTED = "compact-";
+    private static final String DATA = ".dat";
+    private static final String INDEX = ".idx";
+    private static final String TMP = ".tmp";
+
+    private final File dir;
+    private final long segmentDuration;
+    private final long resolution;
+    private final long retention;
+
+    private final List<String> regionNames = new ArrayList<>();
+    private final Map<String, Integer> regionIds = new HashMap<>();
+    private DataOutputStream dictionaryOut;
+
+    // Oldest first. Compacted segments are older than the live ones, and only the last live segment is appended
+    private final List<CompactedSegment> compactedSegments = new ArrayList<>();
+    private final List<LiveSegment> liveSegments = new ArrayList<>();
+
+    private RegionHistoryStore(File dir, Configuration conf) {
+        this.dir = dir;
+        this.segmentDuration = conf.getLong(HISTORY_SEGMENT_DURATION_KEY_PROPERTY, DEFAULT_SEGMENT_DURATION_MS);
+        this.resolution = Math.max(1, conf.getLong(HISTORY_RESOLUTION_KEY_PROPERTY, DEFAULT_RESOLUTION_MS));
+        this.retention = conf.getLong(HISTORY_RETENTION_KEY_PROPERTY, DEFAULT_RETENTION_MS);
+    }
+
+    /**
+     * Opens the store of a directory, creating it if needed.
+     */
+    public static RegionHistoryStore open(File dir, Configuration conf) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create the history directory " + dir);
+        }
+        RegionHistoryStore store = new RegionHistoryStore(dir, conf);
+        store.load();
+        return store;
+    }
+
+    private void load() throws IOException {
+
+        loadDictionary();
+
+        List<Long> liveStarts = new ArrayList<>();
+        File[] files = dir.listFiles();
+        for (File file : files != null ? files : new File[0]) {
+            String name = file.getName();
+            if (name.endsWith(TMP)) {
+                // Left by an interrupted compaction
+                if (!file.delete()) LOG.warn("Cannot delete " + file);
+            } else if (name.startsWith(COMPACTED) && name.endsWith(INDEX)) {
+                String[] range = name.substring(COMPACTED.length(), name.length() - INDEX.length()).split("-");
+                compactedSegments.add(new CompactedSegment(Long.parseLong(range[0]), Long.parseLong(range[1])));
+            } else if (name.startsWith(LIVE) && name.endsWith(DATA)) {
+                liveStarts.add(Long.parseLong(name.substring(LIVE.length(), name.length() - DATA.length())));
+            }
+        }
+
+        Collections.sort(compactedSegments, new Comparator<CompactedSegment>() {
+            @Override
+            public int compare(CompactedSegment s1, CompactedSegment s2) {
+                return Long.compare(s1.from, s2.from);
+            }
+        });
+        long compactedTo = compactedSegments.isEmpty()
+                ? Long.MIN_VALUE : compactedSegments.get(compactedSegments.size() - 1).to;
+
+        Collections.sort(liveStarts);
+        for (long start : liveStarts) {
+            LiveSegment segment = new LiveSegment(start);
+            if (start <= compactedTo) {
+                // Compacted, but the compaction was interrupted before deleting it
+                segment.delete();
+            } else {
+                segment.load();
+                liveSegments.add(segment);
+            }
+        }
+    }
+
+    private void loadDictionary() throws IOException {
+
+        File file = new File(dir, DICTIONARY);
+        long validLength = 0;
+        if (file.exists()) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+            try {
+                while (true) {
+                    int length = in.readUnsignedShort();
+                    byte[] name = new byte[length];
+                    in.readFully(name);
+                    addRegionName(new String(name, StandardCharsets.UTF_8));
+                    validLength += 2 + length;
+                }
+            } catch (EOFException e) {
+                // End of the dictionary, or a name partially written
+            } finally {
+                in.close();
+            }
+            truncate(file, validLength);
+        }
+        dictionaryOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+    }
+
+    private int addRegionName(String name) {
+        int id = regionNames.size();
+        regionNames.add(name);
+        regionIds.put(name, id);
+        return id;
+    }
+
+    private int regionId(String name) throws IOException {
+        Integer id = regionIds.get(name);
+        if (id != null) return id;
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        dictionaryOut.writeShort(bytes.length);
+        dictionaryOut.write(bytes);
+        return addRegionName(name);
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        if (file.length() <= length) return;
+        LOG.warn("Truncating " + file + " from " + file.length() + " to " + length + " bytes");
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static MappedByteBuffer map(File file, long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Appends the samples of the given loads, keyed by region name, then rolls and compacts the live segment when
+     * due. Samples older than the last ones appended are skipped.
+     */
+    public synchronized void append(long time, Map<byte[], RegionLoad> regionLoads) throws IOException {
+
+        long lastTime = getLastTime();
+        if (time <= lastTime) {
+            LOG.warn("Skipping the samples at " + time + ", not after the last ones at " + lastTime);
+            return;
+        }
+        if (regionLoads.isEmpty()) return;
+
+        // Batches are sorted by region id, for the binary searches
+        TreeMap<Integer, RegionLoad> batch = new TreeMap<>();
+        for (Map.Entry<byte[], RegionLoad> entry : regionLoads.entrySet()) {
+            batch.put(regionId(HRegionInfo.encodeRegionName(entry.getKey())), entry.getValue());
+        }
+        // Region ids must be known before the samples that use them
+        dictionaryOut.flush();
+
+        LiveSegment current = liveSegments.isEmpty() ? null : liveSegments.get(liveSegments.size() - 1);
+        if (current == null || time - current.startTime >= segmentDuration
+                || (long) current.numRecords + batch.size() > MAX_SEGMENT_RECORDS) {
+            if (current != null) current.closeForAppend();
+            current = new LiveSegment(time);
+            liveSegments.add(current);
+        }
+        current.append(time, batch);
+
+        if (liveSegments.size() > 1) compact(time);
+    }
+
+    /**
+     * Compacts the live segments that are not appended anymore and deletes the compacted segments older than the
+     * retention.
+     */
+    public synchronized void compact(long now) throws IOException {
+
+        while (liveSegments.size() > 1) {
+            LiveSegment segment = liveSegments.get(0);
+            if (segment.numBatches > 0) compactedSegments.add(compact(segment));
+            segment.delete();
+            liveSegments.remove(0);
+        }
+
+        while (!compactedSegments.isEmpty() && compactedSegments.get(0).to < now - retention) {
+            CompactedSegment segment = compactedSegments.remove(0);
+            LOG.info("Deleting the history segment " + segment.dataFile.getName() + ", older than the retention");
+            segment.delete();
+        }
+    }
+
+    private CompactedSegment compact(LiveSegment live) throws IOException {
+
+        ByteBuffer buffer = live.buffer();
+
+        // The last batch of every resolution period
+        List<Integer> kept = new ArrayList<>();
+        for (int b = 0; b < live.numBatches; b++) {
+            if (b == live.numBatches - 1 || live.times[b] / resolution != live.times[b + 1] / resolution) kept.add(b);
+        }
+
+        BitSet regions = new BitSet(regionNames.size());
+        for (int b : kept) {
+            for (int r = live.firsts[b]; r < live.firsts[b] + live.counts[b]; r++) {
+                regions.set(buffer.getInt(r * RECORD_SIZE + 8));
+            }
+        }
+
+        long from = live.times[kept.get(0)];
+        long to = live.times[kept.get(kept.size() - 1)];
+        File dataFile = new File(dir, COMPACTED + from + "-" + to + DATA);
+        File indexFile = new File(dir, COMPACTED + from + "-" + to + INDEX);
+        File dataTmp = new File(dir, dataFile.getName() + TMP);
+        File indexTmp = new File(dir, indexFile.getName() + TMP);
+
+        ByteBuffer source = buffer.duplicate();
+        byte[] record = new byte[RECORD_SIZE];
+        int written = 0;
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dataTmp), 1 << 16));
+        DataOutputStream index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexTmp), 1 << 16));
+        try {
+            for (int id = regions.nextSetBit(0); id >= 0; id = regions.nextSetBit(id + 1)) {
+                int first = written;
+                for (int b : kept) {
+                    int r = findRegion(buffer, live.firsts[b], live.counts[b], id);
+                    if (r < 0) continue;
+                    source.position(r * RECORD_SIZE);
+                    source.get(record);
+                    data.write(record);
+                    written++;
+                }
+                index.writeInt(id);
+                index.writeInt(first);
+                index.writeInt(written - first);
+            }
+        } finally {
+            data.close();
+            index.close();
+        }
+
+        // The index last: a segment is only loaded with its index
+        if (!dataTmp.renameTo(dataFile) || !indexTmp.renameTo(indexFile)) {
+            throw new IOException("Cannot rename the compacted segment " + dataFile);
+        }
+        LOG.info("Compacted " + live.dataFile.getName() + ": " + live.numRecords + " samples to " + written);
+
+        return new CompactedSegment(from, to);
+    }
+
+    /**
+     * Returns the samples of a region between the given times, included, oldest first.
+     */
+    public synchronized List<RegionSample> getSamples(String region, long from, long to) throws IOException {
+
+        List<RegionSample> samples = new ArrayList<>();
+        Integer id = regionIds.get(region);
+        if (id == null) return samples;
+
+        for (CompactedSegment segment : compactedSegments) {
+            if (segment.to < from || segment.from > to) continue;
+            int i = segment.indexOf(id);
+            if (i < 0) continue;
+            int first = segment.index.getInt(i * COMPACTED_INDEX_ENTRY_SIZE + 4);
+            int end = first + segment.index.getInt(i * COMPACTED_INDEX_ENTRY_SIZE + 8);
+            for (int r = firstAtOrAfter(segment.data, first, end, from); r < end; r++) {
+                if (segment.data.getLong(r * RECORD_SIZE) > to) break;
+                samples.add(readSample(segment.data, r));
+            }
+        }
+
+        for (LiveSegment segment : liveSegments) {
+            if (segment.numBatches == 0 || segment.getLastTime() < from || segment.startTime > to) continue;
+            ByteBuffer buffer = segment.buffer();
+            for (int b = segment.lastBatchAtOrBefore(from - 1) + 1; b < segment.numBatches && segment.times[b] <= to;
+                 b++) {
+                int r = findRegion(buffer, segment.firsts[b], segment.counts[b], id);
+                if (r >= 0) samples.add(readSample(buffer, r));
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Returns the latest sample of every region at the given time, by encoded name. In the compacted segments, only
+     * the regions with a sample in the previous two resolution periods are returned, the others were gone.
+     */
+    public synchronized Map<String, RegionSample> getSamplesAt(long time) throws IOException {
+
+        Map<String, RegionSample> samples = new HashMap<>();
+
+        for (int s = liveSegments.size() - 1; s >= 0; s--) {
+            LiveSegment segment = liveSegments.get(s);
+            int b = segment.lastBatchAtOrBefore(time);
+            if (b < 0) continue;
+            ByteBuffer buffer = segment.buffer();
+            for (int r = segment.firsts[b]; r < segment.firsts[b] + segment.counts[b]; r++) {
+                RegionSample sample = readSample(buffer, r);
+                samples.put(sample.getRegion(), sample);
+            }
+            return samples;
+        }
+
+        for (int s = compactedSegments.size() - 1; s >= 0; s--) {
+            CompactedSegment segment = compactedSegments.get(s);
+            if (segment.from > time) continue;
+            long oldest = Math.min(time, segment.to) - 2 * resolution;
+            for (int i = 0; i < segment.numRegions; i++) {
+                int first = segment.index.getInt(i * COMPACTED_INDEX_ENTRY_SIZE + 4);
+                int end = first + segment.index.getInt(i * COMPACTED_INDEX_ENTRY_SIZE + 8);
+                int r = firstAtOrAfter(segment.data, first, end, time + 1) - 1;
+                if (r >= first && segment.data.getLong(r * RECORD_SIZE) >= oldest) {
+                    RegionSample sample = readSample(segment.data, r);
+                    samples.put(sample.getRegion(), sample);
+                }
+            }
+            return samples;
+        }
+        return samples;
+    }
+
+    /**
+     * Growth in MB per hour of every region with a sample at both times, by encoded name.
+     */
+    public synchronized Map<String, Double> getGrowthRates(long from, long to) throws IOException {
+        Map<String, RegionSample> start = getSamplesAt(from);
+        Map<String, RegionSample> end = getSamplesAt(to);
+        Map<String, Double> rates = new HashMap<>();
+        for (RegionSample last : end.values()) {
+            RegionSample first = start.get(last.getRegion());
+            if (first == null || last.getTimestamp() <= first.getTimestamp()) continue;
+            rates.put(last.getRegion(), (last.getSizeMB() - first.getSizeMB()) * 3600000.0
+                    / (last.getTimestamp() - first.getTimestamp()));
+        }
+        return rates;
+    }
+
+    private RegionSample readSample(ByteBuffer buffer, int record) {
+        int offset = record * RECORD_SIZE;
+        return new RegionSample(buffer.getLong(offset), regionNames.get(buffer.getInt(offset + 8)),
+                buffer.getInt(offset + 12), buffer.getInt(offset + 16), buffer.getInt(offset + 20),
+                buffer.getLong(offset + 24), buffer.getLong(offset + 32));
+    }
+
+    /**
+     * Returns the record of the region in a batch sorted by region id, or -1.
+     */
+    private static int findRegion(ByteBuffer buffer, int first, int count, int regionId) {
+        int low = first;
+        int high = first + count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int id = buffer.getInt(mid * RECORD_SIZE + 8);
+            if (id < regionId) {
+                low = mid + 1;
+            } else if (id > regionId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the first record at or after the time in records sorted by time, or end.
+     */
+    private static int firstAtOrAfter(ByteBuffer buffer, int first, int end, long time) {
+        int low = first;
+        int high = end;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getLong(mid * RECORD_SIZE) < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public synchronized int getRegionCount() {
+        return regionNames.size();
+    }
+
+    public synchronized int getLiveSegmentCount() {
+        return liveSegments.size();
+    }
+
+    public synchronized int getCompactedSegmentCount() {
+        return compactedSegments.size();
+    }
+
+    public synchronized long getSampleCount() {
+        long count = 0;
+        for (CompactedSegment segment : compactedSegments) {
+            count += segment.data.capacity() / RECORD_SIZE;
+        }
+        for (LiveSegment segment : liveSegments) {
+            count += segment.numRecords;
+        }
+        return count;
+    }
+
+    /**
+     * Time of the first sample, or Long.MAX_VALUE if the store is empty.
+     */
+    public synchronized long getFirstTime() {
+        if (!compactedSegments.isEmpty()) return compactedSegments.get(0).from;
+        for (LiveSegment segment : liveSegments) {
+            if (segment.numBatches > 0) return segment.times[0];
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Time of the last sample, or Long.MIN_VALUE if the store is empty.
+     */
+    public synchronized long getLastTime() {
+        for (int s = liveSegments.size() - 1; s >= 0; s--) {
+            if (liveSegments.get(s).numBatches > 0) return liveSegments.get(s).getLastTime();
+        }
+        return compactedSegments.isEmpty() ? Long.MIN_VALUE : compactedSegments.get(compactedSegments.size() - 1).to;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!liveSegments.isEmpty()) liveSegments.get(liveSegments.size() - 1).closeForAppend();
+        dictionaryOut.close();
+    }
+
+    /**
+     * Samples in time order, in batches sorted by region id. The batch index is kept in memory, a day of samples
+     * every 5 minutes is 288 entries.
+     */
+    private class LiveSegment {
+
+        final long startTime;
+        final File dataFile;
+        final File indexFile;
+
+        long[] times = new long[64];
+        int[] firsts = new int[64];
+        int[] counts = new int[64];
+        int numBatches;
+        int numRecords;
+
+        DataOutputStream dataOut;
+        DataOutputStream indexOut;
+        MappedByteBuffer buffer;
+        int mappedRecords = -1;
+
+        LiveSegment(long startTime) {
+            this.startTime = startTime;
+            this.dataFile = new File(dir, LIVE + startTime + DATA);
+            this.indexFile = new File(dir, LIVE + startTime + INDEX);
+        }
+
+        void load() throws IOException {
+            if (indexFile.exists()) {
+                long dataLength = dataFile.length();
+                DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+                try {
+                    long entries = indexFile.length() / LIVE_INDEX_ENTRY_SIZE;
+                    for (long i = 0; i < entries; i++) {
+                        long time = in.readLong();
+                        int first = in.readInt();
+                        int count = in.readInt();
+                        // An index entry is written after its records, but check it anyway
+                        if ((long) (first + count) * RECORD_SIZE > dataLength) break;
+                        addBatch(time, first, count);
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+            truncate(indexFile, (long) numBatches * LIVE_INDEX_ENTRY_SIZE);
+            truncate(dataFile, (long) numRecords * RECORD_SIZE);
+        }
+
+        private void addBatch(long time, int first, int count) {
+            if (numBatches == times.length) {
+                times = Arrays.copyOf(times, numBatches * 2);
+                firsts = Arrays.copyOf(firsts, numBatches * 2);
+                counts = Arrays.copyOf(counts, numBatches * 2);
+            }
+            times[numBatches] = time;
+            firsts[numBatches] = first;
+            counts[numBatches] = count;
+            numBatches++;
+            numRecords = first + count;
+        }
+
+        void append(long time, TreeMap<Integer, RegionLoad> batch) throws IOException {
+            if (dataOut == null) {
+                dataOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile, true), 1 << 16));
+                indexOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, true)));
+            }
+            for (Map.Entry<Integer, RegionLoad> entry : batch.entrySet()) {
+                RegionLoad load = entry.getValue();
+                dataOut.writeLong(time);
+                dataOut.writeInt(entry.getKey());
+                dataOut.writeInt(load.getStorefileSizeMB());
+                dataOut.writeInt(load.getMemStoreSizeMB());
+                dataOut.writeInt(load.getStorefiles());
+                dataOut.writeLong(load.getReadRequestsCount());
+                dataOut.writeLong(load.getWriteRequestsCount());
+            }
+            dataOut.flush();
+            indexOut.writeLong(time);
+            indexOut.writeInt(numRecords);
+            indexOut.writeInt(batch.size());
+            indexOut.flush();
+            addBatch(time, numRecords, batch.size());
+        }
+
+        long getLastTime() {
+            return numBatches == 0 ? Long.MIN_VALUE : times[numBatches - 1];
+        }
+
+        /**
+         * Returns the last batch at or before the time, or -1.
+         */
+        int lastBatchAtOrBefore(long time) {
+            int low = 0;
+            int high = numBatches;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid] <= time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low - 1;
+        }
+
+        ByteBuffer buffer() throws IOException {
+            if (mappedRecords != numRecords) {
+                buffer = map(dataFile, (long) numRecords * RECORD_SIZE);
+                mappedRecords = numRecords;
+            }
+            return buffer;
+        }
+
+        void closeForAppend() throws IOException {
+            if (dataOut != null) {
+                dataOut.close();
+                indexOut.close();
+                dataOut = null;
+                indexOut = null;
+            }
+        }
+
+        void delete() throws IOException {
+            closeForAppend();
+            if (!dataFile.delete() | !indexFile.delete()) {
+                LOG.warn("Cannot delete the history segment " + dataFile);
+            }
+        }
+    }
+
+    /**
+     * Samples sorted by region id and time, with an index of the first record and size of every region.
+     */
+    private class CompactedSegment {
+
+        final long from;
+        final long to;
+        final File dataFile;
+        final File indexFile;
+        final MappedByteBuffer data;
+        final MappedByteBuffer index;
+        final int numRegions;
+
+        CompactedSegment(long from, long to) throws IOException {
+            this.from = from;
+            this.to = to;
+            this.dataFile = new File(dir, COMPACTED + from + "-" + to + DATA);
+            this.indexFile = new File(dir, COMPACTED + from + "-" + to + INDEX);
+            this.data = map(dataFile, dataFile.length() / RECORD_SIZE * RECORD_SIZE);
+            this.index = map(indexFile, indexFile.length() / COMPACTED_INDEX_ENTRY_SIZE * COMPACTED_INDEX_ENTRY_SIZE);
+            this.numRegions = index.capacity() / COMPACTED_INDEX_ENTRY_SIZE;
+        }
+
+        /**
+         * Returns the index entry of the region, or -1.
+         */
+        int indexOf(int regionId) {
+            int low = 0;
+            int high = numRegions - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int id = index.getInt(mid * COMPACTED_INDEX_ENTRY_SIZE);
+                if (id < regionId) {
+                    low = mid + 1;
+                } else if (id > regionId) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        void delete() {
+            if (!dataFile.delete() | !indexFile.delete()) {
+                LOG.warn("Cannot delete the history segment " + dataFile);
+            }
+        }
+    }
+}
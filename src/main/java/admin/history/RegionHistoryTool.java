@@ -0,0 +1,132 @@
+package admin.history;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.hadoop.hbase.util.AbstractHBaseTool;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a history written with the -history_dir option of RegionsTool, with no cluster:
+ *
+ * <pre>
+ *   RegionHistoryTool -dir history                        regions growing the most in the last 24 hours
+ *   RegionHistoryTool -dir history -hours 720 -top 50     ... in the last 30 days
+ *   RegionHistoryTool -dir history -region 5f2a...        samples of a region as CSV, to chart them
+ * </pre>
+ */
+public class RegionHistoryTool extends AbstractHBaseTool {
+
+    protected static final String OPT_DIR = "dir";
+    protected static final String OPT_REGION = "region";
+    protected static final String OPT_HOURS = "hours";
+    protected static final String OPT_TOP = "top";
+    protected static final String OPT_COMPACT = "compact";
+
+    protected static final int DEFAULT_HOURS = 24;
+    protected static final int DEFAULT_TOP = 10;
+
+    File dir;
+    String region;
+    int hours = DEFAULT_HOURS;
+    int top = DEFAULT_TOP;
+    boolean compact = false;
+
+    public static void main(String[] args) throws Throwable {
+
+        new RegionHistoryTool().doStaticMain(args);
+
+    }
+
+    @Override
+    protected void addOptions() {
+        addOptWithArg(OPT_DIR, "History directory");
+        addOptWithArg(OPT_REGION, "Encoded name of a region, to print its samples as CSV");
+        addOptWithArg(OPT_HOURS, "Hours before the last sample to look at (defaults to " + DEFAULT_HOURS + ")");
+        addOptWithArg(OPT_TOP, "Number of regions growing the most to print (defaults to " + DEFAULT_TOP + ")");
+        addOptNoArg(OPT_COMPACT, "Compacts the live segments that are not appended anymore");
+    }
+
+    @Override
+    protected void processOptions(CommandLine cmd) {
+        if (cmd.hasOption(OPT_DIR)) {
+            dir = new File(cmd.getOptionValue(OPT_DIR));
+        }
+        region = cmd.getOptionValue(OPT_REGION);
+        hours = Integer.parseInt(cmd.getOptionValue(OPT_HOURS, String.valueOf(DEFAULT_HOURS)));
+        top = Integer.parseInt(cmd.getOptionValue(OPT_TOP, String.valueOf(DEFAULT_TOP)));
+        compact = cmd.hasOption(OPT_COMPACT);
+    }
+
+    @Override
+    protected int doWork() throws Exception {
+
+        if (dir == null || !dir.isDirectory()) {
+            System.err.println("Missing or not a directory -" + OPT_DIR);
+            printUsage();
+            return EXIT_FAILURE;
+        }
+
+        long startTime = System.currentTimeMillis();
+        RegionHistoryStore store = RegionHistoryStore.open(dir, conf);
+        long openTime = System.currentTimeMillis() - startTime;
+        try {
+            if (compact) store.compact(store.getLastTime());
+
+            long last = store.getLastTime();
+            if (last == Long.MIN_VALUE) {
+                System.out.println("History:" + dir + " is empty");
+                return 0;
+            }
+            System.out.println("History:" + dir
+                    + " Regions:" + store.getRegionCount()
+                    + " Samples:" + store.getSampleCount()
+                    + " Segments live:" + store.getLiveSegmentCount()
+                    + " compacted:" + store.getCompactedSegmentCount()
+                    + " From:" + new Date(store.getFirstTime())
+                    + " To:" + new Date(last)
+                    + " Open time (ms):" + openTime);
+
+            long from = last - hours * 3600 * 1000L;
+            startTime = System.currentTimeMillis();
+            if (region != null) {
+                List<RegionSample> samples = store.getSamples(region, from, last);
+                System.out.println("timestamp,region,size_mb,memstore_mb,storefiles,read_requests,write_requests");
+                for (RegionSample sample : samples) {
+                    System.out.println(sample);
+                }
+                System.out.println("Samples:" + samples.size()
+                        + " Growth (MB/h):" + String.format("%.2f", RegionSample.growthMBPerHour(samples))
+                        + " Reads/s:" + String.format("%.2f", RegionSample.requestsPerSecond(samples, false))
+                        + " Writes/s:" + String.format("%.2f", RegionSample.requestsPerSecond(samples, true))
+                        + " Query time (ms):" + (System.currentTimeMillis() - startTime));
+            } else {
+                final Map<String, Double> rates = store.getGrowthRates(from, last);
+                Map<String, RegionSample> current = store.getSamplesAt(last);
+                List<String> regions = new ArrayList<>(rates.keySet());
+                Collections.sort(regions, new Comparator<String>() {
+                    @Override
+                    public int compare(String r1, String r2) {
+                        return Double.compare(rates.get(r2), rates.get(r1));
+                    }
+                });
+                long queryTime = System.currentTimeMillis() - startTime;
+                for (String name : regions.subList(0, Math.min(top, regions.size()))) {
+                    System.out.println(" " + name
+                            + " Growth (MB/h):" + String.format("%.2f", rates.get(name))
+                            + " Size (MB):" + current.get(name).getSizeMB());
+                }
+                System.out.println("Regions with samples in the last " + hours + " hours:" + rates.size()
+                        + " Query time (ms):" + queryTime);
+            }
+        } finally {
+            store.close();
+        }
+        return 0;
+    }
+}
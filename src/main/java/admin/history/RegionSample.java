@@ -0,0 +1,106 @@
+package admin.history;
+
+import java.util.List;
+
+/**
+ * A sample of the load of a region: sizes in MB, number of store files and the read and write request counters,
+ * which are cumulative since the region was opened.
+ */
+public class RegionSample {
+
+    private final long timestamp;
+    private final String region;
+    private final int sizeMB;
+    private final int memstoreMB;
+    private final int storefiles;
+    private final long readRequests;
+    private final long writeRequests;
+
+    public RegionSample(long timestamp, String region, int sizeMB, int memstoreMB, int storefiles,
+                        long readRequests, long writeRequests) {
+        this.timestamp = timestamp;
+        this.region = region;
+        this.sizeMB = sizeMB;
+        this.memstoreMB = memstoreMB;
+        this.storefiles = storefiles;
+        this.readRequests = readRequests;
+        this.writeRequests = writeRequests;
+    }
+
+    /**
+     * Growth of the store file size in MB per hour, the least squares slope of the samples. 0 with less than two
+     * samples.
+     */
+    public static double growthMBPerHour(List<RegionSample> samples) {
+
+        if (samples.size() < 2) return 0;
+
+        // Times relative to the first sample, in hours, to keep the sums small
+        long origin = samples.get(0).timestamp;
+        double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+        for (RegionSample sample : samples) {
+            double x = (sample.timestamp - origin) / 3600000.0;
+            sumX += x;
+            sumY += sample.sizeMB;
+            sumXX += x * x;
+            sumXY += x * sample.sizeMB;
+        }
+        int n = samples.size();
+        double denominator = n * sumXX - sumX * sumX;
+        return denominator == 0 ? 0 : (n * sumXY - sumX * sumY) / denominator;
+    }
+
+    /**
+     * Requests per second between the first and last samples. When a counter goes down the region was reopened
+     * and the counter restarted from 0, so the new value is the increment.
+     */
+    public static double requestsPerSecond(List<RegionSample> samples, boolean writes) {
+
+        if (samples.size() < 2) return 0;
+
+        long total = 0;
+        for (int i = 1; i < samples.size(); i++) {
+            long previous = writes ? samples.get(i - 1).writeRequests : samples.get(i - 1).readRequests;
+            long current = writes ? samples.get(i).writeRequests : samples.get(i).readRequests;
+            total += current >= previous ? current - previous : current;
+        }
+        long elapsed = samples.get(samples.size() - 1).timestamp - samples.get(0).timestamp;
+        return elapsed <= 0 ? 0 : total * 1000.0 / elapsed;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Encoded name of the region.
+     */
+    public String getRegion() {
+        return region;
+    }
+
+    public int getSizeMB() {
+        return sizeMB;
+    }
+
+    public int getMemstoreMB() {
+        return memstoreMB;
+    }
+
+    public int getStorefiles() {
+        return storefiles;
+    }
+
+    public long getReadRequests() {
+        return readRequests;
+    }
+
+    public long getWriteRequests() {
+        return writeRequests;
+    }
+
+    public String toString() {
+        return timestamp + "," + region + "," + sizeMB + "," + memstoreMB + "," + storefiles + ","
+                + readRequests + "," + writeRequests;
+    }
+}
@@ -0,0 +1,85 @@
+package admin.history;
+
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Forecasts the size of a region from its samples, with one of two models:
+ * <ul>
+ * <li> LINEAR: least squares line of the samples.
+ * <li> SEASONAL: one growth rate per hour of the day, the size increments of the samples in that hour over the
+ * time they cover. Follows daily ingest cycles, e.g. a region that only grows in business hours. Hours without
+ * samples use the linear rate.
+ * </ul>
+ * Hours of the day are local, like maintenance windows.
+ */
+public class SizeForecast {
+
+    public enum Model {
+        LINEAR, SEASONAL
+    }
+
+    private static final double HOUR = 3600 * 1000.0;
+
+    private SizeForecast() {
+    }
+
+    /**
+     * Size in MB of the region at the given time, from its samples up to now, oldest first. Sizes go down only on
+     * compactions, so a negative growth counts as none. Returns the size of the last sample with less than two.
+     */
+    public static double forecastMB(List<RegionSample> samples, long now, long time, Model model) {
+
+        if (samples.isEmpty()) return 0;
+        RegionSample last = samples.get(samples.size() - 1);
+        if (samples.size() < 2 || time <= now) return last.getSizeMB();
+
+        double linearRate = Math.max(0, RegionSample.growthMBPerHour(samples));
+        if (model == Model.LINEAR) {
+            return last.getSizeMB() + linearRate * (time - last.getTimestamp()) / HOUR;
+        }
+
+        double[] rates = hourlyRates(samples, linearRate);
+        Calendar calendar = Calendar.getInstance();
+        double size = last.getSizeMB();
+        // Steps of at most an hour, ending on the hours, so every step is in a single hour of the day
+        long t = last.getTimestamp();
+        while (t < time) {
+            calendar.setTimeInMillis(t);
+            int hour = calendar.get(Calendar.HOUR_OF_DAY);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            calendar.add(Calendar.HOUR_OF_DAY, 1);
+            long next = Math.min(time, calendar.getTimeInMillis());
+            size += rates[hour] * (next - t) / HOUR;
+            t = next;
+        }
+        return size;
+    }
+
+    /**
+     * Growth in MB per hour for every hour of the day. The increment between two samples is assigned to the hour of
+     * the first one.
+     */
+    static double[] hourlyRates(List<RegionSample> samples, double defaultRate) {
+
+        double[] growth = new double[24];
+        double[] hours = new double[24];
+        Calendar calendar = Calendar.getInstance();
+        for (int i = 1; i < samples.size(); i++) {
+            RegionSample previous = samples.get(i - 1);
+            RegionSample current = samples.get(i);
+            calendar.setTimeInMillis(previous.getTimestamp());
+            int hour = calendar.get(Calendar.HOUR_OF_DAY);
+            growth[hour] += Math.max(0, current.getSizeMB() - previous.getSizeMB());
+            hours[hour] += (current.getTimestamp() - previous.getTimestamp()) / HOUR;
+        }
+
+        double[] rates = new double[24];
+        for (int hour = 0; hour < 24; hour++) {
+            rates[hour] = hours[hour] > 0 ? growth[hour] / hours[hour] : defaultRate;
+        }
+        return rates;
+    }
+}
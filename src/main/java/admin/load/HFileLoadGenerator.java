@@ -0,0 +1,361 @@
+package admin.load;
+
+import admin.RandomString;
+import admin.StageByDateBuilder;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFileContext;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
+import org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles;
+import org.apache.hadoop.hbase.regionserver.StoreFile;
+import org.apache.hadoop.hbase.util.AbstractHBaseTool;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.FSUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Populates a staged table writing sorted HFiles per region and bulk loading them, without WALs, memstore flushes
+ * or compactions.
+ *
+ * Every month of the key space gets the same number of rows: yyyyMM + zero padded row number. The rows of every
+ * region of the table are written by one StoreFile writer (with the compression, block size, encoding and bloom
+ * filter of the family), regions in parallel, into a staging directory that LoadIncrementalHFiles moves into the
+ * table. Since the files match the region boundaries, no file has to be split during the load.
+ *
+ * If the table does not exist it is created with a number of regions per month, so a multi-TB staged layout can be
+ * built from scratch. The staging directory should be in the file system of HBase, so files are moved and not
+ * copied.
+ */
+public class HFileLoadGenerator extends AbstractHBaseTool {
+
+    private static final Log LOG = LogFactory.getLog(HFileLoadGenerator.class);
+
+    protected static final String OPT_TABLENAME = "tablename";
+    protected static final String OPT_FAMILY = "family";
+    protected static final String OPT_THREADS = "threads";
+    protected static final String OPT_MONTHS = "months";
+    protected static final String OPT_ROWS_PER_MONTH = "rows_per_month";
+    protected static final String OPT_MB_PER_MONTH = "mb_per_month";
+    protected static final String OPT_REGIONS_PER_MONTH = "regions_per_month";
+    protected static final String OPT_VALUE_DIST = "value_dist";
+    protected static final String OPT_VALUE_MIN = "value_min";
+    protected static final String OPT_VALUE_MAX = "value_max";
+    protected static final String OPT_STAGING_DIR = "staging_dir";
+    protected static final String OPT_NO_LOAD = "no_load";
+
+    protected static final int DEFAULT_THREADS = 8;
+    protected static final long DEFAULT_ROWS_PER_MONTH = 1000000L;
+    protected static final int DEFAULT_REGIONS_PER_MONTH = 1;
+    protected static final int DEFAULT_VALUE_SIZE = 1000;
+
+    private static final byte[] QUALIFIER = Bytes.toBytes("col1");
+
+    String sTable;
+    byte[] family = Bytes.toBytes("colfam1");
+    int threads = DEFAULT_THREADS;
+    int months;
+    long rowsPerMonth = DEFAULT_ROWS_PER_MONTH;
+    int regionsPerMonth = DEFAULT_REGIONS_PER_MONTH;
+    String stagingDir;
+    boolean load = true;
+
+    ValueSizeDistribution valueSizeDistribution;
+
+    byte[][] monthPrefixes;
+    int numberWidth;
+
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    public static void main(String[] args) throws Throwable {
+
+        new HFileLoadGenerator().doStaticMain(args);
+
+    }
+
+    @Override
+    protected void addOptions() {
+
+        addRequiredOptWithArg(OPT_TABLENAME, "Name of the table to populate. Created if it does not exist");
+        addOptWithArg(OPT_FAMILY, "Column family (defaults to colfam1)");
+        addOptWithArg(OPT_THREADS, "Number of regions written in parallel (defaults to " + DEFAULT_THREADS + ")");
+        addOptWithArg(OPT_MONTHS, "Number of months of the key space, from the current one backwards. Default: hot+warm+cold months");
+        addOptWithArg(OPT_ROWS_PER_MONTH, "Number of rows per month (defaults to " + DEFAULT_ROWS_PER_MONTH + ")");
+        addOptWithArg(OPT_MB_PER_MONTH, "Approximate MB per month. Overrides " + OPT_ROWS_PER_MONTH);
+        addOptWithArg(OPT_REGIONS_PER_MONTH, "Number of regions per month when the table is created (defaults to "
+                + DEFAULT_REGIONS_PER_MONTH + ")");
+        addOptWithArg(OPT_VALUE_DIST, "Value size distribution: " + ValueSizeDistribution.FIXED + " (default), "
+                + ValueSizeDistribution.UNIFORM + " or " + ValueSizeDistribution.EXPONENTIAL);
+        addOptWithArg(OPT_VALUE_MIN, "Min value size in bytes (defaults to " + DEFAULT_VALUE_SIZE + ")");
+        addOptWithArg(OPT_VALUE_MAX, "Max value size in bytes (defaults to the min size)");
+        addOptWithArg(OPT_STAGING_DIR, "Directory for the HFiles. Defaults to a new directory in the home of the HBase file system");
+        addOptNoArg(OPT_NO_LOAD, "Only write the HFiles, do not bulk load them");
+    }
+
+    @Override
+    protected void processOptions(CommandLine cmd) {
+
+        sTable = cmd.getOptionValue(OPT_TABLENAME);
+        if (cmd.hasOption(OPT_FAMILY)) family = Bytes.toBytes(cmd.getOptionValue(OPT_FAMILY));
+
+        threads = Integer.parseInt(cmd.getOptionValue(OPT_THREADS, String.valueOf(DEFAULT_THREADS)));
+        regionsPerMonth = Integer.parseInt(cmd.getOptionValue(OPT_REGIONS_PER_MONTH, String.valueOf(DEFAULT_REGIONS_PER_MONTH)));
+        stagingDir = cmd.getOptionValue(OPT_STAGING_DIR);
+        load = !cmd.hasOption(OPT_NO_LOAD);
+
+        int hotMonths = conf.getInt(StageByDateBuilder.NORMALIZER_MONTHS_HOT_KEY_PROPERTY,
+                StageByDateBuilder.DEFAULT_HOT_EXPIRATION_IN_MONTHS);
+        int warmMonths = conf.getInt(StageByDateBuilder.NORMALIZER_MONTHS_WARM_KEY_PROPERTY,
+                StageByDateBuilder.DEFAULT_WARM_EXPIRATION_IN_MONTHS);
+        int coldMonths = conf.getInt(StageByDateBuilder.NORMALIZER_MONTHS_COLD_KEY_PROPERTY,
+                StageByDateBuilder.DEFAULT_COLD_EXPIRATION_IN_MONTHS);
+        months = Integer.parseInt(cmd.getOptionValue(OPT_MONTHS, String.valueOf(hotMonths + warmMonths + coldMonths)));
+
+        int valueMin = Integer.parseInt(cmd.getOptionValue(OPT_VALUE_MIN, String.valueOf(DEFAULT_VALUE_SIZE)));
+        int valueMax = Integer.parseInt(cmd.getOptionValue(OPT_VALUE_MAX, String.valueOf(valueMin)));
+        valueSizeDistribution = new ValueSizeDistribution(cmd.getOptionValue(OPT_VALUE_DIST, ValueSizeDistribution.FIXED),
+                valueMin, valueMax);
+
+        // Months in ascending order, the order of the rows in the table, as the HFiles need their keys sorted
+        monthPrefixes = KeyValueGenerator.encodeMonthPrefixesOldestFirst(months);
+
+        rowsPerMonth = Long.parseLong(cmd.getOptionValue(OPT_ROWS_PER_MONTH, String.valueOf(DEFAULT_ROWS_PER_MONTH)));
+        if (cmd.hasOption(OPT_MB_PER_MONTH)) {
+            long bytesPerMonth = Long.parseLong(cmd.getOptionValue(OPT_MB_PER_MONTH)) * 1024L * 1024L;
+            // Approximate size of a cell in the HFile: key + value
+            int keySize = monthPrefixes[0].length + KeyValueGenerator.digits(bytesPerMonth / Math.max(1, valueMin)) + family.length
+                    + QUALIFIER.length + KeyValue.KEY_INFRASTRUCTURE_SIZE + KeyValue.ROW_OFFSET;
+            rowsPerMonth = Math.max(1L, bytesPerMonth / (keySize + (valueMin + valueMax) / 2));
+        }
+        numberWidth = KeyValueGenerator.digits(rowsPerMonth);
+    }
+
+    @Override
+    protected int doWork() throws Exception {
+
+        TableName tableName = TableName.valueOf(sTable);
+
+        Connection connection = ConnectionFactory.createConnection(conf);
+        Admin admin = connection.getAdmin();
+
+        if (!admin.tableExists(tableName)) {
+            createTable(admin, tableName);
+        }
+
+        HColumnDescriptor familyDescriptor = admin.getTableDescriptor(tableName).getFamily(family);
+        if (familyDescriptor == null) {
+            throw new IllegalArgumentException("Table " + tableName + " has no family " + Bytes.toString(family));
+        }
+
+        RegionLocator locator = connection.getRegionLocator(tableName);
+        byte[][] startKeys = locator.getStartKeys();
+        byte[][] endKeys = locator.getEndKeys();
+
+        FileSystem fs = FSUtils.getRootDir(conf).getFileSystem(conf);
+        Path outputDir = stagingDir != null ? new Path(stagingDir)
+                : new Path(fs.getHomeDirectory(), "hfile-load-" + tableName.getNameAsString().replace(':', '_')
+                + "-" + System.currentTimeMillis());
+        Path familyDir = new Path(outputDir, Bytes.toString(family));
+        fs.mkdirs(familyDir);
+
+        LOG.info("Writing " + months + " months x " + rowsPerMonth + " rows to " + startKeys.length
+                + " regions of " + tableName + " in " + outputDir + ". Values: " + valueSizeDistribution);
+
+        long startTime = System.currentTimeMillis();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < startKeys.length; i++) {
+            futures.add(pool.submit(new RegionWriter(fs, new Path(familyDir, String.format("region-%06d", i)),
+                    familyDescriptor, startKeys[i], endKeys[i], startTime)));
+        }
+
+        boolean failed = false;
+        try {
+            for (Future<Long> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    LOG.error("Region writer failed", e.getCause());
+                    failed = true;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long elapsed = Math.max(1L, System.currentTimeMillis() - startTime);
+        System.out.println("HFILES WRITTEN. Rows: " + rowsWritten.get() + " MB: " + bytesWritten.get() / (1024 * 1024)
+                + " Time (s): " + elapsed / 1000 + " Rate (MB/s): " + (bytesWritten.get() * 1000L / elapsed) / (1024 * 1024));
+
+        if (failed) {
+            System.out.println("ERROR: Some regions could not be written. HFiles not loaded from " + outputDir);
+            return 1;
+        }
+
+        if (load) {
+            System.out.println("BULK LOADING " + outputDir + " into " + tableName);
+            Table table = connection.getTable(tableName);
+            try {
+                new LoadIncrementalHFiles(conf).doBulkLoad(outputDir, admin, table, locator);
+            } finally {
+                table.close();
+            }
+            System.out.println("BULK LOAD COMPLETED. Time (s): " + (System.currentTimeMillis() - startTime) / 1000);
+        }
+
+        locator.close();
+        admin.close();
+        connection.close();
+
+        return 0;
+    }
+
+    private void createTable(Admin admin, TableName tableName) throws IOException {
+
+        HTableDescriptor descriptor = new HTableDescriptor(tableName);
+        descriptor.addFamily(new HColumnDescriptor(family));
+
+        KeyValueGenerator generator = new KeyValueGenerator(ThreadLocalRandom.current(), monthPrefixes[0].length,
+                numberWidth, 0, RandomString.digits, 0);
+
+        List<byte[]> splits = new ArrayList<>();
+        for (byte[] prefix : monthPrefixes) {
+            splits.add(prefix);
+            for (int r = 1; r < regionsPerMonth; r++) {
+                int length = generator.nextRow(prefix, rowsPerMonth * r / regionsPerMonth);
+                splits.add(Arrays.copyOf(generator.getRow(), length));
+            }
+        }
+
+        System.out.println("Creating table " + tableName + " with " + (splits.size() + 1) + " regions");
+        admin.createTable(descriptor, splits.toArray(new byte[splits.size()][]));
+    }
+
+    /**
+     * Returns the first row number of the month whose row is equal or greater than the given key.
+     */
+    static long lowerBound(KeyValueGenerator generator, byte[] prefix, long rowsPerMonth, byte[] key) {
+        long low = 0;
+        long high = rowsPerMonth;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            int length = generator.nextRow(prefix, mid);
+            if (Bytes.compareTo(generator.getRow(), 0, length, key, 0, key.length) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Writes all the rows in [startKey, endKey) to a single HFile.
+     */
+    private class RegionWriter implements Callable<Long> {
+
+        private final FileSystem fs;
+        private final Path path;
+        private final HColumnDescriptor familyDescriptor;
+        private final byte[] startKey;
+        private final byte[] endKey;
+        private final long timestamp;
+
+        RegionWriter(FileSystem fs, Path path, HColumnDescriptor familyDescriptor, byte[] startKey, byte[] endKey,
+                     long timestamp) {
+            this.fs = fs;
+            this.path = path;
+            this.familyDescriptor = familyDescriptor;
+            this.startKey = startKey;
+            this.endKey = endKey;
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        public Long call() throws IOException {
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            KeyValueGenerator generator = new KeyValueGenerator(random, monthPrefixes[0].length, numberWidth, 0,
+                    RandomString.digits, valueSizeDistribution.getMaxSize());
+
+            HFileContext context = new HFileContextBuilder()
+                    .withCompression(familyDescriptor.getCompressionType())
+                    .withBlockSize(familyDescriptor.getBlocksize())
+                    .withDataBlockEncoding(familyDescriptor.getDataBlockEncoding())
+                    .build();
+
+            StoreFile.Writer writer = null;
+            long rows = 0;
+            long bytes = 0;
+
+            try {
+                // Oldest month first, so a region spanning several months appends its keys in order
+                for (byte[] prefix : monthPrefixes) {
+
+                    long first = lowerBound(generator, prefix, rowsPerMonth, startKey);
+                    long last = endKey.length == 0 ? rowsPerMonth : lowerBound(generator, prefix, rowsPerMonth, endKey);
+
+                    for (long n = first; n < last; n++) {
+                        if (writer == null) {
+                            writer = new StoreFile.WriterBuilder(conf, new CacheConfig(conf), fs)
+                                    .withFilePath(path)
+                                    .withComparator(KeyValue.COMPARATOR)
+                                    .withBloomType(familyDescriptor.getBloomFilterType())
+                                    .withFileContext(context)
+                                    .build();
+                        }
+                        generator.nextRow(prefix, n);
+                        // The writer keeps a reference to the last cell, so every row gets its own KeyValue
+                        KeyValue kv = generator.newKeyValue(family, QUALIFIER, timestamp,
+                                valueSizeDistribution.nextSize(random));
+                        writer.append(kv);
+                        rows++;
+                        bytes += kv.getLength();
+                    }
+                }
+            } finally {
+                if (writer != null) {
+                    writer.appendFileInfo(StoreFile.BULKLOAD_TIME_KEY, Bytes.toBytes(System.currentTimeMillis()));
+                    writer.appendFileInfo(StoreFile.BULKLOAD_TASK_KEY, Bytes.toBytes(path.getName()));
+                    writer.appendFileInfo(StoreFile.MAJOR_COMPACTION_KEY, Bytes.toBytes(true));
+                    writer.appendFileInfo(StoreFile.EXCLUDE_FROM_MINOR_COMPACTION_KEY, Bytes.toBytes(false));
+                    writer.appendTrackedTimestampsToMetadata();
+                    writer.close();
+                }
+            }
+
+            rowsWritten.addAndGet(rows);
+            bytesWritten.addAndGet(bytes);
+
+            System.out.println(" Region Start Key:" + Bytes.toStringBinary(startKey)
+                    + " End Key:" + Bytes.toStringBinary(endKey)
+                    + " Rows:" + rows + " MB:" + bytes / (1024 * 1024));
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package admin.load;
+
+import java.util.Random;
+
+/**
+ * Chooses the next key to write out of a key space of months x keys per month.
+ *
+ * Keys are identified by an index in [0, months * keysPerMonth). The month of a key is index / keysPerMonth,
+ * being month 0 the current month, and the key within the month is index % keysPerMonth.
+ */
+public interface KeyDistribution {
+
+    long nextKeyIndex(Random random);
+
+    String toString();
+}
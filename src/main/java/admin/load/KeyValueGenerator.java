@@ -0,0 +1,184 @@
+package admin.load;
+
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Random;
+
+/**
+ * Generates rows, qualifiers and values into reusable byte buffers, for the load tools.
+ *
+ * Rows are a prefix (usually a pre-encoded yyyyMM month) followed by a fixed width decimal number written digit by
+ * digit, so no String or intermediate byte[] is created per row. Values are slices of a random buffer filled once.
+ * The only allocations per row are the Put and its KeyValue, which copy the buffers.
+ *
+ * Every writer thread must use its own instance with its own random source (e.g. ThreadLocalRandom.current()).
+ */
+public class KeyValueGenerator {
+
+    private static final byte[] DIGITS = Bytes.toBytes("0123456789");
+
+    /**
+     * Number width needed by nextCharRow: the max UTF-8 length of a char.
+     */
+    public static final int CHAR_WIDTH = 3;
+
+    private final Random random;
+    private final int numberWidth;
+
+    private final byte[] row;
+    private final byte[] qualifier;
+    private final byte[] symbols;
+    private final byte[] value;
+
+    private int rowLength;
+
+    /**
+     * @param random       random source of the calling thread
+     * @param maxPrefixLen max length of the row prefixes
+     * @param numberWidth  number of digits of the row number
+     * @param qualifierLen length of the random qualifiers (0 if not used)
+     * @param symbols      symbols used for the random qualifiers
+     * @param maxValueSize max size of the values
+     */
+    public KeyValueGenerator(Random random, int maxPrefixLen, int numberWidth, int qualifierLen, String symbols,
+                             int maxValueSize) {
+        this.random = random;
+        this.numberWidth = numberWidth;
+        this.row = new byte[maxPrefixLen + numberWidth];
+        this.qualifier = new byte[qualifierLen];
+        this.symbols = Bytes.toBytes(symbols);
+        this.value = new byte[maxValueSize];
+        random.nextBytes(value);
+    }
+
+    /**
+     * Encodes the yyyyMM prefix of the given number of months, from the current one backwards.
+     */
+    public static byte[][] encodeMonthPrefixes(int months) {
+        DateFormat dateFormat = new SimpleDateFormat("yyyyMM");
+        byte[][] prefixes = new byte[months][];
+        Calendar cal = Calendar.getInstance();
+        for (int m = 0; m < months; m++) {
+            prefixes[m] = Bytes.toBytes(dateFormat.format(cal.getTime()));
+            cal.add(Calendar.MONTH, -1);
+        }
+        return prefixes;
+    }
+
+    /**
+     * Encodes the yyyyMM prefix of the given number of months, oldest first, i.e. in the order of the rows of a table.
+     */
+    public static byte[][] encodeMonthPrefixesOldestFirst(int months) {
+        byte[][] newestFirst = encodeMonthPrefixes(months);
+        byte[][] prefixes = new byte[months][];
+        for (int m = 0; m < months; m++) {
+            prefixes[m] = newestFirst[months - 1 - m];
+        }
+        return prefixes;
+    }
+
+    /**
+     * Number of decimal digits needed to write numbers in [0, maxNumber).
+     */
+    public static int digits(long maxNumber) {
+        return String.valueOf(Math.max(1, maxNumber - 1)).length();
+    }
+
+    /**
+     * Writes prefix + zero padded number in the row buffer.
+     *
+     * @return the row length
+     */
+    public int nextRow(byte[] prefix, long number) {
+        System.arraycopy(prefix, 0, row, 0, prefix.length);
+        int end = prefix.length + numberWidth;
+        for (int i = end - 1; i >= prefix.length; i--) {
+            row[i] = DIGITS[(int) (number % 10)];
+            number /= 10;
+        }
+        rowLength = end;
+        return rowLength;
+    }
+
+    /**
+     * Writes prefix + the number cast to a char, UTF-8 encoded as Bytes.toBytes(prefix + (char) number) does, so the
+     * insert tools keep generating the keys they always did. Needs a number width of CHAR_WIDTH.
+     *
+     * @return the row length
+     */
+    public int nextCharRow(byte[] prefix, int number) {
+        System.arraycopy(prefix, 0, row, 0, prefix.length);
+        int i = prefix.length;
+        char c = (char) number;
+        if (c < 0x80) {
+            row[i++] = (byte) c;
+        } else if (c < 0x800) {
+            row[i++] = (byte) (0xC0 | (c >> 6));
+            row[i++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+            // A lone surrogate is not valid UTF-8, the encoder replaces it
+            row[i++] = '?';
+        } else {
+            row[i++] = (byte) (0xE0 | (c >> 12));
+            row[i++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            row[i++] = (byte) (0x80 | (c & 0x3F));
+        }
+        rowLength = i;
+        return rowLength;
+    }
+
+    public byte[] getRow() {
+        return row;
+    }
+
+    public int getRowLength() {
+        return rowLength;
+    }
+
+    /**
+     * Fills the qualifier buffer with random symbols.
+     */
+    public byte[] nextQualifier() {
+        for (int i = 0; i < qualifier.length; i++) {
+            qualifier[i] = symbols[random.nextInt(symbols.length)];
+        }
+        return qualifier;
+    }
+
+    /**
+     * Builds a Put of the current row with a single cell whose value is the first valueSize bytes of the value buffer.
+     */
+    public Put newPut(byte[] family, byte[] qualifier, int valueSize) throws IOException {
+        return newPut(family, qualifier, value, valueSize);
+    }
+
+    /**
+     * Builds a Put of the current row with a single cell whose value is the first valueLength bytes of the given
+     * array.
+     */
+    public Put newPut(byte[] family, byte[] qualifier, byte[] aValue, int valueLength) throws IOException {
+        Put put = new Put(row, 0, rowLength);
+        put.add(newKeyValue(family, qualifier, HConstants.LATEST_TIMESTAMP, aValue, valueLength));
+        return put;
+    }
+
+    /**
+     * Builds a KeyValue of the current row whose value is the first valueSize bytes of the value buffer, e.g. to
+     * append it to an HFile.
+     */
+    public KeyValue newKeyValue(byte[] family, byte[] qualifier, long timestamp, int valueSize) {
+        return newKeyValue(family, qualifier, timestamp, value, valueSize);
+    }
+
+    private KeyValue newKeyValue(byte[] family, byte[] qualifier, long timestamp, byte[] aValue, int valueLength) {
+        return new KeyValue(row, 0, rowLength, family, 0, family.length, qualifier, 0, qualifier.length,
+                timestamp, KeyValue.Type.Put, aValue, 0, valueLength);
+    }
+}
@@ -0,0 +1,332 @@
+package admin.load;
+
+import admin.RandomString;
+import admin.StageByDateBuilder;
+import admin.stats.LogHistogram;
+import com.google.common.util.concurrent.RateLimiter;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.AbstractHBaseTool;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Multi-threaded write load generator for staged tables.
+ *
+ * Keys have the form yyyyMM + key number, the layout expected by StageByDateBuilder, and are chosen with a
+ * configurable distribution:
+ * <ul>
+ * <li> uniform: every key of every month with the same probability.
+ * <li> zipfian: a few keys of the most recent months take most of the writes.
+ * <li> month: a weight per stage (hot, warm, cold) with the stage boundaries of StageByDateBuilder.
+ * </ul>
+ *
+ * Writers send batches of Puts at an optional global rate. Batch latencies are recorded in histograms and the
+ * rows written per region are reported at the end, so the skew created for the planners is visible.
+ */
+public class LoadGenerator extends AbstractHBaseTool {
+
+    private static final Log LOG = LogFactory.getLog(LoadGenerator.class);
+
+    protected static final String OPT_TABLENAME = "tablename";
+    protected static final String OPT_FAMILY = "family";
+    protected static final String OPT_THREADS = "threads";
+    protected static final String OPT_ROWS = "rows";
+    protected static final String OPT_BATCH = "batch";
+    protected static final String OPT_RATE = "rate";
+    protected static final String OPT_DISTRIBUTION = "distribution";
+    protected static final String OPT_MONTHS = "months";
+    protected static final String OPT_KEYS_PER_MONTH = "keys_per_month";
+    protected static final String OPT_ZIPF_EXPONENT = "zipf_exponent";
+    protected static final String OPT_HOT_WEIGHT = "hot_weight";
+    protected static final String OPT_WARM_WEIGHT = "warm_weight";
+    protected static final String OPT_COLD_WEIGHT = "cold_weight";
+    protected static final String OPT_VALUE_DIST = "value_dist";
+    protected static final String OPT_VALUE_MIN = "value_min";
+    protected static final String OPT_VALUE_MAX = "value_max";
+    protected static final String OPT_REPORT_INTERVAL = "report_interval";
+
+    protected static final String DIST_UNIFORM = "uniform";
+    protected static final String DIST_ZIPFIAN = "zipfian";
+    protected static final String DIST_MONTH = "month";
+
+    protected static final int DEFAULT_THREADS = 8;
+    protected static final long DEFAULT_ROWS = 1000000L;
+    protected static final int DEFAULT_BATCH = 100;
+    protected static final long DEFAULT_KEYS_PER_MONTH = 100000L;
+    protected static final int DEFAULT_VALUE_SIZE = 100;
+    protected static final int DEFAULT_REPORT_INTERVAL = 10;
+
+    private static final byte[] QUALIFIER = Bytes.toBytes("col1");
+
+    String sTable;
+    byte[] family = Bytes.toBytes("colfam1");
+    int threads = DEFAULT_THREADS;
+    long rows = DEFAULT_ROWS;
+    int batch = DEFAULT_BATCH;
+    double rate = 0;
+    int months;
+    long keysPerMonth = DEFAULT_KEYS_PER_MONTH;
+    int reportInterval = DEFAULT_REPORT_INTERVAL;
+
+    KeyDistribution keyDistribution;
+    ValueSizeDistribution valueSizeDistribution;
+
+    byte[][] monthPrefixes;
+    int numberWidth;
+
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong rowsToWrite = new AtomicLong();
+    private final List<LogHistogram> histograms = new ArrayList<>();
+
+    public static void main(String[] args) throws Throwable {
+
+        new LoadGenerator().doStaticMain(args);
+
+    }
+
+    @Override
+    protected void addOptions() {
+
+        addRequiredOptWithArg(OPT_TABLENAME, "Name of the table to write to");
+        addOptWithArg(OPT_FAMILY, "Column family (defaults to colfam1)");
+        addOptWithArg(OPT_THREADS, "Number of writer threads (defaults to " + DEFAULT_THREADS + ")");
+        addOptWithArg(OPT_ROWS, "Total number of rows to write (defaults to " + DEFAULT_ROWS + ")");
+        addOptWithArg(OPT_BATCH, "Number of Puts per batch (defaults to " + DEFAULT_BATCH + ")");
+        addOptWithArg(OPT_RATE, "Target rate in rows/s for all the threads. 0 for no limit (default)");
+        addOptWithArg(OPT_DISTRIBUTION, "Key distribution: " + DIST_UNIFORM + ", " + DIST_ZIPFIAN + " or "
+                + DIST_MONTH + " (default)");
+        addOptWithArg(OPT_MONTHS, "Number of months of the key space, from the current one backwards. Default: hot+warm+cold months");
+        addOptWithArg(OPT_KEYS_PER_MONTH, "Number of different keys per month (defaults to " + DEFAULT_KEYS_PER_MONTH + ")");
+        addOptWithArg(OPT_ZIPF_EXPONENT, "Exponent of the zipfian distribution (defaults to " + ZipfianKeyDistribution.DEFAULT_EXPONENT + ")");
+        addOptWithArg(OPT_HOT_WEIGHT, "Share of the writes to the hot months for the month distribution (defaults to 0.80)");
+        addOptWithArg(OPT_WARM_WEIGHT, "Share of the writes to the warm months for the month distribution (defaults to 0.15)");
+        addOptWithArg(OPT_COLD_WEIGHT, "Share of the writes to the cold months for the month distribution (defaults to 0.05)");
+        addOptWithArg(OPT_VALUE_DIST, "Value size distribution: " + ValueSizeDistribution.FIXED + " (default), "
+                + ValueSizeDistribution.UNIFORM + " or " + ValueSizeDistribution.EXPONENTIAL);
+        addOptWithArg(OPT_VALUE_MIN, "Min value size in bytes (defaults to " + DEFAULT_VALUE_SIZE + ")");
+        addOptWithArg(OPT_VALUE_MAX, "Max value size in bytes (defaults to the min size)");
+        addOptWithArg(OPT_REPORT_INTERVAL, "Seconds between progress reports (defaults to " + DEFAULT_REPORT_INTERVAL + ")");
+    }
+
+    @Override
+    protected void processOptions(CommandLine cmd) {
+
+        sTable = cmd.getOptionValue(OPT_TABLENAME);
+        if (cmd.hasOption(OPT_FAMILY)) family = Bytes.toBytes(cmd.getOptionValue(OPT_FAMILY));
+
+        threads = Integer.parseInt(cmd.getOptionValue(OPT_THREADS, String.valueOf(DEFAULT_THREADS)));
+        rows = Long.parseLong(cmd.getOptionValue(OPT_ROWS, String.valueOf(DEFAULT_ROWS)));
+        batch = Integer.parseInt(cmd.getOptionValue(OPT_BATCH, String.valueOf(DEFAULT_BATCH)));
+        rate = Double.parseDouble(cmd.getOptionValue(OPT_RATE, "0"));
+        reportInterval = Integer.parseInt(cmd.getOptionValue(OPT_REPORT_INTERVAL, String.valueOf(DEFAULT_REPORT_INTERVAL)));
+
+        int hotMonths = conf.getInt(StageByDateBuilder.NORMALIZER_MONTHS_HOT_KEY_PROPERTY,
+                StageByDateBuilder.DEFAULT_HOT_EXPIRATION_IN_MONTHS);
+        int warmMonths = conf.getInt(StageByDateBuilder.NORMALIZER_MONTHS_WARM_KEY_PROPERTY,
+                StageByDateBuilder.DEFAULT_WARM_EXPIRATION_IN_MONTHS);
+        int coldMonths = conf.getInt(StageByDateBuilder.NORMALIZER_MONTHS_COLD_KEY_PROPERTY,
+                StageByDateBuilder.DEFAULT_COLD_EXPIRATION_IN_MONTHS);
+
+        months = Integer.parseInt(cmd.getOptionValue(OPT_MONTHS, String.valueOf(hotMonths + warmMonths + coldMonths)));
+        keysPerMonth = Long.parseLong(cmd.getOptionValue(OPT_KEYS_PER_MONTH, String.valueOf(DEFAULT_KEYS_PER_MONTH)));
+
+        String distribution = cmd.getOptionValue(OPT_DISTRIBUTION, DIST_MONTH);
+        if (DIST_UNIFORM.equals(distribution)) {
+            keyDistribution = new UniformKeyDistribution(months, keysPerMonth);
+        } else if (DIST_ZIPFIAN.equals(distribution)) {
+            keyDistribution = new ZipfianKeyDistribution(months, keysPerMonth,
+                    Double.parseDouble(cmd.getOptionValue(OPT_ZIPF_EXPONENT, String.valueOf(ZipfianKeyDistribution.DEFAULT_EXPONENT))));
+        } else if (DIST_MONTH.equals(distribution)) {
+            keyDistribution = new MonthSkewedKeyDistribution(months, keysPerMonth, hotMonths, warmMonths,
+                    Double.parseDouble(cmd.getOptionValue(OPT_HOT_WEIGHT, "0.80")),
+                    Double.parseDouble(cmd.getOptionValue(OPT_WARM_WEIGHT, "0.15")),
+                    Double.parseDouble(cmd.getOptionValue(OPT_COLD_WEIGHT, "0.05")));
+        } else {
+            throw new IllegalArgumentException("Unknown key distribution: " + distribution);
+        }
+
+        int valueMin = Integer.parseInt(cmd.getOptionValue(OPT_VALUE_MIN, String.valueOf(DEFAULT_VALUE_SIZE)));
+        int valueMax = Integer.parseInt(cmd.getOptionValue(OPT_VALUE_MAX, String.valueOf(valueMin)));
+        valueSizeDistribution = new ValueSizeDistribution(cmd.getOptionValue(OPT_VALUE_DIST, ValueSizeDistribution.FIXED),
+                valueMin, valueMax);
+
+        monthPrefixes = KeyValueGenerator.encodeMonthPrefixes(months);
+        numberWidth = KeyValueGenerator.digits(keysPerMonth);
+    }
+
+    @Override
+    protected int doWork() throws Exception {
+
+        TableName tableName = TableName.valueOf(sTable);
+
+        LOG.info("Writing " + rows + " rows to " + tableName + " with " + threads + " threads. Keys: "
+                + keyDistribution + ". Values: " + valueSizeDistribution + ". Rate: " + (rate > 0 ? rate + " rows/s" : "unlimited"));
+
+        Connection connection = ConnectionFactory.createConnection(conf);
+
+        RegionLocator locator = connection.getRegionLocator(tableName);
+        final RegionWriteCounter regionCounter = new RegionWriteCounter(locator.getStartKeys());
+        locator.close();
+
+        final RateLimiter rateLimiter = rate > 0 ? RateLimiter.create(rate) : null;
+        rowsToWrite.set(rows);
+
+        final long startTime = System.currentTimeMillis();
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                printProgress(startTime);
+            }
+        }, reportInterval, reportInterval, TimeUnit.SECONDS);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            LogHistogram histogram = new LogHistogram();
+            synchronized (histograms) {
+                histograms.add(histogram);
+            }
+            futures.add(pool.submit(new Writer(connection, tableName, rateLimiter, regionCounter, histogram)));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    LOG.error("Writer failed", e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            reporter.shutdownNow();
+        }
+
+        printProgress(startTime);
+        printRegionCounts(regionCounter);
+
+        connection.close();
+
+        return 0;
+    }
+
+    private LogHistogram mergeHistograms() {
+        LogHistogram total = new LogHistogram();
+        synchronized (histograms) {
+            for (LogHistogram histogram : histograms) {
+                synchronized (histogram) {
+                    total.merge(histogram);
+                }
+            }
+        }
+        return total;
+    }
+
+    private void printProgress(long startTime) {
+        long elapsed = Math.max(1L, System.currentTimeMillis() - startTime);
+        long written = rowsWritten.get();
+        System.out.println("Rows written: " + written + "/" + rows + ". Rate: " + (written * 1000L / elapsed)
+                + " rows/s. Batch latency (us): " + mergeHistograms());
+    }
+
+    private void printRegionCounts(RegionWriteCounter regionCounter) {
+        System.out.println("Rows written per region:");
+        for (int i = 0; i < regionCounter.getNumRegions(); i++) {
+            System.out.println(" Region Start Key:" + Bytes.toString(regionCounter.getStartKey(i))
+                    + " Rows:" + regionCounter.getCount(i));
+        }
+    }
+
+    private class Writer implements Runnable {
+
+        private final Connection connection;
+        private final TableName tableName;
+        private final RateLimiter rateLimiter;
+        private final RegionWriteCounter regionCounter;
+        private final LogHistogram histogram;
+
+        Writer(Connection connection, TableName tableName, RateLimiter rateLimiter, RegionWriteCounter regionCounter,
+               LogHistogram histogram) {
+            this.connection = connection;
+            this.tableName = tableName;
+            this.rateLimiter = rateLimiter;
+            this.regionCounter = regionCounter;
+            this.histogram = histogram;
+        }
+
+        @Override
+        public void run() {
+
+            Random random = ThreadLocalRandom.current();
+            KeyValueGenerator generator = new KeyValueGenerator(random, monthPrefixes[0].length, numberWidth, 0,
+                    RandomString.digits, valueSizeDistribution.getMaxSize());
+
+            try {
+                Table table = connection.getTable(tableName);
+                try {
+                    List<Put> puts = new ArrayList<>(batch);
+                    long count;
+                    while ((count = claim()) > 0) {
+
+                        if (rateLimiter != null) rateLimiter.acquire((int) count);
+
+                        puts.clear();
+                        for (int i = 0; i < count; i++) {
+                            long keyIndex = keyDistribution.nextKeyIndex(random);
+                            int rowLength = generator.nextRow(monthPrefixes[(int) (keyIndex / keysPerMonth)],
+                                    keyIndex % keysPerMonth);
+                            puts.add(generator.newPut(family, QUALIFIER, valueSizeDistribution.nextSize(random)));
+                            regionCounter.increment(generator.getRow(), 0, rowLength);
+                        }
+
+                        long begin = System.nanoTime();
+                        table.put(puts);
+                        long latencyMicros = (System.nanoTime() - begin) / 1000L;
+
+                        synchronized (histogram) {
+                            histogram.record(latencyMicros);
+                        }
+                        rowsWritten.addAndGet(count);
+                    }
+                } finally {
+                    table.close();
+                }
+            } catch (Exception e) {
+                LOG.error("Writer stopped", e);
+            }
+        }
+
+        /**
+         * Claims up to one batch of the remaining rows.
+         */
+        private long claim() {
+            while (true) {
+                long remaining = rowsToWrite.get();
+                if (remaining <= 0) return 0;
+                long count = Math.min(batch, remaining);
+                if (rowsToWrite.compareAndSet(remaining, remaining - count)) return count;
+            }
+        }
+    }
+}
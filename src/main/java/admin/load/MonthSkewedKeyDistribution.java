@@ -0,0 +1,57 @@
+package admin.load;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Chooses the month with a weight per stage, following the layout of StageByDateBuilder: the first hotMonths months
+ * are hot, the next warmMonths are warm and the rest are cold. The stage weight is shared equally by its months and
+ * the key within the month is uniform.
+ */
+public class MonthSkewedKeyDistribution implements KeyDistribution {
+
+    private final long keysPerMonth;
+    private final double[] cumulative;
+    private final String description;
+
+    public MonthSkewedKeyDistribution(int months, long keysPerMonth, int hotMonths, int warmMonths,
+                                      double hotWeight, double warmWeight, double coldWeight) {
+
+        this.keysPerMonth = keysPerMonth;
+        this.cumulative = new double[months];
+
+        int hot = Math.min(hotMonths, months);
+        int warm = Math.min(warmMonths, months - hot);
+        int cold = months - hot - warm;
+
+        double total = 0;
+        for (int m = 0; m < months; m++) {
+            double weight;
+            if (m < hot) weight = hotWeight / hot;
+            else if (m < hot + warm) weight = warmWeight / warm;
+            else weight = coldWeight / cold;
+            total += weight;
+            cumulative[m] = total;
+        }
+        for (int m = 0; m < months; m++) {
+            cumulative[m] /= total;
+        }
+
+        this.description = "month-skewed:months:" + months + ":hot:" + hot + "@" + hotWeight
+                + ":warm:" + warm + "@" + warmWeight + ":cold:" + cold + "@" + coldWeight;
+    }
+
+    @Override
+    public long nextKeyIndex(Random random) {
+
+        int month = Arrays.binarySearch(cumulative, random.nextDouble());
+        if (month < 0) month = -month - 1;
+        if (month >= cumulative.length) month = cumulative.length - 1;
+
+        return month * keysPerMonth + UniformKeyDistribution.nextLong(random, keysPerMonth);
+    }
+
+    public String toString() {
+        return description;
+    }
+}
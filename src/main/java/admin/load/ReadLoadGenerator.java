@@ -0,0 +1,333 @@
+package admin.load;
+
+import admin.PlanEventLog;
+import admin.RandomString;
+import admin.StageByDateBuilder;
+import admin.stats.LogHistogram;
+import com.google.common.util.concurrent.RateLimiter;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.AbstractHBaseTool;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read workload to measure the impact of a normalization run on the readers of a staged table.
+ *
+ * Readers send random Gets and short Scans to keys chosen with a weight per stage (by default hot mostly, cold
+ * rarely). Latencies are recorded per time window and every window is printed with its percentiles. When RegionsTool
+ * runs with a plan event log (--plan_log), the plans started and ended in the window are printed below it, so latency
+ * spikes can be matched with the splits and merges that caused them.
+ */
+public class ReadLoadGenerator extends AbstractHBaseTool {
+
+    private static final Log LOG = LogFactory.getLog(ReadLoadGenerator.class);
+
+    protected static final String OPT_TABLENAME = "tablename";
+    protected static final String OPT_FAMILY = "family";
+    protected static final String OPT_THREADS = "threads";
+    protected static final String OPT_DURATION = "duration";
+    protected static final String OPT_WINDOW = "window";
+    protected static final String OPT_RATE = "rate";
+    protected static final String OPT_SCAN_RATIO = "scan_ratio";
+    protected static final String OPT_SCAN_ROWS = "scan_rows";
+    protected static final String OPT_MONTHS = "months";
+    protected static final String OPT_KEYS_PER_MONTH = "keys_per_month";
+    protected static final String OPT_HOT_WEIGHT = "hot_weight";
+    protected static final String OPT_WARM_WEIGHT = "warm_weight";
+    protected static final String OPT_COLD_WEIGHT = "cold_weight";
+    protected static final String OPT_PLAN_LOG = "plan_log";
+
+    protected static final int DEFAULT_THREADS = 8;
+    protected static final int DEFAULT_DURATION = 3600;
+    protected static final int DEFAULT_WINDOW = 10;
+    protected static final double DEFAULT_SCAN_RATIO = 0.1;
+    protected static final int DEFAULT_SCAN_ROWS = 50;
+    protected static final long DEFAULT_KEYS_PER_MONTH = 100000L;
+
+    private static final DateFormat TIME_FORMAT = new SimpleDateFormat("HH:mm:ss");
+
+    String sTable;
+    byte[] family = Bytes.toBytes("colfam1");
+    int threads = DEFAULT_THREADS;
+    int duration = DEFAULT_DURATION;
+    int window = DEFAULT_WINDOW;
+    double rate = 0;
+    double scanRatio = DEFAULT_SCAN_RATIO;
+    int scanRows = DEFAULT_SCAN_ROWS;
+    long keysPerMonth = DEFAULT_KEYS_PER_MONTH;
+    String planLog;
+
+    KeyDistribution keyDistribution;
+
+    byte[][] monthPrefixes;
+    int numberWidth;
+
+    private final List<Reader> readers = new ArrayList<>();
+
+    public static void main(String[] args) throws Throwable {
+
+        new ReadLoadGenerator().doStaticMain(args);
+
+    }
+
+    @Override
+    protected void addOptions() {
+
+        addRequiredOptWithArg(OPT_TABLENAME, "Name of the table to read from");
+        addOptWithArg(OPT_FAMILY, "Column family (defaults to colfam1)");
+        addOptWithArg(OPT_THREADS, "Number of reader threads (defaults to " + DEFAULT_THREADS + ")");
+        addOptWithArg(OPT_DURATION, "Seconds to run (defaults to " + DEFAULT_DURATION + ")");
+        addOptWithArg(OPT_WINDOW, "Seconds per latency window (defaults to " + DEFAULT_WINDOW + ")");
+        addOptWithArg(OPT_RATE, "Target rate in operations/s for all the threads. 0 for no limit (default)");
+        addOptWithArg(OPT_SCAN_RATIO, "Share of the operations that are short scans (defaults to " + DEFAULT_SCAN_RATIO + ")");
+        addOptWithArg(OPT_SCAN_ROWS, "Rows per short scan (defaults to " + DEFAULT_SCAN_ROWS + ")");
+        addOptWithArg(OPT_MONTHS, "Number of months of the key space, from the current one backwards. Default: hot+warm+cold months");
+        addOptWithArg(OPT_KEYS_PER_MONTH, "Number of different keys per month (defaults to " + DEFAULT_KEYS_PER_MONTH + ")");
+        addOptWithArg(OPT_HOT_WEIGHT, "Share of the reads to the hot months (defaults to 0.80)");
+        addOptWithArg(OPT_WARM_WEIGHT, "Share of the reads to the warm months (defaults to 0.15)");
+        addOptWithArg(OPT_COLD_WEIGHT, "Share of the reads to the cold months (defaults to 0.05)");
+        addOptWithArg(OPT_PLAN_LOG, "Plan event log written by RegionsTool, to annotate the windows with the plans executed");
+    }
+
+    @Override
+    protected void processOptions(CommandLine cmd) {
+
+        sTable = cmd.getOptionValue(OPT_TABLENAME);
+        if (cmd.hasOption(OPT_FAMILY)) family = Bytes.toBytes(cmd.getOptionValue(OPT_FAMILY));
+
+        threads = Integer.parseInt(cmd.getOptionValue(OPT_THREADS, String.valueOf(DEFAULT_THREADS)));
+        duration = Integer.parseInt(cmd.getOptionValue(OPT_DURATION, String.valueOf(DEFAULT_DURATION)));
+        window = Integer.parseInt(cmd.getOptionValue(OPT_WINDOW, String.valueOf(DEFAULT_WINDOW)));
+        rate = Double.parseDouble(cmd.getOptionValue(OPT_RATE, "0"));
+        scanRatio = Double.parseDouble(cmd.getOptionValue(OPT_SCAN_RATIO, String.valueOf(DEFAULT_SCAN_RATIO)));
+        scanRows = Integer.parseInt(cmd.getOptionValue(OPT_SCAN_ROWS, String.valueOf(DEFAULT_SCAN_ROWS)));
+        planLog = cmd.getOptionValue(OPT_PLAN_LOG, conf.get(PlanEventLog.PLAN_EVENT_LOG_KEY_PROPERTY));
+
+        int hotMonths = conf.getInt(StageByDateBuilder.NORMALIZER_MONTHS_HOT_KEY_PROPERTY,
+                StageByDateBuilder.DEFAULT_HOT_EXPIRATION_IN_MONTHS);
+        int warmMonths = conf.getInt(StageByDateBuilder.NORMALIZER_MONTHS_WARM_KEY_PROPERTY,
+                StageByDateBuilder.DEFAULT_WARM_EXPIRATION_IN_MONTHS);
+        int coldMonths = conf.getInt(StageByDateBuilder.NORMALIZER_MONTHS_COLD_KEY_PROPERTY,
+                StageByDateBuilder.DEFAULT_COLD_EXPIRATION_IN_MONTHS);
+
+        int months = Integer.parseInt(cmd.getOptionValue(OPT_MONTHS, String.valueOf(hotMonths + warmMonths + coldMonths)));
+        keysPerMonth = Long.parseLong(cmd.getOptionValue(OPT_KEYS_PER_MONTH, String.valueOf(DEFAULT_KEYS_PER_MONTH)));
+
+        keyDistribution = new MonthSkewedKeyDistribution(months, keysPerMonth, hotMonths, warmMonths,
+                Double.parseDouble(cmd.getOptionValue(OPT_HOT_WEIGHT, "0.80")),
+                Double.parseDouble(cmd.getOptionValue(OPT_WARM_WEIGHT, "0.15")),
+                Double.parseDouble(cmd.getOptionValue(OPT_COLD_WEIGHT, "0.05")));
+
+        monthPrefixes = KeyValueGenerator.encodeMonthPrefixes(months);
+        numberWidth = KeyValueGenerator.digits(keysPerMonth);
+    }
+
+    @Override
+    protected int doWork() throws Exception {
+
+        TableName tableName = TableName.valueOf(sTable);
+
+        LOG.info("Reading from " + tableName + " with " + threads + " threads for " + duration + "s. Keys: "
+                + keyDistribution + ". Scan ratio: " + scanRatio + ". Rate: " + (rate > 0 ? rate + " ops/s" : "unlimited"));
+
+        PlanEventLog.Tailer tailer = planLog != null ? new PlanEventLog.Tailer(new File(planLog), true) : null;
+
+        Connection connection = ConnectionFactory.createConnection(conf);
+
+        RateLimiter rateLimiter = rate > 0 ? RateLimiter.create(rate) : null;
+        long endTime = System.currentTimeMillis() + duration * 1000L;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Reader reader = new Reader(connection, tableName, rateLimiter, endTime);
+            readers.add(reader);
+            futures.add(pool.submit(reader));
+        }
+
+        LogHistogram totalGets = new LogHistogram();
+        LogHistogram totalScans = new LogHistogram();
+
+        try {
+            long windowStart = System.currentTimeMillis();
+            while (windowStart < endTime) {
+                long windowEnd = Math.min(endTime, windowStart + window * 1000L);
+                Thread.sleep(Math.max(0L, windowEnd - System.currentTimeMillis()));
+                printWindow(windowStart, System.currentTimeMillis(), tailer, totalGets, totalScans);
+                windowStart = windowEnd;
+            }
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    LOG.error("Reader failed", e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        System.out.println("TOTAL GETS (us): " + totalGets);
+        System.out.println("TOTAL SCANS (us): " + totalScans);
+
+        connection.close();
+
+        return 0;
+    }
+
+    private void printWindow(long windowStart, long windowEnd, PlanEventLog.Tailer tailer,
+                             LogHistogram totalGets, LogHistogram totalScans) {
+
+        LogHistogram gets = new LogHistogram();
+        LogHistogram scans = new LogHistogram();
+        long errors = 0;
+        for (Reader reader : readers) {
+            errors += reader.collect(gets, scans);
+        }
+        totalGets.merge(gets);
+        totalScans.merge(scans);
+
+        long seconds = Math.max(1L, (windowEnd - windowStart) / 1000L);
+        System.out.println("WINDOW " + TIME_FORMAT.format(new Date(windowStart)) + "-" + TIME_FORMAT.format(new Date(windowEnd))
+                + " ops/s:" + (gets.getCount() + scans.getCount()) / seconds
+                + " errors:" + errors
+                + " GETS (us): " + gets
+                + " SCANS (us): " + scans);
+
+        if (tailer == null) return;
+        try {
+            for (String line : tailer.poll()) {
+                String[] fields = line.split("\t");
+                if (fields.length < 4) continue;
+                System.out.println("  PLAN " + TIME_FORMAT.format(new Date(Long.parseLong(fields[0])))
+                        + " " + fields[1] + " " + fields[2] + " " + fields[3]
+                        + (fields.length > 4 ? " Time (ms):" + fields[4] : "")
+                        + (fields.length > 5 ? " " + fields[5] : ""));
+            }
+        } catch (IOException | NumberFormatException e) {
+            LOG.warn("Cannot read the plan event log " + planLog, e);
+        }
+    }
+
+    private class Reader implements Runnable {
+
+        private final Connection connection;
+        private final TableName tableName;
+        private final RateLimiter rateLimiter;
+        private final long endTime;
+
+        private final LogHistogram getHistogram = new LogHistogram();
+        private final LogHistogram scanHistogram = new LogHistogram();
+        private final AtomicLong errors = new AtomicLong();
+
+        Reader(Connection connection, TableName tableName, RateLimiter rateLimiter, long endTime) {
+            this.connection = connection;
+            this.tableName = tableName;
+            this.rateLimiter = rateLimiter;
+            this.endTime = endTime;
+        }
+
+        /**
+         * Adds the latencies of the current window to the given histograms and starts a new window.
+         *
+         * @return the errors of the window
+         */
+        synchronized long collect(LogHistogram gets, LogHistogram scans) {
+            gets.merge(getHistogram);
+            scans.merge(scanHistogram);
+            getHistogram.reset();
+            scanHistogram.reset();
+            return errors.getAndSet(0);
+        }
+
+        @Override
+        public void run() {
+
+            Random random = ThreadLocalRandom.current();
+            KeyValueGenerator generator = new KeyValueGenerator(random, monthPrefixes[0].length, numberWidth, 0,
+                    RandomString.digits, 0);
+
+            try {
+                Table table = connection.getTable(tableName);
+                try {
+                    while (System.currentTimeMillis() < endTime && !Thread.currentThread().isInterrupted()) {
+
+                        if (rateLimiter != null) rateLimiter.acquire();
+
+                        long keyIndex = keyDistribution.nextKeyIndex(random);
+                        int rowLength = generator.nextRow(monthPrefixes[(int) (keyIndex / keysPerMonth)],
+                                keyIndex % keysPerMonth);
+                        byte[] row = Arrays.copyOf(generator.getRow(), rowLength);
+                        boolean isScan = random.nextDouble() < scanRatio;
+
+                        long begin = System.nanoTime();
+                        try {
+                            if (isScan) {
+                                scan(table, row);
+                            } else {
+                                table.get(new Get(row).addFamily(family));
+                            }
+                        } catch (IOException e) {
+                            LOG.debug("Read failed", e);
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        long latencyMicros = (System.nanoTime() - begin) / 1000L;
+
+                        synchronized (this) {
+                            (isScan ? scanHistogram : getHistogram).record(latencyMicros);
+                        }
+                    }
+                } finally {
+                    table.close();
+                }
+            } catch (Exception e) {
+                LOG.error("Reader stopped", e);
+            }
+        }
+
+        private void scan(Table table, byte[] startRow) throws IOException {
+            Scan scan = new Scan(startRow);
+            scan.addFamily(family);
+            scan.setCaching(scanRows);
+            scan.setSmall(true);
+            ResultScanner scanner = table.getScanner(scan);
+            try {
+                int count = 0;
+                Result result;
+                while (count < scanRows && (result = scanner.next()) != null) {
+                    if (!result.isEmpty()) count++;
+                }
+            } finally {
+                scanner.close();
+            }
+        }
+    }
+}
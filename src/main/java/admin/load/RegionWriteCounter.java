@@ -0,0 +1,53 @@
+package admin.load;
+
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the rows written to every region of a table, locating each row by binary search over the region start
+ * keys taken when the load started.
+ */
+public class RegionWriteCounter {
+
+    private final byte[][] startKeys;
+    private final AtomicLongArray counts;
+
+    public RegionWriteCounter(byte[][] startKeys) {
+        this.startKeys = startKeys.clone();
+        Arrays.sort(this.startKeys, Bytes.BYTES_COMPARATOR);
+        this.counts = new AtomicLongArray(this.startKeys.length);
+    }
+
+    public void increment(byte[] row, int offset, int length) {
+        counts.incrementAndGet(regionIndex(row, offset, length));
+    }
+
+    int regionIndex(byte[] row, int offset, int length) {
+        int low = 0;
+        int high = startKeys.length - 1;
+        // Last region whose start key is <= row
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (Bytes.compareTo(startKeys[mid], 0, startKeys[mid].length, row, offset, length) <= 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    public int getNumRegions() {
+        return startKeys.length;
+    }
+
+    public byte[] getStartKey(int index) {
+        return startKeys[index];
+    }
+
+    public long getCount(int index) {
+        return counts.get(index);
+    }
+}
@@ -0,0 +1,38 @@
+package admin.load;
+
+import java.util.Random;
+
+/**
+ * Every key of the key space has the same probability.
+ */
+public class UniformKeyDistribution implements KeyDistribution {
+
+    private final long numKeys;
+
+    public UniformKeyDistribution(int months, long keysPerMonth) {
+        this.numKeys = months * keysPerMonth;
+    }
+
+    @Override
+    public long nextKeyIndex(Random random) {
+        return nextLong(random, numKeys);
+    }
+
+    /**
+     * Uniform long in [0, bound).
+     */
+    static long nextLong(Random random, long bound) {
+        if (bound <= Integer.MAX_VALUE) return random.nextInt((int) bound);
+        long r;
+        long m = bound - 1;
+        long u = random.nextLong() >>> 1;
+        while (u + m - (r = u % bound) < 0L) {
+            u = random.nextLong() >>> 1;
+        }
+        return r;
+    }
+
+    public String toString() {
+        return "uniform:keys:" + numKeys;
+    }
+}
@@ -0,0 +1,52 @@
+package admin.load;
+
+import java.util.Random;
+
+/**
+ * Size in bytes of the values written by the load generator.
+ *
+ * <ul>
+ * <li> fixed: always the min size.
+ * <li> uniform: uniform between min and max size.
+ * <li> exponential: exponential with mean (min + max) / 2, bounded by min and max. Most values are small with a
+ * long tail of big ones.
+ * </ul>
+ */
+public class ValueSizeDistribution {
+
+    public static final String FIXED = "fixed";
+    public static final String UNIFORM = "uniform";
+    public static final String EXPONENTIAL = "exponential";
+
+    private final String type;
+    private final int minSize;
+    private final int maxSize;
+
+    public ValueSizeDistribution(String type, int minSize, int maxSize) {
+        if (!FIXED.equals(type) && !UNIFORM.equals(type) && !EXPONENTIAL.equals(type)) {
+            throw new IllegalArgumentException("Unknown value size distribution: " + type);
+        }
+        if (minSize < 0 || maxSize < minSize) {
+            throw new IllegalArgumentException("Invalid value sizes [" + minSize + "," + maxSize + "]");
+        }
+        this.type = type;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+    }
+
+    public int nextSize(Random random) {
+        if (FIXED.equals(type) || minSize == maxSize) return minSize;
+        if (UNIFORM.equals(type)) return minSize + random.nextInt(maxSize - minSize + 1);
+        double mean = (minSize + maxSize) / 2.0;
+        double size = -mean * Math.log(1 - random.nextDouble());
+        return (int) Math.max(minSize, Math.min(maxSize, size));
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public String toString() {
+        return type + ":[" + minSize + "," + maxSize + "]";
+    }
+}
@@ -0,0 +1,57 @@
+package admin.load;
+
+import java.util.Random;
+
+/**
+ * Zipfian popularity over the key space, being the key index its rank: the most popular keys are the first
+ * keys of the most recent months.
+ *
+ * Implements the algorithm of Gray et al. "Quickly Generating Billion-Record Synthetic Databases", the one used
+ * by YCSB. The zeta constant is computed once, in O(number of keys).
+ */
+public class ZipfianKeyDistribution implements KeyDistribution {
+
+    public static final double DEFAULT_EXPONENT = 0.99;
+
+    private final long numKeys;
+    private final double theta;
+    private final double alpha;
+    private final double zetaN;
+    private final double eta;
+
+    public ZipfianKeyDistribution(int months, long keysPerMonth, double theta) {
+
+        this.numKeys = months * keysPerMonth;
+        this.theta = theta;
+
+        double zeta2 = zeta(2, theta);
+        this.zetaN = zeta(numKeys, theta);
+        this.alpha = 1.0 / (1.0 - theta);
+        this.eta = (1 - Math.pow(2.0 / numKeys, 1 - theta)) / (1 - zeta2 / zetaN);
+    }
+
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, theta);
+        }
+        return sum;
+    }
+
+    @Override
+    public long nextKeyIndex(Random random) {
+
+        double u = random.nextDouble();
+        double uz = u * zetaN;
+
+        if (uz < 1.0) return 0;
+        if (uz < 1.0 + Math.pow(0.5, theta)) return Math.min(1, numKeys - 1);
+
+        long rank = (long) (numKeys * Math.pow(eta * u - eta + 1, alpha));
+        return Math.min(rank, numKeys - 1);
+    }
+
+    public String toString() {
+        return "zipfian:keys:" + numKeys + ":theta:" + theta;
+    }
+}
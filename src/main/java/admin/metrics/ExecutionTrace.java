@@ -0,0 +1,149 @@
+package admin.metrics;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Timeline of a run of RegionsTool as a Chrome trace-event file, to open in chrome://tracing or Perfetto:
+ * <pre>
+ *   [
+ *   {"name":"process_name","ph":"M","pid":1,"tid":0,"args":{"name":"RegionsTool t"}},
+ *   {"name":"planning StagedMaxSizeRegionPlanner","cat":"planning","ph":"X","ts":1490000000000000,"dur":1500000,
+ *    "pid":1,"tid":0,"args":{"iteration":"1","plans":"12"}},
+ *   ...
+ * </pre>
+ * Every span is a complete event ("ph":"X") with its start and duration in microseconds. The phases of the tool
+ * (sleep, planning, wait for the regions in transition, report...) are on the first track, and the plans on one
+ * track per RegionServer, so the concurrency shows as overlapping tracks.
+ *
+ * Times are the ones of the cluster, so a simulation shows its simulated timeline. Events are written as they end
+ * and the closing bracket only on close; the trace viewers accept a file without it, e.g. after a kill.
+ *
+ * It is thread safe: spans may be recorded from several threads, e.g. the ones executing plans.
+ */
+public class ExecutionTrace {
+
+    private static final Log LOG = LogFactory.getLog(ExecutionTrace.class);
+
+    public static final String TRACE_FILE_KEY_PROPERTY = "hbase.regiontool.trace.file";
+
+    public static final String PHASES = "RegionsTool";
+
+    private static final int PID = 1;
+
+    private final File file;
+    private final OutputStream out;
+    private final JsonFactory factory = new JsonFactory();
+    private final Map<String, Integer> tracks = new HashMap<>();
+    private boolean isFirst = true;
+
+    public ExecutionTrace(File file, String processName) throws IOException {
+        this.file = file;
+        this.out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+        factory.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        factory.configure(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM, false);
+        out.write('[');
+        writeMetadata("process_name", 0, processName);
+        track(PHASES);
+    }
+
+    /**
+     * Records a span of the first track.
+     *
+     * @param args name and value pairs, shown when the span is selected
+     */
+    public synchronized void span(String name, String category, long startMillis, long endMillis, String... args) {
+        span(PHASES, name, category, startMillis, endMillis, args);
+    }
+
+    /**
+     * Records a span of the given track, e.g. a RegionServer. Tracks are created on first use.
+     */
+    public synchronized void span(String track, String name, String category, long startMillis, long endMillis,
+                                  String... args) {
+        int tid = track(track);
+        try {
+            JsonGenerator json = startEvent();
+            json.writeStringField("name", name);
+            json.writeStringField("cat", category);
+            json.writeStringField("ph", "X");
+            json.writeNumberField("ts", startMillis * 1000L);
+            json.writeNumberField("dur", Math.max(0, endMillis - startMillis) * 1000L);
+            json.writeNumberField("pid", PID);
+            json.writeNumberField("tid", tid);
+            json.writeObjectFieldStart("args");
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                json.writeStringField(args[i], args[i + 1]);
+            }
+            json.writeEndObject();
+            json.writeEndObject();
+            json.close();
+        } catch (IOException e) {
+            LOG.warn("Cannot write to the trace " + file, e);
+        }
+    }
+
+    private int track(String track) {
+        Integer tid = tracks.get(track);
+        if (tid == null) {
+            tid = tracks.size();
+            tracks.put(track, tid);
+            writeMetadata("thread_name", tid, track);
+            // Keeps the tracks in order of creation, with the phases on top
+            writeMetadata("thread_sort_index", tid, tid);
+        }
+        return tid;
+    }
+
+    private void writeMetadata(String name, int tid, Object value) {
+        try {
+            JsonGenerator json = startEvent();
+            json.writeStringField("name", name);
+            json.writeStringField("ph", "M");
+            json.writeNumberField("pid", PID);
+            json.writeNumberField("tid", tid);
+            json.writeObjectFieldStart("args");
+            if (value instanceof Integer) {
+                json.writeNumberField("sort_index", (Integer) value);
+            } else {
+                json.writeStringField("name", String.valueOf(value));
+            }
+            json.writeEndObject();
+            json.writeEndObject();
+            json.close();
+        } catch (IOException e) {
+            LOG.warn("Cannot write to the trace " + file, e);
+        }
+    }
+
+    private JsonGenerator startEvent() throws IOException {
+        if (!isFirst) out.write(',');
+        out.write('\n');
+        isFirst = false;
+        JsonGenerator json = factory.createJsonGenerator(out, JsonEncoding.UTF8);
+        json.writeStartObject();
+        return json;
+    }
+
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    public synchronized void close() throws IOException {
+        out.write('\n');
+        out.write(']');
+        out.write('\n');
+        out.close();
+    }
+}
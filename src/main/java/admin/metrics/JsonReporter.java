@@ -0,0 +1,131 @@
+package admin.metrics;
+
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.Metered;
+import com.yammer.metrics.core.Metric;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricProcessor;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+import com.yammer.metrics.reporting.AbstractPollingReporter;
+import com.yammer.metrics.stats.Snapshot;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Appends every metric of a registry to a file, one JSON object per report:
+ * <pre>
+ *   {"timestamp":1490000000000,"metrics":{"plansExecuted":{"count":12},"ritWait":{"count":3,"min":10000.0,...}}}
+ * </pre>
+ * Timers and histograms have count, min, max, mean and the 50th, 95th and 99th percentiles; timers and meters add
+ * the mean and one minute rates.
+ */
+public class JsonReporter extends AbstractPollingReporter implements MetricProcessor<JsonGenerator> {
+
+    private static final Log LOG = LogFactory.getLog(JsonReporter.class);
+
+    private final File file;
+    private final JsonFactory factory = new JsonFactory();
+
+    public JsonReporter(MetricsRegistry registry, File file) {
+        super(registry, "json-reporter");
+        this.file = file;
+    }
+
+    @Override
+    public synchronized void run() {
+
+        // The whole line is built first, so a reader never sees half a report
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        try {
+            JsonGenerator json = factory.createJsonGenerator(line, JsonEncoding.UTF8);
+            json.writeStartObject();
+            json.writeNumberField("timestamp", System.currentTimeMillis());
+            json.writeObjectFieldStart("metrics");
+            for (SortedMap<MetricName, Metric> group : getMetricsRegistry().groupedMetrics().values()) {
+                for (Map.Entry<MetricName, Metric> entry : group.entrySet()) {
+                    json.writeObjectFieldStart(entry.getKey().getName());
+                    entry.getValue().processWith(this, entry.getKey(), json);
+                    json.writeEndObject();
+                }
+            }
+            json.writeEndObject();
+            json.writeEndObject();
+            json.close();
+            line.write('\n');
+
+            OutputStream out = new FileOutputStream(file, true);
+            try {
+                line.writeTo(out);
+            } finally {
+                out.close();
+            }
+        } catch (Exception e) {
+            LOG.warn("Cannot write the metrics to " + file, e);
+        }
+    }
+
+    @Override
+    public void processMeter(MetricName name, Metered meter, JsonGenerator json) throws IOException {
+        json.writeNumberField("count", meter.count());
+        writeRates(meter, json);
+    }
+
+    @Override
+    public void processCounter(MetricName name, Counter counter, JsonGenerator json) throws IOException {
+        json.writeNumberField("count", counter.count());
+    }
+
+    @Override
+    public void processHistogram(MetricName name, Histogram histogram, JsonGenerator json) throws IOException {
+        json.writeNumberField("count", histogram.count());
+        writeSummary(histogram.min(), histogram.max(), histogram.mean(), histogram.getSnapshot(), json);
+    }
+
+    @Override
+    public void processTimer(MetricName name, Timer timer, JsonGenerator json) throws IOException {
+        json.writeNumberField("count", timer.count());
+        writeSummary(timer.min(), timer.max(), timer.mean(), timer.getSnapshot(), json);
+        writeRates(timer, json);
+    }
+
+    @Override
+    public void processGauge(MetricName name, Gauge<?> gauge, JsonGenerator json) throws IOException {
+        Object value = gauge.value();
+        if (value instanceof Long || value instanceof Integer) {
+            json.writeNumberField("value", ((Number) value).longValue());
+        } else if (value instanceof Number) {
+            json.writeNumberField("value", ((Number) value).doubleValue());
+        } else {
+            json.writeStringField("value", String.valueOf(value));
+        }
+    }
+
+    private static void writeSummary(double min, double max, double mean, Snapshot snapshot, JsonGenerator json)
+            throws IOException {
+        json.writeNumberField("min", min);
+        json.writeNumberField("max", max);
+        json.writeNumberField("mean", mean);
+        json.writeNumberField("p50", snapshot.getMedian());
+        json.writeNumberField("p95", snapshot.get95thPercentile());
+        json.writeNumberField("p99", snapshot.get99thPercentile());
+    }
+
+    private static void writeRates(Metered meter, JsonGenerator json) throws IOException {
+        json.writeNumberField("meanRate", meter.meanRate());
+        json.writeNumberField("oneMinuteRate", meter.oneMinuteRate());
+    }
+}
@@ -0,0 +1,57 @@
+package admin.metrics;
+
+import org.apache.hadoop.hbase.client.Admin;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Admin that counts the calls to the master and the failed ones.
+ *
+ * NormalizationPlan.execute catches and logs the errors of the split and merge requests, so this is the only place
+ * where a failed plan can be seen.
+ */
+public class MeteredAdmin {
+
+    // Failed plans of the current thread, to tell which plan failed when several are executed at once
+    private static final ThreadLocal<long[]> threadFailures = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    private MeteredAdmin() {
+    }
+
+    /**
+     * Number of split and merge requests that failed in the current thread.
+     */
+    public static long getThreadFailures() {
+        return threadFailures.get()[0];
+    }
+
+    public static Admin wrap(final Admin admin) {
+        return (Admin) Proxy.newProxyInstance(Admin.class.getClassLoader(), new Class<?>[]{Admin.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String name = method.getName();
+                        boolean isRpc = !"close".equals(name) && !"toString".equals(name)
+                                && !"hashCode".equals(name) && !"equals".equals(name);
+                        if (isRpc) RegionToolMetrics.counter(RegionToolMetrics.MASTER_RPCS).inc();
+                        try {
+                            return method.invoke(admin, args);
+                        } catch (InvocationTargetException e) {
+                            if ("splitRegion".equals(name) || "mergeRegions".equals(name)) {
+                                RegionToolMetrics.counter(RegionToolMetrics.PLANS_FAILED).inc();
+                                threadFailures.get()[0]++;
+                            }
+                            throw e.getCause();
+                        }
+                    }
+                });
+    }
+}
@@ -0,0 +1,211 @@
+package admin.metrics;
+
+import admin.stats.RegionSizeStats;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+import com.yammer.metrics.reporting.AbstractPollingReporter;
+import com.yammer.metrics.reporting.CsvReporter;
+import com.yammer.metrics.reporting.JmxReporter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.TableName;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of RegionsTool and the planners, in a registry of their own exported through JMX and, optionally,
+ * periodic CSV files and JSON lines.
+ *
+ * Metrics are static, like the default registry of metrics-core, so the planners and cluster views record them
+ * without having them passed around. All names are in the "admin" group, type "RegionTool":
+ * <ul>
+ * <li> Timers: regionLoads, stageBoundaries, planning.&lt;planner&gt;, execution.&lt;plan type&gt;, ritWait
+ * <li> Counters: masterRpcs, plansGenerated, plansExecuted, plansFailed, plansSuppressed, suppressedMB (the data
+ * their execution would have rewritten), planningComputed, planningSkipped (plannings reusing the last plans of an
+ * unchanged table), plansRetried, iterations, and
+ * verified.&lt;planner&gt;.succeeded, noop and failed, the executed plans as verified on the regions of the table
+ * <li> Gauges: &lt;table&gt;.&lt;stage&gt;.regions, sizeMB, p50MB, p99MB, maxMB, stddevMB and gini of the last stage
+ * boundaries of each table (namespace separator replaced by an underscore),
+ * and lastProgress, the time of the last completed planner or plan, to alert on stuck runs
+ * </ul>
+ */
+public class RegionToolMetrics {
+
+    private static final Log LOG = LogFactory.getLog(RegionToolMetrics.class);
+
+    public static final String METRICS_JMX_KEY_PROPERTY = "hbase.regiontool.metrics.jmx";
+    public static final String METRICS_CSV_DIR_KEY_PROPERTY = "hbase.regiontool.metrics.csv.dir";
+    public static final String METRICS_JSON_FILE_KEY_PROPERTY = "hbase.regiontool.metrics.json.file";
+    public static final String METRICS_PERIOD_KEY_PROPERTY = "hbase.regiontool.metrics.period.seconds";
+
+    public static final long DEFAULT_PERIOD_SECONDS = 60;
+
+    public static final String REGION_LOADS = "regionLoads";
+    public static final String STAGE_BOUNDARIES = "stageBoundaries";
+    public static final String PLANNING = "planning.";
+    public static final String EXECUTION = "execution.";
+    public static final String RIT_WAIT = "ritWait";
+
+    public static final String MASTER_RPCS = "masterRpcs";
+    public static final String PLANS_GENERATED = "plansGenerated";
+    public static final String PLANS_EXECUTED = "plansExecuted";
+    public static final String PLANS_FAILED = "plansFailed";
+    public static final String PLANS_SUPPRESSED = "plansSuppressed";
+    public static final String SUPPRESSED_MB = "suppressedMB";
+    public static final String PLANNING_COMPUTED = "planningComputed";
+    public static final String PLANNING_SKIPPED = "planningSkipped";
+    public static final String PLANS_RETRIED = "plansRetried";
+    public static final String VERIFIED = "verified.";
+    public static final String ITERATIONS = "iterations";
+
+    private static final String GROUP = "admin";
+    private static final String TYPE = "RegionTool";
+
+    private static final MetricsRegistry registry = new MetricsRegistry();
+
+    private static final ConcurrentMap<String, AtomicLong> gaugeValues = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, AtomicLong> doubleGaugeValues = new ConcurrentHashMap<>();
+
+    private static final List<Object> reporters = new ArrayList<>();
+
+    private RegionToolMetrics() {
+    }
+
+    public static MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    public static Timer timer(String name) {
+        return registry.newTimer(new MetricName(GROUP, TYPE, name), TimeUnit.MILLISECONDS, TimeUnit.SECONDS);
+    }
+
+    public static Counter counter(String name) {
+        return registry.newCounter(new MetricName(GROUP, TYPE, name));
+    }
+
+    /**
+     * Sets the value of a long gauge, registering it on first use.
+     */
+    public static void setGauge(String name, long value) {
+        AtomicLong holder = gaugeValues.get(name);
+        if (holder == null) {
+            AtomicLong newHolder = new AtomicLong();
+            holder = gaugeValues.putIfAbsent(name, newHolder);
+            if (holder == null) {
+                holder = newHolder;
+                final AtomicLong gaugeValue = holder;
+                registry.newGauge(new MetricName(GROUP, TYPE, name), new Gauge<Long>() {
+                    @Override
+                    public Long value() {
+                        return gaugeValue.get();
+                    }
+                });
+            }
+        }
+        holder.set(value);
+    }
+
+    /**
+     * Sets the value of a double gauge, registering it on first use. The value is kept as its long bits.
+     */
+    public static void setGauge(String name, double value) {
+        AtomicLong holder = doubleGaugeValues.get(name);
+        if (holder == null) {
+            AtomicLong newHolder = new AtomicLong();
+            holder = doubleGaugeValues.putIfAbsent(name, newHolder);
+            if (holder == null) {
+                holder = newHolder;
+                final AtomicLong gaugeValue = holder;
+                registry.newGauge(new MetricName(GROUP, TYPE, name), new Gauge<Double>() {
+                    @Override
+                    public Double value() {
+                        return Double.longBitsToDouble(gaugeValue.get());
+                    }
+                });
+            }
+        }
+        holder.set(Double.doubleToLongBits(value));
+    }
+
+    /**
+     * Size distribution of a stage of a table, e.g. HOT, from the last stage boundaries computed on that table.
+     */
+    public static void setStage(TableName table, String stage, RegionSizeStats stats) {
+        // ':' is not allowed unquoted in a JMX object name
+        String prefix = table.getNameAsString().replace(':', '_') + "." + stage;
+        setGauge(prefix + ".regions", stats.getCount());
+        setGauge(prefix + ".sizeMB", stats.getTotalSizeMB());
+        setGauge(prefix + ".p50MB", stats.getSizePercentileMB(50));
+        setGauge(prefix + ".p99MB", stats.getSizePercentileMB(99));
+        setGauge(prefix + ".maxMB", stats.getMaxSizeMB());
+        setGauge(prefix + ".stddevMB", stats.getStdDevSizeMB());
+        setGauge(prefix + ".gini", stats.getGini());
+    }
+
+    public static void progress() {
+        setGauge("lastProgress", System.currentTimeMillis());
+    }
+
+    /**
+     * Starts the reporters of the configuration. JMX is enabled by default.
+     */
+    public static synchronized void start(Configuration conf) {
+
+        if (!reporters.isEmpty()) return;
+
+        long period = conf.getLong(METRICS_PERIOD_KEY_PROPERTY, DEFAULT_PERIOD_SECONDS);
+
+        if (conf.getBoolean(METRICS_JMX_KEY_PROPERTY, true)) {
+            JmxReporter jmx = new JmxReporter(registry);
+            jmx.start();
+            reporters.add(jmx);
+        }
+
+        String csvDir = conf.get(METRICS_CSV_DIR_KEY_PROPERTY);
+        if (csvDir != null) {
+            File dir = new File(csvDir);
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                LOG.warn("Cannot create the metrics directory " + dir);
+            } else {
+                CsvReporter csv = new CsvReporter(registry, dir);
+                csv.start(period, TimeUnit.SECONDS);
+                reporters.add(csv);
+            }
+        }
+
+        String jsonFile = conf.get(METRICS_JSON_FILE_KEY_PROPERTY);
+        if (jsonFile != null) {
+            JsonReporter json = new JsonReporter(registry, new File(jsonFile));
+            json.start(period, TimeUnit.SECONDS);
+            reporters.add(json);
+        }
+
+        progress();
+    }
+
+    /**
+     * Writes a last report, so short runs are reported too, and stops the reporters.
+     */
+    public static synchronized void stop() {
+        for (Object reporter : reporters) {
+            if (reporter instanceof AbstractPollingReporter) {
+                AbstractPollingReporter polling = (AbstractPollingReporter) reporter;
+                polling.run();
+                polling.shutdown();
+            } else if (reporter instanceof JmxReporter) {
+                ((JmxReporter) reporter).shutdown();
+            }
+        }
+        reporters.clear();
+    }
+}
@@ -2,16 +2,18 @@ package admin.planner;
 
 import admin.StageBuilder;
 import admin.StageByDateBuilder;
+import admin.cluster.ClusterView;
+import admin.cluster.HBaseClusterView;
+import admin.metrics.RegionToolMetrics;
+import admin.stats.RegionSizeStats;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
+import com.yammer.metrics.core.TimerContext;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.*;
 import org.apache.hadoop.hbase.classification.InterfaceAudience;
-import org.apache.hadoop.hbase.client.Admin;
 import org.apache.hadoop.hbase.client.Connection;
-import org.apache.hadoop.hbase.client.RegionLocator;
 import org.apache.hadoop.hbase.master.normalizer.NormalizationPlan;
 import org.apache.hadoop.hbase.master.normalizer.SplitNormalizationPlan;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -27,22 +29,43 @@ public abstract class AbstractRegionPlanner implements NormalizationPlanner {
 
     private static final Log LOG = LogFactory.getLog(AbstractRegionPlanner.class);
 
+    public static final String MEMO_ENABLED_KEY_PROPERTY = "hbase.regiontool.memo.enabled";
+    public static final String MEMO_SIZE_PRECISION_KEY_PROPERTY = "hbase.regiontool.memo.size.precision";
+
+    public static final float DEFAULT_MEMO_SIZE_PRECISION = 0.01f;
+
+    // FNV-1a 64 bits
+    private static final long FINGERPRINT_SEED = 0xcbf29ce484222325L;
+    private static final long FINGERPRINT_PRIME = 0x100000001b3L;
+
     Map<byte[], RegionLoad> regionLoadMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
 
     TableName table;
-    Connection connection;
+    ClusterView cluster;
     Configuration configuration;
 
+    private final boolean memoEnabled;
+    private final double logSizePrecision;
+    private Long lastFingerprint;
+    private List<NormalizationPlan> lastPlans;
+    private boolean planningSkipped = false;
+
     public AbstractRegionPlanner(Connection connection, TableName tableName){
 
         this(connection,tableName,HBaseConfiguration.create());
     }
 
     public AbstractRegionPlanner(Connection connection, TableName tableName, Configuration conf){
+        this(new HBaseClusterView(connection), tableName, conf);
+    }
+
+    public AbstractRegionPlanner(ClusterView cluster, TableName tableName, Configuration conf){
         this.table = tableName;
-        this.connection = connection;
+        this.cluster = cluster;
         this.configuration = conf;
-
+        this.memoEnabled = conf.getBoolean(MEMO_ENABLED_KEY_PROPERTY, true);
+        double precision = conf.getFloat(MEMO_SIZE_PRECISION_KEY_PROPERTY, DEFAULT_MEMO_SIZE_PRECISION);
+        this.logSizePrecision = precision > 0 ? Math.log1p(precision) : 0;
     }
 
 
@@ -63,34 +86,88 @@ public abstract class AbstractRegionPlanner implements NormalizationPlanner {
         }
 
 
-        List<HRegionInfo> tableRegions = this.connection.getAdmin().getTableRegions(table);
-
+        List<HRegionInfo> tableRegions = this.cluster.getTableRegions(table);
 
+        Map<byte[], RegionLoad> regionLoads;
+        TimerContext loadsTimer = RegionToolMetrics.timer(RegionToolMetrics.REGION_LOADS).time();
         try {
-            setRegionLoads(table);
+            regionLoads = this.cluster.getRegionLoads(table);
         } catch (IOException e) {
-            LOG.error("Error initializing RegionLoadPlanner");
-            LOG.error(e.getStackTrace().toString());
+            LOG.error("Error initializing RegionLoadPlanner", e);
+            regionLoads = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        } finally {
+            loadsTimer.stop();
+        }
+
+        return computePlans(table, tableRegions, regionLoads);
+    }
 
+    /**
+     * Computes the normalization plans of a table from a given list of regions and their loads, without any call to
+     * the cluster. This is the entry point for benchmarks and simulations.
+     *
+     * When the regions and their size buckets are the same as in the last computation, the stages and plans are not
+     * computed again and the last plans are returned, see getFingerprint.
+     *
+     * @param table        table to normalize
+     * @param tableRegions regions of the table, sorted by start key
+     * @param regionLoads  region loads by region name, in a map sorted with Bytes.BYTES_COMPARATOR
+     * @return a list with the normalization plans to execute, or null if there is nothing to do
+     */
+    public List<NormalizationPlan> computePlans(TableName table, List<HRegionInfo> tableRegions,
+                                                Map<byte[], RegionLoad> regionLoads) throws IOException {
+
+        this.regionLoadMap = regionLoads;
+
+        long fingerprint = 0;
+        planningSkipped = false;
+        if (memoEnabled && isMemoizable()) {
+            fingerprint = getFingerprint(table, tableRegions, regionLoads);
+            if (lastFingerprint != null && lastFingerprint == fingerprint) {
+                LOG.info("Table " + table + " unchanged since the last planning, skipping it");
+                RegionToolMetrics.counter(RegionToolMetrics.PLANNING_SKIPPED).inc();
+                planningSkipped = true;
+                return lastPlans == null ? null : new ArrayList<>(lastPlans);
+            }
         }
+        RegionToolMetrics.counter(RegionToolMetrics.PLANNING_COMPUTED).inc();
+
+        List<NormalizationPlan> plans = computeStagePlans(table, tableRegions);
+
+        if (memoEnabled && isMemoizable()) {
+            lastFingerprint = fingerprint;
+            lastPlans = plans == null ? null : new ArrayList<>(plans);
+        }
+        return plans;
+    }
+
+    private List<NormalizationPlan> computeStagePlans(TableName table, List<HRegionInfo> tableRegions)
+            throws IOException {
 
         List<NormalizationPlan> plans = new ArrayList<>();
 
         if ( this instanceof StagedPlanner) {
 
             StageBuilder stageBuilder = new StageByDateBuilder(table, tableRegions, configuration);
+            TimerContext stagesTimer = RegionToolMetrics.timer(RegionToolMetrics.STAGE_BOUNDARIES).time();
             try {
                 stageBuilder.setStageBoundaries();
             } catch (IOException e) {
                 LOG.error("Cannot parse splits for table " + table + " Cause:" + e.getCause());
                 LOG.error(e.getStackTrace());
                 return null;
+            } finally {
+                stagesTimer.stop();
             }
 
             List<HRegionInfo> hotTableRegions = stageBuilder.getHotList();
             List<HRegionInfo> warmTableRegions = stageBuilder.getWarmList();
             List<HRegionInfo> coldTableRegions = stageBuilder.getColdList();
 
+            updateStageMetrics(table, "HOT", hotTableRegions);
+            updateStageMetrics(table, "WARM", warmTableRegions);
+            updateStageMetrics(table, "COLD", coldTableRegions);
+
 
             plans.addAll(getPlansForHot(table, hotTableRegions));
             plans.addAll(getPlansForWarm(table, warmTableRegions));
@@ -108,6 +185,69 @@ public abstract class AbstractRegionPlanner implements NormalizationPlanner {
         return plans;
     }
 
+    /**
+     * Whether the plans only depend on the regions, their sizes and the stage boundaries, so the plans of the last
+     * computation are reused when the fingerprint of those has not changed. Planners that depend on anything else,
+     * e.g. the time, return false.
+     */
+    protected boolean isMemoizable() {
+        return true;
+    }
+
+    /**
+     * Whether the last computation reused the plans of the previous one.
+     */
+    public boolean isPlanningSkipped() {
+        return planningSkipped;
+    }
+
+    /**
+     * Hash of the regions of the table and their size buckets, plus the day for staged planners, as the stage
+     * boundaries move with the date. Sizes are bucketed on a log scale of the configured precision, e.g. 1%, so
+     * ingest alone does not change the fingerprint of a table on every iteration: a region over a limit may wait
+     * until it grows out of its bucket to be planned. A precision of 0 compares the exact sizes in MB.
+     */
+    private long getFingerprint(TableName table, List<HRegionInfo> tableRegions, Map<byte[], RegionLoad> regionLoads) {
+
+        long hash = mix(FINGERPRINT_SEED, table.hashCode());
+        if (this instanceof StagedPlanner) {
+            hash = mix(hash, cluster.currentTimeMillis() / (24 * 3600 * 1000L));
+        }
+        hash = mix(hash, tableRegions.size());
+        for (HRegionInfo hri : tableRegions) {
+            hash = mix(hash, hri.getEncodedName().hashCode());
+            RegionLoad load = regionLoads.get(hri.getRegionName());
+            hash = mix(hash, load == null ? -1 : getSizeBucket(load.getStorefileSizeMB()));
+        }
+        return hash;
+    }
+
+    private long getSizeBucket(long sizeMB) {
+        if (logSizePrecision == 0) return sizeMB;
+        return (long) (Math.log1p(sizeMB) / logSizePrecision);
+    }
+
+    private static long mix(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash ^= (value >>> (i * 8)) & 0xff;
+            hash *= FINGERPRINT_PRIME;
+        }
+        return hash;
+    }
+
+    private void updateStageMetrics(TableName table, String stage, List<HRegionInfo> stageRegions) {
+        RegionSizeStats stats = getSizeStats(stageRegions);
+        LOG.debug("Table " + table + " " + stage + " sizes: " + stats);
+        RegionToolMetrics.setStage(table, stage, stats);
+    }
+
+    /**
+     * Size distribution of the given regions, from the loads of the current plan computation.
+     */
+    protected RegionSizeStats getSizeStats(List<HRegionInfo> tableRegions) {
+        return RegionSizeStats.of(tableRegions, this.regionLoadMap);
+    }
+
     protected abstract List<NormalizationPlan> getPlans(TableName table, List<HRegionInfo> tableRegions) throws IOException;
 
     protected  List<NormalizationPlan> getPlansForHot(TableName table, List<HRegionInfo> tableRegions) throws IOException {
@@ -158,72 +298,6 @@ public abstract class AbstractRegionPlanner implements NormalizationPlanner {
 
     }
 
-    private void setRegionLoads (TableName table) throws IOException {
-
-
-        Admin admin = this.connection.getAdmin();
-
-        // GEt Regions for table
-        RegionLocator regionLocator = connection.getRegionLocator(table);
-
-        Set<ServerName> tableServers = getRegionServersOfTable(regionLocator);
-
-
-        ClusterStatus clusterStatus = admin.getClusterStatus();
-
-
-        List<HRegionInfo> tableRegionInfos = admin.getTableRegions(table);
-
-
-
-        if (tableRegionInfos == null || tableRegionInfos.isEmpty() ) {
-            LOG.warn("NO regions found for table " + table.getNameAsString());
-            return;
-        }
-
-
-        Set<byte[]> tableRegionNames = new TreeSet<>(Bytes.BYTES_COMPARATOR);
-
-        for (HRegionInfo regionInfo : tableRegionInfos) {
-            if (regionInfo.isOffline() ) {
-                LOG.debug("Ignoring region OFFLINE:" + regionInfo.getRegionNameAsString());
-            } else {
-                tableRegionNames.add(regionInfo.getRegionName());
-                LOG.debug("Adding region:" + regionInfo.getRegionNameAsString());
-            }
-        }
-
-        LOG.debug("Found [" + tableRegionNames.size() + "] regions for table ");
-
-        for (ServerName serverName : tableServers) {
-
-            Map<byte[], RegionLoad> regionsLoadPerServer = clusterStatus.getLoad(serverName).getRegionsLoad();
-
-            for ( byte[] name : tableRegionNames) {
-                if (regionsLoadPerServer.containsKey(name)) {
-                    regionLoadMap.put(name,regionsLoadPerServer.get(name));
-                }
-            }
-
-        }
-
-        LOG.debug("Region LOADS SIZE:" + regionLoadMap.values().size() );
-
-        admin.close();
-
-    }
-
-    private Set<ServerName> getRegionServersOfTable(RegionLocator regionLocator)
-            throws IOException {
-
-        Set<ServerName> tableServers = Sets.newHashSet();
-        for (HRegionLocation regionLocation : regionLocator.getAllRegionLocations()) {
-            tableServers.add(regionLocation.getServerName());
-        }
-        return tableServers;
-    }
-
-
     // Comparator that gives higher priority to region Split plan
     private Comparator<NormalizationPlan> planComparator =
             new Comparator<NormalizationPlan>() {
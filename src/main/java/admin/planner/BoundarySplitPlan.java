@@ -0,0 +1,39 @@
+package admin.planner;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.master.normalizer.SplitNormalizationPlan;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.IOException;
+
+/**
+ * Split at a given key. SplitNormalizationPlan keeps a split point but lets the RegionServer choose it on execution,
+ * so this one passes it to Admin.splitRegion. Logs the errors and goes on, like the plans of HBase.
+ */
+public class BoundarySplitPlan extends SplitNormalizationPlan {
+
+    private static final Log LOG = LogFactory.getLog(BoundarySplitPlan.class);
+
+    public BoundarySplitPlan(HRegionInfo regionInfo, byte[] splitPoint) {
+        super(regionInfo, splitPoint);
+    }
+
+    @Override
+    public void execute(Admin admin) {
+        LOG.info("Executing boundary splitting normalization plan: " + this);
+        try {
+            admin.splitRegion(getRegionInfo().getRegionName(), getSplitPoint());
+        } catch (IOException ex) {
+            LOG.error("Error during region split: ", ex);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BoundarySplitPlan{regionInfo=" + getRegionInfo() + ", splitPoint="
+                + Bytes.toStringBinary(getSplitPoint()) + '}';
+    }
+}
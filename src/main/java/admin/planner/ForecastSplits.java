@@ -0,0 +1,148 @@
+package admin.planner;
+
+import admin.history.RegionHistoryStore;
+import admin.history.RegionSample;
+import admin.history.SizeForecast;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.RegionLoad;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.master.normalizer.NormalizationPlan;
+import org.apache.hadoop.hbase.master.normalizer.SplitNormalizationPlan;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits ahead of need: the regions under the max size that the forecast puts over it before the next maintenance
+ * window. They are only computed during the window, so the splits happen early, small and in quiet hours, instead
+ * of late and large at peak ingest. Without a window the forecast looks the horizon ahead at every run.
+ *
+ * Shared by the simple and staged forecast planners.
+ */
+class ForecastSplits {
+
+    private static final Log LOG = LogFactory.getLog(ForecastSplits.class);
+
+    private static final int MIN_SAMPLES = 3;
+
+    // Before reading their samples, regions are candidates if they pass the max size growing this many times faster
+    // than their average. Covers daily cycles with the growth concentrated in a few hours
+    private static final double CANDIDATE_GROWTH_FACTOR = 4;
+
+    private final RegionHistoryStore history;
+    private final long horizonMs;
+    private final long lookbackMs;
+    private final SizeForecast.Model model;
+    private final int windowStart;
+    private final int windowEnd;
+
+    private long ratesTime = Long.MIN_VALUE;
+    private Map<String, Double> rates;
+
+    ForecastSplits(RegionHistoryStore history, Configuration conf) {
+
+        this.history = history;
+        this.horizonMs = conf.getLong(SimpleForecastRegionPlanner.NORMALIZER_FORECAST_HORIZON_KEY_PROPERTY,
+                SimpleForecastRegionPlanner.DEFAULT_FORECAST_HORIZON_HOURS) * 3600 * 1000L;
+        this.lookbackMs = conf.getLong(SimpleForecastRegionPlanner.NORMALIZER_FORECAST_LOOKBACK_KEY_PROPERTY,
+                SimpleForecastRegionPlanner.DEFAULT_FORECAST_LOOKBACK_HOURS) * 3600 * 1000L;
+        this.model = SizeForecast.Model.valueOf(conf.get(SimpleForecastRegionPlanner.NORMALIZER_FORECAST_MODEL_KEY_PROPERTY,
+                SizeForecast.Model.LINEAR.name()).toUpperCase());
+
+        String window = conf.get(SimpleForecastRegionPlanner.NORMALIZER_FORECAST_WINDOW_KEY_PROPERTY);
+        if (window == null || window.isEmpty()) {
+            this.windowStart = -1;
+            this.windowEnd = -1;
+        } else {
+            String[] hours = window.split("-");
+            if (hours.length != 2) {
+                throw new IllegalArgumentException("Maintenance window must be <start hour>-<end hour>: " + window);
+            }
+            this.windowStart = Integer.parseInt(hours[0].trim()) % 24;
+            this.windowEnd = Integer.parseInt(hours[1].trim()) % 24;
+        }
+    }
+
+    List<NormalizationPlan> getPlans(TableName table, List<HRegionInfo> tableRegions,
+                                     Map<byte[], RegionLoad> regionLoads, long maxSize, long now) throws IOException {
+
+        List<NormalizationPlan> plans = new ArrayList<>();
+
+        long forecastTime = getForecastTime(now);
+        if (forecastTime < 0) {
+            LOG.debug("Table " + table + ", out of the maintenance window, no forecast splits");
+            return plans;
+        }
+        double horizonHours = (forecastTime - now) / (3600 * 1000.0);
+
+        if (ratesTime != now) {
+            rates = history.getGrowthRates(now - lookbackMs, now);
+            ratesTime = now;
+        }
+
+        for (HRegionInfo hri : tableRegions) {
+            RegionLoad load = regionLoads.get(hri.getRegionName());
+            // The regions over the max size are split by the max size planner
+            if (load == null || load.getStorefileSizeMB() > maxSize) continue;
+
+            Double rate = rates.get(hri.getEncodedName());
+            if (rate != null && load.getStorefileSizeMB() + CANDIDATE_GROWTH_FACTOR * rate * horizonHours <= maxSize) {
+                continue;
+            }
+
+            List<RegionSample> samples = history.getSamples(hri.getEncodedName(), now - lookbackMs, now);
+            if (samples.size() < MIN_SAMPLES) continue;
+
+            double forecast = SizeForecast.forecastMB(samples, now, forecastTime, model);
+            if (forecast > maxSize) {
+                LOG.info("Table " + table + ", region " + hri.getRegionNameAsString() + " has size "
+                        + load.getStorefileSizeMB() + ", forecast " + Math.round(forecast) + " in "
+                        + String.format("%.1f", horizonHours) + " hours, more than " + maxSize
+                        + " max size, splitting ahead");
+                plans.add(new SplitNormalizationPlan(hri, null));
+            }
+        }
+        return plans;
+    }
+
+    /**
+     * Time the forecast looks at: the start of the next maintenance window when in one, or the horizon. Returns -1
+     * out of the window.
+     */
+    long getForecastTime(long now) {
+
+        if (windowStart < 0) return now + horizonMs;
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(now);
+        if (!isInWindow(calendar.get(Calendar.HOUR_OF_DAY))) return -1;
+
+        calendar.set(Calendar.HOUR_OF_DAY, windowStart);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        while (calendar.getTimeInMillis() <= now) {
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return calendar.getTimeInMillis();
+    }
+
+    private boolean isInWindow(int hour) {
+        if (windowStart <= windowEnd) return hour >= windowStart && hour < windowEnd;
+        // Over midnight, e.g. 22-4
+        return hour >= windowStart || hour < windowEnd;
+    }
+
+    public String toString() {
+        return ":model:" + model
+                + ":lookbackHours:" + lookbackMs / (3600 * 1000L)
+                + (windowStart < 0 ? ":horizonHours:" + horizonMs / (3600 * 1000L)
+                : ":window:" + windowStart + "-" + windowEnd);
+    }
+}
@@ -0,0 +1,49 @@
+package admin.planner;
+
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.master.normalizer.MergeNormalizationPlan;
+import org.apache.hadoop.hbase.master.normalizer.NormalizationPlan;
+import org.apache.hadoop.hbase.master.normalizer.SplitNormalizationPlan;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Regions of a normalization plan: the region of a split, or both regions of a merge.
+ *
+ * The getters of MergeNormalizationPlan are package private in HBase 1.2, so its fields are read by reflection.
+ */
+public class PlanRegions {
+
+    private static final Field FIRST_REGION = field("firstRegion");
+    private static final Field SECOND_REGION = field("secondRegion");
+
+    private PlanRegions() {
+    }
+
+    private static Field field(String name) {
+        try {
+            Field field = MergeNormalizationPlan.class.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("Unsupported MergeNormalizationPlan, no field " + name, e);
+        }
+    }
+
+    public static List<HRegionInfo> regionsOf(NormalizationPlan plan) {
+        if (plan instanceof SplitNormalizationPlan) {
+            return Collections.singletonList(((SplitNormalizationPlan) plan).getRegionInfo());
+        }
+        if (plan instanceof MergeNormalizationPlan) {
+            try {
+                return Arrays.asList((HRegionInfo) FIRST_REGION.get(plan), (HRegionInfo) SECOND_REGION.get(plan));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return Collections.emptyList();
+    }
+}
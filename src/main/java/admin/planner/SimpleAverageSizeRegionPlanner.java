@@ -1,5 +1,7 @@
 package admin.planner;
 
+import admin.cluster.ClusterView;
+import admin.cluster.HBaseClusterView;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
@@ -30,6 +32,12 @@ public class SimpleAverageSizeRegionPlanner extends AbstractRegionPlanner {
 
     public static final String NORMALIZER_SPLIT_FACTOR_KEY_PROPERTY = "hbase.normalizer.nonuniform.split.factor";
 
+    /**
+     * Percentile of the region sizes used instead of the average to decide when to split, e.g. 99 splits the
+     * regions over p99 * split factor. 0, the default, uses the average.
+     */
+    public static final String NORMALIZER_SPLIT_PERCENTILE_KEY_PROPERTY = "hbase.normalizer.nonuniform.split.percentile";
+
     /**
      * Default value for Factor used to compare region size against average size
      */
@@ -41,6 +49,11 @@ public class SimpleAverageSizeRegionPlanner extends AbstractRegionPlanner {
      */
     int splitFactor;
 
+    /**
+     * Percentile compared with the region sizes, or 0 to use the average
+     */
+    double splitPercentile;
+
 
     public SimpleAverageSizeRegionPlanner(Connection connection, TableName tableName){
 
@@ -48,11 +61,17 @@ public class SimpleAverageSizeRegionPlanner extends AbstractRegionPlanner {
 
     }
 
-    public SimpleAverageSizeRegionPlanner(Connection connection, TableName tableName, Configuration conf){
+    public SimpleAverageSizeRegionPlanner(Connection connection, TableName tableName, Configuration conf) {
 
-        super(connection,tableName,conf);
+        this(new HBaseClusterView(connection), tableName, conf);
+    }
+
+    public SimpleAverageSizeRegionPlanner(ClusterView cluster, TableName tableName, Configuration conf) {
+
+        super(cluster, tableName, conf);
 
         this.splitFactor = configuration.getInt(NORMALIZER_SPLIT_FACTOR_KEY_PROPERTY,DEFAULT_SPLIT_FACTOR);
+        this.splitPercentile = configuration.getDouble(NORMALIZER_SPLIT_PERCENTILE_KEY_PROPERTY, 0);
 
 
     }
@@ -78,6 +97,14 @@ public class SimpleAverageSizeRegionPlanner extends AbstractRegionPlanner {
 
         List<NormalizationPlan> plans = new ArrayList<>();
 
+        // In a skewed stage the average is far from the typical region, a percentile is a steadier reference
+        double splitReference = avgRegionSize;
+        String splitReferenceName = "avg size";
+        if (splitPercentile > 0) {
+            splitReference = getSizeStats(tableRegions).getSizePercentileMB(splitPercentile);
+            splitReferenceName = "p" + splitPercentile + " size " + splitReference;
+        }
+
         int candidateIdx = 0;
         while (candidateIdx < tableRegions.size()) {
             HRegionInfo hri = tableRegions.get(candidateIdx);
@@ -85,9 +112,9 @@ public class SimpleAverageSizeRegionPlanner extends AbstractRegionPlanner {
             // if the region is > 2 times larger than average, we split it, split
             // is more high priority normalization action than merge.
 
-            if (regionSize > splitFactor * avgRegionSize) {
+            if (regionSize > splitFactor * splitReference) {
                 LOG.info("Table " + table + ", large region " + hri.getRegionNameAsString() + " has size "
-                        + regionSize + ", more than " + splitFactor + " avg size, splitting");
+                        + regionSize + ", more than " + splitFactor + " " + splitReferenceName + ", splitting");
                 plans.add(new SplitNormalizationPlan(hri, null));
             } else {
                 if (candidateIdx == tableRegions.size() - 1) {
@@ -115,6 +142,7 @@ public class SimpleAverageSizeRegionPlanner extends AbstractRegionPlanner {
         StringBuffer str = new StringBuffer();
         str.append("Class:" + SimpleAverageSizeRegionPlanner.class);
         str.append(":splitFactor:" + splitFactor);
+        if (splitPercentile > 0) str.append(":splitPercentile:" + splitPercentile);
         return str.toString();
     }
 
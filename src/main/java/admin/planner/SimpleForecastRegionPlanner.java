@@ -0,0 +1,60 @@
+package admin.planner;
+
+import admin.cluster.ClusterView;
+import admin.history.RegionHistoryStore;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.master.normalizer.NormalizationPlan;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Splits the regions that the size history forecasts over the max size before the next maintenance window, see
+ * ForecastSplits. The regions already over the max size are left to the max size planner.
+ */
+@InterfaceAudience.Private
+public class SimpleForecastRegionPlanner extends SimpleMaxSizeRegionPlanner {
+
+    private static final Log LOG = LogFactory.getLog(SimpleForecastRegionPlanner.class);
+
+    public static final String NORMALIZER_FORECAST_HORIZON_KEY_PROPERTY = "hbase.normalizer.nonuniform.forecast.horizon.hours";
+    public static final String NORMALIZER_FORECAST_LOOKBACK_KEY_PROPERTY = "hbase.normalizer.nonuniform.forecast.lookback.hours";
+    public static final String NORMALIZER_FORECAST_MODEL_KEY_PROPERTY = "hbase.normalizer.nonuniform.forecast.model";
+    public static final String NORMALIZER_FORECAST_WINDOW_KEY_PROPERTY = "hbase.normalizer.nonuniform.forecast.window";
+
+    public static final long DEFAULT_FORECAST_HORIZON_HOURS = 24;
+    public static final long DEFAULT_FORECAST_LOOKBACK_HOURS = 7 * 24;
+
+    private final ForecastSplits forecast;
+
+    public SimpleForecastRegionPlanner(ClusterView cluster, TableName tableName, Configuration conf,
+                                       RegionHistoryStore history) {
+
+        super(cluster, tableName, conf);
+        this.forecast = new ForecastSplits(history, configuration);
+    }
+
+    @Override
+    protected List<NormalizationPlan> getPlans(TableName table, List<HRegionInfo> tableRegions, long maxSize)
+            throws IOException {
+
+        LOG.debug("Forecasting region sizes for table " + table);
+
+        return forecast.getPlans(table, tableRegions, regionLoadMap, maxSize, cluster.currentTimeMillis());
+    }
+
+    @Override
+    protected boolean isMemoizable() {
+        // The forecast moves with the time and the history
+        return false;
+    }
+
+    public String toString() {
+        return super.toString().replace("MaxSizeRegionPlanner", "ForecastRegionPlanner") + forecast;
+    }
+}
@@ -1,5 +1,7 @@
 package admin.planner;
 
+import admin.cluster.ClusterView;
+import admin.cluster.HBaseClusterView;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
@@ -41,7 +43,12 @@ public class SimpleMaxNumberRegionPlanner extends AbstractRegionPlanner {
 
     public SimpleMaxNumberRegionPlanner(Connection connection, TableName tableName, Configuration conf) {
 
-        super(connection, tableName, conf);
+        this(new HBaseClusterView(connection), tableName, conf);
+    }
+
+    public SimpleMaxNumberRegionPlanner(ClusterView cluster, TableName tableName, Configuration conf) {
+
+        super(cluster, tableName, conf);
 
         this.maxNumRegions = configuration.getInt(NORMALIZER_MAX_KEY_PROPERTY, DEFAULT_MAX_REGION);
 
@@ -1,5 +1,7 @@
 package admin.planner;
 
+import admin.cluster.ClusterView;
+import admin.cluster.HBaseClusterView;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
@@ -35,9 +37,14 @@ public class SimpleMaxSizeRegionPlanner  extends AbstractRegionPlanner {
 
     }
 
-    public SimpleMaxSizeRegionPlanner(Connection connection, TableName tableName, Configuration conf){
+    public SimpleMaxSizeRegionPlanner(Connection connection, TableName tableName, Configuration conf) {
 
-        super(connection,tableName,conf);
+        this(new HBaseClusterView(connection), tableName, conf);
+    }
+
+    public SimpleMaxSizeRegionPlanner(ClusterView cluster, TableName tableName, Configuration conf) {
+
+        super(cluster, tableName, conf);
         this.maxRegionSz = configuration.getLong(HMAX_SIZE_IN_MB_KEY_PROPERTY, DEFAULT_MAX_SIZE_IN_MB);
 
     }
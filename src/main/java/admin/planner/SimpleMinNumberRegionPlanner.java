@@ -1,5 +1,7 @@
 package admin.planner;
 
+import admin.cluster.ClusterView;
+import admin.cluster.HBaseClusterView;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
@@ -38,9 +40,14 @@ public class SimpleMinNumberRegionPlanner  extends AbstractRegionPlanner {
         this(connection, tableName, HBaseConfiguration.create());
     }
 
-    public SimpleMinNumberRegionPlanner(Connection connection, TableName tableName, Configuration conf){
+    public SimpleMinNumberRegionPlanner(Connection connection, TableName tableName, Configuration conf) {
 
-        super(connection,tableName,conf);
+        this(new HBaseClusterView(connection), tableName, conf);
+    }
+
+    public SimpleMinNumberRegionPlanner(ClusterView cluster, TableName tableName, Configuration conf) {
+
+        super(cluster, tableName, conf);
 
         this.minNumberOfRegions = configuration.getInt(NORMALIZER_MIN_KEY_PROPERTY, DEFAULT_MIN_REGION);
 
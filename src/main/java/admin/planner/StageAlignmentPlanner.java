@@ -0,0 +1,78 @@
+package admin.planner;
+
+import admin.StageByDateBuilder;
+import admin.cluster.ClusterView;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.master.normalizer.NormalizationPlan;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the regions straddling a stage boundary exactly at the split point of the boundary, like DeleteRegions
+ * does for the archive split key, so every stage is a clean set of regions and its size policy applies to its own
+ * data only.
+ *
+ * StageByDateBuilder puts the region holding the hot split point in the hot stage and the one holding the warm
+ * split point in the warm stage, i.e. they are the first regions of those stages, with data of the previous stage
+ * when they start before the split point. Runs before the other staged planners.
+ */
+@InterfaceAudience.Private
+public class StageAlignmentPlanner extends AbstractRegionPlanner implements StagedPlanner {
+
+    private static final Log LOG = LogFactory.getLog(StageAlignmentPlanner.class);
+
+    public StageAlignmentPlanner(ClusterView cluster, TableName tableName, Configuration conf) {
+        super(cluster, tableName, conf);
+    }
+
+    @Override
+    protected List<NormalizationPlan> getPlans(TableName table, List<HRegionInfo> tableRegions) throws IOException {
+        return new ArrayList<>();
+    }
+
+    @Override
+    protected List<NormalizationPlan> getPlansForHot(TableName table, List<HRegionInfo> tableRegions) throws IOException {
+
+        return align(table, "HOT", tableRegions, getStages(tableRegions).getHotExpirationSplit());
+    }
+
+    @Override
+    protected List<NormalizationPlan> getPlansForWarm(TableName table, List<HRegionInfo> tableRegions) throws IOException {
+
+        return align(table, "WARM", tableRegions, getStages(tableRegions).getWarmExpirationSplit());
+    }
+
+    private StageByDateBuilder getStages(List<HRegionInfo> tableRegions) throws IOException {
+        // Only for the split points, computed from the same configuration and reference time as the stages
+        return new StageByDateBuilder(table, tableRegions, configuration);
+    }
+
+    private List<NormalizationPlan> align(TableName table, String stage, List<HRegionInfo> stageRegions,
+                                          String splitPoint) throws IOException {
+
+        List<NormalizationPlan> plans = new ArrayList<>();
+        if (stageRegions.isEmpty()) return plans;
+
+        HRegionInfo first = stageRegions.get(0);
+        byte[] boundary = Bytes.toBytes(splitPoint);
+        if (Bytes.compareTo(first.getStartKey(), boundary) < 0
+                && (first.getEndKey().length == 0 || Bytes.compareTo(boundary, first.getEndKey()) < 0)) {
+            LOG.info("Table " + table + ", region " + first.getRegionNameAsString() + " of size "
+                    + getRegionSize(first) + " straddles the " + stage + " boundary " + splitPoint + ", splitting at it");
+            plans.add(new BoundarySplitPlan(first, boundary));
+        }
+        return plans;
+    }
+
+    public String toString() {
+        return "Class:StageAlignmentPlanner";
+    }
+}
@@ -1,5 +1,7 @@
 package admin.planner;
 
+import admin.cluster.ClusterView;
+import admin.cluster.HBaseClusterView;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
@@ -27,9 +29,14 @@ public class StagedAverageSizeRegionPlanner extends SimpleAverageSizeRegionPlann
 
     }
 
-    public StagedAverageSizeRegionPlanner(Connection connection, TableName tableName, Configuration conf){
+    public StagedAverageSizeRegionPlanner(Connection connection, TableName tableName, Configuration conf) {
 
-        super(connection,tableName,conf);
+        this(new HBaseClusterView(connection), tableName, conf);
+    }
+
+    public StagedAverageSizeRegionPlanner(ClusterView cluster, TableName tableName, Configuration conf) {
+
+        super(cluster, tableName, conf);
 
     }
 
@@ -85,6 +92,7 @@ public class StagedAverageSizeRegionPlanner extends SimpleAverageSizeRegionPlann
         StringBuffer str = new StringBuffer();
         str.append("Class:" + StagedAverageSizeRegionPlanner.class);
         str.append(":splitFactor:" + splitFactor);
+        if (splitPercentile > 0) str.append(":splitPercentile:" + splitPercentile);
         return str.toString();
     }
 
@@ -0,0 +1,51 @@
+package admin.planner;
+
+import admin.cluster.ClusterView;
+import admin.history.RegionHistoryStore;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.master.normalizer.NormalizationPlan;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Forecast planner with the max size of every stage, see SimpleForecastRegionPlanner.
+ */
+@InterfaceAudience.Private
+public class StagedForecastRegionPlanner extends StagedMaxSizeRegionPlanner {
+
+    private static final Log LOG = LogFactory.getLog(StagedForecastRegionPlanner.class);
+
+    private final ForecastSplits forecast;
+
+    public StagedForecastRegionPlanner(ClusterView cluster, TableName tableName, Configuration conf,
+                                       RegionHistoryStore history) {
+
+        super(cluster, tableName, conf);
+        this.forecast = new ForecastSplits(history, configuration);
+    }
+
+    @Override
+    protected List<NormalizationPlan> getPlans(TableName table, List<HRegionInfo> tableRegions, long maxSize)
+            throws IOException {
+
+        LOG.debug("Forecasting region sizes for table " + table);
+
+        return forecast.getPlans(table, tableRegions, regionLoadMap, maxSize, cluster.currentTimeMillis());
+    }
+
+    @Override
+    protected boolean isMemoizable() {
+        // The forecast moves with the time and the history
+        return false;
+    }
+
+    public String toString() {
+        return super.toString().replace("MaxSizeRegionPlanner", "ForecastRegionPlanner") + forecast;
+    }
+}
@@ -1,5 +1,7 @@
 package admin.planner;
 
+import admin.cluster.ClusterView;
+import admin.cluster.HBaseClusterView;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
@@ -40,7 +42,12 @@ public class StagedMaxNumberRegionPlanner extends SimpleMaxNumberRegionPlanner i
 
     public StagedMaxNumberRegionPlanner(Connection connection, TableName tableName, Configuration conf) {
 
-        super(connection, tableName, conf);
+        this(new HBaseClusterView(connection), tableName, conf);
+    }
+
+    public StagedMaxNumberRegionPlanner(ClusterView cluster, TableName tableName, Configuration conf) {
+
+        super(cluster, tableName, conf);
 
         this.coldMaxNumRegions = configuration.getInt(NORMALIZER_COLD_MAX_KEY_PROPERTY, DEFAULT_MAX_REGION);
         this.warmMaxNumRegions = configuration.getInt(NORMALIZER_WARM_MAX_KEY_PROPERTY, DEFAULT_MAX_REGION);
@@ -1,5 +1,7 @@
 package admin.planner;
 
+import admin.cluster.ClusterView;
+import admin.cluster.HBaseClusterView;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
@@ -41,9 +43,14 @@ public class StagedMaxSizeRegionPlanner extends  SimpleMaxSizeRegionPlanner impl
 
     }
 
-    public StagedMaxSizeRegionPlanner(Connection connection, TableName tableName, Configuration conf){
+    public StagedMaxSizeRegionPlanner(Connection connection, TableName tableName, Configuration conf) {
 
-        super(connection,tableName,conf);
+        this(new HBaseClusterView(connection), tableName, conf);
+    }
+
+    public StagedMaxSizeRegionPlanner(ClusterView cluster, TableName tableName, Configuration conf) {
+
+        super(cluster, tableName, conf);
         // Set boundary conditions
         this.coldMaxRegionSz = configuration.getLong(COLD_MAX_SIZE_IN_MB_KEY_PROPERTY, DEFAULT_COLD_MAX_SIZE_IN_MB);
         this.warmMaxRegionSz = configuration.getLong(WARM_MAX_SIZE_IN_MB_KEY_PROPERTY, DEFAULT_WARM_MAX_SIZE_IN_MB);
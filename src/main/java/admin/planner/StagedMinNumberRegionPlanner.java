@@ -1,5 +1,7 @@
 package admin.planner;
 
+import admin.cluster.ClusterView;
+import admin.cluster.HBaseClusterView;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
@@ -39,9 +41,14 @@ public class StagedMinNumberRegionPlanner extends SimpleMinNumberRegionPlanner i
         this(connection, tableName, HBaseConfiguration.create());
     }
 
-    public StagedMinNumberRegionPlanner(Connection connection, TableName tableName, Configuration conf){
+    public StagedMinNumberRegionPlanner(Connection connection, TableName tableName, Configuration conf) {
 
-        super(connection,tableName,conf);
+        this(new HBaseClusterView(connection), tableName, conf);
+    }
+
+    public StagedMinNumberRegionPlanner(ClusterView cluster, TableName tableName, Configuration conf) {
+
+        super(cluster, tableName, conf);
 
         this.coldMinRegionsFactor = configuration.getInt(NORMALIZER_COLD_MIN_KEY_PROPERTY, DEFAULT_MIN_REGION);
         this.warmMinRegionsFactor = configuration.getInt(NORMALIZER_WARM_MIN_KEY_PROPERTY, DEFAULT_MIN_REGION);
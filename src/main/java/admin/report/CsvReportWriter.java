@@ -0,0 +1,155 @@
+package admin.report;
+
+import admin.stats.RegionSizeStats;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.RegionLoad;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact CSV with a header and one record per region, stage, server or table, the first column tells which:
+ * <pre>
+ *   record,iteration,table,stage,region,start,end,size_mb,read_requests,write_requests,action,reason,...
+ *   region,1,t,HOT,5f2a...,201801,201802,5120,10,20,SPLIT,StagedMaxSizeRegionPlanner,,,,,,,,,,,,,,,,,,,
+ *   stage,1,t,HOT,,,,614400,3000,6000,,,240,12,1024,4096,9000,3,0,8000,1500,0.312,,,,,,,,,
+ *   server,1,t,,,,,61440,52000,,,,24,12,1024,4096,9000,,,8000,1500,0.254,rs1:16020:1490000000000,,,,,,,,
+ *   table,1,t,,,,,1228800,,,,,480,,,,,,,,,,,5,5,0,1,0,42,310,1
+ * </pre>
+ * Stage and server records add regions, min, p50, p95, max and p99 size, standard deviation and Gini coefficient;
+ * stages also have splits and merges, servers the total requests in read_requests. Table records have the plans
+ * computed, executed, failed, suppressed and deferred, the planning and execution wall times and the plannings
+ * skipped. Keys are printed with Bytes.toStringBinary and quoted when needed.
+ */
+public class CsvReportWriter implements ReportWriter {
+
+    static final String HEADER = "record,iteration,table,stage,region,start,end,size_mb,read_requests,write_requests,"
+            + "action,reason,regions,min_mb,p50_mb,p95_mb,max_mb,splits,merges,p99_mb,stddev_mb,gini,server,"
+            + "plans,executed,failed,suppressed,deferred,planning_ms,execution_ms,plannings_skipped";
+
+    private final Writer out;
+    private final StringBuilder line = new StringBuilder(256);
+
+    public CsvReportWriter(File file) throws IOException {
+        boolean isNew = !file.exists() || file.length() == 0;
+        this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8),
+                1 << 16);
+        if (isNew) {
+            out.write(HEADER);
+            out.write('\n');
+        }
+    }
+
+    @Override
+    public void writeRegion(int iteration, String table, String stage, HRegionInfo info, RegionLoad load,
+                            String action, String reason) throws IOException {
+        line.setLength(0);
+        line.append("region,").append(iteration).append(',');
+        appendField(table).append(',').append(stage).append(',').append(info.getEncodedName()).append(',');
+        appendField(Bytes.toStringBinary(info.getStartKey())).append(',');
+        appendField(Bytes.toStringBinary(info.getEndKey())).append(',');
+        if (load != null) {
+            line.append(load.getStorefileSizeMB()).append(',')
+                    .append(load.getReadRequestsCount()).append(',')
+                    .append(load.getWriteRequestsCount()).append(',');
+        } else {
+            line.append(",,,");
+        }
+        if (action != null) {
+            line.append(action).append(',');
+            appendField(reason);
+        } else {
+            line.append(',');
+        }
+        line.append(",,,,,,,,,,,,,,,,,,,\n");
+        out.append(line);
+    }
+
+    @Override
+    public void writeStage(int iteration, String table, StageSummary summary) throws IOException {
+        line.setLength(0);
+        line.append("stage,").append(iteration).append(',');
+        RegionSizeStats stats = summary.getStats();
+        appendField(table).append(',').append(summary.getStage()).append(",,,,")
+                .append(stats.getTotalSizeMB()).append(',')
+                .append(summary.getReadRequests()).append(',')
+                .append(summary.getWriteRequests()).append(",,,");
+        appendStats(stats);
+        line.append(',').append(summary.getSplits()).append(',').append(summary.getMerges()).append(',');
+        appendDistribution(stats);
+        line.append(",,,,,,,,,\n");
+        out.append(line);
+    }
+
+    @Override
+    public void writeServer(int iteration, String table, ServerName server, RegionSizeStats stats) throws IOException {
+        line.setLength(0);
+        line.append("server,").append(iteration).append(',');
+        appendField(table).append(",,,,,")
+                .append(stats.getTotalSizeMB()).append(',')
+                .append(stats.getTotalRequests()).append(",,,,");
+        appendStats(stats);
+        line.append(",,,");
+        appendDistribution(stats);
+        line.append(',');
+        // Host, port and start code, without the commas of ServerName
+        line.append(server.getHostname()).append(':').append(server.getPort()).append(':')
+                .append(server.getStartcode()).append(",,,,,,,,\n");
+        out.append(line);
+    }
+
+    @Override
+    public void writeTable(int iteration, TableSummary summary) throws IOException {
+        line.setLength(0);
+        line.append("table,").append(iteration).append(',');
+        appendField(summary.getTable()).append(",,,,,").append(summary.getSizeMB()).append(",,,,,")
+                .append(summary.getRegions()).append(",,,,,,,,,,,")
+                .append(summary.getPlans()).append(',')
+                .append(summary.getExecuted()).append(',')
+                .append(summary.getFailed()).append(',')
+                .append(summary.getSuppressed()).append(',')
+                .append(summary.getDeferred()).append(',')
+                .append(summary.getPlanningMs()).append(',')
+                .append(summary.getExecutionMs()).append(',')
+                .append(summary.getPlanningsSkipped()).append('\n');
+        out.append(line);
+    }
+
+    private void appendStats(RegionSizeStats stats) {
+        line.append(stats.getCount()).append(',')
+                .append(stats.getMinSizeMB()).append(',')
+                .append(stats.getSizePercentileMB(50)).append(',')
+                .append(stats.getSizePercentileMB(95)).append(',')
+                .append(stats.getMaxSizeMB());
+    }
+
+    private void appendDistribution(RegionSizeStats stats) {
+        line.append(stats.getSizePercentileMB(99)).append(',')
+                .append(Math.round(stats.getStdDevSizeMB())).append(',')
+                .append(Math.round(stats.getGini() * 1000) / 1000.0);
+    }
+
+    private StringBuilder appendField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return line.append(value);
+        }
+        return line.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,161 @@
+package admin.report;
+
+import admin.stats.RegionSizeStats;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.RegionLoad;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * One JSON object per line, with a "type" of region, stage, server or table:
+ * <pre>
+ *   {"type":"region","iteration":1,"table":"t","stage":"HOT","region":"5f2a...","start":"201801","end":"201802",
+ *    "sizeMB":5120,"readRequests":10,"writeRequests":20,"action":"SPLIT","reason":"StagedMaxSizeRegionPlanner"}
+ *   {"type":"stage","iteration":1,"table":"t","stage":"HOT","regions":240,"sizeMB":614400,"minMB":12,...}
+ *   {"type":"server","iteration":1,"table":"t","server":"rs1,16020,1490000000000","regions":24,...}
+ *   {"type":"table","iteration":1,"table":"t","regions":480,"sizeMB":1228800,"plans":5,"executed":5,...}
+ * </pre>
+ * Stage and server records have the size distribution, with the Gini coefficient and the largest regions.
+ * Keys are printed with Bytes.toStringBinary. Regions without a plan have no action nor reason.
+ */
+public class JsonLinesReportWriter implements ReportWriter {
+
+    private final OutputStream out;
+    private final JsonFactory factory = new JsonFactory();
+
+    public JsonLinesReportWriter(File file) throws IOException {
+        this.out = new BufferedOutputStream(new FileOutputStream(file, true), 1 << 16);
+        // One generator per line, writing to the buffer: Jackson 1.9 separates root values with spaces
+        factory.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        factory.configure(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM, false);
+    }
+
+    @Override
+    public void writeRegion(int iteration, String table, String stage, HRegionInfo info, RegionLoad load,
+                            String action, String reason) throws IOException {
+        JsonGenerator json = factory.createJsonGenerator(out, JsonEncoding.UTF8);
+        json.writeStartObject();
+        json.writeStringField("type", "region");
+        json.writeNumberField("iteration", iteration);
+        json.writeStringField("table", table);
+        json.writeStringField("stage", stage);
+        json.writeStringField("region", info.getEncodedName());
+        json.writeStringField("start", Bytes.toStringBinary(info.getStartKey()));
+        json.writeStringField("end", Bytes.toStringBinary(info.getEndKey()));
+        if (load != null) {
+            json.writeNumberField("sizeMB", load.getStorefileSizeMB());
+            json.writeNumberField("readRequests", load.getReadRequestsCount());
+            json.writeNumberField("writeRequests", load.getWriteRequestsCount());
+        }
+        if (action != null) {
+            json.writeStringField("action", action);
+            json.writeStringField("reason", reason);
+        }
+        json.writeEndObject();
+        endLine(json);
+    }
+
+    @Override
+    public void writeStage(int iteration, String table, StageSummary summary) throws IOException {
+        JsonGenerator json = factory.createJsonGenerator(out, JsonEncoding.UTF8);
+        json.writeStartObject();
+        json.writeStringField("type", "stage");
+        json.writeNumberField("iteration", iteration);
+        json.writeStringField("table", table);
+        json.writeStringField("stage", summary.getStage());
+        writeStats(json, summary.getStats());
+        json.writeNumberField("readRequests", summary.getReadRequests());
+        json.writeNumberField("writeRequests", summary.getWriteRequests());
+        json.writeNumberField("splits", summary.getSplits());
+        json.writeNumberField("merges", summary.getMerges());
+        json.writeEndObject();
+        endLine(json);
+    }
+
+    @Override
+    public void writeServer(int iteration, String table, ServerName server, RegionSizeStats stats) throws IOException {
+        JsonGenerator json = factory.createJsonGenerator(out, JsonEncoding.UTF8);
+        json.writeStartObject();
+        json.writeStringField("type", "server");
+        json.writeNumberField("iteration", iteration);
+        json.writeStringField("table", table);
+        json.writeStringField("server", server.getServerName());
+        writeStats(json, stats);
+        json.writeNumberField("requests", stats.getTotalRequests());
+        json.writeEndObject();
+        endLine(json);
+    }
+
+    @Override
+    public void writeTable(int iteration, TableSummary summary) throws IOException {
+        JsonGenerator json = factory.createJsonGenerator(out, JsonEncoding.UTF8);
+        json.writeStartObject();
+        json.writeStringField("type", "table");
+        json.writeNumberField("iteration", iteration);
+        json.writeStringField("table", summary.getTable());
+        json.writeNumberField("regions", summary.getRegions());
+        json.writeNumberField("sizeMB", summary.getSizeMB());
+        json.writeNumberField("plans", summary.getPlans());
+        json.writeNumberField("executed", summary.getExecuted());
+        json.writeNumberField("failed", summary.getFailed());
+        json.writeNumberField("suppressed", summary.getSuppressed());
+        json.writeNumberField("deferred", summary.getDeferred());
+        json.writeNumberField("planningMs", summary.getPlanningMs());
+        json.writeNumberField("executionMs", summary.getExecutionMs());
+        json.writeNumberField("planningsSkipped", summary.getPlanningsSkipped());
+        json.writeEndObject();
+        endLine(json);
+    }
+
+    private static void writeStats(JsonGenerator json, RegionSizeStats stats) throws IOException {
+        json.writeNumberField("regions", stats.getCount());
+        json.writeNumberField("sizeMB", stats.getTotalSizeMB());
+        json.writeNumberField("minMB", stats.getMinSizeMB());
+        json.writeNumberField("p50MB", stats.getSizePercentileMB(50));
+        json.writeNumberField("p95MB", stats.getSizePercentileMB(95));
+        json.writeNumberField("p99MB", stats.getSizePercentileMB(99));
+        json.writeNumberField("maxMB", stats.getMaxSizeMB());
+        json.writeNumberField("stddevMB", Math.round(stats.getStdDevSizeMB()));
+        json.writeNumberField("gini", Math.round(stats.getGini() * 1000) / 1000.0);
+        json.writeArrayFieldStart("largest");
+        for (RegionSizeStats.Entry entry : stats.getLargest()) {
+            json.writeStartObject();
+            json.writeStringField("region", entry.getRegion().getEncodedName());
+            json.writeNumberField("sizeMB", entry.getSizeMB());
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+        json.writeArrayFieldStart("busiest");
+        for (RegionSizeStats.Entry entry : stats.getBusiest()) {
+            json.writeStartObject();
+            json.writeStringField("region", entry.getRegion().getEncodedName());
+            json.writeNumberField("requests", entry.getRequests());
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+    }
+
+    private void endLine(JsonGenerator json) throws IOException {
+        json.close();
+        out.write('\n');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,159 @@
+package admin.report;
+
+import admin.StageBuilder;
+import admin.planner.PlanRegions;
+import admin.stats.RegionSizeStats;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.RegionLoad;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.master.normalizer.MergeNormalizationPlan;
+import org.apache.hadoop.hbase.master.normalizer.NormalizationPlan;
+import org.apache.hadoop.hbase.master.normalizer.SplitNormalizationPlan;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Report of an iteration of RegionsTool: one row per region with its stage, size, requests and planned action,
+ * one summary per stage and, when the locations are known, one per RegionServer, then the results and timings of
+ * the table. Several tables can be reported at once, from different threads.
+ *
+ * Rows are streamed to the writer as the regions are walked, so the report only keeps the planned actions, not the
+ * regions. The first plan of a region wins, like when they are executed.
+ */
+public class PlanReport {
+
+    public static final String SPLIT = "SPLIT";
+    public static final String MERGE = "MERGE";
+    public static final String SUPPRESSED = "SUPPRESSED";
+
+    public static final String NO_STAGE = "ALL";
+
+    private final ReportWriter writer;
+    // By table, so the plans of a table are kept until it is written, whatever the other tables do
+    private final Map<TableName, Map<String, String>> actions = new HashMap<>();
+    private final Map<TableName, Map<String, String>> reasons = new HashMap<>();
+
+    public PlanReport(ReportWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Opens a report file, CSV if its name ends with .csv and JSON lines otherwise. Reports are appended.
+     */
+    public static PlanReport open(File file) throws IOException {
+        if (file.getName().endsWith(".csv")) {
+            return new PlanReport(new CsvReportWriter(file));
+        }
+        return new PlanReport(new JsonLinesReportWriter(file));
+    }
+
+    /**
+     * Records the plans computed by a planner.
+     */
+    public synchronized void addPlans(List<NormalizationPlan> plans, String reason) {
+        if (plans == null) return;
+        for (NormalizationPlan plan : plans) {
+            String action = plan instanceof SplitNormalizationPlan ? SPLIT
+                    : plan instanceof MergeNormalizationPlan ? MERGE : plan.getClass().getSimpleName();
+            for (HRegionInfo info : PlanRegions.regionsOf(plan)) {
+                add(info, action, reason);
+            }
+        }
+    }
+
+    /**
+     * Records a plan that was not executed because it would undo a recent action.
+     */
+    public synchronized void addSuppressed(NormalizationPlan plan, String reason) {
+        for (HRegionInfo info : PlanRegions.regionsOf(plan)) {
+            add(info, SUPPRESSED, reason);
+        }
+    }
+
+    private void add(HRegionInfo info, String action, String reason) {
+        Map<String, String> tableActions = actions.get(info.getTable());
+        if (tableActions == null) {
+            tableActions = new HashMap<>();
+            actions.put(info.getTable(), tableActions);
+            reasons.put(info.getTable(), new HashMap<String, String>());
+        }
+        if (!tableActions.containsKey(info.getEncodedName())) {
+            tableActions.put(info.getEncodedName(), action);
+            reasons.get(info.getTable()).put(info.getEncodedName(), reason);
+        }
+    }
+
+    /**
+     * Writes the regions of the stages, in key order, with the plans recorded since the previous call.
+     */
+    public synchronized void write(int iteration, TableName table, StageBuilder stages,
+                                   Map<byte[], RegionLoad> regionLoads) throws IOException {
+        String tableName = table.getNameAsString();
+        // The cold list has every region before the warm one, so the three lists walk the table in key order
+        writeStage(iteration, tableName, "COLD", stages.getColdList(), regionLoads);
+        writeStage(iteration, tableName, "WARM", stages.getWarmList(), regionLoads);
+        writeStage(iteration, tableName, "HOT", stages.getHotList(), regionLoads);
+        end(table);
+    }
+
+    /**
+     * Writes the regions of a table without stages.
+     */
+    public synchronized void write(int iteration, TableName table, List<HRegionInfo> regions,
+                                   Map<byte[], RegionLoad> regionLoads) throws IOException {
+        writeStage(iteration, table.getNameAsString(), NO_STAGE, regions, regionLoads);
+        end(table);
+    }
+
+    private void writeStage(int iteration, String table, String stage, List<HRegionInfo> regions,
+                            Map<byte[], RegionLoad> regionLoads) throws IOException {
+        StageSummary summary = new StageSummary(stage);
+        Map<String, String> tableActions = actions.get(TableName.valueOf(table));
+        Map<String, String> tableReasons = reasons.get(TableName.valueOf(table));
+        for (HRegionInfo info : regions) {
+            RegionLoad load = regionLoads.get(info.getRegionName());
+            String action = tableActions != null ? tableActions.get(info.getEncodedName()) : null;
+            String reason = tableReasons != null ? tableReasons.get(info.getEncodedName()) : null;
+            writer.writeRegion(iteration, table, stage, info, load, action, reason);
+            summary.add(info, load, action);
+        }
+        writer.writeStage(iteration, table, summary);
+    }
+
+    /**
+     * Writes the size distribution of the regions of the table on every RegionServer. Call it before write(), which
+     * ends the iteration.
+     */
+    public synchronized void writeServers(int iteration, TableName table, List<HRegionLocation> locations,
+                             Map<byte[], RegionLoad> regionLoads) throws IOException {
+        Map<ServerName, RegionSizeStats> byServer = RegionSizeStats.byServer(locations, regionLoads);
+        for (Map.Entry<ServerName, RegionSizeStats> entry : new TreeMap<>(byServer).entrySet()) {
+            writer.writeServer(iteration, table.getNameAsString(), entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Writes the results and timings of a table in the iteration. Call it after write().
+     */
+    public synchronized void writeTable(int iteration, TableSummary summary) throws IOException {
+        writer.writeTable(iteration, summary);
+        writer.flush();
+    }
+
+    private void end(TableName table) throws IOException {
+        writer.flush();
+        actions.remove(table);
+        reasons.remove(table);
+    }
+
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
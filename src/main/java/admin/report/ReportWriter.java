@@ -0,0 +1,34 @@
+package admin.report;
+
+import admin.stats.RegionSizeStats;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.RegionLoad;
+import org.apache.hadoop.hbase.ServerName;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Streams the rows of a PlanReport to a file. Rows are written as they come, nothing is kept in memory.
+ */
+public interface ReportWriter extends Closeable {
+
+    /**
+     * @param load   null if the region has no load, e.g. it is offline
+     * @param action SPLIT, MERGE or null if no plan includes the region
+     * @param reason the planner of the action, or null
+     */
+    void writeRegion(int iteration, String table, String stage, HRegionInfo info, RegionLoad load,
+                     String action, String reason) throws IOException;
+
+    void writeStage(int iteration, String table, StageSummary summary) throws IOException;
+
+    void writeServer(int iteration, String table, ServerName server, RegionSizeStats stats) throws IOException;
+
+    void writeTable(int iteration, TableSummary summary) throws IOException;
+
+    /**
+     * Called at the end of every iteration, so readers see whole iterations.
+     */
+    void flush() throws IOException;
+}
@@ -0,0 +1,57 @@
+package admin.report;
+
+import admin.stats.RegionSizeStats;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.RegionLoad;
+
+/**
+ * Running totals of the regions of a stage: size distribution, requests and planned actions.
+ */
+public class StageSummary {
+
+    private final String stage;
+    private final RegionSizeStats stats = new RegionSizeStats();
+
+    private long readRequests;
+    private long writeRequests;
+    private int splits;
+    private int merges;
+
+    public StageSummary(String stage) {
+        this.stage = stage;
+    }
+
+    public void add(HRegionInfo info, RegionLoad load, String action) {
+        stats.add(info, load);
+        if (load != null) {
+            readRequests += load.getReadRequestsCount();
+            writeRequests += load.getWriteRequestsCount();
+        }
+        if (PlanReport.SPLIT.equals(action)) splits++;
+        if (PlanReport.MERGE.equals(action)) merges++;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public RegionSizeStats getStats() {
+        return stats;
+    }
+
+    public long getReadRequests() {
+        return readRequests;
+    }
+
+    public long getWriteRequests() {
+        return writeRequests;
+    }
+
+    public int getSplits() {
+        return splits;
+    }
+
+    public int getMerges() {
+        return merges;
+    }
+}
@@ -0,0 +1,131 @@
+package admin.report;
+
+/**
+ * Results and timings of a table in an iteration of RegionsTool, or in a whole run: regions and size seen by the
+ * first planner, plans computed, executed, failed, suppressed and deferred, wall time spent planning and executing,
+ * and plannings skipped because the table had not changed.
+ *
+ * Updated by the planning and execution threads, so all the methods are synchronized.
+ */
+public class TableSummary {
+
+    private final String table;
+
+    private int regions;
+    private long sizeMB;
+    private long plans;
+    private long executed;
+    private long failed;
+    private long suppressed;
+    private long deferred;
+    private long planningMs;
+    private long executionMs;
+    private long planningsSkipped;
+
+    public TableSummary(String table) {
+        this.table = table;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public synchronized void setRegions(int regions, long sizeMB) {
+        this.regions = regions;
+        this.sizeMB = sizeMB;
+    }
+
+    public synchronized void addPlanning(long plans, long millis, boolean skipped) {
+        this.plans += plans;
+        this.planningMs += millis;
+        if (skipped) planningsSkipped++;
+    }
+
+    public synchronized void addExecution(boolean failed, long millis) {
+        this.executed++;
+        if (failed) this.failed++;
+        this.executionMs += millis;
+    }
+
+    public synchronized void addSuppressed() {
+        suppressed++;
+    }
+
+    public synchronized void addDeferred(long deferred) {
+        this.deferred += deferred;
+    }
+
+    /**
+     * Adds the counts and timings of another summary, e.g. of an iteration to the one of the run. The regions and
+     * size are the last ones.
+     */
+    public synchronized void add(TableSummary other) {
+        synchronized (other) {
+            regions = other.regions;
+            sizeMB = other.sizeMB;
+            plans += other.plans;
+            executed += other.executed;
+            failed += other.failed;
+            suppressed += other.suppressed;
+            deferred += other.deferred;
+            planningMs += other.planningMs;
+            executionMs += other.executionMs;
+            planningsSkipped += other.planningsSkipped;
+        }
+    }
+
+    public synchronized int getRegions() {
+        return regions;
+    }
+
+    public synchronized long getSizeMB() {
+        return sizeMB;
+    }
+
+    public synchronized long getPlans() {
+        return plans;
+    }
+
+    public synchronized long getExecuted() {
+        return executed;
+    }
+
+    public synchronized long getFailed() {
+        return failed;
+    }
+
+    public synchronized long getSuppressed() {
+        return suppressed;
+    }
+
+    public synchronized long getDeferred() {
+        return deferred;
+    }
+
+    public synchronized long getPlanningMs() {
+        return planningMs;
+    }
+
+    public synchronized long getExecutionMs() {
+        return executionMs;
+    }
+
+    public synchronized long getPlanningsSkipped() {
+        return planningsSkipped;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return table
+                + " Regions:" + regions
+                + " Size (MB):" + sizeMB
+                + " Plans:" + plans
+                + " Executed:" + executed
+                + " Failed:" + failed
+                + " Suppressed:" + suppressed
+                + " Deferred:" + deferred
+                + " Planning (ms):" + planningMs
+                + " Execution (ms):" + executionMs
+                + " Plannings skipped:" + planningsSkipped;
+    }
+}
@@ -0,0 +1,157 @@
+package admin.stats;
+
+/**
+ * Log-linear histogram of non negative long values, in the style of HdrHistogram.
+ *
+ * Values under 64 are counted exactly. Bigger values fall in 32 linear sub-buckets per power of two, so any
+ * percentile is reported with a relative error under 3%. The histogram has a fixed footprint (about 15 KB),
+ * recording is O(1) and two histograms can be merged, e.g. the ones recorded by different threads.
+ *
+ * It is not thread safe.
+ */
+public class LogHistogram {
+
+    private static final int LINEAR_LIMIT = 64;
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int FIRST_EXPONENT = 6;
+    private static final int NUM_BUCKETS = LINEAR_LIMIT + (63 - FIRST_EXPONENT) * SUB_BUCKETS;
+
+    private final long[] counts = new long[NUM_BUCKETS];
+
+    private long totalCount;
+    private long min = Long.MAX_VALUE;
+    private long max;
+    private double sum;
+
+    public void record(long value) {
+        record(value, 1);
+    }
+
+    public void record(long value, long count) {
+        if (value < 0) value = 0;
+        counts[bucketIndex(value)] += count;
+        totalCount += count;
+        sum += (double) value * count;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    public void merge(LogHistogram other) {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        if (other.min < min) min = other.min;
+        if (other.max > max) max = other.max;
+    }
+
+    public void reset() {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] = 0;
+        }
+        totalCount = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    public LogHistogram copy() {
+        LogHistogram copy = new LogHistogram();
+        copy.merge(this);
+        return copy;
+    }
+
+    public long getCount() {
+        return totalCount;
+    }
+
+    public long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * Returns the value at the given percentile (0-100). The value is the upper bound of the bucket holding it,
+     * capped by the max recorded value.
+     */
+    public long getValueAtPercentile(double percentile) {
+
+        if (totalCount == 0) return 0;
+
+        long target = (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * totalCount);
+        if (target < 1) target = 1;
+
+        long accumulated = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            accumulated += counts[i];
+            if (accumulated >= target) {
+                return Math.min(max, Math.max(min, bucketUpperBound(i)));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Number of buckets, to iterate over the distribution with getBucketCount and getBucketValue.
+     */
+    public int getNumBuckets() {
+        return NUM_BUCKETS;
+    }
+
+    public long getBucketCount(int index) {
+        return counts[index];
+    }
+
+    /**
+     * Returns a value representative of the bucket: the middle point of its range.
+     */
+    public long getBucketValue(int index) {
+        return (bucketLowerBound(index) + bucketUpperBound(index)) / 2;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < LINEAR_LIMIT) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return LINEAR_LIMIT + (exponent - FIRST_EXPONENT) * SUB_BUCKETS + sub;
+    }
+
+    static long bucketLowerBound(int index) {
+        if (index < LINEAR_LIMIT) return index;
+        int exponent = (index - LINEAR_LIMIT) / SUB_BUCKETS + FIRST_EXPONENT;
+        int sub = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub)) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < LINEAR_LIMIT) return index;
+        int exponent = (index - LINEAR_LIMIT) / SUB_BUCKETS + FIRST_EXPONENT;
+        int sub = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+        long upper = ((long) (SUB_BUCKETS + sub + 1)) << (exponent - SUB_BUCKET_BITS);
+        return upper < 0 ? Long.MAX_VALUE : upper - 1;
+    }
+
+    public String toString() {
+        return "count=" + getCount()
+                + ", min=" + getMin()
+                + ", mean=" + String.format("%.1f", getMean())
+                + ", p50=" + getValueAtPercentile(50)
+                + ", p95=" + getValueAtPercentile(95)
+                + ", p99=" + getValueAtPercentile(99)
+                + ", p99.9=" + getValueAtPercentile(99.9)
+                + ", max=" + getMax();
+    }
+}
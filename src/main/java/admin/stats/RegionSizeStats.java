@@ -0,0 +1,270 @@
+package admin.stats;
+
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.RegionLoad;
+import org.apache.hadoop.hbase.ServerName;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Size distribution of a set of regions, computed in a single pass: min, max, mean and standard deviation,
+ * percentiles from a LogHistogram, Gini coefficient, and the top K largest and most requested regions.
+ *
+ * The mean and deviation are exact (Welford). Percentiles and Gini come from the histogram, with a relative error
+ * under 3%. Two stats can be merged, e.g. the ones of the stages of a table.
+ *
+ * It is not thread safe.
+ */
+public class RegionSizeStats {
+
+    public static final int DEFAULT_TOP_K = 10;
+
+    /**
+     * A region with its size and total read and write requests.
+     */
+    public static class Entry {
+        private final HRegionInfo region;
+        private final long sizeMB;
+        private final long requests;
+
+        Entry(HRegionInfo region, long sizeMB, long requests) {
+            this.region = region;
+            this.sizeMB = sizeMB;
+            this.requests = requests;
+        }
+
+        public HRegionInfo getRegion() {
+            return region;
+        }
+
+        public long getSizeMB() {
+            return sizeMB;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public String toString() {
+            return region.getEncodedName() + ":" + sizeMB + "MB:" + requests + "req";
+        }
+    }
+
+    private static final Comparator<Entry> BY_SIZE = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry e1, Entry e2) {
+            return e1.sizeMB < e2.sizeMB ? -1 : (e1.sizeMB == e2.sizeMB ? 0 : 1);
+        }
+    };
+
+    private static final Comparator<Entry> BY_REQUESTS = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry e1, Entry e2) {
+            return e1.requests < e2.requests ? -1 : (e1.requests == e2.requests ? 0 : 1);
+        }
+    };
+
+    private final int topK;
+    private final LogHistogram sizes = new LogHistogram();
+
+    // Smallest of the top K on top, to be replaced by a bigger one
+    private final PriorityQueue<Entry> largest;
+    private final PriorityQueue<Entry> busiest;
+
+    private long count;
+    private double mean;
+    private double m2;
+    private long totalRequests;
+
+    public RegionSizeStats() {
+        this(DEFAULT_TOP_K);
+    }
+
+    public RegionSizeStats(int topK) {
+        this.topK = Math.max(1, topK);
+        this.largest = new PriorityQueue<>(this.topK + 1, BY_SIZE);
+        this.busiest = new PriorityQueue<>(this.topK + 1, BY_REQUESTS);
+    }
+
+    /**
+     * Stats of the given regions. Regions without a load count as empty.
+     */
+    public static RegionSizeStats of(List<HRegionInfo> regions, Map<byte[], RegionLoad> regionLoads) {
+        RegionSizeStats stats = new RegionSizeStats();
+        for (HRegionInfo info : regions) {
+            stats.add(info, regionLoads.get(info.getRegionName()));
+        }
+        return stats;
+    }
+
+    /**
+     * Stats of the regions of every RegionServer. Regions not assigned are left out.
+     */
+    public static Map<ServerName, RegionSizeStats> byServer(List<HRegionLocation> locations,
+                                                            Map<byte[], RegionLoad> regionLoads) {
+        Map<ServerName, RegionSizeStats> byServer = new HashMap<>();
+        for (HRegionLocation location : locations) {
+            ServerName server = location.getServerName();
+            if (server == null) continue;
+            RegionSizeStats stats = byServer.get(server);
+            if (stats == null) {
+                stats = new RegionSizeStats();
+                byServer.put(server, stats);
+            }
+            HRegionInfo info = location.getRegionInfo();
+            stats.add(info, regionLoads.get(info.getRegionName()));
+        }
+        return byServer;
+    }
+
+    public void add(HRegionInfo info, RegionLoad load) {
+        if (load == null) {
+            add(info, 0, 0);
+        } else {
+            add(info, load.getStorefileSizeMB(), load.getReadRequestsCount() + load.getWriteRequestsCount());
+        }
+    }
+
+    public void add(HRegionInfo info, long sizeMB, long requests) {
+
+        sizes.record(sizeMB);
+        totalRequests += requests;
+
+        count++;
+        double delta = sizeMB - mean;
+        mean += delta / count;
+        m2 += delta * (sizeMB - mean);
+
+        offer(largest, new Entry(info, sizeMB, requests));
+        offer(busiest, new Entry(info, sizeMB, requests));
+    }
+
+    private void offer(PriorityQueue<Entry> top, Entry entry) {
+        if (top.size() < topK) {
+            top.add(entry);
+        } else if (top.comparator().compare(entry, top.peek()) > 0) {
+            top.poll();
+            top.add(entry);
+        }
+    }
+
+    public void merge(RegionSizeStats other) {
+
+        sizes.merge(other.sizes);
+        totalRequests += other.totalRequests;
+
+        if (other.count > 0) {
+            long total = count + other.count;
+            double delta = other.mean - mean;
+            mean += delta * other.count / total;
+            m2 += other.m2 + delta * delta * count * other.count / total;
+            count = total;
+        }
+
+        for (Entry entry : other.largest) {
+            offer(largest, entry);
+        }
+        for (Entry entry : other.busiest) {
+            offer(busiest, entry);
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMinSizeMB() {
+        return sizes.getMin();
+    }
+
+    public long getMaxSizeMB() {
+        return sizes.getMax();
+    }
+
+    public long getTotalSizeMB() {
+        return (long) sizes.getSum();
+    }
+
+    public long getTotalRequests() {
+        return totalRequests;
+    }
+
+    public double getMeanSizeMB() {
+        return mean;
+    }
+
+    public double getStdDevSizeMB() {
+        return count > 1 ? Math.sqrt(m2 / count) : 0;
+    }
+
+    /**
+     * Size at the given percentile (0-100).
+     */
+    public long getSizePercentileMB(double percentile) {
+        return sizes.getValueAtPercentile(percentile);
+    }
+
+    /**
+     * Gini coefficient of the sizes: 0 when all the regions have the same size, close to 1 when one region holds
+     * all the data.
+     */
+    public double getGini() {
+
+        double total = sizes.getSum();
+        if (count == 0 || total <= 0) return 0;
+
+        // G = 2 * sum(rank * size) / (n * total) - (n + 1) / n, with the sizes in ascending order
+        double weighted = 0;
+        long rank = 0;
+        for (int i = 0; i < sizes.getNumBuckets(); i++) {
+            long bucketCount = sizes.getBucketCount(i);
+            if (bucketCount == 0) continue;
+            double value = Math.min(sizes.getMax(), Math.max(sizes.getMin(), sizes.getBucketValue(i)));
+            // Sum of the ranks rank+1 .. rank+bucketCount
+            double ranks = bucketCount * (double) rank + bucketCount * (bucketCount + 1) / 2.0;
+            weighted += value * ranks;
+            rank += bucketCount;
+        }
+        double gini = 2 * weighted / (count * total) - (count + 1) / (double) count;
+        return Math.max(0, Math.min(1, gini));
+    }
+
+    /**
+     * The largest regions, biggest first.
+     */
+    public List<Entry> getLargest() {
+        return sorted(largest, BY_SIZE);
+    }
+
+    /**
+     * The regions with most read and write requests, busiest first.
+     */
+    public List<Entry> getBusiest() {
+        return sorted(busiest, BY_REQUESTS);
+    }
+
+    private static List<Entry> sorted(PriorityQueue<Entry> top, Comparator<Entry> comparator) {
+        List<Entry> entries = new ArrayList<>(top);
+        Collections.sort(entries, Collections.reverseOrder(comparator));
+        return entries;
+    }
+
+    public String toString() {
+        return "regions=" + count
+                + ", sizeMB=" + getTotalSizeMB()
+                + ", min=" + getMinSizeMB()
+                + ", mean=" + String.format("%.1f", mean)
+                + ", stddev=" + String.format("%.1f", getStdDevSizeMB())
+                + ", p50=" + getSizePercentileMB(50)
+                + ", p99=" + getSizePercentileMB(99)
+                + ", max=" + getMaxSizeMB()
+                + ", gini=" + String.format("%.3f", getGini());
+    }
+}